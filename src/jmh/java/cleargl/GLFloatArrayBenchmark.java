@@ -0,0 +1,46 @@
+package cleargl;
+
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Appending vertices one by one to a GLFloatArray that starts small and has
+ * to grow, as mesh builders do.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 10, time = 1)
+@Fork(1)
+public class GLFloatArrayBenchmark {
+
+	@Param({"1000", "10000"})
+	public int mVertices;
+
+	@Benchmark
+	public GLFloatArray addWithGrowth() {
+		final GLFloatArray lArray = new GLFloatArray(16, 3);
+		for (int i = 0; i < mVertices; i++)
+			lArray.add(i, i + 1, i + 2);
+		return lArray;
+	}
+
+	@Benchmark
+	public GLFloatArray addPreallocated() {
+		final GLFloatArray lArray = new GLFloatArray(mVertices, 3);
+		for (int i = 0; i < mVertices; i++)
+			lArray.add(i, i + 1, i + 2);
+		return lArray;
+	}
+
+}
@@ -0,0 +1,120 @@
+package cleargl;
+
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * GLMatrix and GLVector operations, each in its allocating and its
+ * destination-passing form.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 10, time = 1)
+@Fork(1)
+public class GLMathBenchmark {
+
+	private GLMatrix mA;
+	private GLMatrix mB;
+	private final GLMatrix mResult = new GLMatrix();
+	private final float[] mTransposed = new float[16];
+
+	private GLVector mU;
+	private GLVector mV;
+	private final GLVector mVectorResult = new GLVector(0.0f, 3);
+
+	@Setup
+	public void setup() {
+		mA = GLMatrix.getIdentity();
+		mA.translate(1.0f, 2.0f, 3.0f);
+		mA.rotEuler(0.1, 0.2, 0.3);
+		mA.scale(2.0f, 1.0f, 0.5f);
+		mB = new GLMatrix().setPerspectiveProjectionMatrix(1.0f, 1.5f, 0.1f, 100.0f);
+
+		mU = new GLVector(1.0f, 2.0f, 3.0f);
+		mV = new GLVector(-0.5f, 0.25f, 4.0f);
+	}
+
+	@Benchmark
+	public GLMatrix matrixMult() {
+		final GLMatrix lResult = mA.clone();
+		lResult.mult(mB);
+		return lResult;
+	}
+
+	@Benchmark
+	public GLMatrix matrixMultInto() {
+		return GLMatrix.mult(mA, mB, mResult);
+	}
+
+	@Benchmark
+	public GLMatrix matrixInvert() {
+		return mA.getInverse();
+	}
+
+	@Benchmark
+	public GLMatrix matrixInvertInto() {
+		return mB.getInverse(mResult);
+	}
+
+	@Benchmark
+	public GLMatrix matrixInvertCached() {
+		return mA.getCachedInverse();
+	}
+
+	@Benchmark
+	public float[] matrixTranspose() {
+		return mA.getTransposedFloatArray();
+	}
+
+	@Benchmark
+	public float[] matrixTransposeInto() {
+		return mA.getTransposedFloatArray(mTransposed);
+	}
+
+	@Benchmark
+	public GLVector vectorPlus() {
+		return mU.plus(mV);
+	}
+
+	@Benchmark
+	public GLVector vectorPlusInto() {
+		return GLVector.plus(mU, mV, mVectorResult);
+	}
+
+	@Benchmark
+	public GLVector vectorCross() {
+		return mU.cross(mV);
+	}
+
+	@Benchmark
+	public GLVector vectorCrossInto() {
+		return GLVector.cross(mU, mV, mVectorResult);
+	}
+
+	@Benchmark
+	public GLVector vectorNormalize() {
+		return mU.getNormalized();
+	}
+
+	@Benchmark
+	public GLVector vectorNormalizeInto() {
+		return GLVector.normalize(mU, mVectorResult);
+	}
+
+	@Benchmark
+	public float vectorDot() {
+		return mU.times(mV);
+	}
+
+}
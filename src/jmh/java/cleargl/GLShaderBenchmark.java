@@ -0,0 +1,81 @@
+package cleargl;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.HashMap;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * GLShader.preprocessShader on a generated shader with %var substitutions and
+ * %include directives.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 10, time = 1)
+@Fork(1)
+public class GLShaderBenchmark {
+
+	@Param({"16", "256"})
+	public int mVariables;
+
+	@Param({"0", "4"})
+	public int mIncludes;
+
+	private Path mBasePath;
+	private String mSource;
+	private final HashMap<String, String> mParameters = new HashMap<>();
+
+	@Setup
+	public void setup() throws IOException {
+		mBasePath = Files.createTempDirectory("cleargl-shader-bench");
+		final StringBuilder lInclude = new StringBuilder();
+		for (int i = 0; i < 50; i++)
+			lInclude.append("// helper ").append(i).append('\n')
+					.append("float helper").append(i).append("(float x) { return x * ").append(i).append(".0; }\n");
+		for (int i = 0; i < mIncludes; i++)
+			Files.write(mBasePath.resolve("include" + i + ".glsl"),
+					lInclude.toString().getBytes(StandardCharsets.UTF_8));
+
+		final StringBuilder lSource = new StringBuilder("#version 330\n");
+		for (int i = 0; i < mIncludes; i++)
+			lSource.append("%include <include").append(i).append(".glsl>\n");
+		for (int i = 0; i < mVariables; i++) {
+			mParameters.put("var" + i, Integer.toString(i));
+			lSource.append("const int c").append(i).append(" = %var(var").append(i).append(");\n");
+		}
+		lSource.append("void main() {\n");
+		for (int i = 0; i < 200; i++)
+			lSource.append("    gl_FragColor += vec4(").append(i).append(".0);\n");
+		lSource.append("}\n");
+		mSource = lSource.toString();
+	}
+
+	@TearDown
+	public void tearDown() throws IOException {
+		for (int i = 0; i < mIncludes; i++)
+			Files.delete(mBasePath.resolve("include" + i + ".glsl"));
+		Files.delete(mBasePath);
+	}
+
+	@Benchmark
+	public String preprocessShader() {
+		return GLShader.preprocessShader(mSource, mParameters, mBasePath);
+	}
+
+}
@@ -0,0 +1,148 @@
+package cleargl;
+
+import java.awt.Color;
+import java.awt.Graphics;
+import java.awt.color.ColorSpace;
+import java.awt.image.BufferedImage;
+import java.awt.image.ColorModel;
+import java.awt.image.ComponentColorModel;
+import java.awt.image.DataBuffer;
+import java.awt.image.DataBufferByte;
+import java.awt.image.Raster;
+import java.awt.image.WritableRaster;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.Hashtable;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import cleargl.util.image.RasterConverter;
+
+/**
+ * Conversion of BufferedImages into the RGB(A) byte buffers GLTexture uploads,
+ * including the power-of-two padding: the old drawImage based conversion
+ * against the single-pass RasterConverter, which also flips the rows.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 10, time = 1)
+@Fork(1)
+public class GLTextureBenchmark {
+
+	private static final ColorModel cAlphaColorModel = createColorModel(ColorSpace.CS_LINEAR_RGB,
+			true);
+	private static final ColorModel cAlphaColorModelsRGB = createColorModel(ColorSpace.CS_sRGB,
+			true);
+	private static final ColorModel cColorModel = createColorModel(ColorSpace.CS_LINEAR_RGB,
+			false);
+	private static final ColorModel cColorModelsRGB = createColorModel(ColorSpace.CS_sRGB,
+			false);
+
+	@Param({"TYPE_INT_RGB", "TYPE_INT_ARGB", "TYPE_3BYTE_BGR", "TYPE_4BYTE_ABGR"})
+	public String mImageType;
+
+	@Param({"1000", "2048"})
+	public int mSize;
+
+	private BufferedImage mImage;
+
+	@Setup
+	public void setup() throws ReflectiveOperationException {
+		final int lType = BufferedImage.class.getField(mImageType).getInt(null);
+		mImage = new BufferedImage(mSize, mSize, lType);
+		final Random lRandom = new Random(42);
+		for (int y = 0; y < mSize; y++)
+			for (int x = 0; x < mSize; x++)
+				mImage.setRGB(x, y, lRandom.nextInt());
+	}
+
+	@Benchmark
+	public ByteBuffer bufferedImageToRGBABuffer() {
+		return bufferedImageToRGBABuffer(mImage);
+	}
+
+	@Benchmark
+	public ByteBuffer rasterConverter() {
+		return RasterConverter.toRGBA(mImage, true, true);
+	}
+
+	@Benchmark
+	public ByteBuffer rasterConverterNPOT() {
+		return RasterConverter.toRGBA(mImage, true, false);
+	}
+
+	private static ColorModel createColorModel(final int pColorSpace,
+			final boolean pAlpha) {
+		return new ComponentColorModel(ColorSpace.getInstance(pColorSpace),
+				new int[]{8, 8, 8, pAlpha ? 8 : 0},
+				pAlpha,
+				false,
+				pAlpha ? ComponentColorModel.TRANSLUCENT : ComponentColorModel.OPAQUE,
+				DataBuffer.TYPE_BYTE);
+	}
+
+	/**
+	 * The conversion GLTexture used before RasterConverter: draws the image
+	 * into a padded RGB(A) raster and copies the raster into a direct buffer.
+	 */
+	private static ByteBuffer bufferedImageToRGBABuffer(final BufferedImage pImage) {
+		int lWidth = 2;
+		int lHeight = 2;
+		while (lWidth < pImage.getWidth())
+			lWidth *= 2;
+		while (lHeight < pImage.getHeight())
+			lHeight *= 2;
+
+		final boolean lsRGB = pImage.getColorModel().getColorSpace().isCS_sRGB();
+		final BufferedImage lTexImage;
+		if (pImage.getColorModel().hasAlpha()) {
+			final WritableRaster lRaster = Raster.createInterleavedRaster(DataBuffer.TYPE_BYTE,
+					lWidth,
+					lHeight,
+					4,
+					null);
+			lTexImage = new BufferedImage(lsRGB ? cAlphaColorModelsRGB : cAlphaColorModel,
+					lRaster,
+					false,
+					new Hashtable<>());
+		} else {
+			final WritableRaster lRaster = Raster.createInterleavedRaster(DataBuffer.TYPE_BYTE,
+					lWidth,
+					lHeight,
+					3,
+					null);
+			lTexImage = new BufferedImage(lsRGB ? cColorModelsRGB : cColorModel,
+					lRaster,
+					false,
+					new Hashtable<>());
+		}
+
+		final Graphics lGraphics = lTexImage.getGraphics();
+		lGraphics.setColor(new Color(0.0f, 0.0f, 0.0f, 1.0f));
+		lGraphics.fillRect(0, 0, lWidth, lHeight);
+		lGraphics.drawImage(pImage, 0, 0, null);
+		lGraphics.dispose();
+
+		final byte[] lData = ((DataBufferByte) lTexImage.getRaster()
+				.getDataBuffer()).getData();
+		final ByteBuffer lBuffer = ByteBuffer.allocateDirect(lData.length)
+				.order(ByteOrder.nativeOrder());
+		lBuffer.put(lData, 0, lData.length);
+		lBuffer.rewind();
+		return lBuffer;
+	}
+
+}
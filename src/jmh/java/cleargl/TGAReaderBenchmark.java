@@ -0,0 +1,97 @@
+package cleargl;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * TGAReader.read for every supported image type and depth, on 1024x1024
+ * images, against the decoder it replaced and the streaming decoder.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 10, time = 1)
+@Fork(1)
+public class TGAReaderBenchmark {
+
+	@Param({"COLORMAP_24",
+			"COLORMAP_32",
+			"RGB_24",
+			"RGB_32",
+			"GRAYSCALE_8",
+			"GRAYSCALE_16",
+			"COLORMAP_RLE_24",
+			"COLORMAP_RLE_32",
+			"RGB_RLE_24",
+			"RGB_RLE_32",
+			"GRAYSCALE_RLE_8",
+			"GRAYSCALE_RLE_16"})
+	public String mImageType;
+
+	@Param({"false", "true"})
+	public boolean mUpperOrigin;
+
+	private byte[] mImage;
+	private final ByteBuffer mTarget = ByteBuffer.allocateDirect(1024 * 1024 * 4);
+
+	@Setup
+	public void setup() {
+		final int lSplit = mImageType.lastIndexOf('_');
+		final int lDepth = Integer.parseInt(mImageType.substring(lSplit + 1));
+		final int lType;
+		switch (mImageType.substring(0, lSplit)) {
+			case "COLORMAP":
+				lType = TGATestImages.COLORMAP;
+				break;
+			case "RGB":
+				lType = TGATestImages.RGB;
+				break;
+			case "GRAYSCALE":
+				lType = TGATestImages.GRAYSCALE;
+				break;
+			case "COLORMAP_RLE":
+				lType = TGATestImages.COLORMAP_RLE;
+				break;
+			case "RGB_RLE":
+				lType = TGATestImages.RGB_RLE;
+				break;
+			default:
+				lType = TGATestImages.GRAYSCALE_RLE;
+		}
+		mImage = TGATestImages.create(lType, lDepth, 1024, 1024, mUpperOrigin, 42);
+	}
+
+	@Benchmark
+	public int[] read() throws IOException {
+		return TGAReader.read(mImage, TGAReader.ABGR);
+	}
+
+	@Benchmark
+	public int[] reference() throws IOException {
+		return TGAReferenceReader.read(mImage, TGAReader.ABGR);
+	}
+
+	@Benchmark
+	public ByteBuffer stream() throws IOException {
+		mTarget.clear();
+		final InputStream lInput = new ByteArrayInputStream(mImage);
+		TGAReader.read(lInput, TGAReader.readHeader(lInput), mTarget, 4, 1024);
+		return mTarget;
+	}
+
+}
@@ -0,0 +1,91 @@
+package cleargl.util.culling;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import cleargl.GLMatrix;
+
+/**
+ * Culls 1M boxes and spheres scattered around a perspective frustum, about a
+ * quarter of them visible.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 10, time = 1)
+@Fork(1)
+public class FrustumCullerBenchmark {
+
+	private static final int cCount = 1 << 20;
+
+	private Frustum mFrustum;
+	private BoundingBoxArray mBoxes;
+	private BoundingSphereArray mSpheres;
+	private long[] mVisibility;
+
+	@Setup
+	public void setup() {
+		final GLMatrix lProjection = new GLMatrix().setPerspectiveProjectionMatrix((float) Math.toRadians(60),
+				1.5f,
+				0.1f,
+				1000.0f);
+		final GLMatrix lView = new GLMatrix().setCamera(0.0f, 0.0f, 0.0f,
+				0.0f, 0.0f, -1.0f,
+				0.0f, 1.0f, 0.0f);
+		mFrustum = new Frustum(GLMatrix.mult(lProjection, lView, new GLMatrix()));
+
+		final Random lRandom = new Random(42);
+		mBoxes = new BoundingBoxArray(cCount);
+		mSpheres = new BoundingSphereArray(cCount);
+		for (int i = 0; i < cCount; i++) {
+			final float x = 1000 * lRandom.nextFloat() - 500;
+			final float y = 1000 * lRandom.nextFloat() - 500;
+			final float z = -1000 * lRandom.nextFloat();
+			final float s = 2 * lRandom.nextFloat();
+			mBoxes.add(x - s, y - s, z - s, x + s, y + s, z + s);
+			mSpheres.add(x, y, z, s);
+		}
+		mVisibility = new long[FrustumCuller.getVisibilityWords(cCount)];
+	}
+
+	@Benchmark
+	public int cullBoxes() {
+		return FrustumCuller.cull(mFrustum, mBoxes, mVisibility);
+	}
+
+	@Benchmark
+	public int cullSpheres() {
+		return FrustumCuller.cull(mFrustum, mSpheres, mVisibility);
+	}
+
+	@Benchmark
+	public int cullBoxesScalar() {
+		int lVisible = 0;
+		final float[] lMinX = mBoxes.getMinX(), lMinY = mBoxes.getMinY(), lMinZ = mBoxes.getMinZ();
+		final float[] lMaxX = mBoxes.getMaxX(), lMaxY = mBoxes.getMaxY(), lMaxZ = mBoxes.getMaxZ();
+		for (int i = 0; i < cCount; i++)
+			if (mFrustum.intersectsBox(lMinX[i], lMinY[i], lMinZ[i], lMaxX[i], lMaxY[i], lMaxZ[i]))
+				lVisible++;
+		return lVisible;
+	}
+
+	public static void main(final String[] pArgs) throws RunnerException {
+		new Runner(new OptionsBuilder().include(FrustumCullerBenchmark.class.getSimpleName())
+				.build()).run();
+	}
+
+}
@@ -0,0 +1,70 @@
+package cleargl.util.image;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.FloatBuffer;
+import java.nio.ShortBuffer;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Float to half conversion of a 256^3 float volume (64 MB) into a direct
+ * buffer, chunked and parallel versus element-wise buffer access.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class HalfFloatConverterBenchmark {
+
+	private FloatBuffer mFloats;
+	private ShortBuffer mHalves;
+
+	@Setup
+	public void setup() {
+		final int lCount = 256 * 256 * 256;
+		mFloats = ByteBuffer.allocateDirect(4 * lCount)
+				.order(ByteOrder.nativeOrder())
+				.asFloatBuffer();
+		final Random lRandom = new Random(42);
+		for (int i = 0; i < lCount; i++)
+			mFloats.put(i, (float) lRandom.nextGaussian() * 100);
+		mHalves = ByteBuffer.allocateDirect(2 * lCount)
+				.order(ByteOrder.nativeOrder())
+				.asShortBuffer();
+	}
+
+	@Benchmark
+	public ShortBuffer converter() {
+		HalfFloatConverter.toHalf(mFloats, mHalves);
+		return mHalves;
+	}
+
+	@Benchmark
+	public ShortBuffer elementWise() {
+		for (int i = 0; i < mFloats.limit(); i++)
+			mHalves.put(i, HalfFloatConverter.toHalf(mFloats.get(i)));
+		return mHalves;
+	}
+
+	public static void main(final String[] pArgs) throws RunnerException {
+		new Runner(new OptionsBuilder().include(HalfFloatConverterBenchmark.class.getSimpleName())
+				.build()).run();
+	}
+
+}
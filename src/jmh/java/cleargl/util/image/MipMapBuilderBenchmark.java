@@ -0,0 +1,83 @@
+package cleargl.util.image;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import cleargl.GLTypeEnum;
+
+/**
+ * Full mip-map chains of a 2048x2048 RGBA8 image and a 256^3 16 bit volume.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class MipMapBuilderBenchmark {
+
+	@Param({"Box", "Triangle", "Lanczos"})
+	public MipMapBuilder.Filter mFilter;
+
+	private ByteBuffer mImage;
+	private ByteBuffer mVolume;
+
+	@Setup
+	public void setup() {
+		final Random lRandom = new Random(42);
+		mImage = ByteBuffer.allocateDirect(2048 * 2048 * 4)
+				.order(ByteOrder.nativeOrder());
+		while (mImage.hasRemaining())
+			mImage.putInt(lRandom.nextInt());
+		mVolume = ByteBuffer.allocateDirect(256 * 256 * 256 * 2)
+				.order(ByteOrder.nativeOrder());
+		while (mVolume.hasRemaining())
+			mVolume.putShort((short) lRandom.nextInt(4096));
+	}
+
+	@Benchmark
+	public ByteBuffer[] image2D() {
+		return MipMapBuilder.build(mImage,
+				GLTypeEnum.UnsignedByte,
+				4,
+				2048,
+				2048,
+				1,
+				MipMapBuilder.getLevelCount(2048, 2048, 1),
+				mFilter);
+	}
+
+	@Benchmark
+	public ByteBuffer[] volume3D() {
+		return MipMapBuilder.build(mVolume,
+				GLTypeEnum.UnsignedShort,
+				1,
+				256,
+				256,
+				256,
+				MipMapBuilder.getLevelCount(256, 256, 256),
+				mFilter);
+	}
+
+	public static void main(final String[] pArgs) throws RunnerException {
+		new Runner(new OptionsBuilder().include(MipMapBuilderBenchmark.class.getSimpleName())
+				.build()).run();
+	}
+
+}
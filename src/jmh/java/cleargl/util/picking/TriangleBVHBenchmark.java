@@ -0,0 +1,73 @@
+package cleargl.util.picking;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import cleargl.Vec3f;
+
+/**
+ * Building, refitting and picking a BVH over a noisy sphere mesh.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 10, time = 1)
+@Fork(1)
+public class TriangleBVHBenchmark {
+
+	@Param({"10000", "1000000"})
+	public int mTriangles;
+
+	private float[] mVertices;
+	private TriangleBVH mBVH;
+	private final Ray mRay = new Ray();
+	private final RayHit mHit = new RayHit();
+	private final Random mRandom = new Random(42);
+
+	@Setup
+	public void setup() {
+		mVertices = new float[9 * mTriangles];
+		final Random lRandom = new Random(42);
+		for (int t = 0; t < mTriangles; t++) {
+			final double lTheta = Math.acos(2 * lRandom.nextDouble() - 1);
+			final double lPhi = 2 * Math.PI * lRandom.nextDouble();
+			final float x = (float) (10 * Math.sin(lTheta) * Math.cos(lPhi));
+			final float y = (float) (10 * Math.sin(lTheta) * Math.sin(lPhi));
+			final float z = (float) (10 * Math.cos(lTheta));
+			for (int i = 0; i < 9; i++)
+				mVertices[9 * t + i] = (i % 3 == 0 ? x : i % 3 == 1 ? y : z) + 0.1f * lRandom.nextFloat();
+		}
+		mBVH = new TriangleBVH(mVertices, 3, null);
+	}
+
+	@Benchmark
+	public TriangleBVH build() {
+		return new TriangleBVH(mVertices, 3, null);
+	}
+
+	@Benchmark
+	public TriangleBVH refit() {
+		mBVH.refit();
+		return mBVH;
+	}
+
+	@Benchmark
+	public boolean pick() {
+		mRay.set(new Vec3f(0, 0, 30),
+				new Vec3f(mRandom.nextFloat() - 0.5f, mRandom.nextFloat() - 0.5f, -3).normalize());
+		return mBVH.intersect(mRay, mHit.reset());
+	}
+
+}
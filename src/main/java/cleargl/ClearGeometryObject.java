@@ -6,6 +6,10 @@ import java.util.Hashtable;
 import com.jogamp.opengl.GL;
 import com.jogamp.opengl.GLException;
 
+import cleargl.util.picking.Ray;
+import cleargl.util.picking.RayHit;
+import cleargl.util.picking.TriangleBVH;
+
 /**
  * ClearGeometryObject -
  * 
@@ -26,8 +30,21 @@ public class ClearGeometryObject implements GLCloseable, GLInterface {
 	private final int[] mVertexBuffers = new int[3];
 	private final int[] mIndexBuffer = new int[1];
 
+	// GPU memory, by buffer name
+	private final Hashtable<Integer, Long> mBufferSizes = new Hashtable<>();
+	private final GLMemoryRegistry.Allocation mAllocation;
+
 	private boolean mIsDynamic = false;
 
+	// CPU copies of vertices and indices for picking, see setPickable()
+	private boolean mIsPickable = false;
+	private float[] mPickingVertices;
+	private int[] mPickingIndices;
+	private TriangleBVH mBVH;
+	private boolean mBVHNeedsRefit;
+	private Ray mObjectRay;
+	private GLMatrix mInverseModelMatrix;
+
 	private final int mGeometryType;
 	// length of vectors and texcoords
 	private int mGeometrySize = 3;
@@ -56,6 +73,21 @@ public class ClearGeometryObject implements GLCloseable, GLInterface {
 		// generate three VBOs for coords, normals, texcoords
 		getGL().glGenBuffers(3, mVertexBuffers, 0);
 		getGL().glGenBuffers(1, mIndexBuffer, 0);
+
+		mAllocation = GLMemoryRegistry.getDefault()
+				.register(this, GLMemoryRegistry.Category.Geometry, 0);
+	}
+
+	private void accountBufferData(int pBuffer, long pSizeInBytes) {
+		mBufferSizes.put(pBuffer, pSizeInBytes);
+		long lTotal = 0;
+		for (long lSize : mBufferSizes.values())
+			lTotal += lSize;
+		mAllocation.setSizeInBytes(lTotal);
+	}
+
+	public long getSizeInBytes() {
+		return mAllocation.getSizeInBytes();
 	}
 
 	private static void printBuffer(FloatBuffer buf) {
@@ -88,6 +120,7 @@ public class ClearGeometryObject implements GLCloseable, GLInterface {
 
 	public void setVerticesAndCreateBuffer(FloatBuffer pVertexBuffer) {
 		mStoredPrimitiveCount = pVertexBuffer.remaining() / mGeometrySize;
+		storePickingVertices(pVertexBuffer);
 
 		getGL().getGL3().glBindVertexArray(mVertexArrayObject[0]);
 		getGL().glBindBuffer(GL.GL_ARRAY_BUFFER, mVertexBuffers[0]);
@@ -99,6 +132,7 @@ public class ClearGeometryObject implements GLCloseable, GLInterface {
 				pVertexBuffer,
 				isDynamic() ? GL.GL_DYNAMIC_DRAW
 						: GL.GL_STATIC_DRAW);
+		accountBufferData(mVertexBuffers[0], pVertexBuffer.limit() * (Float.SIZE / Byte.SIZE));
 
 		getGL().getGL3().glVertexAttribPointer(0,
 				mGeometrySize,
@@ -136,6 +170,7 @@ public class ClearGeometryObject implements GLCloseable, GLInterface {
 				pBuffer,
 				isDynamic() ? GL.GL_DYNAMIC_DRAW
 						: GL.GL_STATIC_DRAW);
+		accountBufferData(mVertexBuffers[mVertexBuffers.length - 1], pBuffer.limit() * (Float.SIZE / Byte.SIZE));
 
 		getGL().getGL3().glVertexAttribPointer(mVertexBuffers.length - 1,
 				pBufferGeometrySize,
@@ -157,6 +192,7 @@ public class ClearGeometryObject implements GLCloseable, GLInterface {
 
 		if (!isDynamic())
 			throw new UnsupportedOperationException("Cannot update non dynamic buffers!");
+		storePickingVertices(pVertexBuffer);
 
 		getGL().getGL3().glBindVertexArray(mVertexArrayObject[0]);
 		getGL().glBindBuffer(GL.GL_ARRAY_BUFFER, mVertexBuffers[0]);
@@ -168,6 +204,7 @@ public class ClearGeometryObject implements GLCloseable, GLInterface {
 				pVertexBuffer,
 				isDynamic() ? GL.GL_DYNAMIC_DRAW
 						: GL.GL_STATIC_DRAW);
+		accountBufferData(mVertexBuffers[0], pVertexBuffer.limit() * (Float.SIZE / Byte.SIZE));
 
 		getGL().getGL3().glVertexAttribPointer(0,
 				mGeometrySize,
@@ -191,6 +228,7 @@ public class ClearGeometryObject implements GLCloseable, GLInterface {
 				pNormalBuffer,
 				isDynamic() ? GL.GL_DYNAMIC_DRAW
 						: GL.GL_STATIC_DRAW);
+		accountBufferData(mVertexBuffers[1], pNormalBuffer.limit() * (Float.SIZE / Byte.SIZE));
 
 		getGL().getGL3().glVertexAttribPointer(1,
 				mGeometrySize,
@@ -239,6 +277,7 @@ public class ClearGeometryObject implements GLCloseable, GLInterface {
 				pTextureCoordsBuffer,
 				isDynamic() ? GL.GL_DYNAMIC_DRAW
 						: GL.GL_STATIC_DRAW);
+		accountBufferData(mVertexBuffers[2], pTextureCoordsBuffer.limit() * (Float.SIZE / Byte.SIZE));
 
 		getGL().getGL3().glVertexAttribPointer(2,
 				mTextureCoordSize,
@@ -291,6 +330,7 @@ public class ClearGeometryObject implements GLCloseable, GLInterface {
 	public void setIndicesAndCreateBuffer(IntBuffer pIndexBuffer) {
 
 		mStoredIndexCount = pIndexBuffer.remaining();
+		storePickingIndices(pIndexBuffer);
 
 		getGL().getGL3().glBindVertexArray(mVertexArrayObject[0]);
 		getGL().glBindBuffer(GL.GL_ELEMENT_ARRAY_BUFFER, mIndexBuffer[0]);
@@ -301,6 +341,7 @@ public class ClearGeometryObject implements GLCloseable, GLInterface {
 				pIndexBuffer,
 				isDynamic() ? GL.GL_DYNAMIC_DRAW
 						: GL.GL_STATIC_DRAW);
+		accountBufferData(mIndexBuffer[0], pIndexBuffer.limit() * (Integer.SIZE / Byte.SIZE));
 
 		getGL().getGL3().glBindVertexArray(0);
 		getGL().glBindBuffer(GL.GL_ELEMENT_ARRAY_BUFFER, 0);
@@ -311,6 +352,7 @@ public class ClearGeometryObject implements GLCloseable, GLInterface {
 			throw new UnsupportedOperationException("Cannot update non dynamic buffers!");
 
 		mStoredIndexCount = pIndexBuffer.remaining();
+		storePickingIndices(pIndexBuffer);
 
 		getGL().getGL3().glBindVertexArray(mVertexArrayObject[0]);
 		getGL().glBindBuffer(GL.GL_ELEMENT_ARRAY_BUFFER, mIndexBuffer[0]);
@@ -325,6 +367,115 @@ public class ClearGeometryObject implements GLCloseable, GLInterface {
 		getGL().glBindBuffer(GL.GL_ELEMENT_ARRAY_BUFFER, 0);
 	}
 
+	private void storePickingVertices(FloatBuffer pVertexBuffer) {
+		if (!mIsPickable)
+			return;
+
+		final FloatBuffer lVertices = pVertexBuffer.duplicate();
+		if (mBVH != null && mPickingVertices != null
+				&& mPickingVertices.length == lVertices.remaining()) {
+			// same vertex count: keep the hierarchy and refit it on next pick
+			lVertices.get(mPickingVertices);
+			mBVHNeedsRefit = true;
+		} else {
+			mPickingVertices = new float[lVertices.remaining()];
+			lVertices.get(mPickingVertices);
+			mBVH = null;
+		}
+	}
+
+	private void storePickingIndices(IntBuffer pIndexBuffer) {
+		if (!mIsPickable)
+			return;
+
+		final IntBuffer lIndices = pIndexBuffer.duplicate();
+		mPickingIndices = new int[lIndices.remaining()];
+		lIndices.get(mPickingIndices);
+		mBVH = null;
+	}
+
+	public boolean isPickable() {
+		return mIsPickable;
+	}
+
+	/**
+	 * Pickable objects keep a CPU copy of the vertices and indices passed in
+	 * after this call, from which a bounding volume hierarchy is built on the
+	 * first pick. Only GL_TRIANGLES geometry can be picked.
+	 */
+	public void setPickable(boolean pIsPickable) {
+		mIsPickable = pIsPickable;
+		if (!pIsPickable) {
+			mPickingVertices = null;
+			mPickingIndices = null;
+			mBVH = null;
+		}
+	}
+
+	/**
+	 * Intersects a ray given in world space, i.e. the space the model matrix
+	 * of {@link #setMVP} maps into, with this object. Returns true and fills
+	 * pHit if the ray hits; pHit.t is measured along pRay.
+	 */
+	public boolean pick(Ray pRay, RayHit pHit) {
+		final TriangleBVH lBVH = getBVH();
+		if (lBVH == null)
+			return false;
+
+		if (mModelMatrix == null)
+			return lBVH.intersect(pRay, pHit);
+
+		if (mObjectRay == null) {
+			mObjectRay = new Ray();
+			mInverseModelMatrix = new GLMatrix();
+		}
+		mModelMatrix.getInverse(mInverseModelMatrix);
+		return lBVH.intersect(pRay.transform(mInverseModelMatrix, mObjectRay),
+				pHit);
+	}
+
+	/**
+	 * Picks along the ray through the given normalized device coordinates of
+	 * the given projection and view. Returns null if nothing is hit.
+	 */
+	public RayHit pick(GLMatrix pProjection,
+			GLMatrix pView,
+			float pNdcX,
+			float pNdcY) {
+		final Ray lRay = new Ray().setFromNDC(pProjection,
+				pView,
+				pNdcX,
+				pNdcY);
+		final RayHit lHit = new RayHit();
+		return pick(lRay, lHit) ? lHit : null;
+	}
+
+	/**
+	 * Returns the picking hierarchy, building or refitting it if the vertices
+	 * or indices changed since the last pick, or null if this object is not
+	 * pickable or has no vertices yet.
+	 */
+	public TriangleBVH getBVH() {
+		// indices passed in before setPickable(true) were not copied
+		if (!mIsPickable || mPickingVertices == null
+				|| (mStoredIndexCount > 0 && mPickingIndices == null))
+			return null;
+		if (mGeometryType != GL.GL_TRIANGLES)
+			throw new UnsupportedOperationException("Only GL_TRIANGLES geometry can be picked");
+
+		if (mBVH == null) {
+			mBVH = new TriangleBVH(mPickingVertices,
+					mGeometrySize,
+					mStoredIndexCount > 0 ? mPickingIndices
+							: null);
+			mBVHNeedsRefit = false;
+		} else if (mBVHNeedsRefit) {
+			mBVH.refit();
+			mBVHNeedsRefit = false;
+		}
+		return mBVH;
+	}
+
 	public void setMVP(GLMatrix m, GLMatrix v, GLMatrix p) {
 		mModelMatrix = m;
 		mViewMatrix = v;
@@ -386,6 +537,7 @@ public class ClearGeometryObject implements GLCloseable, GLInterface {
 
 		getGL().glDeleteBuffers(mVertexBuffers.length, mVertexBuffers, 0);
 		getGL().glDeleteBuffers(mIndexBuffer.length, mIndexBuffer, 0);
+		mAllocation.release();
 	}
 
 	@Override
@@ -10,6 +10,12 @@ import java.util.Map;
 /**
  * Convenience class for handling OpenGL Framebuffers
  *
+ * After {@link #resize(GL4, int, int)}, the attachments may be larger than
+ * {@link #getWidth()} x {@link #getHeight()}, see
+ * {@link #setSizeGranularity(int)}; the viewport should be set to the
+ * framebuffer's size and texture coordinates scaled by
+ * {@link #getWidth()} / {@link #getTextureWidth()}.
+ *
  * @author Ulrik Günther
  */
 @SuppressWarnings({"unused", "WeakerAccess"})
@@ -24,10 +30,18 @@ public class GLFramebuffer {
 
 	protected int height;
 
+	protected int textureWidth;
+
+	protected int textureHeight;
+
+	protected int sizeGranularity = 64;
+
 	protected boolean initialized;
 
 	protected boolean sRGB;
 
+	protected GLTexturePool texturePool;
+
 	public GLFramebuffer(final GL4 gl, final int width, final int height) {
 		this(gl, width, height, false);
 	}
@@ -38,6 +52,8 @@ public class GLFramebuffer {
 		depthBuffers = new LinkedHashMap<>();
 		this.width = width;
 		this.height = height;
+		this.textureWidth = width;
+		this.textureHeight = height;
 		this.sRGB = sRGB;
 
 		gl.getGL().glGenFramebuffers(1, framebufferId, 0);
@@ -61,11 +77,11 @@ public class GLFramebuffer {
 
 		gl.getGL().glBindFramebuffer(GL4.GL_FRAMEBUFFER, getId());
 
-		backingTextures.put(name, new GLTexture(
+		backingTextures.put(name, attachment(new GLTexture(
 				gl,
 				GLTypeEnum.Float,
 				channelCount,
-				width, height, 1, true, 1, channelDepth));
+				textureWidth, textureHeight, 1, true, 1, channelDepth)));
 
 		gl.glFramebufferTexture(GL4.GL_FRAMEBUFFER,
 				getCurrentFramebufferColorAttachment(),
@@ -99,11 +115,11 @@ public class GLFramebuffer {
 
 		gl.getGL().glBindFramebuffer(GL4.GL_FRAMEBUFFER, getId());
 
-		backingTextures.put(name, new GLTexture(
+		backingTextures.put(name, attachment(new GLTexture(
 				gl,
 				GLTypeEnum.UnsignedByte,
 				channelCount,
-				width, height, 1, true, 1, channelDepth, true, sRGB));
+				textureWidth, textureHeight, 1, true, 1, channelDepth, true, sRGB)));
 
 		gl.glFramebufferTexture(GL4.GL_FRAMEBUFFER,
 				getCurrentFramebufferColorAttachment(),
@@ -141,11 +157,11 @@ public class GLFramebuffer {
 
 		gl.getGL().glBindFramebuffer(GL4.GL_FRAMEBUFFER, getId());
 
-		depthBuffers.put(name, new GLTexture(
+		depthBuffers.put(name, attachment(new GLTexture(
 				gl,
 				GLTypeEnum.Float,
 				-1,
-				width / scale, height / scale, 1, true, 1, depth));
+				textureWidth / scale, textureHeight / scale, 1, true, 1, depth)));
 
 		gl.glFramebufferTexture(GL4.GL_FRAMEBUFFER,
 				GL4.GL_DEPTH_ATTACHMENT,
@@ -243,11 +259,58 @@ public class GLFramebuffer {
 		return -1;
 	}
 
+	/**
+	 * Accounts the texture as framebuffer memory, which is never evicted.
+	 */
+	private static GLTexture attachment(final GLTexture texture) {
+		texture.getMemoryAllocation().setCategory(GLMemoryRegistry.Category.Framebuffer);
+		return texture;
+	}
+
+	public GLTexturePool getTexturePool() {
+		return texturePool;
+	}
+
+	/**
+	 * Sets the pool that textures replaced on resize go to and new ones
+	 * come from. Without a pool, the default, replaced textures are deleted.
+	 * Attachments are allocated in multiples of the size granularity, so
+	 * pooled textures also fit sizes close to the ones they were made for.
+	 */
+	public void setTexturePool(final GLTexturePool texturePool) {
+		this.texturePool = texturePool;
+	}
+
+	public int getSizeGranularity() {
+		return sizeGranularity;
+	}
+
+	/**
+	 * Sets the multiple, 64 by default, that attachment sizes are rounded up
+	 * to on resize. Resizes that fit into the current attachments, and do
+	 * not shrink them to less than a quarter of their area, keep them, so
+	 * that dragging a window corner does not reallocate on every step. A
+	 * granularity of 1 makes the attachments always match the size exactly.
+	 */
+	public void setSizeGranularity(final int sizeGranularity) {
+		if (sizeGranularity < 1)
+			throw new IllegalArgumentException("Size granularity must be positive: " + sizeGranularity);
+		this.sizeGranularity = sizeGranularity;
+	}
+
 	public void revertToDefaultFramebuffer(final GL4 gl) {
 		gl.glBindFramebuffer(GL4.GL_FRAMEBUFFER, 0);
 	}
 
 	public void resize(final GL4 gl, final int newWidth, final int newHeight) {
+		if (fitsAttachments(newWidth, newHeight)) {
+			width = newWidth;
+			height = newHeight;
+			return;
+		}
+
+		final int newTextureWidth = roundUp(newWidth);
+		final int newTextureHeight = roundUp(newHeight);
 		final int oldIds[] = framebufferId.clone();
 
 		gl.glBindFramebuffer(GL4.GL_FRAMEBUFFER, 0);
@@ -258,15 +321,16 @@ public class GLFramebuffer {
 		final LinkedHashMap<String, GLTexture> newDepthBuffers = new LinkedHashMap<>();
 
 		for (Map.Entry<String, GLTexture> entry : backingTextures.entrySet()) {
-			final GLTexture newT = new GLTexture(gl,
+			retire(entry.getValue());
+			final GLTexture newT = attachment(createAttachment(gl,
 					entry.getValue().getNativeType(),
 					entry.getValue().getChannels(),
-					newWidth, newHeight,
-					1, true, 1, entry.getValue().getBitsPerChannel());
+					newTextureWidth, newTextureHeight,
+					entry.getValue().getBitsPerChannel(),
+					entry.getValue().getsRGB()));
 
 			newT.clear();
 			newBackingTextures.put(entry.getKey(), newT);
-			entry.getValue().close();
 
 			gl.glFramebufferTexture(GL4.GL_FRAMEBUFFER,
 					getCurrentFramebufferColorAttachment(newBackingTextures.size()),
@@ -275,14 +339,15 @@ public class GLFramebuffer {
 		}
 
 		for (Map.Entry<String, GLTexture> entry : depthBuffers.entrySet()) {
-			final GLTexture newT = new GLTexture(gl,
+			retire(entry.getValue());
+			final GLTexture newT = attachment(createAttachment(gl,
 					entry.getValue().getNativeType(),
 					-1,
-					newWidth, newHeight,
-					1, true, 1, entry.getValue().getBitsPerChannel());
+					newTextureWidth, newTextureHeight,
+					entry.getValue().getBitsPerChannel(),
+					false));
 
 			newDepthBuffers.put(entry.getKey(), newT);
-			entry.getValue().close();
 
 			gl.glFramebufferTexture(GL4.GL_FRAMEBUFFER,
 					GL4.GL_DEPTH_ATTACHMENT,
@@ -298,11 +363,43 @@ public class GLFramebuffer {
 
 		width = newWidth;
 		height = newHeight;
+		textureWidth = newTextureWidth;
+		textureHeight = newTextureHeight;
 
 		gl.glDeleteFramebuffers(1, oldIds, 0);
 		gl.glBindFramebuffer(GL4.GL_FRAMEBUFFER, 0);
 	}
 
+	private boolean fitsAttachments(final int newWidth, final int newHeight) {
+		if (sizeGranularity == 1) {
+			return newWidth == textureWidth && newHeight == textureHeight;
+		}
+
+		return newWidth <= textureWidth && newHeight <= textureHeight
+				&& 4L * newWidth * newHeight >= (long) textureWidth * textureHeight;
+	}
+
+	private int roundUp(final int size) {
+		return (size + sizeGranularity - 1) / sizeGranularity * sizeGranularity;
+	}
+
+	private void retire(final GLTexture texture) {
+		if (texturePool != null) {
+			texturePool.release(texture);
+		} else {
+			texture.close();
+		}
+	}
+
+	private GLTexture createAttachment(final GL4 gl, final GLTypeEnum type, final int channelCount,
+			final int width, final int height, final int channelDepth, final boolean sRGB) {
+		if (texturePool != null) {
+			return texturePool.acquire(gl, type, channelCount, width, height, 1, true, 1, channelDepth, true, sRGB);
+		}
+
+		return new GLTexture(gl, type, channelCount, width, height, 1, true, 1, channelDepth, true, sRGB);
+	}
+
 	public void destroy(GL4 gl) {
 		gl.glDeleteFramebuffers(1, framebufferId, 0);
 		gl.glBindFramebuffer(GL4.GL_FRAMEBUFFER, 0);
@@ -362,6 +459,20 @@ public class GLFramebuffer {
 		return this.height;
 	}
 
+	/**
+	 * Width of the attachments, at least {@link #getWidth()}.
+	 */
+	public int getTextureWidth() {
+		return this.textureWidth;
+	}
+
+	/**
+	 * Height of the attachments, at least {@link #getHeight()}.
+	 */
+	public int getTextureHeight() {
+		return this.textureHeight;
+	}
+
 	public int getBoundBufferNum() {
 		return backingTextures.size() + depthBuffers.size();
 	}
@@ -3,16 +3,52 @@ package cleargl;
 import static java.lang.Math.*;
 import java.io.Serializable;
 import java.nio.ByteBuffer;
+import java.nio.FloatBuffer;
 import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
 import com.jogamp.opengl.math.FloatUtil;
 import com.jogamp.opengl.math.Quaternion;
 import com.jogamp.opengl.math.VectorUtil;
 
+import cleargl.util.parallel.ParallelRange;
+
 public class GLMatrix implements Serializable {
 
+	private static final int cPointsParallelThreshold = 1 << 16;
+
+	private static final float cRigidTolerance = 1e-5f;
+
+	private static final int cInverseCached = 1;
+	private static final int cInverseTransposeCached = 2;
+	private static final int cNormalMatrixCached = 4;
+
+	/**
+	 * What is known about the shape of a matrix. Rigid matrices only rotate and
+	 * translate, affine matrices have a (0, 0, 0, 1) bottom row. Mutators keep
+	 * track of the structure where they can, but only a structure declared with
+	 * {@link GLMatrix#setStructure(Structure)} is trusted for the cached
+	 * matrices; otherwise the elements are inspected whenever they changed.
+	 */
+	public enum Structure {
+		Unknown, General, Affine, Rigid
+	}
+
 	private final float[] mMatrix;
 	private final float[] scratch = new float[16];
 
+	private long mVersion;
+	private Structure mStructure = Structure.Unknown;
+	private boolean mDeclared;
+
+	// derived matrices, allocated on first use and rebuilt when mVersion or
+	// the elements differ from the snapshot they were computed from
+	private transient float[] mCacheSource;
+	private transient long mCacheVersion;
+	private transient int mValidCaches;
+	private transient GLMatrix mInverseCache;
+	private transient GLMatrix mInverseTransposeCache;
+	private transient float[] mNormalMatrixCache;
+
 	public GLMatrix() {
 		mMatrix = new float[16];
 	}
@@ -33,14 +69,17 @@ public class GLMatrix implements Serializable {
 
 	public void set(final int pRow, final int pColumn, final float pValue) {
 		mMatrix[4 * pRow + pColumn] = pValue;
+		modified(Structure.Unknown);
 	}
 
 	public void mult(final int pRow, final int pColumn, final float pValue) {
 		mMatrix[4 * pRow + pColumn] *= pValue;
+		modified(Structure.Unknown);
 	}
 
 	public void setIdentity() {
 		FloatUtil.makeIdentity(mMatrix);
+		modified(Structure.Rigid);
 	}
 
 	public static GLMatrix getIdentity() {
@@ -89,6 +128,8 @@ public class GLMatrix implements Serializable {
 
 	public void mult(final GLMatrix pGLMatrix) {
 		FloatUtil.multMatrix(mMatrix, pGLMatrix.mMatrix);
+		preserved(product(mStructure, pGLMatrix.mStructure),
+				pGLMatrix.mDeclared);
 	}
 
 	public void multinv(final GLMatrix pGLMatrix) {
@@ -99,6 +140,7 @@ public class GLMatrix implements Serializable {
 	public GLMatrix setFrustumMatrix(final float left, final float right, final float bottom, final float top,
 			final float near, final float far) {
 		FloatUtil.makeFrustum(mMatrix, 0, true, left, right, bottom, top, near, far);
+		modified(Structure.General);
 
 		return this;
 	}
@@ -114,6 +156,7 @@ public class GLMatrix implements Serializable {
 				pAspectRatio,
 				pNearPlane,
 				pFarPlane);
+		modified(Structure.General);
 
 		return this;
 	}
@@ -139,6 +182,7 @@ public class GLMatrix implements Serializable {
 
 		FloatUtil.makeFrustum(mMatrix, 0, true,
 				left, right, bottom, top, near, far);
+		modified(Structure.General);
 	}
 
 	public GLMatrix setGeneralizedPerspectiveProjectionMatrix(final GLVector lowerLeft, final GLVector lowerRight,
@@ -184,6 +228,7 @@ public class GLMatrix implements Serializable {
 		System.err.println(eye + ", " + (right + res.x()) + "/" + (top + res.y()) + " => " + distance + "/" + n + " -> "
 				+ left + "/" + right + "/" + bottom + "/" + top + ", s=" + s);
 		FloatUtil.makeFrustum(mMatrix, 0, true, left * s, right * s, bottom * s, top * s, n * s, far);
+		modified(Structure.General);
 
 		final GLMatrix flip = new GLMatrix(new float[]{
 				1.0f, 0.0f, 0.0f, 0.0f,
@@ -200,6 +245,7 @@ public class GLMatrix implements Serializable {
 
 		FloatUtil.makeFrustum(mMatrix, 0, true,
 				left, right, bottom, top, near, far);
+		modified(Structure.General);
 
 		return this;
 	}
@@ -219,6 +265,7 @@ public class GLMatrix implements Serializable {
 				pTop,
 				pZNear,
 				pZFar);
+		modified(Structure.Affine);
 	}
 
 	public static GLMatrix getOrthoProjectionMatrix(final float pLeft,
@@ -246,23 +293,59 @@ public class GLMatrix implements Serializable {
 			final float pUpX,
 			final float pUpY,
 			final float pUpZ) {
-		final float[] lPosition = new float[]{pPosX, pPosY, pPosZ};
-		final float[] lLookAt = new float[]{pLookAtX, pLookAtY, pLookAtZ};
-		final float[] lUp = new float[]{pUpX, pUpY, pUpZ};
-
-		FloatUtil.makeLookAt(mMatrix,
-				0,
-				lPosition,
-				0,
-				lLookAt,
-				0,
-				lUp,
-				0,
-				new float[16]);
+		// same construction as FloatUtil.makeLookAt, but without temporary
+		// arrays: forward, side = forward x up, up' = side x forward
+		float lFwdX = pLookAtX - pPosX;
+		float lFwdY = pLookAtY - pPosY;
+		float lFwdZ = pLookAtZ - pPosZ;
+		float lNorm = normalizationFactor(lFwdX, lFwdY, lFwdZ);
+		lFwdX *= lNorm;
+		lFwdY *= lNorm;
+		lFwdZ *= lNorm;
+
+		float lSideX = lFwdY * pUpZ - lFwdZ * pUpY;
+		float lSideY = lFwdZ * pUpX - lFwdX * pUpZ;
+		float lSideZ = lFwdX * pUpY - lFwdY * pUpX;
+		lNorm = normalizationFactor(lSideX, lSideY, lSideZ);
+		lSideX *= lNorm;
+		lSideY *= lNorm;
+		lSideZ *= lNorm;
+
+		final float lUpX = lSideY * lFwdZ - lSideZ * lFwdY;
+		final float lUpY = lSideZ * lFwdX - lSideX * lFwdZ;
+		final float lUpZ = lSideX * lFwdY - lSideY * lFwdX;
+
+		final float[] m = mMatrix;
+		m[0] = lSideX;
+		m[1] = lUpX;
+		m[2] = -lFwdX;
+		m[3] = 0;
+		m[4] = lSideY;
+		m[5] = lUpY;
+		m[6] = -lFwdY;
+		m[7] = 0;
+		m[8] = lSideZ;
+		m[9] = lUpZ;
+		m[10] = -lFwdZ;
+		m[11] = 0;
+		m[12] = -(lSideX * pPosX + lSideY * pPosY + lSideZ * pPosZ);
+		m[13] = -(lUpX * pPosX + lUpY * pPosY + lUpZ * pPosZ);
+		m[14] = lFwdX * pPosX + lFwdY * pPosY + lFwdZ * pPosZ;
+		m[15] = 1;
+		modified(Structure.Rigid);
 
 		return this;
 	}
 
+	private static float normalizationFactor(final float pX,
+			final float pY,
+			final float pZ) {
+		final float lLengthSquared = pX * pX + pY * pY + pZ * pZ;
+		if (FloatUtil.isZero(lLengthSquared, FloatUtil.EPSILON))
+			return 0;
+		return 1.0f / (float) sqrt(lLengthSquared);
+	}
+
 	public GLMatrix setCamera(final GLVector position, final GLVector target, final GLVector up) {
 		setCamera(
 				position.x(), position.y(), position.z(),
@@ -280,7 +363,7 @@ public class GLMatrix implements Serializable {
 				(float) bankX,
 				(float) headingY,
 				(float) attitudeZ);
-
+		modified(Structure.Rigid);
 	}
 
 	public GLMatrix rotEuler(final double bankX,
@@ -292,6 +375,7 @@ public class GLMatrix implements Serializable {
 				(float) headingY,
 				(float) attitudeZ);
 		FloatUtil.multMatrix(mMatrix, lRotMatrix);
+		preserved(mStructure, true);
 
 		return this;
 	}
@@ -304,6 +388,7 @@ public class GLMatrix implements Serializable {
 				pDeltaZ);
 
 		FloatUtil.multMatrix(mMatrix, lTranslationMatrix);
+		preserved(mStructure, true);
 		return this;
 	}
 
@@ -321,6 +406,7 @@ public class GLMatrix implements Serializable {
 				pScaleZ);
 
 		FloatUtil.multMatrix(mMatrix, lScaleMatrix);
+		preserved(scaled(mStructure), true);
 		return this;
 	}
 
@@ -333,61 +419,298 @@ public class GLMatrix implements Serializable {
 				1.0f / pScaleZ);
 
 		FloatUtil.multMatrix(mMatrix, lScaleMatrix);
+		preserved(scaled(mStructure), true);
 	}
 
 	public GLMatrix mult(final Quaternion pQuaternion) {
 		final float[] lQuaternionMatrix = pQuaternion.toMatrix(scratch,
 				0);
 		FloatUtil.multMatrix(mMatrix, lQuaternionMatrix);
+		preserved(mStructure, true);
 
 		return this;
 	}
 
 	public float[] mult(final float[] pVector) {
-		final float[] lResultVector = new float[4];
-		mulColMat4Vec4(lResultVector, mMatrix, pVector);
-		return lResultVector;
+		return mult(pVector, new float[4]);
+	}
+
+	public float[] mult(final float[] pVector, final float[] pResultVector) {
+		return mulColMat4Vec4(pResultVector, mMatrix, pVector);
 	}
 
 	public GLVector mult(final GLVector vec) {
-		return new GLVector(mult(vec.toFloatArray()));
+		return mult(vec, new GLVector(0.0f, 4));
+	}
+
+	public GLVector mult(final GLVector pVector, final GLVector pResultVector) {
+		mulColMat4Vec4(pResultVector.mElements, mMatrix, pVector.mElements);
+		return pResultVector;
+	}
+
+	public Vec4f mult(final Vec4f pVector, final Vec4f pResultVector) {
+		final float[] m = mMatrix;
+		final float x = pVector.x, y = pVector.y, z = pVector.z, w = pVector.w;
+		pResultVector.x = x * m[0] + y * m[4] + z * m[8] + w * m[12];
+		pResultVector.y = x * m[1] + y * m[5] + z * m[9] + w * m[13];
+		pResultVector.z = x * m[2] + y * m[6] + z * m[10] + w * m[14];
+		pResultVector.w = x * m[3] + y * m[7] + z * m[11] + w * m[15];
+		return pResultVector;
 	}
 
 	private static float[] mulColMat4Vec4(final float[] result,
 			final float[] colMatrix,
 			final float[] vec) {
-		result[0] = vec[0] * colMatrix[0]
-				+ vec[1]
+		return mulColMat4Vec4(result, 0, colMatrix, vec, 0);
+	}
+
+	private static float[] mulColMat4Vec4(final float[] result,
+			final int resultOffset,
+			final float[] colMatrix,
+			final float[] vec,
+			final int vecOffset) {
+		// vec is read completely before result is written, so both may alias
+		final float x = vec[vecOffset],
+				y = vec[vecOffset + 1],
+				z = vec[vecOffset + 2],
+				w = vec[vecOffset + 3];
+		result[resultOffset] = x * colMatrix[0]
+				+ y
 						* colMatrix[4]
-				+ vec[2]
+				+ z
 						* colMatrix[8]
-				+ vec[3]
+				+ w
 						* colMatrix[12];
-		result[1] = vec[0] * colMatrix[1]
-				+ vec[1]
+		result[resultOffset + 1] = x * colMatrix[1]
+				+ y
 						* colMatrix[5]
-				+ vec[2]
+				+ z
 						* colMatrix[9]
-				+ vec[3]
+				+ w
 						* colMatrix[13];
-		result[2] = vec[0] * colMatrix[2]
-				+ vec[1]
+		result[resultOffset + 2] = x * colMatrix[2]
+				+ y
 						* colMatrix[6]
-				+ vec[2]
+				+ z
 						* colMatrix[10]
-				+ vec[3]
+				+ w
 						* colMatrix[14];
-		result[3] = vec[0] * colMatrix[3]
-				+ vec[1]
+		result[resultOffset + 3] = x * colMatrix[3]
+				+ y
 						* colMatrix[7]
-				+ vec[2]
+				+ z
 						* colMatrix[11]
-				+ vec[3]
+				+ w
 						* colMatrix[15];
 
 		return result;
 	}
 
+	/**
+	 * Returns true if the bottom row is (0, 0, 0, 1), i.e. the matrix maps
+	 * points without a projective part.
+	 */
+	public boolean isAffine() {
+		return isAffine(mMatrix);
+	}
+
+	/**
+	 * Transforms pCount packed points from pSource into pDestination.
+	 * pComponents is 3 (xyz, w implicitly 1, resulting w dropped) or 4 (xyzw).
+	 * Strides are in floats between consecutive points and must be at least
+	 * pComponents; the destination is written with the same number of
+	 * components. Affine matrices take a fast path that skips the bottom row,
+	 * large inputs are split into chunks processed on the common fork/join
+	 * pool. Source and destination may be the same array with identical
+	 * offset and stride.
+	 */
+	public void transformPoints(final float[] pSource,
+			final int pSourceOffset,
+			final int pSourceStride,
+			final float[] pDestination,
+			final int pDestinationOffset,
+			final int pDestinationStride,
+			final int pComponents,
+			final int pCount) {
+		transformPoints(ForkJoinPool.commonPool(),
+				pSource,
+				pSourceOffset,
+				pSourceStride,
+				pDestination,
+				pDestinationOffset,
+				pDestinationStride,
+				pComponents,
+				pCount);
+	}
+
+	public void transformPoints(final ForkJoinPool pPool,
+			final float[] pSource,
+			final int pSourceOffset,
+			final int pSourceStride,
+			final float[] pDestination,
+			final int pDestinationOffset,
+			final int pDestinationStride,
+			final int pComponents,
+			final int pCount) {
+		checkPointLayout(pComponents, pSourceStride, pDestinationStride);
+		final float[] lMatrix = mMatrix.clone();
+		final boolean lAffine = isAffine();
+
+		ParallelRange.forRange(pPool, 0, pCount, cPointsParallelThreshold, (pStart, pEnd) -> {
+			if (lAffine)
+				transformPointsAffine(lMatrix,
+						pSource,
+						pSourceOffset + pStart * pSourceStride,
+						pSourceStride,
+						pDestination,
+						pDestinationOffset + pStart * pDestinationStride,
+						pDestinationStride,
+						pComponents,
+						pEnd - pStart);
+			else
+				transformPointsGeneral(lMatrix,
+						pSource,
+						pSourceOffset + pStart * pSourceStride,
+						pSourceStride,
+						pDestination,
+						pDestinationOffset + pStart * pDestinationStride,
+						pDestinationStride,
+						pComponents,
+						pEnd - pStart);
+		});
+	}
+
+	/**
+	 * Buffer variant of
+	 * {@link #transformPoints(float[], int, int, float[], int, int, int, int)},
+	 * offsets are the buffers' current positions. Positions are not modified.
+	 */
+	public void transformPoints(final FloatBuffer pSource,
+			final int pSourceStride,
+			final FloatBuffer pDestination,
+			final int pDestinationStride,
+			final int pComponents,
+			final int pCount) {
+		transformPoints(ForkJoinPool.commonPool(),
+				pSource,
+				pSourceStride,
+				pDestination,
+				pDestinationStride,
+				pComponents,
+				pCount);
+	}
+
+	public void transformPoints(final ForkJoinPool pPool,
+			final FloatBuffer pSource,
+			final int pSourceStride,
+			final FloatBuffer pDestination,
+			final int pDestinationStride,
+			final int pComponents,
+			final int pCount) {
+		if (pSource.hasArray() && pDestination.hasArray()
+				&& !pDestination.isReadOnly()) {
+			transformPoints(pPool,
+					pSource.array(),
+					pSource.arrayOffset() + pSource.position(),
+					pSourceStride,
+					pDestination.array(),
+					pDestination.arrayOffset() + pDestination.position(),
+					pDestinationStride,
+					pComponents,
+					pCount);
+			return;
+		}
+
+		checkPointLayout(pComponents, pSourceStride, pDestinationStride);
+		final float[] lMatrix = mMatrix.clone();
+		final int lSourceOffset = pSource.position();
+		final int lDestinationOffset = pDestination.position();
+
+		ParallelRange.forRange(pPool, 0, pCount, cPointsParallelThreshold, (pStart, pEnd) -> {
+			final float[] lPoint = new float[4];
+			final float[] lResult = new float[4];
+			lPoint[3] = 1;
+			for (int i = pStart; i < pEnd; i++) {
+				final int lSourceIndex = lSourceOffset + i * pSourceStride;
+				final int lDestinationIndex = lDestinationOffset + i * pDestinationStride;
+				for (int c = 0; c < pComponents; c++)
+					lPoint[c] = pSource.get(lSourceIndex + c);
+				mulColMat4Vec4(lResult, lMatrix, lPoint);
+				for (int c = 0; c < pComponents; c++)
+					pDestination.put(lDestinationIndex + c, lResult[c]);
+			}
+		});
+	}
+
+	private static void transformPointsAffine(final float[] m,
+			final float[] pSource,
+			int pSourceIndex,
+			final int pSourceStride,
+			final float[] pDestination,
+			int pDestinationIndex,
+			final int pDestinationStride,
+			final int pComponents,
+			final int pCount) {
+		for (int i = 0; i < pCount; i++) {
+			final float x = pSource[pSourceIndex];
+			final float y = pSource[pSourceIndex + 1];
+			final float z = pSource[pSourceIndex + 2];
+			if (pComponents == 4) {
+				final float w = pSource[pSourceIndex + 3];
+				pDestination[pDestinationIndex] = x * m[0] + y * m[4] + z * m[8] + w * m[12];
+				pDestination[pDestinationIndex + 1] = x * m[1] + y * m[5] + z * m[9] + w * m[13];
+				pDestination[pDestinationIndex + 2] = x * m[2] + y * m[6] + z * m[10] + w * m[14];
+				pDestination[pDestinationIndex + 3] = w;
+			} else {
+				pDestination[pDestinationIndex] = x * m[0] + y * m[4] + z * m[8] + m[12];
+				pDestination[pDestinationIndex + 1] = x * m[1] + y * m[5] + z * m[9] + m[13];
+				pDestination[pDestinationIndex + 2] = x * m[2] + y * m[6] + z * m[10] + m[14];
+			}
+			pSourceIndex += pSourceStride;
+			pDestinationIndex += pDestinationStride;
+		}
+	}
+
+	private static void transformPointsGeneral(final float[] m,
+			final float[] pSource,
+			int pSourceIndex,
+			final int pSourceStride,
+			final float[] pDestination,
+			int pDestinationIndex,
+			final int pDestinationStride,
+			final int pComponents,
+			final int pCount) {
+		if (pComponents == 4) {
+			for (int i = 0; i < pCount; i++) {
+				mulColMat4Vec4(pDestination, pDestinationIndex, m, pSource, pSourceIndex);
+				pSourceIndex += pSourceStride;
+				pDestinationIndex += pDestinationStride;
+			}
+			return;
+		}
+
+		final float[] lPoint = new float[4];
+		final float[] lResult = new float[4];
+		lPoint[3] = 1;
+		for (int i = 0; i < pCount; i++) {
+			System.arraycopy(pSource, pSourceIndex, lPoint, 0, 3);
+			mulColMat4Vec4(lResult, m, lPoint);
+			System.arraycopy(lResult, 0, pDestination, pDestinationIndex, 3);
+			pSourceIndex += pSourceStride;
+			pDestinationIndex += pDestinationStride;
+		}
+	}
+
+	private static void checkPointLayout(final int pComponents,
+			final int pSourceStride,
+			final int pDestinationStride) {
+		if (pComponents != 3 && pComponents != 4)
+			throw new IllegalArgumentException("Points must have 3 or 4 components, not " + pComponents);
+		if (pSourceStride < pComponents || pDestinationStride < pComponents)
+			throw new IllegalArgumentException("Point strides must be at least " + pComponents
+					+ " floats");
+	}
+
 	private static float[] mulRowMat4Vec4(final float[] result,
 			final float[] rowMatrix,
 			final float[] vec) {
@@ -431,12 +754,19 @@ public class GLMatrix implements Serializable {
 		return lGLMatrix;
 	}
 
+	public void copyFrom(final Mat4f rhs) {
+		rhs.get(mMatrix, 0);
+		modified(Structure.Unknown);
+	}
+
 	public void copyFrom(final GLMatrix rhs) {
 		System.arraycopy(rhs.getFloatArray(),
 				0,
 				mMatrix,
 				0,
 				mMatrix.length);
+		modified(rhs.mStructure);
+		mDeclared = rhs.mDeclared;
 	}
 
 	public float[] getFloatArray() {
@@ -444,41 +774,369 @@ public class GLMatrix implements Serializable {
 	}
 
 	public float[] getTransposedFloatArray() {
-		final GLMatrix lGLMatrix = new GLMatrix();
-		System.arraycopy(mMatrix,
-				0,
-				lGLMatrix.getFloatArray(),
-				0,
-				mMatrix.length);
-		lGLMatrix.transpose();
-		return lGLMatrix.getFloatArray();
+		return getTransposedFloatArray(new float[16]);
+	}
+
+	public float[] getTransposedFloatArray(final float[] pDestination) {
+		if (pDestination == mMatrix)
+			throw new IllegalArgumentException("Cannot transpose into own backing array, use transpose() instead");
+		return FloatUtil.transposeMatrix(mMatrix, pDestination);
 	}
 
 	public GLMatrix invert() {
 		System.arraycopy(mMatrix, 0, scratch, 0, mMatrix.length);
 
-		FloatUtil.invertMatrix(scratch, mMatrix);
+		// the elements may have been written directly, so do not trust the hint
+		final Structure lStructure = detectStructure(scratch);
+		invert(scratch, mMatrix, lStructure);
+		modified(lStructure);
 		return this;
 	}
 
 	public GLMatrix getInverse() {
-		final GLMatrix inverse;
-		System.arraycopy(mMatrix, 0, scratch, 0, mMatrix.length);
-
-		FloatUtil.invertMatrix(mMatrix, scratch);
-		inverse = new GLMatrix(scratch);
+		return getInverse(new GLMatrix());
+	}
 
-		return inverse;
+	public GLMatrix getInverse(final GLMatrix pDestination) {
+		return invert(this, pDestination);
 	}
 
 	public GLMatrix transpose() {
 		System.arraycopy(mMatrix, 0, scratch, 0, mMatrix.length);
 
 		FloatUtil.transposeMatrix(scratch, mMatrix);
+		modified(Structure.Unknown);
+
+		return this;
+	}
+
+	/*
+	 * Destination-passing variants: the result is written into pDestination,
+	 * which is also returned. pDestination may be one of the operands.
+	 */
+
+	public static GLMatrix mult(final GLMatrix pA,
+			final GLMatrix pB,
+			final GLMatrix pDestination) {
+		if (pDestination == pA) {
+			FloatUtil.multMatrix(pDestination.mMatrix, pB.mMatrix);
+		} else if (pDestination == pB) {
+			System.arraycopy(pB.mMatrix, 0, pDestination.scratch, 0, 16);
+			FloatUtil.multMatrix(pA.mMatrix,
+					pDestination.scratch,
+					pDestination.mMatrix);
+		} else {
+			FloatUtil.multMatrix(pA.mMatrix, pB.mMatrix, pDestination.mMatrix);
+		}
+		final boolean lDeclared = pA.mDeclared && pB.mDeclared;
+		pDestination.modified(product(pA.mStructure, pB.mStructure));
+		pDestination.mDeclared = lDeclared;
+		return pDestination;
+	}
+
+	public static GLMatrix invert(final GLMatrix pSource,
+			final GLMatrix pDestination) {
+		if (pSource == pDestination)
+			return pDestination.invert();
+		final Structure lStructure = detectStructure(pSource.mMatrix);
+		invert(pSource.mMatrix, pDestination.mMatrix, lStructure);
+		pDestination.modified(lStructure);
+		return pDestination;
+	}
+
+	public static GLMatrix transpose(final GLMatrix pSource,
+			final GLMatrix pDestination) {
+		if (pSource == pDestination)
+			return pDestination.transpose();
+		FloatUtil.transposeMatrix(pSource.mMatrix, pDestination.mMatrix);
+		pDestination.modified(Structure.Unknown);
+		return pDestination;
+	}
+
+	/*
+	 * Version tracking and cached derived matrices
+	 */
+
+	/**
+	 * Returns a counter that changes whenever this matrix is modified through
+	 * its methods. Writes through {@link #getFloatArray()} are only noticed
+	 * once {@link #markModified()} is called or a cached matrix is requested.
+	 */
+	public long getVersion() {
+		return mVersion;
+	}
+
+	/**
+	 * Must be called after writing to the array returned by
+	 * {@link #getFloatArray()} if a structure has been declared with
+	 * {@link #setStructure(Structure)}; drops the declaration. Without one,
+	 * writes are found by comparing the elements when a cached matrix is
+	 * requested.
+	 */
+	public void markModified() {
+		modified(Structure.Unknown);
+	}
+
+	public Structure getStructure() {
+		return mStructure;
+	}
 
+	/**
+	 * Declares the structure of this matrix so that the cached inverse and
+	 * normal matrix can take the rigid or affine fast path without inspecting
+	 * the elements. The declaration is kept by rotations and translations,
+	 * weakened by scaling and dropped by arbitrary element writes. Structures
+	 * that mutators such as {@link #setIdentity()} infer on their own are only
+	 * hints and are checked against the elements.
+	 */
+	public GLMatrix setStructure(final Structure pStructure) {
+		mStructure = pStructure;
+		mDeclared = pStructure != Structure.Unknown;
+		mVersion++;
 		return this;
 	}
 
+	/**
+	 * Returns the inverse of this matrix, recomputed only when this matrix has
+	 * changed. The returned instance is owned by this matrix and must not be
+	 * modified.
+	 */
+	public GLMatrix getCachedInverse() {
+		refreshCache();
+		if ((mValidCaches & cInverseCached) == 0) {
+			if (mInverseCache == null)
+				mInverseCache = new GLMatrix();
+			invert(mMatrix, mInverseCache.mMatrix, mStructure);
+			mInverseCache.modified(mStructure);
+			mValidCaches |= cInverseCached;
+		}
+		return mInverseCache;
+	}
+
+	/**
+	 * Returns the transposed inverse of this matrix, see
+	 * {@link #getCachedInverse()}.
+	 */
+	public GLMatrix getCachedInverseTranspose() {
+		refreshCache();
+		if ((mValidCaches & cInverseTransposeCached) == 0) {
+			final GLMatrix lInverse = getCachedInverse();
+			if (mInverseTransposeCache == null)
+				mInverseTransposeCache = new GLMatrix();
+			FloatUtil.transposeMatrix(lInverse.mMatrix,
+					mInverseTransposeCache.mMatrix);
+			mInverseTransposeCache.modified(Structure.Unknown);
+			mValidCaches |= cInverseTransposeCached;
+		}
+		return mInverseTransposeCache;
+	}
+
+	/**
+	 * Returns the normal matrix, i.e. the inverse-transpose of the upper 3x3
+	 * block, as 9 column-major floats suitable for glUniformMatrix3fv. The
+	 * returned array is owned by this matrix and must not be modified.
+	 */
+	public float[] getNormalMatrix() {
+		refreshCache();
+		if ((mValidCaches & cNormalMatrixCached) == 0) {
+			if (mNormalMatrixCache == null)
+				mNormalMatrixCache = new float[9];
+			normalMatrix(mMatrix, mNormalMatrixCache, mStructure);
+			mValidCaches |= cNormalMatrixCached;
+		}
+		return mNormalMatrixCache;
+	}
+
+	private void modified(final Structure pStructure) {
+		mVersion++;
+		mStructure = pStructure;
+		mDeclared = false;
+	}
+
+	/**
+	 * For mutators that keep or weaken the current structure; a declared
+	 * structure stays declared if pDeclared.
+	 */
+	private void preserved(final Structure pStructure,
+			final boolean pDeclared) {
+		mVersion++;
+		mStructure = pStructure;
+		mDeclared &= pDeclared;
+	}
+
+	private void refreshCache() {
+		if (mCacheSource == null) {
+			mCacheSource = new float[16];
+		} else if (mCacheVersion == mVersion) {
+			if (Arrays.equals(mCacheSource, mMatrix))
+				return;
+			// elements were written through getFloatArray()
+			markModified();
+		}
+
+		// undeclared hints may predate writes through getFloatArray()
+		if (!mDeclared)
+			mStructure = detectStructure(mMatrix);
+		System.arraycopy(mMatrix, 0, mCacheSource, 0, 16);
+		mCacheVersion = mVersion;
+		mValidCaches = 0;
+	}
+
+	private static Structure product(final Structure pA, final Structure pB) {
+		if (pA == Structure.Rigid && pB == Structure.Rigid)
+			return Structure.Rigid;
+		if ((pA == Structure.Rigid || pA == Structure.Affine)
+				&& (pB == Structure.Rigid || pB == Structure.Affine))
+			return Structure.Affine;
+		if (pA == Structure.Unknown || pB == Structure.Unknown)
+			return Structure.Unknown;
+		return Structure.General;
+	}
+
+	private static Structure scaled(final Structure pStructure) {
+		return pStructure == Structure.Rigid ? Structure.Affine : pStructure;
+	}
+
+	private static boolean isAffine(final float[] m) {
+		return m[3] == 0 && m[7] == 0 && m[11] == 0 && m[15] == 1;
+	}
+
+	private static Structure detectStructure(final float[] m) {
+		if (!isAffine(m))
+			return Structure.General;
+
+		// columns of the upper 3x3 block must be orthonormal
+		final float lXX = m[0] * m[0] + m[1] * m[1] + m[2] * m[2];
+		final float lYY = m[4] * m[4] + m[5] * m[5] + m[6] * m[6];
+		final float lZZ = m[8] * m[8] + m[9] * m[9] + m[10] * m[10];
+		final float lXY = m[0] * m[4] + m[1] * m[5] + m[2] * m[6];
+		final float lXZ = m[0] * m[8] + m[1] * m[9] + m[2] * m[10];
+		final float lYZ = m[4] * m[8] + m[5] * m[9] + m[6] * m[10];
+		if (abs(lXX - 1) < cRigidTolerance && abs(lYY - 1) < cRigidTolerance
+				&& abs(lZZ - 1) < cRigidTolerance
+				&& abs(lXY) < cRigidTolerance
+				&& abs(lXZ) < cRigidTolerance
+				&& abs(lYZ) < cRigidTolerance)
+			return Structure.Rigid;
+
+		return Structure.Affine;
+	}
+
+	/**
+	 * Inverts m into d (distinct arrays) using the fastest method valid for the
+	 * given structure. Returns false and leaves d untouched if m is singular.
+	 */
+	private static boolean invert(final float[] m,
+			final float[] d,
+			final Structure pStructure) {
+		final Structure lStructure = pStructure == Structure.Unknown ? detectStructure(m)
+				: pStructure;
+		switch (lStructure) {
+			case Rigid:
+				invertRigid(m, d);
+				return true;
+			case Affine:
+				return invertAffine(m, d);
+			default:
+				return FloatUtil.invertMatrix(m, d) != null;
+		}
+	}
+
+	private static void invertRigid(final float[] m, final float[] d) {
+		// inverse rotation is the transpose, translation is rotated back
+		d[0] = m[0];
+		d[1] = m[4];
+		d[2] = m[8];
+		d[3] = 0;
+		d[4] = m[1];
+		d[5] = m[5];
+		d[6] = m[9];
+		d[7] = 0;
+		d[8] = m[2];
+		d[9] = m[6];
+		d[10] = m[10];
+		d[11] = 0;
+		final float tx = m[12], ty = m[13], tz = m[14];
+		d[12] = -(d[0] * tx + d[4] * ty + d[8] * tz);
+		d[13] = -(d[1] * tx + d[5] * ty + d[9] * tz);
+		d[14] = -(d[2] * tx + d[6] * ty + d[10] * tz);
+		d[15] = 1;
+	}
+
+	private static boolean invertAffine(final float[] m, final float[] d) {
+		// upper 3x3 block, rows (a b c), (e f g), (h i j)
+		final float a = m[0], b = m[4], c = m[8];
+		final float e = m[1], f = m[5], g = m[9];
+		final float h = m[2], i = m[6], j = m[10];
+
+		final float lC00 = f * j - g * i;
+		final float lC01 = g * h - e * j;
+		final float lC02 = e * i - f * h;
+		final float lDeterminant = a * lC00 + b * lC01 + c * lC02;
+		if (lDeterminant == 0)
+			return false;
+		final float lInverse = 1.0f / lDeterminant;
+
+		final float tx = m[12], ty = m[13], tz = m[14];
+		d[0] = lC00 * lInverse;
+		d[1] = lC01 * lInverse;
+		d[2] = lC02 * lInverse;
+		d[3] = 0;
+		d[4] = (c * i - b * j) * lInverse;
+		d[5] = (a * j - c * h) * lInverse;
+		d[6] = (b * h - a * i) * lInverse;
+		d[7] = 0;
+		d[8] = (b * g - c * f) * lInverse;
+		d[9] = (c * e - a * g) * lInverse;
+		d[10] = (a * f - b * e) * lInverse;
+		d[11] = 0;
+		d[12] = -(d[0] * tx + d[4] * ty + d[8] * tz);
+		d[13] = -(d[1] * tx + d[5] * ty + d[9] * tz);
+		d[14] = -(d[2] * tx + d[6] * ty + d[10] * tz);
+		d[15] = 1;
+		return true;
+	}
+
+	private static void normalMatrix(final float[] m,
+			final float[] n,
+			final Structure pStructure) {
+		final Structure lStructure = pStructure == Structure.Unknown ? detectStructure(m)
+				: pStructure;
+		if (lStructure == Structure.Rigid) {
+			// the rotation is its own inverse-transpose
+			n[0] = m[0];
+			n[1] = m[1];
+			n[2] = m[2];
+			n[3] = m[4];
+			n[4] = m[5];
+			n[5] = m[6];
+			n[6] = m[8];
+			n[7] = m[9];
+			n[8] = m[10];
+			return;
+		}
+
+		// cofactor matrix divided by the determinant
+		final float a = m[0], b = m[4], c = m[8];
+		final float e = m[1], f = m[5], g = m[9];
+		final float h = m[2], i = m[6], j = m[10];
+		final float lC00 = f * j - g * i;
+		final float lC01 = g * h - e * j;
+		final float lC02 = e * i - f * h;
+		final float lDeterminant = a * lC00 + b * lC01 + c * lC02;
+		final float lInverse = lDeterminant == 0 ? 0 : 1.0f / lDeterminant;
+
+		n[0] = lC00 * lInverse;
+		n[1] = (c * i - b * j) * lInverse;
+		n[2] = (b * g - c * f) * lInverse;
+		n[3] = lC01 * lInverse;
+		n[4] = (a * j - c * h) * lInverse;
+		n[5] = (c * e - a * g) * lInverse;
+		n[6] = lC02 * lInverse;
+		n[7] = (b * h - a * i) * lInverse;
+		n[8] = (a * f - b * e) * lInverse;
+	}
+
 	@Override
 	public String toString() {
 		final StringBuilder lStringBuilder = new StringBuilder();
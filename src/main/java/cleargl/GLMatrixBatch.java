@@ -0,0 +1,187 @@
+package cleargl;
+
+import java.nio.FloatBuffer;
+import java.util.Arrays;
+import com.jogamp.opengl.GL;
+import com.jogamp.opengl.math.FloatUtil;
+
+import cleargl.util.parallel.ParallelRange;
+
+/**
+ * Batch of 4x4 column-major matrices stored back to back in one float array,
+ * e.g. per-instance model matrices. Bulk operations are split across cores
+ * with fork/join once the batch is larger than the parallel threshold.
+ */
+public class GLMatrixBatch {
+
+	private static final int cParallelThreshold = 4096;
+
+	private final float[] mMatrices;
+	private final FloatBuffer mFloatBuffer;
+	private int mSize;
+
+	public GLMatrixBatch(final int pCapacity) {
+		mMatrices = new float[16 * pCapacity];
+		mFloatBuffer = FloatBuffer.wrap(mMatrices);
+		mSize = pCapacity;
+	}
+
+	public int size() {
+		return mSize;
+	}
+
+	public int capacity() {
+		return mMatrices.length / 16;
+	}
+
+	public void setSize(final int pSize) {
+		if (pSize < 0 || pSize > capacity())
+			throw new IllegalArgumentException("Batch size " + pSize
+					+ " outside of capacity "
+					+ capacity());
+		mSize = pSize;
+	}
+
+	public void set(final int pIndex, final GLMatrix pMatrix) {
+		System.arraycopy(pMatrix.getFloatArray(), 0, mMatrices, 16 * pIndex, 16);
+	}
+
+	public GLMatrix get(final int pIndex, final GLMatrix pDestination) {
+		System.arraycopy(mMatrices, 16 * pIndex, pDestination.getFloatArray(), 0, 16);
+		pDestination.markModified();
+		return pDestination;
+	}
+
+	public float get(final int pIndex, final int pRow, final int pColumn) {
+		return mMatrices[16 * pIndex + 4 * pRow + pColumn];
+	}
+
+	public void setIdentity(final int pIndex) {
+		FloatUtil.makeIdentity(mMatrices, 16 * pIndex);
+	}
+
+	public void setIdentity() {
+		for (int i = 0; i < mSize; i++)
+			FloatUtil.makeIdentity(mMatrices, 16 * i);
+	}
+
+	/**
+	 * Replaces every matrix M of this batch by pParent * M.
+	 */
+	public GLMatrixBatch multLeft(final GLMatrix pParent) {
+		return multLeft(pParent, this);
+	}
+
+	/**
+	 * Writes pParent * M for every matrix M of this batch into pDestination,
+	 * which may be this batch.
+	 */
+	public GLMatrixBatch multLeft(final GLMatrix pParent,
+			final GLMatrixBatch pDestination) {
+		checkDestination(pDestination);
+		final float[] lParent = pParent.getFloatArray();
+		final float[] lSource = mMatrices;
+		final float[] lDestination = pDestination.mMatrices;
+
+		ParallelRange.forRange(0, mSize, cParallelThreshold, (pStart, pEnd) -> {
+			final float[] lTemp = new float[16];
+			for (int i = pStart; i < pEnd; i++) {
+				System.arraycopy(lSource, 16 * i, lTemp, 0, 16);
+				FloatUtil.multMatrix(lParent, 0, lTemp, 0, lDestination, 16 * i);
+			}
+		});
+
+		return pDestination;
+	}
+
+	/**
+	 * Writes the inverse-transpose of every matrix of this batch into
+	 * pDestination, which may be this batch. This is the normal matrix of each
+	 * model(-view) matrix. Singular matrices yield all zeros.
+	 */
+	public GLMatrixBatch inverseTranspose(final GLMatrixBatch pDestination) {
+		checkDestination(pDestination);
+		final float[] lSource = mMatrices;
+		final float[] lDestination = pDestination.mMatrices;
+
+		ParallelRange.forRange(0, mSize, cParallelThreshold, (pStart, pEnd) -> {
+			final float[] lTemp = new float[16];
+			for (int i = pStart; i < pEnd; i++) {
+				if (FloatUtil.invertMatrix(lSource, 16 * i, lTemp, 0) == null)
+					Arrays.fill(lDestination, 16 * i, 16 * i + 16, 0);
+				else
+					FloatUtil.transposeMatrix(lTemp, 0, lDestination, 16 * i);
+			}
+		});
+
+		return pDestination;
+	}
+
+	public GLMatrixBatch inverseTranspose() {
+		return inverseTranspose(this);
+	}
+
+	/**
+	 * Uploads the batch into the given buffer object straight from the backing
+	 * array, no staging copy is made.
+	 */
+	public void upload(final GL pGL,
+			final int pTarget,
+			final int pBufferId,
+			final int pUsage) {
+		pGL.glBindBuffer(pTarget, pBufferId);
+		pGL.glBufferData(pTarget,
+				mSize * 16 * (Float.SIZE / Byte.SIZE),
+				getFloatBuffer(),
+				pUsage);
+		pGL.glBindBuffer(pTarget, 0);
+	}
+
+	/**
+	 * Updates a sub-range of an already allocated buffer object.
+	 */
+	public void uploadSubData(final GL pGL,
+			final int pTarget,
+			final int pBufferId,
+			final int pFirstMatrix,
+			final int pMatrixCount) {
+		mFloatBuffer.limit(16 * (pFirstMatrix + pMatrixCount));
+		mFloatBuffer.position(16 * pFirstMatrix);
+		pGL.glBindBuffer(pTarget, pBufferId);
+		pGL.glBufferSubData(pTarget,
+				16L * pFirstMatrix * (Float.SIZE / Byte.SIZE),
+				16L * pMatrixCount * (Float.SIZE / Byte.SIZE),
+				mFloatBuffer);
+		pGL.glBindBuffer(pTarget, 0);
+	}
+
+	/**
+	 * Returns a view over the used part of the backing array, positioned at 0.
+	 */
+	public FloatBuffer getFloatBuffer() {
+		mFloatBuffer.limit(16 * mSize);
+		mFloatBuffer.position(0);
+		return mFloatBuffer;
+	}
+
+	public float[] getFloatArray() {
+		return mMatrices;
+	}
+
+	private void checkDestination(final GLMatrixBatch pDestination) {
+		if (pDestination.capacity() < mSize)
+			throw new IllegalArgumentException("Destination batch too small: " + pDestination.capacity()
+					+ " < "
+					+ mSize);
+		pDestination.mSize = mSize;
+	}
+
+	@Override
+	public String toString() {
+		return "GLMatrixBatch [mSize=" + mSize
+				+ ", capacity="
+				+ capacity()
+				+ "]";
+	}
+
+}
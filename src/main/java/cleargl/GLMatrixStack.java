@@ -0,0 +1,192 @@
+package cleargl;
+
+import java.nio.FloatBuffer;
+import com.jogamp.opengl.math.FloatUtil;
+import com.jogamp.opengl.math.Quaternion;
+
+/**
+ * Fixed capacity stack of 4x4 column-major matrices for walking transform
+ * hierarchies. All levels live in one pre-allocated float array; push copies
+ * the top into the next level and the transform operations right-multiply the
+ * top in place, as glPushMatrix/glTranslate/glRotate did. Nothing is allocated
+ * after construction.
+ */
+public class GLMatrixStack {
+
+	private final float[] mStack;
+	private final float[] mScratch = new float[16];
+	private final float[] mScratchVector = new float[3];
+	private int mTop;
+
+	public GLMatrixStack(final int pCapacity) {
+		if (pCapacity < 1)
+			throw new IllegalArgumentException("Matrix stack capacity must be positive: " + pCapacity);
+		mStack = new float[16 * pCapacity];
+		FloatUtil.makeIdentity(mStack, 0);
+	}
+
+	public int capacity() {
+		return mStack.length / 16;
+	}
+
+	/**
+	 * Number of pushed levels above the root, 0 for a fresh stack.
+	 */
+	public int getDepth() {
+		return mTop;
+	}
+
+	/**
+	 * Pops all levels and resets the root to identity.
+	 */
+	public GLMatrixStack clear() {
+		mTop = 0;
+		return loadIdentity();
+	}
+
+	public GLMatrixStack push() {
+		if (mTop + 1 == capacity())
+			throw new IllegalStateException("Matrix stack overflow, capacity is " + capacity());
+		System.arraycopy(mStack, 16 * mTop, mStack, 16 * (mTop + 1), 16);
+		mTop++;
+		return this;
+	}
+
+	public GLMatrixStack pop() {
+		if (mTop == 0)
+			throw new IllegalStateException("Matrix stack underflow");
+		mTop--;
+		return this;
+	}
+
+	public GLMatrixStack loadIdentity() {
+		FloatUtil.makeIdentity(mStack, 16 * mTop);
+		return this;
+	}
+
+	public GLMatrixStack load(final GLMatrix pMatrix) {
+		return load(pMatrix.getFloatArray(), 0);
+	}
+
+	public GLMatrixStack load(final float[] pMatrix, final int pOffset) {
+		System.arraycopy(pMatrix, pOffset, mStack, 16 * mTop, 16);
+		return this;
+	}
+
+	/**
+	 * top = top * pMatrix
+	 */
+	public GLMatrixStack mulTop(final GLMatrix pMatrix) {
+		return mulTop(pMatrix.getFloatArray(), 0);
+	}
+
+	/**
+	 * top = top * pMatrix, with pMatrix read from the given offset.
+	 */
+	public GLMatrixStack mulTop(final float[] pMatrix, final int pOffset) {
+		if (pMatrix == mStack) {
+			System.arraycopy(pMatrix, pOffset, mScratch, 0, 16);
+			FloatUtil.multMatrix(mStack, 16 * mTop, mScratch, 0);
+		} else
+			FloatUtil.multMatrix(mStack, 16 * mTop, pMatrix, pOffset);
+		return this;
+	}
+
+	public GLMatrixStack translate(final float pX, final float pY, final float pZ) {
+		// only the last column changes: c3 += c0 * x + c1 * y + c2 * z
+		final float[] m = mStack;
+		final int o = 16 * mTop;
+		for (int r = 0; r < 4; r++)
+			m[o + 12 + r] += m[o + r] * pX + m[o + 4 + r] * pY + m[o + 8 + r] * pZ;
+		return this;
+	}
+
+	public GLMatrixStack translate(final GLVector pVector) {
+		return translate(pVector.x(), pVector.y(), pVector.z());
+	}
+
+	public GLMatrixStack scale(final float pX, final float pY, final float pZ) {
+		final float[] m = mStack;
+		final int o = 16 * mTop;
+		for (int r = 0; r < 4; r++) {
+			m[o + r] *= pX;
+			m[o + 4 + r] *= pY;
+			m[o + 8 + r] *= pZ;
+		}
+		return this;
+	}
+
+	/**
+	 * Rotates by pAngle radians around the axis (pX, pY, pZ), which does not
+	 * need to be normalized.
+	 */
+	public GLMatrixStack rotate(final float pAngle,
+			final float pX,
+			final float pY,
+			final float pZ) {
+		FloatUtil.makeRotationAxis(mScratch,
+				0,
+				pAngle,
+				pX,
+				pY,
+				pZ,
+				mScratchVector);
+		FloatUtil.multMatrix(mStack, 16 * mTop, mScratch, 0);
+		return this;
+	}
+
+	public GLMatrixStack rotate(final Quaternion pQuaternion) {
+		pQuaternion.toMatrix(mScratch, 0);
+		FloatUtil.multMatrix(mStack, 16 * mTop, mScratch, 0);
+		return this;
+	}
+
+	public GLMatrixStack rotEuler(final float pBankX,
+			final float pHeadingY,
+			final float pAttitudeZ) {
+		FloatUtil.makeRotationEuler(mScratch, 0, pBankX, pHeadingY, pAttitudeZ);
+		FloatUtil.multMatrix(mStack, 16 * mTop, mScratch, 0);
+		return this;
+	}
+
+	/**
+	 * Copies the top matrix into pDestination.
+	 */
+	public GLMatrix getTop(final GLMatrix pDestination) {
+		System.arraycopy(mStack, 16 * mTop, pDestination.getFloatArray(), 0, 16);
+		pDestination.markModified();
+		return pDestination;
+	}
+
+	public float getTop(final int pRow, final int pColumn) {
+		return mStack[16 * mTop + 4 * pRow + pColumn];
+	}
+
+	/**
+	 * Writes the top matrix into pBuffer at its current position, e.g. for a
+	 * uniform or instance buffer.
+	 */
+	public FloatBuffer putTop(final FloatBuffer pBuffer) {
+		return pBuffer.put(mStack, 16 * mTop, 16);
+	}
+
+	/**
+	 * Backing array; the top matrix starts at {@link #getTopOffset()}.
+	 */
+	public float[] getFloatArray() {
+		return mStack;
+	}
+
+	public int getTopOffset() {
+		return 16 * mTop;
+	}
+
+	@Override
+	public String toString() {
+		return "GLMatrixStack [depth=" + mTop
+				+ ", capacity="
+				+ capacity()
+				+ "]";
+	}
+
+}
@@ -0,0 +1,429 @@
+package cleargl;
+
+import java.io.Serializable;
+import java.nio.FloatBuffer;
+import java.util.Arrays;
+
+/**
+ * Double precision counterpart of {@link GLMatrix}, stored column-major.
+ *
+ * Composing model and view transforms in float loses precision once world
+ * coordinates are much larger than the visible detail (e.g. nanometre
+ * features at centimetre stage offsets). Compose them with GLMatrixd instead
+ * and only emit the final, camera-relative result as float: the large
+ * translations cancel in double, so the float matrix handed to the GPU only
+ * contains small numbers.
+ */
+public class GLMatrixd implements Serializable {
+	private static final long serialVersionUID = 1L;
+
+	private final double[] mMatrix;
+	private final double[] scratch = new double[16];
+
+	public GLMatrixd() {
+		mMatrix = new double[16];
+	}
+
+	public GLMatrixd(final double[] matrix) {
+		if (matrix.length != 16)
+			throw new IllegalArgumentException("Incompatible matrix dimensions: " + matrix.length);
+		mMatrix = matrix;
+	}
+
+	public GLMatrixd(final GLMatrix pGLMatrix) {
+		this();
+		copyFrom(pGLMatrix);
+	}
+
+	public double get(final int pRow, final int pColumn) {
+		return mMatrix[4 * pRow + pColumn];
+	}
+
+	public void set(final int pRow, final int pColumn, final double pValue) {
+		mMatrix[4 * pRow + pColumn] = pValue;
+	}
+
+	public double[] getDoubleArray() {
+		return mMatrix;
+	}
+
+	public GLMatrixd setIdentity() {
+		Arrays.fill(mMatrix, 0);
+		mMatrix[0] = mMatrix[5] = mMatrix[10] = mMatrix[15] = 1;
+		return this;
+	}
+
+	public static GLMatrixd getIdentity() {
+		return new GLMatrixd().setIdentity();
+	}
+
+	@Override
+	public GLMatrixd clone() {
+		final GLMatrixd lGLMatrix = new GLMatrixd();
+		lGLMatrix.copyFrom(this);
+		return lGLMatrix;
+	}
+
+	public GLMatrixd copyFrom(final GLMatrixd rhs) {
+		System.arraycopy(rhs.mMatrix, 0, mMatrix, 0, 16);
+		return this;
+	}
+
+	public GLMatrixd copyFrom(final GLMatrix rhs) {
+		final float[] lSource = rhs.getFloatArray();
+		for (int i = 0; i < 16; i++)
+			mMatrix[i] = lSource[i];
+		return this;
+	}
+
+	/**
+	 * this = this * T(pDeltaX, pDeltaY, pDeltaZ)
+	 */
+	public GLMatrixd translate(final double pDeltaX,
+			final double pDeltaY,
+			final double pDeltaZ) {
+		final double[] m = mMatrix;
+		for (int r = 0; r < 4; r++)
+			m[12 + r] += m[r] * pDeltaX + m[4 + r] * pDeltaY + m[8 + r] * pDeltaZ;
+		return this;
+	}
+
+	public GLMatrixd translate(final GLVectord v) {
+		return translate(v.x(), v.y(), v.z());
+	}
+
+	/**
+	 * this = this * S(pScaleX, pScaleY, pScaleZ)
+	 */
+	public GLMatrixd scale(final double pScaleX,
+			final double pScaleY,
+			final double pScaleZ) {
+		final double[] m = mMatrix;
+		for (int r = 0; r < 4; r++) {
+			m[r] *= pScaleX;
+			m[4 + r] *= pScaleY;
+			m[8 + r] *= pScaleZ;
+		}
+		return this;
+	}
+
+	/**
+	 * this = this * R, with R built like FloatUtil.makeRotationEuler.
+	 */
+	public GLMatrixd rotEuler(final double bankX,
+			final double headingY,
+			final double attitudeZ) {
+		final double ch = Math.cos(headingY), sh = Math.sin(headingY);
+		final double ca = Math.cos(attitudeZ), sa = Math.sin(attitudeZ);
+		final double cb = Math.cos(bankX), sb = Math.sin(bankX);
+
+		final double[] r = scratch;
+		Arrays.fill(r, 0);
+		r[0] = ch * ca;
+		r[1] = sa;
+		r[2] = -sh * ca;
+		r[4] = sh * sb - ch * sa * cb;
+		r[5] = ca * cb;
+		r[6] = sh * sa * cb + ch * sb;
+		r[8] = ch * sa * sb + sh * cb;
+		r[9] = -ca * sb;
+		r[10] = -sh * sa * sb + ch * cb;
+		r[15] = 1;
+
+		multInPlace(mMatrix, r);
+		return this;
+	}
+
+	/**
+	 * this = this * pGLMatrix
+	 */
+	public GLMatrixd mult(final GLMatrixd pGLMatrix) {
+		if (pGLMatrix == this) {
+			System.arraycopy(mMatrix, 0, scratch, 0, 16);
+			multInPlace(mMatrix, scratch);
+		} else {
+			multInPlace(mMatrix, pGLMatrix.mMatrix);
+		}
+		return this;
+	}
+
+	public static GLMatrixd mult(final GLMatrixd pA,
+			final GLMatrixd pB,
+			final GLMatrixd pDestination) {
+		if (pDestination == pA)
+			return pDestination.mult(pB);
+		if (pDestination == pB) {
+			System.arraycopy(pB.mMatrix, 0, pDestination.scratch, 0, 16);
+			mult(pA.mMatrix, pDestination.scratch, pDestination.mMatrix);
+		} else {
+			mult(pA.mMatrix, pB.mMatrix, pDestination.mMatrix);
+		}
+		return pDestination;
+	}
+
+	public GLVectord mult(final GLVectord pVector, final GLVectord pResultVector) {
+		final double[] m = mMatrix;
+		final double[] v = pVector.mElements;
+		final double x = v[0], y = v[1], z = v[2], w = v[3];
+		final double[] d = pResultVector.mElements;
+		for (int r = 0; r < 4; r++)
+			d[r] = m[r] * x + m[4 + r] * y + m[8 + r] * z + m[12 + r] * w;
+		return pResultVector;
+	}
+
+	/**
+	 * Look-at camera matrix, same construction as
+	 * {@link GLMatrix#setCamera(float, float, float, float, float, float, float, float, float)}.
+	 */
+	public GLMatrixd setCamera(final GLVectord pPosition,
+			final GLVectord pTarget,
+			final GLVectord pUp) {
+		final double ex = pPosition.x(), ey = pPosition.y(), ez = pPosition.z();
+		double fx = pTarget.x() - ex, fy = pTarget.y() - ey, fz = pTarget.z() - ez;
+		double lNorm = normalizationFactor(fx, fy, fz);
+		fx *= lNorm;
+		fy *= lNorm;
+		fz *= lNorm;
+
+		final double ux = pUp.x(), uy = pUp.y(), uz = pUp.z();
+		double sx = fy * uz - fz * uy, sy = fz * ux - fx * uz, sz = fx * uy - fy * ux;
+		lNorm = normalizationFactor(sx, sy, sz);
+		sx *= lNorm;
+		sy *= lNorm;
+		sz *= lNorm;
+
+		final double vx = sy * fz - sz * fy, vy = sz * fx - sx * fz, vz = sx * fy - sy * fx;
+
+		final double[] m = mMatrix;
+		m[0] = sx;
+		m[1] = vx;
+		m[2] = -fx;
+		m[3] = 0;
+		m[4] = sy;
+		m[5] = vy;
+		m[6] = -fy;
+		m[7] = 0;
+		m[8] = sz;
+		m[9] = vz;
+		m[10] = -fz;
+		m[11] = 0;
+		m[12] = -(sx * ex + sy * ey + sz * ez);
+		m[13] = -(vx * ex + vy * ey + vz * ez);
+		m[14] = fx * ex + fy * ey + fz * ez;
+		m[15] = 1;
+		return this;
+	}
+
+	private static double normalizationFactor(final double pX,
+			final double pY,
+			final double pZ) {
+		final double lLengthSquared = pX * pX + pY * pY + pZ * pZ;
+		return lLengthSquared == 0 ? 0 : 1.0 / Math.sqrt(lLengthSquared);
+	}
+
+	public GLMatrixd transpose() {
+		final double[] m = mMatrix;
+		double lTemp;
+		for (int c = 0; c < 4; c++)
+			for (int r = c + 1; r < 4; r++) {
+				lTemp = m[4 * c + r];
+				m[4 * c + r] = m[4 * r + c];
+				m[4 * r + c] = lTemp;
+			}
+		return this;
+	}
+
+	/**
+	 * Inverts this matrix in place, singular matrices are left untouched.
+	 */
+	public GLMatrixd invert() {
+		System.arraycopy(mMatrix, 0, scratch, 0, 16);
+		invert(scratch, mMatrix);
+		return this;
+	}
+
+	public GLMatrixd getInverse(final GLMatrixd pDestination) {
+		if (pDestination == this)
+			return invert();
+		invert(mMatrix, pDestination.mMatrix);
+		return pDestination;
+	}
+
+	/*
+	 * Float output
+	 */
+
+	public GLMatrix toGLMatrix(final GLMatrix pDestination) {
+		final float[] d = pDestination.getFloatArray();
+		for (int i = 0; i < 16; i++)
+			d[i] = (float) mMatrix[i];
+		pDestination.markModified();
+		return pDestination;
+	}
+
+	public FloatBuffer put(final FloatBuffer pBuffer) {
+		for (int i = 0; i < 16; i++)
+			pBuffer.put((float) mMatrix[i]);
+		return pBuffer;
+	}
+
+	/**
+	 * pDestination = (float) (pA * pB). The product is evaluated in double and
+	 * rounded once, e.g. view * model for a camera-relative model-view matrix.
+	 */
+	public static GLMatrix multToFloat(final GLMatrixd pA,
+			final GLMatrixd pB,
+			final GLMatrix pDestination) {
+		multToFloat(pA.mMatrix, pB.mMatrix, pDestination.getFloatArray(), 0);
+		pDestination.markModified();
+		return pDestination;
+	}
+
+	/**
+	 * Writes (float) (pA * pB) at the buffer's current position, which is
+	 * advanced by 16 floats.
+	 */
+	public static FloatBuffer multToFloat(final GLMatrixd pA,
+			final GLMatrixd pB,
+			final FloatBuffer pDestination) {
+		final double[] a = pA.mMatrix;
+		final double[] b = pB.mMatrix;
+		for (int c = 0; c < 4; c++) {
+			final double b0 = b[4 * c], b1 = b[4 * c + 1], b2 = b[4 * c + 2], b3 = b[4 * c + 3];
+			for (int r = 0; r < 4; r++)
+				pDestination.put((float) (a[r] * b0 + a[4 + r] * b1 + a[8 + r] * b2 + a[12 + r] * b3));
+		}
+		return pDestination;
+	}
+
+	public static float[] multToFloat(final double[] a,
+			final double[] b,
+			final float[] d,
+			final int pOffset) {
+		for (int c = 0; c < 4; c++) {
+			final double b0 = b[4 * c], b1 = b[4 * c + 1], b2 = b[4 * c + 2], b3 = b[4 * c + 3];
+			for (int r = 0; r < 4; r++)
+				d[pOffset + 4 * c + r] = (float) (a[r] * b0 + a[4 + r] * b1 + a[8 + r] * b2 + a[12 + r] * b3);
+		}
+		return d;
+	}
+
+	/**
+	 * Writes this (model) matrix as float with pEye subtracted from its
+	 * translation. Together with a view matrix that only holds the camera
+	 * rotation (see {@link #getRotation(GLMatrix)}) this renders the same
+	 * image, while all float values stay small close to the camera.
+	 */
+	public GLMatrix getRelativeToEye(final GLVectord pEye,
+			final GLMatrix pDestination) {
+		final double[] m = mMatrix;
+		final float[] d = pDestination.getFloatArray();
+		for (int i = 0; i < 16; i++)
+			d[i] = (float) m[i];
+		// translation minus eye, with the eye scaled by w for generality
+		d[12] = (float) (m[12] - pEye.x() * m[15]);
+		d[13] = (float) (m[13] - pEye.y() * m[15]);
+		d[14] = (float) (m[14] - pEye.z() * m[15]);
+		pDestination.markModified();
+		return pDestination;
+	}
+
+	/**
+	 * Writes the upper 3x3 block of this (view) matrix as float, with zero
+	 * translation.
+	 */
+	public GLMatrix getRotation(final GLMatrix pDestination) {
+		final double[] m = mMatrix;
+		final float[] d = pDestination.getFloatArray();
+		for (int c = 0; c < 3; c++) {
+			for (int r = 0; r < 3; r++)
+				d[4 * c + r] = (float) m[4 * c + r];
+			d[4 * c + 3] = 0;
+		}
+		d[12] = d[13] = d[14] = 0;
+		d[15] = 1;
+		pDestination.markModified();
+		return pDestination;
+	}
+
+	private static void mult(final double[] a, final double[] b, final double[] d) {
+		for (int c = 0; c < 4; c++) {
+			final double b0 = b[4 * c], b1 = b[4 * c + 1], b2 = b[4 * c + 2], b3 = b[4 * c + 3];
+			for (int r = 0; r < 4; r++)
+				d[4 * c + r] = a[r] * b0 + a[4 + r] * b1 + a[8 + r] * b2 + a[12 + r] * b3;
+		}
+	}
+
+	private static void multInPlace(final double[] a, final double[] b) {
+		for (int r = 0; r < 4; r++) {
+			final double a0 = a[r], a1 = a[4 + r], a2 = a[8 + r], a3 = a[12 + r];
+			for (int c = 0; c < 4; c++)
+				a[4 * c + r] = a0 * b[4 * c] + a1 * b[4 * c + 1] + a2 * b[4 * c + 2] + a3 * b[4 * c + 3];
+		}
+	}
+
+	private static boolean invert(final double[] m, final double[] d) {
+		final double a = m[0] * m[5] - m[1] * m[4];
+		final double b = m[0] * m[6] - m[2] * m[4];
+		final double c = m[0] * m[7] - m[3] * m[4];
+		final double d1 = m[1] * m[6] - m[2] * m[5];
+		final double e = m[1] * m[7] - m[3] * m[5];
+		final double f = m[2] * m[7] - m[3] * m[6];
+		final double g = m[8] * m[13] - m[9] * m[12];
+		final double h = m[8] * m[14] - m[10] * m[12];
+		final double i = m[8] * m[15] - m[11] * m[12];
+		final double j = m[9] * m[14] - m[10] * m[13];
+		final double k = m[9] * m[15] - m[11] * m[13];
+		final double l = m[10] * m[15] - m[11] * m[14];
+		final double lDeterminant = a * l - b * k + c * j + d1 * i - e * h + f * g;
+		if (lDeterminant == 0)
+			return false;
+		final double lInverse = 1.0 / lDeterminant;
+
+		final double l00 = (m[5] * l - m[6] * k + m[7] * j) * lInverse;
+		final double l01 = (-m[1] * l + m[2] * k - m[3] * j) * lInverse;
+		final double l02 = (m[13] * f - m[14] * e + m[15] * d1) * lInverse;
+		final double l03 = (-m[9] * f + m[10] * e - m[11] * d1) * lInverse;
+		final double l10 = (-m[4] * l + m[6] * i - m[7] * h) * lInverse;
+		final double l11 = (m[0] * l - m[2] * i + m[3] * h) * lInverse;
+		final double l12 = (-m[12] * f + m[14] * c - m[15] * b) * lInverse;
+		final double l13 = (m[8] * f - m[10] * c + m[11] * b) * lInverse;
+		final double l20 = (m[4] * k - m[5] * i + m[7] * g) * lInverse;
+		final double l21 = (-m[0] * k + m[1] * i - m[3] * g) * lInverse;
+		final double l22 = (m[12] * e - m[13] * c + m[15] * a) * lInverse;
+		final double l23 = (-m[8] * e + m[9] * c - m[11] * a) * lInverse;
+		final double l30 = (-m[4] * j + m[5] * h - m[6] * g) * lInverse;
+		final double l31 = (m[0] * j - m[1] * h + m[2] * g) * lInverse;
+		final double l32 = (-m[12] * d1 + m[13] * b - m[14] * a) * lInverse;
+		final double l33 = (m[8] * d1 - m[9] * b + m[10] * a) * lInverse;
+		d[0] = l00;
+		d[1] = l01;
+		d[2] = l02;
+		d[3] = l03;
+		d[4] = l10;
+		d[5] = l11;
+		d[6] = l12;
+		d[7] = l13;
+		d[8] = l20;
+		d[9] = l21;
+		d[10] = l22;
+		d[11] = l23;
+		d[12] = l30;
+		d[13] = l31;
+		d[14] = l32;
+		d[15] = l33;
+		return true;
+	}
+
+	@Override
+	public String toString() {
+		final StringBuilder lStringBuilder = new StringBuilder("GLMatrixd:\n");
+		for (int r = 0; r < 4; r++) {
+			for (int c = 0; c < 4; c++)
+				lStringBuilder.append(String.format("%15.8f", mMatrix[4 * c + r]));
+			lStringBuilder.append('\n');
+		}
+		return lStringBuilder.toString();
+	}
+
+}
@@ -0,0 +1,295 @@
+package cleargl;
+
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.WeakReference;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Accounting of GPU memory allocated by textures, framebuffer attachments,
+ * geometry and pixel buffers. Each allocation registers its estimated size;
+ * textures are registered by {@link GLTexture} itself, in the default
+ * registry. When the total exceeds the budget, the least recently bound
+ * textures are handed to the eviction listener, which usually closes them,
+ * until the total is within budget again. Framebuffer attachments, geometry
+ * and pixel buffers are counted but never evicted.
+ *
+ * Owners are only weakly referenced: allocations of owners that were garbage
+ * collected without being closed are dropped from the totals the next time
+ * the registry is used. Their GPU memory is not freed, as there is no GL
+ * context to do so.
+ *
+ * Registry calls happen on the GL thread, as do eviction callbacks.
+ */
+public class GLMemoryRegistry {
+
+	public enum Category {
+		Texture, Framebuffer, Geometry, PixelBuffer
+	}
+
+	public interface EvictionListener {
+		/**
+		 * Asked to free pTexture, e.g. by closing it and reloading it when it
+		 * is needed again. Returns false to keep it.
+		 */
+		boolean evict(GLTexture pTexture);
+	}
+
+	/**
+	 * Memory held by one object.
+	 */
+	public class Allocation {
+		private final OwnerReference mOwner;
+		private Category mCategory;
+		private long mSizeInBytes;
+		private long mLastUse;
+		private boolean mReleased;
+
+		private Allocation(final Object pOwner,
+				final Category pCategory,
+				final long pSizeInBytes) {
+			mOwner = new OwnerReference(pOwner, this, mCollectedOwners);
+			mCategory = pCategory;
+			mSizeInBytes = pSizeInBytes;
+			mLastUse = ++mClock;
+		}
+
+		/**
+		 * Owner of the allocation, or null if it was garbage collected.
+		 */
+		public Object getOwner() {
+			return mOwner.get();
+		}
+
+		public Category getCategory() {
+			return mCategory;
+		}
+
+		public long getSizeInBytes() {
+			return mSizeInBytes;
+		}
+
+		public boolean isReleased() {
+			return mReleased;
+		}
+
+		/**
+		 * Marks the allocation as used now, e.g. when a texture is bound.
+		 */
+		public void touch() {
+			mLastUse = ++mClock;
+		}
+
+		public void setCategory(final Category pCategory) {
+			synchronized (GLMemoryRegistry.this) {
+				if (!mReleased) {
+					mTotals[mCategory.ordinal()] -= mSizeInBytes;
+					mTotals[pCategory.ordinal()] += mSizeInBytes;
+				}
+				mCategory = pCategory;
+			}
+		}
+
+		/**
+		 * Updates the size, e.g. after a buffer was reallocated with a new
+		 * size, and evicts textures if that exceeds the budget.
+		 */
+		public void setSizeInBytes(final long pSizeInBytes) {
+			synchronized (GLMemoryRegistry.this) {
+				if (!mReleased) {
+					mTotals[mCategory.ordinal()] += pSizeInBytes - mSizeInBytes;
+					mTotal += pSizeInBytes - mSizeInBytes;
+				}
+				mSizeInBytes = pSizeInBytes;
+			}
+			if (pSizeInBytes > 0)
+				enforceBudget(this);
+		}
+
+		/**
+		 * Removes the allocation from the registry; repeated calls do nothing.
+		 */
+		public void release() {
+			synchronized (GLMemoryRegistry.this) {
+				if (mReleased)
+					return;
+				mReleased = true;
+				mAllocations.remove(this);
+				mOwner.clear();
+				mTotals[mCategory.ordinal()] -= mSizeInBytes;
+				mTotal -= mSizeInBytes;
+			}
+		}
+
+		@Override
+		public String toString() {
+			return "Allocation [mCategory=" + mCategory
+					+ ", mSizeInBytes="
+					+ mSizeInBytes
+					+ ", mOwner="
+					+ mOwner.get()
+					+ "]";
+		}
+	}
+
+	private static class OwnerReference extends WeakReference<Object> {
+		private final Allocation mAllocation;
+
+		private OwnerReference(final Object pOwner,
+				final Allocation pAllocation,
+				final ReferenceQueue<Object> pQueue) {
+			super(pOwner, pQueue);
+			mAllocation = pAllocation;
+		}
+	}
+
+	private static final GLMemoryRegistry cDefault = new GLMemoryRegistry();
+
+	private final Set<Allocation> mAllocations = new HashSet<>();
+	private final ReferenceQueue<Object> mCollectedOwners = new ReferenceQueue<>();
+	private final long[] mTotals = new long[Category.values().length];
+	private long mTotal;
+	private long mBudget = Long.MAX_VALUE;
+	private EvictionListener mEvictionListener;
+	private long mClock;
+	private boolean mEvicting;
+	private long mEvictionCount;
+
+	/**
+	 * Registry used by GLTexture, GLFramebuffer, ClearGeometryObject and
+	 * GLPixelBufferObject.
+	 */
+	public static GLMemoryRegistry getDefault() {
+		return cDefault;
+	}
+
+	/**
+	 * Registers pSizeInBytes held by pOwner, evicting other textures if that
+	 * exceeds the budget.
+	 */
+	public Allocation register(final Object pOwner,
+			final Category pCategory,
+			final long pSizeInBytes) {
+		final Allocation lAllocation;
+		synchronized (this) {
+			expungeCollected();
+			lAllocation = new Allocation(pOwner, pCategory, pSizeInBytes);
+			mAllocations.add(lAllocation);
+			mTotals[pCategory.ordinal()] += pSizeInBytes;
+			mTotal += pSizeInBytes;
+		}
+		enforceBudget(lAllocation);
+		return lAllocation;
+	}
+
+	/**
+	 * Releases the allocations of owners that were garbage collected.
+	 */
+	private synchronized void expungeCollected() {
+		OwnerReference lReference;
+		while ((lReference = (OwnerReference) mCollectedOwners.poll()) != null)
+			lReference.mAllocation.release();
+	}
+
+	public synchronized long getTotal() {
+		expungeCollected();
+		return mTotal;
+	}
+
+	public synchronized long getTotal(final Category pCategory) {
+		expungeCollected();
+		return mTotals[pCategory.ordinal()];
+	}
+
+	public synchronized int getAllocationCount() {
+		expungeCollected();
+		return mAllocations.size();
+	}
+
+	public synchronized List<Allocation> getAllocations() {
+		expungeCollected();
+		return new ArrayList<>(mAllocations);
+	}
+
+	public synchronized long getBudget() {
+		return mBudget;
+	}
+
+	/**
+	 * Sets the budget in bytes and evicts textures if it is exceeded already.
+	 */
+	public void setBudget(final long pBudget) {
+		synchronized (this) {
+			mBudget = pBudget;
+		}
+		enforceBudget(null);
+	}
+
+	public synchronized boolean isOverBudget() {
+		expungeCollected();
+		return mTotal > mBudget;
+	}
+
+	public synchronized void setEvictionListener(final EvictionListener pEvictionListener) {
+		mEvictionListener = pEvictionListener;
+	}
+
+	public synchronized long getEvictionCount() {
+		return mEvictionCount;
+	}
+
+	/**
+	 * Offers textures to the eviction listener, least recently bound first,
+	 * until the total is within budget or no texture is left; pKeep is never
+	 * offered. Returns the number of textures evicted.
+	 */
+	public synchronized int enforceBudget(final Allocation pKeep) {
+		expungeCollected();
+		if (mTotal <= mBudget || mEvictionListener == null || mEvicting)
+			return 0;
+
+		final List<Allocation> lCandidates = new ArrayList<>();
+		for (final Allocation lAllocation : mAllocations)
+			if (lAllocation != pKeep && lAllocation.mCategory == Category.Texture
+					&& lAllocation.getOwner() instanceof GLTexture)
+				lCandidates.add(lAllocation);
+		lCandidates.sort(Comparator.comparingLong(a -> a.mLastUse));
+
+		int lEvicted = 0;
+		mEvicting = true;
+		try {
+			for (final Allocation lAllocation : lCandidates) {
+				if (mTotal <= mBudget)
+					break;
+				final Object lOwner = lAllocation.getOwner();
+				if (lAllocation.mReleased || lOwner == null)
+					continue;
+				if (mEvictionListener.evict((GLTexture) lOwner)) {
+					// in case the listener did not close the texture
+					lAllocation.release();
+					lEvicted++;
+				}
+			}
+		} finally {
+			mEvicting = false;
+		}
+		mEvictionCount += lEvicted;
+		return lEvicted;
+	}
+
+	@Override
+	public synchronized String toString() {
+		expungeCollected();
+		final StringBuilder lBuilder = new StringBuilder("GLMemoryRegistry [total=").append(mTotal);
+		for (final Category lCategory : Category.values())
+			lBuilder.append(", ")
+					.append(lCategory)
+					.append('=')
+					.append(mTotals[lCategory.ordinal()]);
+		return lBuilder.append(", mBudget=").append(mBudget).append("]").toString();
+	}
+
+}
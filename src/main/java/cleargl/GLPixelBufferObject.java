@@ -1,7 +1,10 @@
 package cleargl;
 
 import java.nio.Buffer;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
 import java.util.Arrays;
+import com.jogamp.common.nio.Buffers;
 import com.jogamp.opengl.GL;
 import com.jogamp.opengl.GL2ES3;
 import com.jogamp.opengl.GLException;
@@ -11,6 +14,8 @@ public class GLPixelBufferObject implements GLInterface, GLCloseable {
 	private int[] mPixelBufferObjectId = new int[1];
 	private final int mTextureWidth;
 	private final int mTextureHeight;
+	private final long mSizeInBytes;
+	private final GLMemoryRegistry.Allocation mAllocation;
 
 	public GLPixelBufferObject(final GLInterface pGLInterface,
 			final int pWidth,
@@ -19,11 +24,32 @@ public class GLPixelBufferObject implements GLInterface, GLCloseable {
 		mGLInterface = pGLInterface;
 		mTextureWidth = pWidth;
 		mTextureHeight = pHeight;
+		mSizeInBytes = (long) pWidth * pHeight * 4;
 
 		mGLInterface.getGL().glGenBuffers(1, mPixelBufferObjectId, 0);
+		mAllocation = GLMemoryRegistry.getDefault()
+				.register(this, GLMemoryRegistry.Category.PixelBuffer, 0);
 
 	}
 
+	/**
+	 * Creates a pixel buffer of the given size, e.g. for 3D or non-RGBA
+	 * uploads. Storage is only allocated by {@link #allocate()} or
+	 * {@link #copyFrom(Buffer)}.
+	 */
+	public GLPixelBufferObject(final GLInterface pGLInterface,
+			final long pSizeInBytes) {
+		super();
+		mGLInterface = pGLInterface;
+		mTextureWidth = 0;
+		mTextureHeight = 0;
+		mSizeInBytes = pSizeInBytes;
+
+		mGLInterface.getGL().glGenBuffers(1, mPixelBufferObjectId, 0);
+		mAllocation = GLMemoryRegistry.getDefault()
+				.register(this, GLMemoryRegistry.Category.PixelBuffer, 0);
+	}
+
 	public void bind() {
 		mGLInterface.getGL().glBindBuffer(GL2ES3.GL_PIXEL_UNPACK_BUFFER,
 				getId());
@@ -34,21 +60,71 @@ public class GLPixelBufferObject implements GLInterface, GLCloseable {
 				0);
 	}
 
+	/**
+	 * Uploads the remaining content of pBuffer into this pixel buffer.
+	 */
 	public void copyFrom(final Buffer pBuffer) {
+		final long lSizeInBytes = (long) pBuffer.remaining()
+				* Buffers.sizeOfBufferElem(pBuffer);
 		bind();
 		mGLInterface.getGL().glBufferData(GL2ES3.GL_PIXEL_UNPACK_BUFFER,
-				mTextureWidth * mTextureHeight
-						* 1
-						* 4,
-				null,
+				lSizeInBytes,
+				pBuffer,
 				GL.GL_DYNAMIC_DRAW);
 		unbind();
+		mAllocation.setSizeInBytes(lSizeInBytes);
+	}
+
+	/**
+	 * (Re)allocates uninitialized storage. Called on a buffer the GPU may still
+	 * read from, this orphans the old storage instead of waiting for it.
+	 */
+	public void allocate() {
+		bind();
+		mGLInterface.getGL().glBufferData(GL2ES3.GL_PIXEL_UNPACK_BUFFER,
+				mSizeInBytes,
+				null,
+				GL2ES3.GL_STREAM_DRAW);
+		unbind();
+		mAllocation.setSizeInBytes(mSizeInBytes);
+	}
+
+	/**
+	 * Maps the whole buffer for writing without synchronizing with the GPU;
+	 * callers must make sure that pending reads have finished or that the
+	 * storage was orphaned. The returned buffer may be filled from any thread
+	 * until {@link #unmap()} is called.
+	 */
+	public ByteBuffer map() {
+		bind();
+		final ByteBuffer lBuffer = mGLInterface.getGL()
+				.glMapBufferRange(GL2ES3.GL_PIXEL_UNPACK_BUFFER,
+						0,
+						mSizeInBytes,
+						GL.GL_MAP_WRITE_BIT | GL.GL_MAP_UNSYNCHRONIZED_BIT);
+		unbind();
+		if (lBuffer == null)
+			throw new GLException("Could not map pixel buffer " + getId());
+		return lBuffer.order(ByteOrder.nativeOrder());
+	}
+
+	public boolean unmap() {
+		bind();
+		final boolean lIntact = mGLInterface.getGL()
+				.glUnmapBuffer(GL2ES3.GL_PIXEL_UNPACK_BUFFER);
+		unbind();
+		return lIntact;
+	}
+
+	public long getSizeInBytes() {
+		return mSizeInBytes;
 	}
 
 	@Override
 	public void close() throws GLException {
 		mGLInterface.getGL().glDeleteBuffers(1, mPixelBufferObjectId, 0);
 		mPixelBufferObjectId = null;
+		mAllocation.release();
 	}
 
 	@Override
@@ -70,6 +146,8 @@ public class GLPixelBufferObject implements GLInterface, GLCloseable {
 				+ mTextureWidth
 				+ ", mTextureHeight="
 				+ mTextureHeight
+				+ ", mSizeInBytes="
+				+ mSizeInBytes
 				+ "]";
 	}
 
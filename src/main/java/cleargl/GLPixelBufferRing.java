@@ -0,0 +1,238 @@
+package cleargl;
+
+import java.nio.ByteBuffer;
+import com.jogamp.opengl.GL;
+import com.jogamp.opengl.GL3ES3;
+import com.jogamp.opengl.GLException;
+
+/**
+ * Ring of pixel buffers for streaming texture data. A slot is acquired and
+ * mapped on the GL thread, filled from any thread, and uploaded into a 2D or
+ * 3D texture on the GL thread again. The upload is a GPU-side copy from the
+ * pixel buffer, and a fence marks when the GPU is done reading the slot.
+ *
+ * Acquiring a slot never blocks: if its fence has not been signaled yet, the
+ * old storage is orphaned and the slot is mapped on fresh storage instead.
+ * <pre>
+ * Slot lSlot = lRing.acquire();           // GL thread
+ * lSlot.getBuffer().put(...);             // any thread
+ * lSlot.markFilled();
+ * if (lSlot.isFilled())
+ *   lRing.upload(lSlot, lTexture);        // GL thread
+ * </pre>
+ */
+public class GLPixelBufferRing implements GLInterface, GLCloseable {
+
+	public class Slot {
+		private final int mIndex;
+		private final GLPixelBufferObject mPixelBufferObject;
+		private long mFence;
+		private ByteBuffer mMappedBuffer;
+		private volatile boolean mFilled;
+
+		private Slot(final int pIndex) {
+			mIndex = pIndex;
+			mPixelBufferObject = new GLPixelBufferObject(mGLInterface,
+					mSizeInBytes);
+			mPixelBufferObject.allocate();
+		}
+
+		public int getIndex() {
+			return mIndex;
+		}
+
+		/**
+		 * Mapped memory of this slot, positioned at 0, valid until it is
+		 * uploaded or released.
+		 */
+		public ByteBuffer getBuffer() {
+			return mMappedBuffer;
+		}
+
+		/**
+		 * Called by the filling thread when done, publishes the written data to
+		 * the GL thread.
+		 */
+		public void markFilled() {
+			mFilled = true;
+		}
+
+		public boolean isFilled() {
+			return mFilled;
+		}
+
+		public boolean isMapped() {
+			return mMappedBuffer != null;
+		}
+
+		public GLPixelBufferObject getPixelBufferObject() {
+			return mPixelBufferObject;
+		}
+	}
+
+	private final GLInterface mGLInterface;
+	private final long mSizeInBytes;
+	private final Slot[] mSlots;
+	private int mNext;
+	private long mOrphanCount;
+
+	public GLPixelBufferRing(final GLInterface pGLInterface,
+			final int pNumberOfBuffers,
+			final long pSizeInBytes) {
+		if (pNumberOfBuffers < 1)
+			throw new IllegalArgumentException("Need at least one pixel buffer: " + pNumberOfBuffers);
+		mGLInterface = pGLInterface;
+		mSizeInBytes = pSizeInBytes;
+		mSlots = new Slot[pNumberOfBuffers];
+		for (int i = 0; i < pNumberOfBuffers; i++)
+			mSlots[i] = new Slot(i);
+	}
+
+	/**
+	 * Creates a ring whose slots hold one full level 0 image of pTexture.
+	 */
+	public GLPixelBufferRing(final GLTexture pTexture,
+			final int pNumberOfBuffers) {
+		this(pTexture,
+				pNumberOfBuffers,
+				(long) pTexture.getWidth() * pTexture.getHeight()
+						* pTexture.getDepth()
+						* pTexture.getChannels()
+						* (pTexture.getBitsPerChannel() / 8));
+	}
+
+	/**
+	 * Maps the next slot for writing, or returns null if that slot is still
+	 * mapped, i.e. all slots are being filled.
+	 */
+	public Slot acquire() {
+		final Slot lSlot = mSlots[mNext];
+		if (lSlot.isMapped())
+			return null;
+		mNext = (mNext + 1) % mSlots.length;
+
+		if (lSlot.mFence != 0) {
+			final int lStatus = getGL().getGL3()
+					.glClientWaitSync(lSlot.mFence, 0, 0);
+			if (lStatus != GL3ES3.GL_ALREADY_SIGNALED && lStatus != GL3ES3.GL_CONDITION_SATISFIED) {
+				// GPU still reads the old content, don't wait for it
+				lSlot.mPixelBufferObject.allocate();
+				mOrphanCount++;
+			}
+			getGL().getGL3().glDeleteSync(lSlot.mFence);
+			lSlot.mFence = 0;
+		}
+
+		lSlot.mFilled = false;
+		lSlot.mMappedBuffer = lSlot.mPixelBufferObject.map();
+		return lSlot;
+	}
+
+	/**
+	 * Uploads a filled slot into the whole level 0 image of pTexture.
+	 */
+	public void upload(final Slot pSlot, final GLTexture pTexture) {
+		upload(pSlot,
+				pTexture,
+				pTexture.getWidth(),
+				pTexture.getHeight(),
+				pTexture.getDepth(),
+				0,
+				0,
+				0);
+	}
+
+	/**
+	 * Unmaps pSlot and copies its content into the given region of pTexture,
+	 * then fences the slot so that it is not overwritten while the GPU copies.
+	 */
+	public void upload(final Slot pSlot,
+			final GLTexture pTexture,
+			final int pWidth,
+			final int pHeight,
+			final int pDepth,
+			final int pX,
+			final int pY,
+			final int pZ) {
+		checkMapped(pSlot);
+		pSlot.mMappedBuffer = null;
+		if (!pSlot.mPixelBufferObject.unmap())
+			throw new GLException("Pixel buffer content was lost while mapped");
+
+		pTexture.copyFrom(pSlot.mPixelBufferObject,
+				0,
+				pWidth,
+				pHeight,
+				pDepth,
+				pX,
+				pY,
+				pZ,
+				false);
+		pSlot.mFence = getGL().getGL3()
+				.glFenceSync(GL3ES3.GL_SYNC_GPU_COMMANDS_COMPLETE, 0);
+	}
+
+	/**
+	 * Unmaps pSlot without uploading it.
+	 */
+	public void release(final Slot pSlot) {
+		checkMapped(pSlot);
+		pSlot.mMappedBuffer = null;
+		pSlot.mPixelBufferObject.unmap();
+	}
+
+	private void checkMapped(final Slot pSlot) {
+		if (!pSlot.isMapped())
+			throw new IllegalStateException("Pixel buffer slot " + pSlot.mIndex
+					+ " is not mapped");
+	}
+
+	public int getNumberOfBuffers() {
+		return mSlots.length;
+	}
+
+	public long getSizeInBytes() {
+		return mSizeInBytes;
+	}
+
+	/**
+	 * Number of times a slot was still in use by the GPU when acquired; if
+	 * this keeps growing, more buffers would help.
+	 */
+	public long getOrphanCount() {
+		return mOrphanCount;
+	}
+
+	@Override
+	public void close() throws GLException {
+		for (final Slot lSlot : mSlots) {
+			if (lSlot.isMapped())
+				release(lSlot);
+			if (lSlot.mFence != 0)
+				getGL().getGL3().glDeleteSync(lSlot.mFence);
+			lSlot.mFence = 0;
+			lSlot.mPixelBufferObject.close();
+		}
+	}
+
+	@Override
+	public GL getGL() {
+		return mGLInterface.getGL();
+	}
+
+	@Override
+	public int getId() {
+		return mSlots[0].mPixelBufferObject.getId();
+	}
+
+	@Override
+	public String toString() {
+		return "GLPixelBufferRing [buffers=" + mSlots.length
+				+ ", mSizeInBytes="
+				+ mSizeInBytes
+				+ ", mOrphanCount="
+				+ mOrphanCount
+				+ "]";
+	}
+
+}
@@ -157,6 +157,16 @@ public class GLShader implements GLInterface, GLCloseable {
 	}
 
 	public String preprocessShader(final String source) {
+		return preprocessShader(source, mParameters, mShaderBasePath);
+	}
+
+	/**
+	 * Substitutes %var(name) with the given parameters and inlines %include
+	 * &lt;file&gt; relative to pBasePath, without needing a GL context.
+	 */
+	static String preprocessShader(final String source,
+			final Map<String, String> pParameters,
+			final Path pBasePath) {
 		String effectiveSource = source;
 		int startPos = 0;
 		int endPos = 0;
@@ -165,10 +175,10 @@ public class GLShader implements GLInterface, GLCloseable {
 		while ((startPos = effectiveSource.indexOf("%var(")) != -1) {
 			endPos = effectiveSource.indexOf(")", startPos);
 			final String varName = effectiveSource.substring(startPos + "%var(".length(), endPos);
-			if (!mParameters.containsKey(varName)) {
+			if (!pParameters.containsKey(varName)) {
 				System.err.println("Warning: Variable '" + varName + "' does not exist in shader parameters!");
 			}
-			final String varContents = mParameters.getOrDefault(varName, "");
+			final String varContents = pParameters.getOrDefault(varName, "");
 
 			effectiveSource = effectiveSource.substring(0, startPos) + varContents
 					+ effectiveSource.substring(endPos + ")".length());
@@ -183,7 +193,7 @@ public class GLShader implements GLInterface, GLCloseable {
 			String includeSource = "";
 
 			try {
-				includeSource = Files.lines(mShaderBasePath.resolve(includeFileName))
+				includeSource = Files.lines(pBasePath.resolve(includeFileName))
 						.parallel()
 						.filter(line -> !line.startsWith("//"))
 						.map(String::trim)
@@ -3,18 +3,16 @@ package cleargl;
 import com.jogamp.opengl.GL4;
 import com.jogamp.opengl.GLException;
 
-import javax.imageio.ImageIO;
-import java.awt.*;
-import java.awt.color.ColorSpace;
-import java.awt.geom.AffineTransform;
-import java.awt.image.*;
+import cleargl.util.image.HalfFloatConverter;
+import cleargl.util.image.MipMapBuilder;
+
 import java.io.*;
 import java.nio.Buffer;
 import java.nio.ByteBuffer;
 import java.nio.ByteOrder;
+import java.nio.FloatBuffer;
 import java.nio.channels.FileChannel;
 import java.util.Arrays;
-import java.util.Hashtable;
 
 @SuppressWarnings({"WeakerAccess", "unused"})
 public class GLTexture implements GLInterface, GLCloseable {
@@ -47,37 +45,12 @@ public class GLTexture implements GLInterface, GLCloseable {
 
 	private final boolean msRGB;
 
-	private static ColorModel glAlphaColorModel = new ComponentColorModel(
-			ColorSpace.getInstance(ColorSpace.CS_LINEAR_RGB),
-			new int[]{8, 8, 8, 8},
-			true,
-			false,
-			ComponentColorModel.TRANSLUCENT,
-			DataBuffer.TYPE_BYTE);
-
-	private static ColorModel glAlphaColorModelsRGB = new ComponentColorModel(
-			ColorSpace.getInstance(ColorSpace.CS_sRGB),
-			new int[]{8, 8, 8, 8},
-			true,
-			false,
-			ComponentColorModel.TRANSLUCENT,
-			DataBuffer.TYPE_BYTE);
-
-	private static ColorModel glColorModel = new ComponentColorModel(
-			ColorSpace.getInstance(ColorSpace.CS_LINEAR_RGB),
-			new int[]{8, 8, 8, 0},
-			false,
-			false,
-			ComponentColorModel.OPAQUE,
-			DataBuffer.TYPE_BYTE);
-
-	private static ColorModel glColorModelsRGB = new ComponentColorModel(
-			ColorSpace.getInstance(ColorSpace.CS_sRGB),
-			new int[]{8, 8, 8, 0},
-			false,
-			false,
-			ComponentColorModel.OPAQUE,
-			DataBuffer.TYPE_BYTE);
+	private final boolean mNormalized;
+
+	private final GLMemoryRegistry.Allocation mAllocation;
+
+	// staging for copyFromFloats
+	private ByteBuffer mHalfFloatBuffer;
 
 	public GLTexture(final GLInterface pGLInterface,
 			final GLTypeEnum pType,
@@ -195,6 +168,7 @@ public class GLTexture implements GLInterface, GLCloseable {
 		mTextureDepth = pTextureDepth;
 		mMipMapLevels = pMipMapLevels;
 		msRGB = sRGB;
+		mNormalized = normalized;
 
 		mTextureTarget = mTextureDepth == 1 ? GL4.GL_TEXTURE_2D
 				: GL4.GL_TEXTURE_3D;
@@ -330,6 +304,22 @@ public class GLTexture implements GLInterface, GLCloseable {
 			}
 
 			mBytesPerChannel = 4;
+		} else if (mType == GLTypeEnum.HalfFloat) {
+			switch (mNumberOfChannels) {
+				case 1:
+					mTextureOpenGLInternalFormat = GL4.GL_R16F;
+					break;
+				case 2:
+					mTextureOpenGLInternalFormat = GL4.GL_RG16F;
+					break;
+				case 3:
+					mTextureOpenGLInternalFormat = GL4.GL_RGB16F;
+					break;
+				case 4:
+				default:
+					mTextureOpenGLInternalFormat = GL4.GL_RGBA16F;
+			}
+			mBytesPerChannel = 2;
 		} else if (mType == GLTypeEnum.Float) {
 			switch (mNumberOfChannels) {
 				case 1:
@@ -404,8 +394,10 @@ public class GLTexture implements GLInterface, GLCloseable {
 		} else {
 			mGL.glTexParameteri(mTextureTarget,
 					GL4.GL_TEXTURE_MIN_FILTER,
-					pLinearInterpolation ? GL4.GL_LINEAR
-							: GL4.GL_NEAREST);
+					mMipMapLevels > 1 ? (pLinearInterpolation ? GL4.GL_LINEAR_MIPMAP_LINEAR
+							: GL4.GL_NEAREST_MIPMAP_NEAREST)
+							: (pLinearInterpolation ? GL4.GL_LINEAR
+									: GL4.GL_NEAREST));
 			mGL.glTexParameteri(mTextureTarget,
 					GL4.GL_TEXTURE_MAG_FILTER,
 					pLinearInterpolation ? GL4.GL_LINEAR
@@ -421,12 +413,17 @@ public class GLTexture implements GLInterface, GLCloseable {
 					GL4.GL_CLAMP_TO_EDGE);
 
 			mGL.glTexStorage3D(mTextureTarget,
-					1,
+					mMipMapLevels,
 					mTextureOpenGLInternalFormat,
 					mTextureWidth,
 					mTextureHeight,
 					mTextureDepth);
 		}
+
+		mAllocation = GLMemoryRegistry.getDefault()
+				.register(this,
+						GLMemoryRegistry.Category.Texture,
+						getSizeInBytes());
 	}
 
 	public GLTexture(final GL4 pGL,
@@ -455,6 +452,7 @@ public class GLTexture implements GLInterface, GLCloseable {
 
 	public void delete() {
 		mGL.glDeleteTextures(1, mTextureId, 0);
+		mAllocation.release();
 	}
 
 	@SafeVarargs
@@ -474,11 +472,33 @@ public class GLTexture implements GLInterface, GLCloseable {
 	public void bind() {
 		mGL.glActiveTexture(GL4.GL_TEXTURE0);
 		mGL.glBindTexture(mTextureTarget, getId());
+		touch();
 	}
 
 	public void bind(final int pTextureUnit) {
 		mGL.glActiveTexture(GL4.GL_TEXTURE0 + pTextureUnit);
 		mGL.glBindTexture(mTextureTarget, getId());
+		touch();
+	}
+
+	private void touch() {
+		// the constructor binds before the texture is registered
+		if (mAllocation != null)
+			mAllocation.touch();
+	}
+
+	public void setLinearInterpolation(final boolean pLinearInterpolation) {
+		bind();
+		mGL.glTexParameteri(mTextureTarget,
+				GL4.GL_TEXTURE_MIN_FILTER,
+				mMipMapLevels > 1 ? (pLinearInterpolation ? GL4.GL_LINEAR_MIPMAP_LINEAR
+						: GL4.GL_NEAREST_MIPMAP_NEAREST)
+						: (pLinearInterpolation ? GL4.GL_LINEAR
+								: GL4.GL_NEAREST));
+		mGL.glTexParameteri(mTextureTarget,
+				GL4.GL_TEXTURE_MAG_FILTER,
+				pLinearInterpolation ? GL4.GL_LINEAR
+						: GL4.GL_NEAREST);
 	}
 
 	public void setClamp(final boolean clampS, final boolean clampT) {
@@ -560,18 +580,55 @@ public class GLTexture implements GLInterface, GLCloseable {
 	}
 
 	public void copyFrom(final GLPixelBufferObject pPixelBufferObject) {
-		bind();
-		pPixelBufferObject.bind();
-		mGL.glTexSubImage2D(mTextureTarget,
-				0,
-				0,
+		copyFrom(pPixelBufferObject,
 				0,
 				mTextureWidth,
 				mTextureHeight,
-				mTextureOpenGLFormat,
-				mTextureOpenGLDataType,
-				0);
-		if (mMipMapLevels > 1)
+				mTextureDepth,
+				0,
+				0,
+				0,
+				true);
+	}
+
+	/**
+	 * Copies a region from a pixel buffer, starting pOffset bytes into it. The
+	 * transfer is executed by the GPU, so the call returns without waiting for
+	 * the data.
+	 */
+	public void copyFrom(final GLPixelBufferObject pPixelBufferObject,
+			final long pOffset,
+			final int width, final int height, final int depth,
+			final int x, final int y, final int z,
+			final boolean pAutoGenerateMipMaps) {
+		bind();
+		pPixelBufferObject.bind();
+
+		if (mTextureTarget == GL4.GL_TEXTURE_2D) {
+			mGL.glTexSubImage2D(mTextureTarget,
+					0,
+					x,
+					y,
+					width,
+					height,
+					mTextureOpenGLFormat,
+					mTextureOpenGLDataType,
+					pOffset);
+		} else {
+			mGL.glTexSubImage3D(mTextureTarget,
+					0,
+					x,
+					y,
+					z,
+					width,
+					height,
+					depth,
+					mTextureOpenGLFormat,
+					mTextureOpenGLDataType,
+					pOffset);
+		}
+
+		if (pAutoGenerateMipMaps && mMipMapLevels > 1)
 			updateMipMaps();
 
 		pPixelBufferObject.unbind();
@@ -588,8 +645,8 @@ public class GLTexture implements GLInterface, GLCloseable {
 					pLODLevel,
 					0,
 					0,
-					mTextureWidth >> pLODLevel,
-					mTextureHeight >> pLODLevel,
+					MipMapBuilder.getLevelSize(mTextureWidth, pLODLevel),
+					MipMapBuilder.getLevelSize(mTextureHeight, pLODLevel),
 					mTextureOpenGLFormat,
 					mTextureOpenGLDataType,
 					pBuffer);
@@ -599,17 +656,16 @@ public class GLTexture implements GLInterface, GLCloseable {
 					0,
 					0,
 					0,
-					mTextureWidth >> pLODLevel,
-					mTextureHeight >> pLODLevel,
-					mTextureDepth >> pLODLevel,
+					MipMapBuilder.getLevelSize(mTextureWidth, pLODLevel),
+					MipMapBuilder.getLevelSize(mTextureHeight, pLODLevel),
+					MipMapBuilder.getLevelSize(mTextureDepth, pLODLevel),
 					mTextureOpenGLFormat,
 					mTextureOpenGLDataType,
 					pBuffer);
 		}
 
-		if (pAutoGenerateMipMaps && mMipMapLevels > 1 && mTextureTarget == GL4.GL_TEXTURE_2D) {
+		if (pAutoGenerateMipMaps && mMipMapLevels > 1)
 			updateMipMaps();
-		}
 	}
 
 	public void copyFrom(final Buffer pBuffer,
@@ -643,18 +699,123 @@ public class GLTexture implements GLInterface, GLCloseable {
 					pBuffer);
 		}
 
-		if (pAutoGenerateMipMaps && mMipMapLevels > 1 && mTextureTarget == GL4.GL_TEXTURE_2D) {
+		if (pAutoGenerateMipMaps && mMipMapLevels > 1)
 			updateMipMaps();
-		}
 	}
 
 	public void copyFrom(final Buffer pBuffer) {
 		copyFrom(pBuffer, 0, true);
 	}
 
+	/**
+	 * Uploads 32 bit floats to level 0. Half float textures convert them on
+	 * the CPU first, so that only half the bytes are transferred.
+	 */
+	public void copyFromFloats(final FloatBuffer pBuffer) {
+		if (mType != GLTypeEnum.HalfFloat) {
+			copyFrom(pBuffer);
+			return;
+		}
+
+		pBuffer.rewind();
+		final int lSizeInBytes = 2 * pBuffer.remaining();
+		if (mHalfFloatBuffer == null || mHalfFloatBuffer.capacity() < lSizeInBytes)
+			mHalfFloatBuffer = ByteBuffer.allocateDirect(lSizeInBytes)
+					.order(ByteOrder.nativeOrder());
+		mHalfFloatBuffer.clear();
+		mHalfFloatBuffer.limit(lSizeInBytes);
+		HalfFloatConverter.toHalf(pBuffer, mHalfFloatBuffer.asShortBuffer());
+		copyFrom(mHalfFloatBuffer);
+	}
+
+	/**
+	 * Uploads precomputed levels, starting with level 0, e.g. from
+	 * {@link MipMapBuilder#build}. Levels beyond the allocated ones are
+	 * ignored.
+	 */
+	public void copyMipMapsFrom(final Buffer[] pLevels) {
+		for (int l = 0; l < Math.min(pLevels.length, mMipMapLevels); l++)
+			copyFrom(pLevels[l], l, false);
+	}
+
+	/**
+	 * Uploads pLevel0 and all further allocated levels, downsampled on the
+	 * CPU with pFilter instead of glGenerateMipmap.
+	 */
+	public void copyFromWithMipMaps(final ByteBuffer pLevel0,
+			final MipMapBuilder.Filter pFilter) {
+		copyMipMapsFrom(MipMapBuilder.build(pLevel0,
+				mType,
+				mNumberOfChannels,
+				mTextureWidth,
+				mTextureHeight,
+				mTextureDepth,
+				mMipMapLevels,
+				pFilter));
+	}
+
+	/**
+	 * Creates a 2D or 3D texture with the full mip-map chain down to 1x1(x1)
+	 * and uploads pLevel0 and its levels computed by the given filter.
+	 */
+	public static GLTexture createWithMipMaps(final GL4 pGL,
+			final GLTypeEnum pType,
+			final int pNumberOfChannels,
+			final int pTextureWidth,
+			final int pTextureHeight,
+			final int pTextureDepth,
+			final boolean pLinearInterpolation,
+			final ByteBuffer pLevel0,
+			final MipMapBuilder.Filter pFilter) {
+		final GLTexture lTexture = new GLTexture(pGL,
+				pType,
+				pNumberOfChannels,
+				pTextureWidth,
+				pTextureHeight,
+				pTextureDepth,
+				pLinearInterpolation,
+				MipMapBuilder.getLevelCount(pTextureWidth,
+						pTextureHeight,
+						pTextureDepth));
+		lTexture.copyFromWithMipMaps(pLevel0, pFilter);
+		return lTexture;
+	}
+
 	@Override
 	public void close() throws GLException {
 		mGL.glDeleteTextures(1, mTextureId, 0);
+		mAllocation.release();
+		mHalfFloatBuffer = null;
+	}
+
+	/**
+	 * Estimated GPU memory of all mip-map levels, from the internal format.
+	 */
+	public long getSizeInBytes() {
+		// depth textures have a single channel, half floats are uploaded from
+		// 4 byte floats but stored with 2 bytes
+		final int lChannels = Math.max(1, mNumberOfChannels);
+		final int lBytesPerChannel;
+		switch (mTextureOpenGLInternalFormat) {
+			case GL4.GL_RG16F:
+			case GL4.GL_RGB16F:
+			case GL4.GL_RGBA16F:
+				lBytesPerChannel = 2;
+				break;
+			default:
+				lBytesPerChannel = mBytesPerChannel;
+		}
+
+		long lSize = 0;
+		for (int l = 0; l < mMipMapLevels; l++)
+			lSize += (long) MipMapBuilder.getLevelSize(mTextureWidth, l) * MipMapBuilder.getLevelSize(mTextureHeight,
+					l)
+					* MipMapBuilder.getLevelSize(mTextureDepth, l);
+		return lSize * lChannels * lBytesPerChannel;
+	}
+
+	public GLMemoryRegistry.Allocation getMemoryAllocation() {
+		return mAllocation;
 	}
 
 	public int getWidth() {
@@ -669,6 +830,10 @@ public class GLTexture implements GLInterface, GLCloseable {
 		return mTextureDepth;
 	}
 
+	public int getMipMapLevels() {
+		return mMipMapLevels;
+	}
+
 	public int getType() {
 		return mTextureOpenGLDataType;
 	}
@@ -701,6 +866,10 @@ public class GLTexture implements GLInterface, GLCloseable {
 		return msRGB;
 	}
 
+	public boolean isNormalized() {
+		return mNormalized;
+	}
+
 	@Override
 	public GL4 getGL() {
 		return mGL.getGL().getGL4();
@@ -745,190 +914,32 @@ public class GLTexture implements GLInterface, GLCloseable {
 
 	public static GLTexture loadFromFile(final GL4 gl, final String filename, final boolean linearInterpolation,
 			final boolean generateMipmaps, final int maxMipmapLevels) throws FileNotFoundException {
-		FileInputStream inputStream = new FileInputStream(filename);
+		final FileInputStream inputStream = new FileInputStream(filename);
 		final String type = filename.substring(filename.lastIndexOf('.')).toLowerCase();
 
-		return loadFromFile(gl, inputStream, type, linearInterpolation, generateMipmaps, maxMipmapLevels);
-	}
-
-	public static GLTexture loadFromFile(final GL4 gl, final InputStream input, final String type,
-			final boolean linearInterpolation,
-			final boolean generateMipmaps, final int maxMipmapLevels) {
-		BufferedImage bi;
-		BufferedImage flippedImage;
-		final ByteBuffer imageData;
-		FileInputStream fis = null;
-		FileChannel channel = null;
-		int[] pixels = null;
-		GLTexture tex;
-
-		if (type.toLowerCase().endsWith("tga")) {
-			byte[] buffer = null;
-
-			try {
-				BufferedInputStream s = new BufferedInputStream(input);
-				buffer = new byte[s.available()];
-				s.read(buffer);
-				s.close();
-
-				pixels = TGAReader.read(buffer, TGAReader.ARGB);
-				final int width = TGAReader.getWidth(buffer);
-				final int height = TGAReader.getHeight(buffer);
-				bi = new BufferedImage(width, height, BufferedImage.TYPE_INT_ARGB);
-				bi.setRGB(0, 0, width, height, pixels, 0, width);
-			} catch (final Exception e) {
-				System.err.println("GLTexture: could not read image from TGA");
-				return null;
-			}
-		} else {
+		try {
+			return loadFromFile(gl, inputStream, type, linearInterpolation, generateMipmaps, maxMipmapLevels);
+		} finally {
 			try {
-				bi = ImageIO.read(input);
-
-			} catch (final Exception e) {
-				System.err.println("GLTexture: could not read image." + e.getMessage());
-				return null;
-			}
-		}
-
-		// convert to OpenGL UV space
-		flippedImage = createFlipped(bi);
-		imageData = bufferedImageToRGBABuffer(flippedImage);
-
-		int texWidth = 2;
-		int texHeight = 2;
-
-		while (texWidth < bi.getWidth()) {
-			texWidth *= 2;
-		}
-		while (texHeight < bi.getHeight()) {
-			texHeight *= 2;
-		}
-
-		int levels = Math.min(maxMipmapLevels,
-				1 + (int) Math.floor(Math.log(Math.max(texWidth, texHeight) / Math.log(2.0))));
-
-		if (!generateMipmaps) {
-			levels = 1;
-		}
-
-		int channelCount = bi.getColorModel().getNumComponents();
-
-		// work around a Java2D issue
-		if (channelCount == 3 && type.toLowerCase().endsWith("png")) {
-			channelCount = 4;
-		}
-
-		tex = new GLTexture(gl,
-				nativeTypeEnumFromBufferedImage(bi),
-				channelCount,
-				texWidth, texHeight, 1,
-				linearInterpolation,
-				levels,
-				32,
-				true,
-				flippedImage.getColorModel().getColorSpace().isCS_sRGB());
-
-		tex.clear();
-		tex.copyFrom(imageData);
-		tex.updateMipMaps();
-
-		return tex;
-	}
-
-	private static GLTypeEnum nativeTypeEnumFromBufferedImage(final BufferedImage bi) {
-		switch (bi.getData().getDataBuffer().getDataType()) {
-			case DataBuffer.TYPE_BYTE: {
-				return GLTypeEnum.UnsignedByte;
-			}
-			case DataBuffer.TYPE_DOUBLE: {
-				return GLTypeEnum.Double;
-			}
-			case DataBuffer.TYPE_INT: {
-				return GLTypeEnum.UnsignedByte;
+				inputStream.close();
+			} catch (final IOException e) {
+				// the image has been read already
 			}
-			case DataBuffer.TYPE_SHORT: {
-				return GLTypeEnum.Short;
-			}
-			default:
-				return null;
 		}
 	}
 
-	private static ByteBuffer bufferedImageToRGBABuffer(final BufferedImage bufferedImage) {
-		ByteBuffer imageBuffer;
-		WritableRaster raster;
-		BufferedImage texImage;
-		final ColorModel rgbColorModel;
-		final ColorModel rgbaColorModel;
-
-		int texWidth = 2;
-		int texHeight = 2;
-
-		while (texWidth < bufferedImage.getWidth()) {
-			texWidth *= 2;
-		}
-		while (texHeight < bufferedImage.getHeight()) {
-			texHeight *= 2;
-		}
-
-		if(bufferedImage.getColorModel().getColorSpace().isCS_sRGB()) {
-		    rgbColorModel = glColorModelsRGB;
-			rgbaColorModel = glAlphaColorModelsRGB;
-		} else {
-			rgbColorModel = glColorModel;
-			rgbaColorModel = glAlphaColorModel;
-		}
-
-		if (bufferedImage.getColorModel().hasAlpha()) {
-			raster = Raster.createInterleavedRaster(DataBuffer.TYPE_BYTE, texWidth, texHeight, 4, null);
-			texImage = new BufferedImage(rgbaColorModel, raster, false, new Hashtable<>());
-		} else {
-			raster = Raster.createInterleavedRaster(DataBuffer.TYPE_BYTE, texWidth, texHeight, 3, null);
-			texImage = new BufferedImage(rgbColorModel, raster, false, new Hashtable<>());
+	public static GLTexture loadFromFile(final GL4 gl, final InputStream input, final String type,
+			final boolean linearInterpolation,
+			final boolean generateMipmaps, final int maxMipmapLevels) {
+		final TextureLoader.TextureData data;
+		try {
+			data = TextureLoader.decode(input, type, type);
+		} catch (final IOException e) {
+			System.err.println("GLTexture: could not read image." + e.getMessage());
+			return null;
 		}
 
-		final Graphics g = texImage.getGraphics();
-		g.setColor(new Color(0.0f, 0.0f, 0.0f, 1.0f));
-		g.fillRect(0, 0, texWidth, texHeight);
-		g.drawImage(bufferedImage, 0, 0, null);
-		g.dispose();
-
-		final byte[] data = ((DataBufferByte) texImage.getRaster().getDataBuffer()).getData();
-
-		imageBuffer = ByteBuffer.allocateDirect(data.length);
-		imageBuffer.order(ByteOrder.nativeOrder());
-		imageBuffer.put(data, 0, data.length);
-		imageBuffer.rewind();
-
-		return imageBuffer;
-	}
-
-	// the following three routines are from
-	// http://stackoverflow.com/a/23458883/2129040,
-	// authored by MarcoG
-	private static BufferedImage createFlipped(final BufferedImage image) {
-		final AffineTransform at = new AffineTransform();
-		at.concatenate(AffineTransform.getScaleInstance(1, -1));
-		at.concatenate(AffineTransform.getTranslateInstance(0, -image.getHeight()));
-		return createTransformed(image, at);
-	}
-
-	private static BufferedImage createRotated(final BufferedImage image) {
-		final AffineTransform at = AffineTransform.getRotateInstance(
-				Math.PI, image.getWidth() / 2, image.getHeight() / 2.0);
-		return createTransformed(image, at);
-	}
-
-	private static BufferedImage createTransformed(
-			final BufferedImage image, final AffineTransform at) {
-		final BufferedImage newImage = new BufferedImage(
-				image.getWidth(), image.getHeight(),
-				BufferedImage.TYPE_INT_ARGB);
-		final Graphics2D g = newImage.createGraphics();
-		g.transform(at);
-		g.drawImage(image, 0, 0, null);
-		g.dispose();
-		return newImage;
+		return data.createTexture(gl, linearInterpolation, generateMipmaps, maxMipmapLevels);
 	}
 
 }
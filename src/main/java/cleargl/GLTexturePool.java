@@ -0,0 +1,442 @@
+package cleargl;
+
+import java.util.ArrayDeque;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Objects;
+import java.util.function.LongSupplier;
+import com.jogamp.opengl.GL4;
+import com.jogamp.opengl.GLException;
+
+/**
+ * Keeps released textures for reuse instead of deleting them, so that
+ * transient textures and framebuffer attachments that are recreated with the
+ * same storage do not go through the driver's allocator each time. Textures
+ * are matched by GL context, target, internal format, size and mip-map level
+ * count; a reused texture keeps its contents and parameters except for the
+ * filtering, which is set again.
+ *
+ * Idle textures are closed when they exceed the count or byte capacity,
+ * oldest first, or when they have been idle for longer than the idle time.
+ * Like the textures themselves, the pool must only be used on the GL thread.
+ */
+public class GLTexturePool implements GLCloseable {
+
+	/**
+	 * Storage of a texture.
+	 */
+	public static final class Key {
+		private final GL4 mGL;
+		private final int mTarget;
+		private final int mInternalFormat;
+		private final int mWidth;
+		private final int mHeight;
+		private final int mDepth;
+		private final int mMipMapLevels;
+
+		public Key(final GL4 pGL,
+				final int pTarget,
+				final int pInternalFormat,
+				final int pWidth,
+				final int pHeight,
+				final int pDepth,
+				final int pMipMapLevels) {
+			mGL = pGL;
+			mTarget = pTarget;
+			mInternalFormat = pInternalFormat;
+			mWidth = pWidth;
+			mHeight = pHeight;
+			mDepth = pDepth;
+			mMipMapLevels = pMipMapLevels;
+		}
+
+		public static Key of(final GLTexture pTexture) {
+			return new Key(pTexture.getGL(),
+					pTexture.getTextureTarget(),
+					pTexture.getInternalFormat(),
+					pTexture.getWidth(),
+					pTexture.getHeight(),
+					pTexture.getDepth(),
+					pTexture.getMipMapLevels());
+		}
+
+		@Override
+		public boolean equals(final Object pObject) {
+			if (!(pObject instanceof Key))
+				return false;
+			final Key lKey = (Key) pObject;
+			return mGL == lKey.mGL && mTarget == lKey.mTarget
+					&& mInternalFormat == lKey.mInternalFormat
+					&& mWidth == lKey.mWidth
+					&& mHeight == lKey.mHeight
+					&& mDepth == lKey.mDepth
+					&& mMipMapLevels == lKey.mMipMapLevels;
+		}
+
+		@Override
+		public int hashCode() {
+			return Objects.hash(System.identityHashCode(mGL),
+					mTarget,
+					mInternalFormat,
+					mWidth,
+					mHeight,
+					mDepth,
+					mMipMapLevels);
+		}
+
+		@Override
+		public String toString() {
+			return "Key [mTarget=" + mTarget
+					+ ", mInternalFormat="
+					+ mInternalFormat
+					+ ", mWidth="
+					+ mWidth
+					+ ", mHeight="
+					+ mHeight
+					+ ", mDepth="
+					+ mDepth
+					+ ", mMipMapLevels="
+					+ mMipMapLevels
+					+ "]";
+		}
+	}
+
+	/**
+	 * Constructor arguments that determine the internal format; the format
+	 * itself is only known once a texture was created with them.
+	 */
+	private static final class Format {
+		private final GLTypeEnum mType;
+		private final int mChannels;
+		private final boolean mVolume;
+		private final int mPrecision;
+		private final boolean mNormalized;
+		private final boolean msRGB;
+
+		private Format(final GLTypeEnum pType,
+				final int pChannels,
+				final boolean pVolume,
+				final int pPrecision,
+				final boolean pNormalized,
+				final boolean psRGB) {
+			mType = pType;
+			mChannels = pChannels;
+			mVolume = pVolume;
+			mPrecision = pPrecision;
+			mNormalized = pNormalized;
+			msRGB = psRGB;
+		}
+
+		@Override
+		public boolean equals(final Object pObject) {
+			if (!(pObject instanceof Format))
+				return false;
+			final Format lFormat = (Format) pObject;
+			return mType == lFormat.mType && mChannels == lFormat.mChannels
+					&& mVolume == lFormat.mVolume
+					&& mPrecision == lFormat.mPrecision
+					&& mNormalized == lFormat.mNormalized
+					&& msRGB == lFormat.msRGB;
+		}
+
+		@Override
+		public int hashCode() {
+			return Objects.hash(mType,
+					mChannels,
+					mVolume,
+					mPrecision,
+					mNormalized,
+					msRGB);
+		}
+	}
+
+	private static final class Idle {
+		private final GLTexture mTexture;
+		private final long mReleaseTime;
+
+		private Idle(final GLTexture pTexture, final long pReleaseTime) {
+			mTexture = pTexture;
+			mReleaseTime = pReleaseTime;
+		}
+	}
+
+	private static final GLTexturePool cDefault = new GLTexturePool(32,
+			256L << 20,
+			5000);
+
+	private final Map<Key, ArrayDeque<Idle>> mIdle = new HashMap<>();
+	// all idle textures in release order, for capacity and idle time eviction
+	private final LinkedHashMap<GLTexture, Key> mIdleOrder = new LinkedHashMap<>();
+	private final Map<Format, Integer> mInternalFormats = new HashMap<>();
+	private final LongSupplier mClock;
+
+	private int mMaxIdleCount;
+	private long mMaxIdleBytes;
+	private long mMaxIdleMillis;
+	private long mIdleBytes;
+	private long mHitCount;
+	private long mMissCount;
+	private long mEvictionCount;
+
+	/**
+	 * Shared pool, e.g. for framebuffers that switch between a few sizes, see
+	 * {@link GLFramebuffer#setTexturePool(GLTexturePool)}.
+	 */
+	public static GLTexturePool getDefault() {
+		return cDefault;
+	}
+
+	public GLTexturePool(final int pMaxIdleCount,
+			final long pMaxIdleBytes,
+			final long pMaxIdleMillis) {
+		this(pMaxIdleCount,
+				pMaxIdleBytes,
+				pMaxIdleMillis,
+				() -> System.nanoTime() / 1000000);
+	}
+
+	GLTexturePool(final int pMaxIdleCount,
+			final long pMaxIdleBytes,
+			final long pMaxIdleMillis,
+			final LongSupplier pClockMillis) {
+		mMaxIdleCount = pMaxIdleCount;
+		mMaxIdleBytes = pMaxIdleBytes;
+		mMaxIdleMillis = pMaxIdleMillis;
+		mClock = pClockMillis;
+	}
+
+	public GLTexture acquire(final GL4 pGL,
+			final GLTypeEnum pType,
+			final int pNumberOfChannels,
+			final int pTextureWidth,
+			final int pTextureHeight,
+			final int pTextureDepth,
+			final boolean pLinearInterpolation,
+			final int pMipMapLevels,
+			final int pPrecision) {
+		return acquire(pGL,
+				pType,
+				pNumberOfChannels,
+				pTextureWidth,
+				pTextureHeight,
+				pTextureDepth,
+				pLinearInterpolation,
+				pMipMapLevels,
+				pPrecision,
+				true,
+				false);
+	}
+
+	/**
+	 * Returns an idle texture with the storage the GLTexture constructor would
+	 * create for these arguments, or a new texture if there is none.
+	 */
+	public GLTexture acquire(final GL4 pGL,
+			final GLTypeEnum pType,
+			final int pNumberOfChannels,
+			final int pTextureWidth,
+			final int pTextureHeight,
+			final int pTextureDepth,
+			final boolean pLinearInterpolation,
+			final int pMipMapLevels,
+			final int pPrecision,
+			final boolean pNormalized,
+			final boolean psRGB) {
+		evictIdle();
+
+		final Format lFormat = new Format(pType,
+				pNumberOfChannels,
+				pTextureDepth > 1,
+				pPrecision,
+				pNormalized,
+				psRGB);
+		final Integer lInternalFormat = mInternalFormats.get(lFormat);
+		if (lInternalFormat != null) {
+			final GLTexture lTexture = take(new Key(pGL,
+					pTextureDepth == 1 ? GL4.GL_TEXTURE_2D : GL4.GL_TEXTURE_3D,
+					lInternalFormat,
+					pTextureWidth,
+					pTextureHeight,
+					pTextureDepth,
+					pMipMapLevels));
+			if (lTexture != null) {
+				mHitCount++;
+				lTexture.setLinearInterpolation(pLinearInterpolation);
+				return lTexture;
+			}
+		}
+
+		mMissCount++;
+		final GLTexture lTexture = new GLTexture(pGL,
+				pType,
+				pNumberOfChannels,
+				pTextureWidth,
+				pTextureHeight,
+				pTextureDepth,
+				pLinearInterpolation,
+				pMipMapLevels,
+				pPrecision,
+				pNormalized,
+				psRGB);
+		mInternalFormats.put(lFormat, lTexture.getInternalFormat());
+		return lTexture;
+	}
+
+	/**
+	 * Returns an idle texture with the given storage, or null.
+	 */
+	public GLTexture take(final Key pKey) {
+		final ArrayDeque<Idle> lQueue = mIdle.get(pKey);
+		while (lQueue != null && !lQueue.isEmpty()) {
+			// most recently released first, the oldest ones expire
+			final GLTexture lTexture = lQueue.pollLast().mTexture;
+			removeIdle(lTexture);
+			// the memory registry may have closed it meanwhile
+			if (!lTexture.getMemoryAllocation().isReleased())
+				return lTexture;
+		}
+		return null;
+	}
+
+	/**
+	 * Hands a texture back for reuse; it must not be used by the caller
+	 * anymore. Textures that are already in the pool are ignored.
+	 */
+	public void release(final GLTexture pTexture) {
+		if (mIdleOrder.containsKey(pTexture)
+				|| pTexture.getMemoryAllocation().isReleased())
+			return;
+
+		// idle attachments may be evicted by the memory registry, too
+		pTexture.getMemoryAllocation()
+				.setCategory(GLMemoryRegistry.Category.Texture);
+		final Key lKey = Key.of(pTexture);
+		mIdle.computeIfAbsent(lKey, k -> new ArrayDeque<>())
+				.addLast(new Idle(pTexture, mClock.getAsLong()));
+		mIdleOrder.put(pTexture, lKey);
+		mIdleBytes += pTexture.getSizeInBytes();
+
+		while (mIdleOrder.size() > mMaxIdleCount || mIdleBytes > mMaxIdleBytes)
+			evictOldest();
+		evictIdle();
+	}
+
+	/**
+	 * Closes textures that have been idle for longer than the idle time, and
+	 * returns their number. Also called by acquire and release.
+	 */
+	public int evictIdle() {
+		final long lNow = mClock.getAsLong();
+		int lEvicted = 0;
+		while (!mIdleOrder.isEmpty()) {
+			final Map.Entry<GLTexture, Key> lOldest = mIdleOrder.entrySet()
+					.iterator()
+					.next();
+			final Idle lIdle = mIdle.get(lOldest.getValue()).peekFirst();
+			if (lNow - lIdle.mReleaseTime <= mMaxIdleMillis)
+				break;
+			evictOldest();
+			lEvicted++;
+		}
+		return lEvicted;
+	}
+
+	private void evictOldest() {
+		final Iterator<Map.Entry<GLTexture, Key>> lIterator = mIdleOrder.entrySet()
+				.iterator();
+		final Map.Entry<GLTexture, Key> lOldest = lIterator.next();
+		final GLTexture lTexture = lOldest.getKey();
+		// the oldest texture overall is also the oldest of its key
+		mIdle.get(lOldest.getValue()).pollFirst();
+		removeIdle(lTexture);
+		if (!lTexture.getMemoryAllocation().isReleased())
+			lTexture.close();
+		mEvictionCount++;
+	}
+
+	private void removeIdle(final GLTexture pTexture) {
+		final Key lKey = mIdleOrder.remove(pTexture);
+		mIdleBytes -= pTexture.getSizeInBytes();
+		final ArrayDeque<Idle> lQueue = mIdle.get(lKey);
+		if (lQueue != null && lQueue.isEmpty())
+			mIdle.remove(lKey);
+	}
+
+	/**
+	 * Closes all idle textures.
+	 */
+	public void clear() {
+		while (!mIdleOrder.isEmpty())
+			evictOldest();
+	}
+
+	@Override
+	public void close() throws GLException {
+		clear();
+	}
+
+	public int getIdleCount() {
+		return mIdleOrder.size();
+	}
+
+	public long getIdleBytes() {
+		return mIdleBytes;
+	}
+
+	public long getHitCount() {
+		return mHitCount;
+	}
+
+	public long getMissCount() {
+		return mMissCount;
+	}
+
+	public long getEvictionCount() {
+		return mEvictionCount;
+	}
+
+	public int getMaxIdleCount() {
+		return mMaxIdleCount;
+	}
+
+	public void setMaxIdleCount(final int pMaxIdleCount) {
+		mMaxIdleCount = pMaxIdleCount;
+		while (mIdleOrder.size() > mMaxIdleCount)
+			evictOldest();
+	}
+
+	public long getMaxIdleBytes() {
+		return mMaxIdleBytes;
+	}
+
+	public void setMaxIdleBytes(final long pMaxIdleBytes) {
+		mMaxIdleBytes = pMaxIdleBytes;
+		while (mIdleBytes > mMaxIdleBytes)
+			evictOldest();
+	}
+
+	public long getMaxIdleMillis() {
+		return mMaxIdleMillis;
+	}
+
+	public void setMaxIdleMillis(final long pMaxIdleMillis) {
+		mMaxIdleMillis = pMaxIdleMillis;
+	}
+
+	@Override
+	public String toString() {
+		return "GLTexturePool [mIdleCount=" + mIdleOrder.size()
+				+ ", mIdleBytes="
+				+ mIdleBytes
+				+ ", mHitCount="
+				+ mHitCount
+				+ ", mMissCount="
+				+ mMissCount
+				+ ", mEvictionCount="
+				+ mEvictionCount
+				+ "]";
+	}
+
+}
@@ -8,8 +8,7 @@ public enum GLTypeEnum {
 			GL2ES2.GL_INT), UnsignedInt(GL.GL_UNSIGNED_INT),
 	// Long(-1),
 	// UnsignedLong(-1),
-	// HalfFloat(-1),
-	Float(GL.GL_FLOAT), Double(-1);
+	HalfFloat(GL.GL_HALF_FLOAT), Float(GL.GL_FLOAT), Double(-1);
 
 	private final int type;
 
@@ -6,6 +6,7 @@ import com.jogamp.opengl.GL;
 public class GLUniform implements GLInterface {
 	private final GLProgram mGlProgram;
 	private final int mUniformId;
+	private float[] mMatrixScratch;
 
 	public GLUniform(final GLProgram pGlProgram, final int pUniformId) {
 		mGlProgram = pGlProgram;
@@ -44,6 +45,24 @@ public class GLUniform implements GLInterface {
 				FloatBuffer.wrap(matrix.getFloatArray()));
 	}
 
+	public void setFloatMatrix3(final float[] pMatrix3,
+			final boolean pTranspose) {
+		mGlProgram.bind();
+		mGlProgram.getGL()
+				.getGL3()
+				.glUniformMatrix3fv(mUniformId,
+						1,
+						pTranspose,
+						pMatrix3,
+						0);
+	}
+
+	public void setFloatMatrix(final Mat4f pMatrix, final boolean pTranspose) {
+		if (mMatrixScratch == null)
+			mMatrixScratch = new float[16];
+		setFloatMatrix(pMatrix.get(mMatrixScratch, 0), pTranspose);
+	}
+
 	public void setFloatVector2(final float... pVector2) {
 		setFloatVector2(FloatBuffer.wrap(pVector2));
 	}
@@ -80,6 +99,16 @@ public class GLUniform implements GLInterface {
 		}
 	}
 
+	public void setFloatVector(final Vec3f pVector) {
+		mGlProgram.bind();
+		mGlProgram.getGL().getGL3().glUniform3f(mUniformId, pVector.x, pVector.y, pVector.z);
+	}
+
+	public void setFloatVector(final Vec4f pVector) {
+		mGlProgram.bind();
+		mGlProgram.getGL().getGL3().glUniform4f(mUniformId, pVector.x, pVector.y, pVector.z, pVector.w);
+	}
+
 	public void setFloatVector4(final float... pVector4) {
 		setFloatVector4(FloatBuffer.wrap(pVector4));
 	}
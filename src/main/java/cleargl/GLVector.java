@@ -5,7 +5,6 @@ import java.nio.ByteBuffer;
 import java.nio.FloatBuffer;
 import java.util.Arrays;
 import com.jogamp.opengl.math.Quaternion;
-import com.jogamp.opengl.math.VectorUtil;
 
 /*
 @author Ulrik Günther, Loïc Royer
@@ -60,7 +59,7 @@ public class GLVector implements Serializable {
 	}
 
 	public GLVector xyz() {
-		return new GLVector(mElements[0], mElements[1], mElements[2]);
+		return xyz(this, new GLVector(0.0f, 3));
 	}
 
 	public GLVector xyzw() {
@@ -92,15 +91,11 @@ public class GLVector implements Serializable {
 	}
 
 	public GLVector minus(final GLVector pGLVector) {
-		final GLVector lMinus = this.clone();
-		lMinus.minusAssign(pGLVector);
-		return lMinus;
+		return minus(this, pGLVector, new GLVector(0.0f, mDimension));
 	}
 
 	public GLVector plus(final GLVector pGLVector) {
-		final GLVector lPlus = this.clone();
-		lPlus.plusAssign(pGLVector);
-		return lPlus;
+		return plus(this, pGLVector, new GLVector(0.0f, mDimension));
 	}
 
 	public void minusAssign(final GLVector pGLVector) {
@@ -130,21 +125,11 @@ public class GLVector implements Serializable {
 	}
 
 	public GLVector times(final Quaternion q) {
-		final float[] in = this.mElements.clone();
-		final float[] out = new float[mDimension];
-
-		q.rotateVector(out, 0, in, 0);
-
-		return new GLVector(out);
+		return times(this, q, new GLVector(0.0f, mDimension));
 	}
 
 	public GLVector times(final float num) {
-		final GLVector n = this.clone();
-		for (int i = 0; i < mDimension; i++) {
-			n.mElements[i] = num * n.mElements[i];
-		}
-
-		return n;
+		return times(this, num, new GLVector(0.0f, mDimension));
 	}
 
 	public GLVector hadamard(final GLVector pGLVector) {
@@ -152,21 +137,11 @@ public class GLVector implements Serializable {
 			throw new UnsupportedOperationException("Vectors do not have same dimension: " + this + " vs " + pGLVector);
 		}
 
-		GLVector result = this.clone();
-		for (int i = 0; i < mDimension; i++) {
-			result.mElements[i] *= pGLVector.mElements[i];
-		}
-
-		return result;
+		return hadamard(this, pGLVector, new GLVector(0.0f, mDimension));
 	}
 
 	public GLVector inverse() {
-		GLVector result = this.clone();
-		for (int i = 0; i < mDimension; i++) {
-			result.mElements[i] = 1.0f/result.mElements[i];
-		}
-
-		return result;
+		return inverse(this, new GLVector(0.0f, mDimension));
 	}
 
 	public float magnitude() {
@@ -195,14 +170,137 @@ public class GLVector implements Serializable {
 	}
 
 	public GLVector cross(final GLVector v) {
-		final float result[] = new float[3];
-		VectorUtil.crossVec3(result, this.toFloatBuffer().array(), v.toFloatBuffer().array());
-
-		return new GLVector(result);
+		return cross(this, v, new GLVector(0.0f, 3));
 	}
 
 	public GLVector getNormalized() {
-		return this.clone().normalize();
+		return normalize(this, new GLVector(0.0f, mDimension));
+	}
+
+	/*
+	 * Destination-passing variants: the result is written into pDestination,
+	 * which is also returned. pDestination may be one of the operands.
+	 */
+
+	public GLVector set(final GLVector pGLVector) {
+		checkDimension(pGLVector, this);
+		System.arraycopy(pGLVector.mElements, 0, mElements, 0, mDimension);
+		return this;
+	}
+
+	public static GLVector plus(final GLVector pA,
+			final GLVector pB,
+			final GLVector pDestination) {
+		checkDimension(pA, pDestination);
+		checkDimension(pB, pDestination);
+		final float[] a = pA.mElements;
+		final float[] b = pB.mElements;
+		final float[] d = pDestination.mElements;
+		for (int i = 0; i < pDestination.mDimension; i++)
+			d[i] = a[i] + b[i];
+		return pDestination;
+	}
+
+	public static GLVector minus(final GLVector pA,
+			final GLVector pB,
+			final GLVector pDestination) {
+		checkDimension(pA, pDestination);
+		checkDimension(pB, pDestination);
+		final float[] a = pA.mElements;
+		final float[] b = pB.mElements;
+		final float[] d = pDestination.mElements;
+		for (int i = 0; i < pDestination.mDimension; i++)
+			d[i] = a[i] - b[i];
+		return pDestination;
+	}
+
+	public static GLVector times(final GLVector pA,
+			final float pFactor,
+			final GLVector pDestination) {
+		checkDimension(pA, pDestination);
+		final float[] a = pA.mElements;
+		final float[] d = pDestination.mElements;
+		for (int i = 0; i < pDestination.mDimension; i++)
+			d[i] = pFactor * a[i];
+		return pDestination;
+	}
+
+	public static GLVector times(final GLVector pA,
+			final Quaternion pQuaternion,
+			final GLVector pDestination) {
+		checkDimension(pA, pDestination);
+		// rotateVector reads all input components before writing
+		pQuaternion.rotateVector(pDestination.mElements, 0, pA.mElements, 0);
+		return pDestination;
+	}
+
+	public static GLVector hadamard(final GLVector pA,
+			final GLVector pB,
+			final GLVector pDestination) {
+		checkDimension(pA, pDestination);
+		checkDimension(pB, pDestination);
+		final float[] a = pA.mElements;
+		final float[] b = pB.mElements;
+		final float[] d = pDestination.mElements;
+		for (int i = 0; i < pDestination.mDimension; i++)
+			d[i] = a[i] * b[i];
+		return pDestination;
+	}
+
+	public static GLVector inverse(final GLVector pA,
+			final GLVector pDestination) {
+		checkDimension(pA, pDestination);
+		final float[] a = pA.mElements;
+		final float[] d = pDestination.mElements;
+		for (int i = 0; i < pDestination.mDimension; i++)
+			d[i] = 1.0f / a[i];
+		return pDestination;
+	}
+
+	public static GLVector normalize(final GLVector pA,
+			final GLVector pDestination) {
+		checkDimension(pA, pDestination);
+		final float lFactor = 1f / pA.magnitude();
+		final float[] a = pA.mElements;
+		final float[] d = pDestination.mElements;
+		for (int i = 0; i < pDestination.mDimension; i++)
+			d[i] = a[i] * lFactor;
+		return pDestination;
+	}
+
+	public static GLVector cross(final GLVector pA,
+			final GLVector pB,
+			final GLVector pDestination) {
+		final float[] a = pA.mElements;
+		final float[] b = pB.mElements;
+		final float lX = a[1] * b[2] - a[2] * b[1];
+		final float lY = a[2] * b[0] - a[0] * b[2];
+		final float lZ = a[0] * b[1] - a[1] * b[0];
+
+		final float[] d = pDestination.mElements;
+		d[0] = lX;
+		d[1] = lY;
+		d[2] = lZ;
+		return pDestination;
+	}
+
+	public static GLVector xyz(final GLVector pA,
+			final GLVector pDestination) {
+		final float[] a = pA.mElements;
+		final float[] d = pDestination.mElements;
+		d[0] = a[0];
+		d[1] = a[1];
+		d[2] = a[2];
+		return pDestination;
+	}
+
+	private static void checkDimension(final GLVector pSource,
+			final GLVector pDestination) {
+		if (pSource.mDimension != pDestination.mDimension) {
+			throw new UnsupportedOperationException("Vectors do not have same dimension: " + pSource
+					+ " vs "
+					+ pDestination);
+		}
 	}
 
 	public FloatBuffer toFloatBuffer() {
@@ -0,0 +1,167 @@
+package cleargl;
+
+import java.io.Serializable;
+import java.util.Arrays;
+
+/**
+ * Double precision counterpart of {@link GLVector}, used together with
+ * {@link GLMatrixd} for world coordinates that do not fit into a float.
+ */
+public class GLVectord implements Serializable {
+	private static final long serialVersionUID = 1L;
+
+	protected final double[] mElements;
+	protected final int mDimension;
+
+	public GLVectord(final double... pElements) {
+		mElements = Arrays.copyOf(pElements, pElements.length);
+		mDimension = pElements.length;
+	}
+
+	public GLVectord(final double pElement, final int pDimension) {
+		mElements = new double[pDimension];
+		Arrays.fill(mElements, pElement);
+		mDimension = pDimension;
+	}
+
+	public GLVectord(final GLVector pGLVector) {
+		mDimension = pGLVector.getDimension();
+		mElements = new double[mDimension];
+		for (int i = 0; i < mDimension; i++)
+			mElements[i] = pGLVector.get(i);
+	}
+
+	@Override
+	public GLVectord clone() {
+		return new GLVectord(mElements);
+	}
+
+	public double x() {
+		return mElements[0];
+	}
+
+	public double y() {
+		return mElements[1];
+	}
+
+	public double z() {
+		return mElements[2];
+	}
+
+	public double w() {
+		return mElements[3];
+	}
+
+	public double get(final int pIndex) {
+		return mElements[pIndex];
+	}
+
+	public void set(final int pIndex, final double pValue) {
+		mElements[pIndex] = pValue;
+	}
+
+	public GLVectord set(final double... pElements) {
+		System.arraycopy(pElements, 0, mElements, 0, mDimension);
+		return this;
+	}
+
+	public int getDimension() {
+		return mDimension;
+	}
+
+	public double[] toDoubleArray() {
+		return mElements;
+	}
+
+	public GLVector toGLVector() {
+		return toGLVector(new GLVector(0.0f, mDimension));
+	}
+
+	public GLVector toGLVector(final GLVector pDestination) {
+		for (int i = 0; i < mDimension; i++)
+			pDestination.mElements[i] = (float) mElements[i];
+		return pDestination;
+	}
+
+	public double times(final GLVectord pGLVector) {
+		double lResult = 0;
+		for (int i = 0; i < mDimension; i++)
+			lResult += mElements[i] * pGLVector.mElements[i];
+		return lResult;
+	}
+
+	public double magnitude() {
+		return Math.sqrt(times(this));
+	}
+
+	public GLVectord normalize() {
+		return normalize(this, this);
+	}
+
+	public static GLVectord plus(final GLVectord pA,
+			final GLVectord pB,
+			final GLVectord pDestination) {
+		for (int i = 0; i < pDestination.mDimension; i++)
+			pDestination.mElements[i] = pA.mElements[i] + pB.mElements[i];
+		return pDestination;
+	}
+
+	public static GLVectord minus(final GLVectord pA,
+			final GLVectord pB,
+			final GLVectord pDestination) {
+		for (int i = 0; i < pDestination.mDimension; i++)
+			pDestination.mElements[i] = pA.mElements[i] - pB.mElements[i];
+		return pDestination;
+	}
+
+	public static GLVectord times(final GLVectord pA,
+			final double pFactor,
+			final GLVectord pDestination) {
+		for (int i = 0; i < pDestination.mDimension; i++)
+			pDestination.mElements[i] = pA.mElements[i] * pFactor;
+		return pDestination;
+	}
+
+	public static GLVectord normalize(final GLVectord pA,
+			final GLVectord pDestination) {
+		final double lMagnitude = pA.magnitude();
+		final double lFactor = lMagnitude == 0 ? 0 : 1.0 / lMagnitude;
+		return times(pA, lFactor, pDestination);
+	}
+
+	public static GLVectord cross(final GLVectord pA,
+			final GLVectord pB,
+			final GLVectord pDestination) {
+		final double[] a = pA.mElements;
+		final double[] b = pB.mElements;
+		final double lX = a[1] * b[2] - a[2] * b[1];
+		final double lY = a[2] * b[0] - a[0] * b[2];
+		final double lZ = a[0] * b[1] - a[1] * b[0];
+		pDestination.mElements[0] = lX;
+		pDestination.mElements[1] = lY;
+		pDestination.mElements[2] = lZ;
+		return pDestination;
+	}
+
+	@Override
+	public int hashCode() {
+		return 31 * Arrays.hashCode(mElements) + mDimension;
+	}
+
+	@Override
+	public boolean equals(final Object obj) {
+		if (this == obj)
+			return true;
+		if (obj == null || getClass() != obj.getClass())
+			return false;
+		final GLVectord other = (GLVectord) obj;
+		return mDimension == other.mDimension
+				&& Arrays.equals(mElements, other.mElements);
+	}
+
+	@Override
+	public String toString() {
+		return "[" + Arrays.toString(mElements) + "]";
+	}
+
+}
@@ -0,0 +1,368 @@
+package cleargl;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayDeque;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicReference;
+import com.jogamp.opengl.GL4;
+import com.jogamp.opengl.GLException;
+
+import cleargl.util.image.MipMapBuilder;
+
+/**
+ * Double buffered volume textures for time-lapse playback. Each channel has
+ * a front texture that is rendered and a back texture that the next
+ * timepoint is uploaded into, slab by slab through a ring of pixel buffers,
+ * so that no single frame pays for a whole volume. Once all slabs of all
+ * channels are uploaded, front and back are swapped at the next frame
+ * boundary.
+ *
+ * Timepoints are submitted from any thread; if one arrives while another is
+ * still waiting, the waiting one is dropped. {@link #update()} must be
+ * called once per frame on the GL thread before rendering. The slab copies
+ * into the pixel buffers run on the given executor, or on the GL thread if
+ * there is none.
+ * <pre>
+ * lSequence.submit(t, lChannel0, lChannel1);  // any thread
+ * lSequence.update();                         // GL thread, each frame
+ * lSequence.bind(0);
+ * </pre>
+ */
+public class GLVolumeSequence implements GLInterface, GLCloseable {
+
+	private static final class TimePoint {
+		private final int mIndex;
+		private final ByteBuffer[] mChannels;
+
+		private TimePoint(final int pIndex, final ByteBuffer[] pChannels) {
+			mIndex = pIndex;
+			mChannels = pChannels;
+		}
+	}
+
+	private static final class Staged {
+		private final GLPixelBufferRing.Slot mSlot;
+		private final int mChannel;
+		private final int mZ;
+		private final int mDepth;
+		private final CompletableFuture<Void> mFill;
+
+		private Staged(final GLPixelBufferRing.Slot pSlot,
+				final int pChannel,
+				final int pZ,
+				final int pDepth,
+				final CompletableFuture<Void> pFill) {
+			mSlot = pSlot;
+			mChannel = pChannel;
+			mZ = pZ;
+			mDepth = pDepth;
+			mFill = pFill;
+		}
+	}
+
+	private final GLTexture[] mFront;
+	private final GLTexture[] mBack;
+	private final GLPixelBufferRing mRing;
+	private final Executor mExecutor;
+	private final int mWidth;
+	private final int mHeight;
+	private final int mDepth;
+	private final long mSliceSizeInBytes;
+	private final int mSlabDepth;
+	private final int mSlabsPerChannel;
+
+	private final AtomicReference<TimePoint> mSubmitted = new AtomicReference<>();
+	private final ArrayDeque<Staged> mStaged = new ArrayDeque<>();
+	private TimePoint mUploading;
+	private int mNextSlab;
+	private int mSlabsPerFrame = 1;
+
+	private volatile int mFrontTimePoint = -1;
+	private long mSwapCount;
+	private long mDroppedCount;
+
+	/**
+	 * Creates front and back textures for pChannels channels of a pWidth x
+	 * pHeight x pDepth volume, and pBuffers pixel buffers of pSlabDepth
+	 * slices each.
+	 */
+	public GLVolumeSequence(final GL4 pGL,
+			final GLTypeEnum pType,
+			final int pChannels,
+			final int pWidth,
+			final int pHeight,
+			final int pDepth,
+			final boolean pLinearInterpolation,
+			final int pSlabDepth,
+			final int pBuffers,
+			final Executor pExecutor) {
+		if (pChannels < 1 || pSlabDepth < 1)
+			throw new IllegalArgumentException("Need at least one channel and slice per slab");
+		mWidth = pWidth;
+		mHeight = pHeight;
+		mDepth = pDepth;
+		mSlabDepth = Math.min(pSlabDepth, pDepth);
+		mSlabsPerChannel = (pDepth + mSlabDepth - 1) / mSlabDepth;
+		mSliceSizeInBytes = (long) pWidth * pHeight
+				* MipMapBuilder.getBytesPerChannel(pType);
+		mExecutor = pExecutor;
+
+		mFront = new GLTexture[pChannels];
+		mBack = new GLTexture[pChannels];
+		for (int c = 0; c < pChannels; c++) {
+			mFront[c] = new GLTexture(pGL,
+					pType,
+					1,
+					pWidth,
+					pHeight,
+					pDepth,
+					pLinearInterpolation,
+					1);
+			mBack[c] = new GLTexture(pGL,
+					pType,
+					1,
+					pWidth,
+					pHeight,
+					pDepth,
+					pLinearInterpolation,
+					1);
+		}
+		mRing = new GLPixelBufferRing(mFront[0],
+				pBuffers,
+				mSliceSizeInBytes * mSlabDepth);
+	}
+
+	/**
+	 * Queues a timepoint for upload, one buffer per channel holding the whole
+	 * volume from its position on. The buffers must not change until the
+	 * timepoint is in front or was dropped. Returns false if this replaced a
+	 * timepoint that had not started uploading yet.
+	 */
+	public boolean submit(final int pTimePoint, final ByteBuffer... pChannels) {
+		if (pChannels.length != mFront.length)
+			throw new IllegalArgumentException("Expected " + mFront.length
+					+ " channels, got "
+					+ pChannels.length);
+		for (final ByteBuffer lChannel : pChannels)
+			if (lChannel.remaining() < mSliceSizeInBytes * mDepth)
+				throw new IllegalArgumentException("Channel holds less than one volume");
+
+		final TimePoint lReplaced = mSubmitted.getAndSet(new TimePoint(pTimePoint,
+				pChannels.clone()));
+		if (lReplaced == null)
+			return true;
+		synchronized (this) {
+			mDroppedCount++;
+		}
+		return false;
+	}
+
+	/**
+	 * Advances the upload of the next timepoint by up to the configured
+	 * number of slabs and swaps front and back once it is complete. Call at
+	 * the start of each frame on the GL thread; returns true if the front
+	 * textures changed. If copying a slab failed, the timepoint is dropped and
+	 * the failure is rethrown as a CompletionException; the next call goes on
+	 * with the latest submitted timepoint.
+	 */
+	public boolean update() {
+		// hand filled pixel buffers to the GPU, in staging order
+		while (!mStaged.isEmpty() && mStaged.peekFirst().mSlot.isFilled()) {
+			final Staged lStaged = mStaged.pollFirst();
+			mRing.upload(lStaged.mSlot,
+					mBack[lStaged.mChannel],
+					mWidth,
+					mHeight,
+					lStaged.mDepth,
+					0,
+					0,
+					lStaged.mZ);
+		}
+		// a failed fill would otherwise stall the sequence forever
+		if (!mStaged.isEmpty() && mStaged.peekFirst().mFill.isCompletedExceptionally())
+			dropUploading();
+
+		boolean lSwapped = false;
+		if (mUploading != null && mNextSlab == mFront.length * mSlabsPerChannel
+				&& mStaged.isEmpty()) {
+			swap();
+			lSwapped = true;
+		}
+
+		if (mUploading == null) {
+			mUploading = mSubmitted.getAndSet(null);
+			mNextSlab = 0;
+		}
+
+		for (int i = 0; i < mSlabsPerFrame && mUploading != null
+				&& mNextSlab < mFront.length * mSlabsPerChannel; i++)
+			if (!stage(mUploading, mNextSlab))
+				break;
+			else
+				mNextSlab++;
+
+		return lSwapped;
+	}
+
+	private boolean stage(final TimePoint pTimePoint, final int pSlab) {
+		final GLPixelBufferRing.Slot lSlot = mRing.acquire();
+		if (lSlot == null)
+			return false;
+
+		final int lChannel = pSlab / mSlabsPerChannel;
+		final int lZ = (pSlab % mSlabsPerChannel) * mSlabDepth;
+		final int lDepth = Math.min(mSlabDepth, mDepth - lZ);
+		final ByteBuffer lSource = pTimePoint.mChannels[lChannel];
+		final ByteBuffer lTarget = lSlot.getBuffer();
+		final Runnable lFill = () -> {
+			final ByteBuffer lSlab = lSource.duplicate();
+			lSlab.position(lSource.position() + (int) (mSliceSizeInBytes * lZ));
+			lSlab.limit(lSlab.position() + (int) (mSliceSizeInBytes * lDepth));
+			lTarget.put(lSlab);
+			lSlot.markFilled();
+		};
+
+		final CompletableFuture<Void> lFuture;
+		if (mExecutor == null) {
+			lFill.run();
+			lFuture = CompletableFuture.completedFuture(null);
+		} else
+			lFuture = CompletableFuture.runAsync(lFill, mExecutor);
+		mStaged.addLast(new Staged(lSlot, lChannel, lZ, lDepth, lFuture));
+		return true;
+	}
+
+	/**
+	 * Gives the pixel buffers of all staged slabs back to the ring, drops the
+	 * timepoint being uploaded and rethrows the failure of the first slab.
+	 */
+	private void dropUploading() {
+		final Staged lFailed = mStaged.pollFirst();
+		mRing.release(lFailed.mSlot);
+		// all staged slabs belong to the timepoint being uploaded
+		for (final Staged lStaged : mStaged) {
+			lStaged.mFill.exceptionally(t -> null).join();
+			mRing.release(lStaged.mSlot);
+		}
+		mStaged.clear();
+		mUploading = null;
+		mNextSlab = 0;
+		synchronized (this) {
+			mDroppedCount++;
+		}
+		lFailed.mFill.join();
+	}
+
+	private void swap() {
+		for (int c = 0; c < mFront.length; c++) {
+			final GLTexture lTexture = mFront[c];
+			mFront[c] = mBack[c];
+			mBack[c] = lTexture;
+		}
+		mFrontTimePoint = mUploading.mIndex;
+		mUploading = null;
+		mSwapCount++;
+	}
+
+	/**
+	 * Binds the front textures of all channels to consecutive texture units
+	 * starting at pFirstUnit.
+	 */
+	public void bind(final int pFirstUnit) {
+		for (int c = 0; c < mFront.length; c++)
+			mFront[c].bind(pFirstUnit + c);
+	}
+
+	public GLTexture getFrontTexture(final int pChannel) {
+		return mFront[pChannel];
+	}
+
+	/**
+	 * Timepoint shown by the front textures, -1 before the first swap.
+	 */
+	public int getFrontTimePoint() {
+		return mFrontTimePoint;
+	}
+
+	/**
+	 * Timepoint being uploaded into the back textures, or -1.
+	 */
+	public int getUploadingTimePoint() {
+		return mUploading == null ? -1 : mUploading.mIndex;
+	}
+
+	public boolean isUploading() {
+		return mUploading != null;
+	}
+
+	/**
+	 * Maximal number of slabs staged per frame, 1 by default. Fewer are staged
+	 * while all pixel buffers are busy.
+	 */
+	public void setSlabsPerFrame(final int pSlabsPerFrame) {
+		mSlabsPerFrame = Math.max(1, pSlabsPerFrame);
+	}
+
+	public int getSlabsPerFrame() {
+		return mSlabsPerFrame;
+	}
+
+	public int getSlabDepth() {
+		return mSlabDepth;
+	}
+
+	public int getChannels() {
+		return mFront.length;
+	}
+
+	public long getSwapCount() {
+		return mSwapCount;
+	}
+
+	public synchronized long getDroppedCount() {
+		return mDroppedCount;
+	}
+
+	/**
+	 * Waits for running slab copies, then deletes textures and pixel buffers.
+	 */
+	@Override
+	public void close() throws GLException {
+		for (final Staged lStaged : mStaged)
+			lStaged.mFill.exceptionally(t -> null).join();
+		mStaged.clear();
+		mRing.close();
+		for (int c = 0; c < mFront.length; c++) {
+			mFront[c].close();
+			mBack[c].close();
+		}
+	}
+
+	@Override
+	public GL4 getGL() {
+		return mFront[0].getGL();
+	}
+
+	@Override
+	public int getId() {
+		return mFront[0].getId();
+	}
+
+	@Override
+	public String toString() {
+		return "GLVolumeSequence [mChannels=" + mFront.length
+				+ ", size="
+				+ mWidth
+				+ "x"
+				+ mHeight
+				+ "x"
+				+ mDepth
+				+ ", mSlabDepth="
+				+ mSlabDepth
+				+ ", mFrontTimePoint="
+				+ mFrontTimePoint
+				+ "]";
+	}
+
+}
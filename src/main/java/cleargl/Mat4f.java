@@ -0,0 +1,358 @@
+package cleargl;
+
+import java.io.Serializable;
+import java.nio.FloatBuffer;
+
+/**
+ * Mutable 4x4 float matrix with one field per element and unrolled
+ * arithmetic, see {@link Vec3f}. Field mCR holds column C, row R, which is
+ * element 4 * C + R of the column-major array used by {@link GLMatrix} and
+ * OpenGL. All operations mutate and return the receiver; operands may alias
+ * the receiver.
+ */
+public final class Mat4f implements Serializable {
+	private static final long serialVersionUID = 1L;
+
+	public float m00, m01, m02, m03;
+	public float m10, m11, m12, m13;
+	public float m20, m21, m22, m23;
+	public float m30, m31, m32, m33;
+
+	public Mat4f() {
+		identity();
+	}
+
+	public Mat4f(final Mat4f pMatrix) {
+		set(pMatrix);
+	}
+
+	public Mat4f(final GLMatrix pMatrix) {
+		set(pMatrix);
+	}
+
+	public Mat4f identity() {
+		m00 = 1;
+		m01 = 0;
+		m02 = 0;
+		m03 = 0;
+		m10 = 0;
+		m11 = 1;
+		m12 = 0;
+		m13 = 0;
+		m20 = 0;
+		m21 = 0;
+		m22 = 1;
+		m23 = 0;
+		m30 = 0;
+		m31 = 0;
+		m32 = 0;
+		m33 = 1;
+		return this;
+	}
+
+	public Mat4f set(final Mat4f pMatrix) {
+		m00 = pMatrix.m00;
+		m01 = pMatrix.m01;
+		m02 = pMatrix.m02;
+		m03 = pMatrix.m03;
+		m10 = pMatrix.m10;
+		m11 = pMatrix.m11;
+		m12 = pMatrix.m12;
+		m13 = pMatrix.m13;
+		m20 = pMatrix.m20;
+		m21 = pMatrix.m21;
+		m22 = pMatrix.m22;
+		m23 = pMatrix.m23;
+		m30 = pMatrix.m30;
+		m31 = pMatrix.m31;
+		m32 = pMatrix.m32;
+		m33 = pMatrix.m33;
+		return this;
+	}
+
+	public Mat4f set(final float[] pArray, final int pOffset) {
+		m00 = pArray[pOffset];
+		m01 = pArray[pOffset + 1];
+		m02 = pArray[pOffset + 2];
+		m03 = pArray[pOffset + 3];
+		m10 = pArray[pOffset + 4];
+		m11 = pArray[pOffset + 5];
+		m12 = pArray[pOffset + 6];
+		m13 = pArray[pOffset + 7];
+		m20 = pArray[pOffset + 8];
+		m21 = pArray[pOffset + 9];
+		m22 = pArray[pOffset + 10];
+		m23 = pArray[pOffset + 11];
+		m30 = pArray[pOffset + 12];
+		m31 = pArray[pOffset + 13];
+		m32 = pArray[pOffset + 14];
+		m33 = pArray[pOffset + 15];
+		return this;
+	}
+
+	public Mat4f set(final GLMatrix pMatrix) {
+		return set(pMatrix.getFloatArray(), 0);
+	}
+
+	public float[] get(final float[] pArray, final int pOffset) {
+		pArray[pOffset] = m00;
+		pArray[pOffset + 1] = m01;
+		pArray[pOffset + 2] = m02;
+		pArray[pOffset + 3] = m03;
+		pArray[pOffset + 4] = m10;
+		pArray[pOffset + 5] = m11;
+		pArray[pOffset + 6] = m12;
+		pArray[pOffset + 7] = m13;
+		pArray[pOffset + 8] = m20;
+		pArray[pOffset + 9] = m21;
+		pArray[pOffset + 10] = m22;
+		pArray[pOffset + 11] = m23;
+		pArray[pOffset + 12] = m30;
+		pArray[pOffset + 13] = m31;
+		pArray[pOffset + 14] = m32;
+		pArray[pOffset + 15] = m33;
+		return pArray;
+	}
+
+	public GLMatrix get(final GLMatrix pMatrix) {
+		get(pMatrix.getFloatArray(), 0);
+		pMatrix.markModified();
+		return pMatrix;
+	}
+
+	public FloatBuffer put(final FloatBuffer pBuffer) {
+		pBuffer.put(m00).put(m01).put(m02).put(m03);
+		pBuffer.put(m10).put(m11).put(m12).put(m13);
+		pBuffer.put(m20).put(m21).put(m22).put(m23);
+		pBuffer.put(m30).put(m31).put(m32).put(m33);
+		return pBuffer;
+	}
+
+	public GLMatrix toGLMatrix() {
+		return get(new GLMatrix());
+	}
+
+	/**
+	 * this = pA * pB
+	 */
+	public Mat4f mul(final Mat4f pA, final Mat4f pB) {
+		final float l00 = pA.m00 * pB.m00 + pA.m10 * pB.m01 + pA.m20 * pB.m02 + pA.m30 * pB.m03;
+		final float l01 = pA.m01 * pB.m00 + pA.m11 * pB.m01 + pA.m21 * pB.m02 + pA.m31 * pB.m03;
+		final float l02 = pA.m02 * pB.m00 + pA.m12 * pB.m01 + pA.m22 * pB.m02 + pA.m32 * pB.m03;
+		final float l03 = pA.m03 * pB.m00 + pA.m13 * pB.m01 + pA.m23 * pB.m02 + pA.m33 * pB.m03;
+		final float l10 = pA.m00 * pB.m10 + pA.m10 * pB.m11 + pA.m20 * pB.m12 + pA.m30 * pB.m13;
+		final float l11 = pA.m01 * pB.m10 + pA.m11 * pB.m11 + pA.m21 * pB.m12 + pA.m31 * pB.m13;
+		final float l12 = pA.m02 * pB.m10 + pA.m12 * pB.m11 + pA.m22 * pB.m12 + pA.m32 * pB.m13;
+		final float l13 = pA.m03 * pB.m10 + pA.m13 * pB.m11 + pA.m23 * pB.m12 + pA.m33 * pB.m13;
+		final float l20 = pA.m00 * pB.m20 + pA.m10 * pB.m21 + pA.m20 * pB.m22 + pA.m30 * pB.m23;
+		final float l21 = pA.m01 * pB.m20 + pA.m11 * pB.m21 + pA.m21 * pB.m22 + pA.m31 * pB.m23;
+		final float l22 = pA.m02 * pB.m20 + pA.m12 * pB.m21 + pA.m22 * pB.m22 + pA.m32 * pB.m23;
+		final float l23 = pA.m03 * pB.m20 + pA.m13 * pB.m21 + pA.m23 * pB.m22 + pA.m33 * pB.m23;
+		final float l30 = pA.m00 * pB.m30 + pA.m10 * pB.m31 + pA.m20 * pB.m32 + pA.m30 * pB.m33;
+		final float l31 = pA.m01 * pB.m30 + pA.m11 * pB.m31 + pA.m21 * pB.m32 + pA.m31 * pB.m33;
+		final float l32 = pA.m02 * pB.m30 + pA.m12 * pB.m31 + pA.m22 * pB.m32 + pA.m32 * pB.m33;
+		final float l33 = pA.m03 * pB.m30 + pA.m13 * pB.m31 + pA.m23 * pB.m32 + pA.m33 * pB.m33;
+		m00 = l00;
+		m01 = l01;
+		m02 = l02;
+		m03 = l03;
+		m10 = l10;
+		m11 = l11;
+		m12 = l12;
+		m13 = l13;
+		m20 = l20;
+		m21 = l21;
+		m22 = l22;
+		m23 = l23;
+		m30 = l30;
+		m31 = l31;
+		m32 = l32;
+		m33 = l33;
+		return this;
+	}
+
+	/**
+	 * this = this * pMatrix
+	 */
+	public Mat4f mul(final Mat4f pMatrix) {
+		return mul(this, pMatrix);
+	}
+
+	/**
+	 * this = this * T(pX, pY, pZ)
+	 */
+	public Mat4f translate(final float pX, final float pY, final float pZ) {
+		m30 += m00 * pX + m10 * pY + m20 * pZ;
+		m31 += m01 * pX + m11 * pY + m21 * pZ;
+		m32 += m02 * pX + m12 * pY + m22 * pZ;
+		m33 += m03 * pX + m13 * pY + m23 * pZ;
+		return this;
+	}
+
+	/**
+	 * this = this * S(pX, pY, pZ)
+	 */
+	public Mat4f scale(final float pX, final float pY, final float pZ) {
+		m00 *= pX;
+		m01 *= pX;
+		m02 *= pX;
+		m03 *= pX;
+		m10 *= pY;
+		m11 *= pY;
+		m12 *= pY;
+		m13 *= pY;
+		m20 *= pZ;
+		m21 *= pZ;
+		m22 *= pZ;
+		m23 *= pZ;
+		return this;
+	}
+
+	public Mat4f transpose() {
+		float lTemp;
+		lTemp = m01;
+		m01 = m10;
+		m10 = lTemp;
+		lTemp = m02;
+		m02 = m20;
+		m20 = lTemp;
+		lTemp = m03;
+		m03 = m30;
+		m30 = lTemp;
+		lTemp = m12;
+		m12 = m21;
+		m21 = lTemp;
+		lTemp = m13;
+		m13 = m31;
+		m31 = lTemp;
+		lTemp = m23;
+		m23 = m32;
+		m32 = lTemp;
+		return this;
+	}
+
+	public float determinant() {
+		return (m00 * m11 - m01 * m10) * (m22 * m33 - m23 * m32)
+				- (m00 * m12 - m02 * m10) * (m21 * m33 - m23 * m31)
+				+ (m00 * m13 - m03 * m10) * (m21 * m32 - m22 * m31)
+				+ (m01 * m12 - m02 * m11) * (m20 * m33 - m23 * m30)
+				- (m01 * m13 - m03 * m11) * (m20 * m32 - m22 * m30)
+				+ (m02 * m13 - m03 * m12) * (m20 * m31 - m21 * m30);
+	}
+
+	/**
+	 * Inverts this matrix in place. Returns false and leaves the matrix
+	 * untouched if it is singular.
+	 */
+	public boolean invert() {
+		final float a = m00 * m11 - m01 * m10;
+		final float b = m00 * m12 - m02 * m10;
+		final float c = m00 * m13 - m03 * m10;
+		final float d = m01 * m12 - m02 * m11;
+		final float e = m01 * m13 - m03 * m11;
+		final float f = m02 * m13 - m03 * m12;
+		final float g = m20 * m31 - m21 * m30;
+		final float h = m20 * m32 - m22 * m30;
+		final float i = m20 * m33 - m23 * m30;
+		final float j = m21 * m32 - m22 * m31;
+		final float k = m21 * m33 - m23 * m31;
+		final float l = m22 * m33 - m23 * m32;
+		final float lDeterminant = a * l - b * k + c * j + d * i - e * h + f * g;
+		if (lDeterminant == 0)
+			return false;
+		final float lInverse = 1.0f / lDeterminant;
+
+		final float l00 = (m11 * l - m12 * k + m13 * j) * lInverse;
+		final float l01 = (-m01 * l + m02 * k - m03 * j) * lInverse;
+		final float l02 = (m31 * f - m32 * e + m33 * d) * lInverse;
+		final float l03 = (-m21 * f + m22 * e - m23 * d) * lInverse;
+		final float l10 = (-m10 * l + m12 * i - m13 * h) * lInverse;
+		final float l11 = (m00 * l - m02 * i + m03 * h) * lInverse;
+		final float l12 = (-m30 * f + m32 * c - m33 * b) * lInverse;
+		final float l13 = (m20 * f - m22 * c + m23 * b) * lInverse;
+		final float l20 = (m10 * k - m11 * i + m13 * g) * lInverse;
+		final float l21 = (-m00 * k + m01 * i - m03 * g) * lInverse;
+		final float l22 = (m30 * e - m31 * c + m33 * a) * lInverse;
+		final float l23 = (-m20 * e + m21 * c - m23 * a) * lInverse;
+		final float l30 = (-m10 * j + m11 * h - m12 * g) * lInverse;
+		final float l31 = (m00 * j - m01 * h + m02 * g) * lInverse;
+		final float l32 = (-m30 * d + m31 * b - m32 * a) * lInverse;
+		final float l33 = (m20 * d - m21 * b + m22 * a) * lInverse;
+
+		m00 = l00;
+		m01 = l01;
+		m02 = l02;
+		m03 = l03;
+		m10 = l10;
+		m11 = l11;
+		m12 = l12;
+		m13 = l13;
+		m20 = l20;
+		m21 = l21;
+		m22 = l22;
+		m23 = l23;
+		m30 = l30;
+		m31 = l31;
+		m32 = l32;
+		m33 = l33;
+		return true;
+	}
+
+	/**
+	 * pDestination = this * pVector
+	 */
+	public Vec4f transform(final Vec4f pVector, final Vec4f pDestination) {
+		final float x = pVector.x, y = pVector.y, z = pVector.z, w = pVector.w;
+		pDestination.x = m00 * x + m10 * y + m20 * z + m30 * w;
+		pDestination.y = m01 * x + m11 * y + m21 * z + m31 * w;
+		pDestination.z = m02 * x + m12 * y + m22 * z + m32 * w;
+		pDestination.w = m03 * x + m13 * y + m23 * z + m33 * w;
+		return pDestination;
+	}
+
+	/**
+	 * pDestination = this * (pPoint, 1), without perspective divide.
+	 */
+	public Vec3f transformPoint(final Vec3f pPoint, final Vec3f pDestination) {
+		final float x = pPoint.x, y = pPoint.y, z = pPoint.z;
+		pDestination.x = m00 * x + m10 * y + m20 * z + m30;
+		pDestination.y = m01 * x + m11 * y + m21 * z + m31;
+		pDestination.z = m02 * x + m12 * y + m22 * z + m32;
+		return pDestination;
+	}
+
+	/**
+	 * pDestination = this * (pPoint, 1) followed by the perspective divide,
+	 * e.g. to unproject from normalized device coordinates.
+	 */
+	public Vec3f transformProject(final Vec3f pPoint, final Vec3f pDestination) {
+		final float x = pPoint.x, y = pPoint.y, z = pPoint.z;
+		final float lInverseW = 1.0f / (m03 * x + m13 * y + m23 * z + m33);
+		pDestination.x = (m00 * x + m10 * y + m20 * z + m30) * lInverseW;
+		pDestination.y = (m01 * x + m11 * y + m21 * z + m31) * lInverseW;
+		pDestination.z = (m02 * x + m12 * y + m22 * z + m32) * lInverseW;
+		return pDestination;
+	}
+
+	/**
+	 * pDestination = this * (pDirection, 0)
+	 */
+	public Vec3f transformDirection(final Vec3f pDirection, final Vec3f pDestination) {
+		final float x = pDirection.x, y = pDirection.y, z = pDirection.z;
+		pDestination.x = m00 * x + m10 * y + m20 * z;
+		pDestination.y = m01 * x + m11 * y + m21 * z;
+		pDestination.z = m02 * x + m12 * y + m22 * z;
+		return pDestination;
+	}
+
+	@Override
+	public String toString() {
+		return String.format("Mat4f\n%10.5f %10.5f %10.5f %10.5f\n%10.5f %10.5f %10.5f %10.5f\n"
+				+ "%10.5f %10.5f %10.5f %10.5f\n%10.5f %10.5f %10.5f %10.5f",
+				m00, m10, m20, m30,
+				m01, m11, m21, m31,
+				m02, m12, m22, m32,
+				m03, m13, m23, m33);
+	}
+
+}
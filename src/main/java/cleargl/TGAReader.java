@@ -15,7 +15,16 @@
 
 package cleargl;
 
+import java.io.EOFException;
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
+
+import cleargl.util.parallel.ParallelRange;
 
 public final class TGAReader {
 
@@ -30,63 +39,164 @@ public final class TGAReader {
 		return (buffer[14] & 0xFF) | (buffer[15] & 0xFF) << 8;
 	}
 
+	/**
+	 * Minimum number of pixels per parallel band.
+	 */
+	public static final int PARALLEL_THRESHOLD = 1 << 16;
+
+	/**
+	 * Decodes a whole file into pixels packed in the given order, top row
+	 * first. Bands of rows are decoded in parallel; for RLE files, a quick
+	 * scan over the packet headers first finds where each row starts.
+	 */
 	public static int[] read(final byte[] buffer, final Order order) throws IOException {
+		return read(buffer, order, ForkJoinPool.commonPool());
+	}
+
+	static int[] read(final byte[] buffer, final Order order, final ForkJoinPool pool) throws IOException {
+		if (buffer.length < 18)
+			throw new EOFException("TGA header is truncated");
+		final Header header = new Header(buffer);
+		header.check();
+		final int width = header.width;
+		final int height = header.height;
+		final int elementSize = header.getElementSize();
+		final int rowBytes = width * elementSize;
+
+		int offset = 18 + header.idLength;
+		byte[] palette = null;
+		if ((header.type & 7) == COLORMAP) {
+			final int paletteSize = header.colormapLength * (header.colormapDepth / 8);
+			if (offset + paletteSize > buffer.length)
+				throw new EOFException("TGA colormap is truncated");
+			palette = Arrays.copyOfRange(buffer, offset, offset + paletteSize);
+		}
+		offset += header.colormapLength * ((header.colormapDepth + 7) / 8);
+
+		final int[] rowOffsets;
+		final int[] rowSkips;
+		if (header.isRLE()) {
+			rowOffsets = new int[height];
+			rowSkips = new int[height];
+			scanRLE(buffer, offset, header, rowOffsets, rowSkips);
+		} else {
+			if ((long) offset + (long) rowBytes * height > buffer.length)
+				throw new EOFException("TGA image data is truncated");
+			rowOffsets = null;
+			rowSkips = null;
+		}
+
+		final int[] pixels = new int[width * height];
+		final int dataOffset = offset;
+		final byte[] colormap = palette;
+		try {
+			ParallelRange.forRange(pool, 0, height, Math.max(1, PARALLEL_THRESHOLD / Math.max(1, width)), (start, end) -> {
+				try {
+					if (rowOffsets == null) {
+						for (int i = start; i < end; i++)
+							toPixels(header, buffer, dataOffset + i * rowBytes, colormap, pixels,
+									width * (header.isUpperOrigin() ? i : height - 1 - i), order);
+						return;
+					}
+					final Source source = new Source(buffer, rowOffsets[start]);
+					final RunLengthDecoder decoder = new RunLengthDecoder(elementSize);
+					decoder.resume(source, rowSkips[start]);
+					final byte[] row = new byte[rowBytes];
+					for (int i = start; i < end; i++) {
+						decoder.decode(source, row);
+						toPixels(header, row, 0, colormap, pixels, width * (header.isUpperOrigin() ? i : height - 1 - i),
+								order);
+					}
+				} catch (final IOException e) {
+					throw new UncheckedIOException(e);
+				}
+			});
+		} catch (final UncheckedIOException e) {
+			throw e.getCause();
+		}
+		return pixels;
+	}
+
+	/**
+	 * Walks the RLE packet headers and records, for each row, the offset of
+	 * the packet it starts in and how many pixels of that packet belong to
+	 * the rows before.
+	 */
+	private static void scanRLE(final byte[] buffer, int offset, final Header header, final int[] rowOffsets,
+			final int[] rowSkips) throws IOException {
+		final int elementSize = header.getElementSize();
+		final long total = (long) header.width * header.height;
+		long decoded = 0;
+		int row = 0;
+		while (decoded < total) {
+			if (offset >= buffer.length)
+				throw new EOFException("TGA image data is truncated");
+			final int packet = buffer[offset] & 0xFF;
+			final int count = (packet & 0x7F) + 1;
+			while (row < header.height && (long) row * header.width < decoded + count) {
+				rowOffsets[row] = offset;
+				rowSkips[row] = (int) ((long) row * header.width - decoded);
+				row++;
+			}
+			offset += 1 + ((packet & 0x80) != 0 ? elementSize : count * elementSize);
+			decoded += count;
+		}
+		if (offset > buffer.length)
+			throw new EOFException("TGA image data is truncated");
+	}
 
-		// header
-		// int idFieldLength = buffer[0] & 0xFF;
-		// int colormapType = buffer[1] & 0xFF;
-		final int type = buffer[2] & 0xFF;
-		final int colormapOrigin = (buffer[3] & 0xFF) | (buffer[4] & 0xFF) << 8;
-		final int colormapLength = (buffer[5] & 0xFF) | (buffer[6] & 0xFF) << 8;
-		final int colormapDepth = buffer[7] & 0xFF;
-		// int originX = (buffer[8] & 0xFF) | (buffer[9] & 0xFF) << 8; //
-		// unsupported
-		// int originY = (buffer[10] & 0xFF) | (buffer[11] & 0xFF) << 8; //
-		// unsupported
-		final int width = getWidth(buffer);
-		final int height = getHeight(buffer);
-		final int depth = buffer[16] & 0xFF;
-		final int descriptor = buffer[17] & 0xFF;
-
-		int[] pixels = null;
-
-		// data
-		switch (type) {
+	/**
+	 * Converts one stored row into packed pixels at offset, mirroring it for
+	 * right origin files.
+	 */
+	private static void toPixels(final Header header, final byte[] row, final int rowOffset, final byte[] palette,
+			final int[] pixels, final int offset, final Order order) {
+		final int rs = order.redShift;
+		final int gs = order.greenShift;
+		final int bs = order.blueShift;
+		final int as = order.alphaShift;
+		final int width = header.width;
+		final int step = header.isRightOrigin() ? -1 : 1;
+		int out = header.isRightOrigin() ? offset + width - 1 : offset;
+		int index = rowOffset;
+		switch (header.type & 7) {
 			case COLORMAP: {
-				final int imageDataOffset = 18 + (colormapDepth / 8) * colormapLength;
-				pixels = createPixelsFromColormap(width, height, colormapDepth, buffer, imageDataOffset, buffer,
-						colormapOrigin, descriptor, order);
+				final int entrySize = header.colormapDepth / 8;
+				for (int j = 0; j < width; j++, index++, out += step) {
+					final int colormapIndex = (row[index] & 0xFF) - header.colormapOrigin;
+					if (colormapIndex < 0 || colormapIndex >= header.colormapLength) {
+						pixels[out] = 0xFFFFFFFF;
+						continue;
+					}
+					final int entry = entrySize * colormapIndex;
+					final int a = entrySize == 4 ? palette[entry + 3] & 0xFF : 0xFF;
+					pixels[out] = (palette[entry + 2] & 0xFF) << rs | (palette[entry + 1] & 0xFF) << gs
+							| (palette[entry] & 0xFF) << bs | a << as;
+				}
 			}
 				break;
 			case RGB:
-				pixels = createPixelsFromRGB(width, height, depth, buffer, 18, descriptor, order);
-				break;
-			case GRAYSCALE:
-				pixels = createPixelsFromGrayscale(width, height, depth, buffer, 18, descriptor, order);
-				break;
-			case COLORMAP_RLE: {
-				final int imageDataOffset = 18 + (colormapDepth / 8) * colormapLength;
-				final byte[] decodeBuffer = decodeRLE(width, height, depth, buffer, imageDataOffset);
-				pixels = createPixelsFromColormap(width, height, colormapDepth, decodeBuffer, 0, buffer, colormapOrigin,
-						descriptor, order);
-			}
-				break;
-			case RGB_RLE: {
-				final byte[] decodeBuffer = decodeRLE(width, height, depth, buffer, 18);
-				pixels = createPixelsFromRGB(width, height, depth, decodeBuffer, 0, descriptor, order);
-			}
-				break;
-			case GRAYSCALE_RLE: {
-				final byte[] decodeBuffer = decodeRLE(width, height, depth, buffer, 18);
-				pixels = createPixelsFromGrayscale(width, height, depth, decodeBuffer, 0, descriptor, order);
-			}
+				if (header.depth == 32)
+					for (int j = 0; j < width; j++, index += 4, out += step)
+						pixels[out] = (row[index + 2] & 0xFF) << rs | (row[index + 1] & 0xFF) << gs
+								| (row[index] & 0xFF) << bs | (row[index + 3] & 0xFF) << as;
+				else
+					for (int j = 0; j < width; j++, index += 3, out += step)
+						pixels[out] = (row[index + 2] & 0xFF) << rs | (row[index + 1] & 0xFF) << gs
+								| (row[index] & 0xFF) << bs | 0xFF << as;
 				break;
 			default:
-				throw new IOException("Unsupported image type: " + type);
+				if (header.depth == 16)
+					for (int j = 0; j < width; j++, index += 2, out += step) {
+						final int e = row[index] & 0xFF;
+						pixels[out] = e << rs | e << gs | e << bs | (row[index + 1] & 0xFF) << as;
+					}
+				else
+					for (int j = 0; j < width; j++, index++, out += step) {
+						final int e = row[index] & 0xFF;
+						pixels[out] = e << rs | e << gs | e << bs | 0xFF << as;
+					}
 		}
-
-		return pixels;
-
 	}
 
 	private static final int COLORMAP = 1;
@@ -99,432 +209,374 @@ public final class TGAReader {
 	private static final int RIGHT_ORIGIN = 0x10;
 	private static final int UPPER_ORIGIN = 0x20;
 
-	private static byte[] decodeRLE(final int width, final int height, final int depth, final byte[] buffer,
-			int offset) {
-		final int elementCount = depth / 8;
-		final byte[] elements = new byte[elementCount];
-		final int decodeBufferLength = elementCount * width * height;
-		final byte[] decodeBuffer = new byte[decodeBufferLength];
-		int decoded = 0;
-		while (decoded < decodeBufferLength) {
-			final int packet = buffer[offset++] & 0xFF;
-			if ((packet & 0x80) != 0) { // RLE
-				for (int i = 0; i < elementCount; i++) {
-					elements[i] = buffer[offset++];
-				}
-				final int count = (packet & 0x7F) + 1;
-				for (int i = 0; i < count; i++) {
-					for (int j = 0; j < elementCount; j++) {
-						decodeBuffer[decoded++] = elements[j];
-					}
-				}
-			} else { // RAW
-				final int count = (packet + 1) * elementCount;
-				for (int i = 0; i < count; i++) {
-					decodeBuffer[decoded++] = buffer[offset++];
-				}
+	/**
+	 * Fields of the 18 byte file header.
+	 */
+	public static final class Header {
+		private final int idLength;
+		private final int type;
+		private final int colormapOrigin;
+		private final int colormapLength;
+		private final int colormapDepth;
+		private final int width;
+		private final int height;
+		private final int depth;
+		private final int descriptor;
+
+		Header(final byte[] buffer) {
+			idLength = buffer[0] & 0xFF;
+			type = buffer[2] & 0xFF;
+			colormapOrigin = (buffer[3] & 0xFF) | (buffer[4] & 0xFF) << 8;
+			colormapLength = (buffer[5] & 0xFF) | (buffer[6] & 0xFF) << 8;
+			colormapDepth = buffer[7] & 0xFF;
+			width = TGAReader.getWidth(buffer);
+			height = TGAReader.getHeight(buffer);
+			depth = buffer[16] & 0xFF;
+			descriptor = buffer[17] & 0xFF;
+		}
+
+		public int getWidth() {
+			return width;
+		}
+
+		public int getHeight() {
+			return height;
+		}
+
+		public int getType() {
+			return type;
+		}
+
+		/**
+		 * Bits per stored pixel, 8 for colormap indices.
+		 */
+		public int getPixelDepth() {
+			return depth;
+		}
+
+		public boolean isRLE() {
+			return (type & 8) != 0;
+		}
+
+		public boolean isUpperOrigin() {
+			return (descriptor & UPPER_ORIGIN) != 0;
+		}
+
+		public boolean isRightOrigin() {
+			return (descriptor & RIGHT_ORIGIN) != 0;
+		}
+
+		/**
+		 * Channels needed to keep all information: 4 for images with alpha
+		 * (including grayscale with alpha), 3 for color and 1 for grayscale.
+		 */
+		public int getChannels() {
+			switch (type & 7) {
+				case COLORMAP:
+					return colormapDepth == 32 ? 4 : 3;
+				case RGB:
+					return depth == 32 ? 4 : 3;
+				default:
+					return depth == 16 ? 4 : 1;
 			}
 		}
-		return decodeBuffer;
+
+		private int getElementSize() {
+			return depth / 8;
+		}
+
+		private void check() throws IOException {
+			switch (type) {
+				case COLORMAP:
+				case COLORMAP_RLE:
+					if (depth != 8)
+						throw new IOException("Unsupported depth:" + depth);
+					if (colormapDepth != 24 && colormapDepth != 32)
+						throw new IOException("Unsupported depth:" + colormapDepth);
+					break;
+				case RGB:
+				case RGB_RLE:
+					if (depth != 24 && depth != 32)
+						throw new IOException("Unsupported depth:" + depth);
+					break;
+				case GRAYSCALE:
+				case GRAYSCALE_RLE:
+					if (depth != 8 && depth != 16)
+						throw new IOException("Unsupported depth:" + depth);
+					break;
+				default:
+					throw new IOException("Unsupported image type: " + type);
+			}
+		}
+
+		@Override
+		public String toString() {
+			return "Header [type=" + type
+					+ ", width="
+					+ width
+					+ ", height="
+					+ height
+					+ ", depth="
+					+ depth
+					+ ", descriptor="
+					+ descriptor
+					+ "]";
+		}
 	}
 
-	private static int[] createPixelsFromColormap(final int width, final int height, final int depth,
-			final byte[] bytes, final int offset, final byte[] palette, final int colormapOrigin, final int descriptor,
-			final Order order) throws IOException {
-		int[] pixels = null;
-		final int rs = order.redShift;
-		final int gs = order.greenShift;
-		final int bs = order.blueShift;
-		final int as = order.alphaShift;
-		switch (depth) {
-			case 24:
-				pixels = new int[width * height];
-				if ((descriptor & RIGHT_ORIGIN) != 0) {
-					if ((descriptor & UPPER_ORIGIN) != 0) {
-						// UpperRight
-						for (int i = 0; i < height; i++) {
-							for (int j = 0; j < width; j++) {
-								final int colormapIndex = bytes[offset + width * i + j] & 0xFF - colormapOrigin;
-								int color = 0xFFFFFFFF;
-								if (colormapIndex >= 0) {
-									final int index = 3 * colormapIndex + 18;
-									final int b = palette[index + 0] & 0xFF;
-									final int g = palette[index + 1] & 0xFF;
-									final int r = palette[index + 2] & 0xFF;
-									final int a = 0xFF;
-									color = (r << rs) | (g << gs) | (b << bs) | (a << as);
-								}
-								pixels[width * i + (width - j - 1)] = color;
-							}
-						}
-					} else {
-						// LowerRight
-						for (int i = 0; i < height; i++) {
-							for (int j = 0; j < width; j++) {
-								final int colormapIndex = bytes[offset + width * i + j] & 0xFF - colormapOrigin;
-								int color = 0xFFFFFFFF;
-								if (colormapIndex >= 0) {
-									final int index = 3 * colormapIndex + 18;
-									final int b = palette[index + 0] & 0xFF;
-									final int g = palette[index + 1] & 0xFF;
-									final int r = palette[index + 2] & 0xFF;
-									final int a = 0xFF;
-									color = (r << rs) | (g << gs) | (b << bs) | (a << as);
-								}
-								pixels[width * (height - i - 1) + (width - j - 1)] = color;
-							}
-						}
-					}
-				} else {
-					if ((descriptor & UPPER_ORIGIN) != 0) {
-						// UpperLeft
-						for (int i = 0; i < height; i++) {
-							for (int j = 0; j < width; j++) {
-								final int colormapIndex = bytes[offset + width * i + j] & 0xFF - colormapOrigin;
-								int color = 0xFFFFFFFF;
-								if (colormapIndex >= 0) {
-									final int index = 3 * colormapIndex + 18;
-									final int b = palette[index + 0] & 0xFF;
-									final int g = palette[index + 1] & 0xFF;
-									final int r = palette[index + 2] & 0xFF;
-									final int a = 0xFF;
-									color = (r << rs) | (g << gs) | (b << bs) | (a << as);
-								}
-								pixels[width * i + j] = color;
-							}
-						}
-					} else {
-						// LowerLeft
-						for (int i = 0; i < height; i++) {
-							for (int j = 0; j < width; j++) {
-								final int colormapIndex = bytes[offset + width * i + j] & 0xFF - colormapOrigin;
-								int color = 0xFFFFFFFF;
-								if (colormapIndex >= 0) {
-									final int index = 3 * colormapIndex + 18;
-									final int b = palette[index + 0] & 0xFF;
-									final int g = palette[index + 1] & 0xFF;
-									final int r = palette[index + 2] & 0xFF;
-									final int a = 0xFF;
-									color = (r << rs) | (g << gs) | (b << bs) | (a << as);
-								}
-								pixels[width * (height - i - 1) + j] = color;
-							}
-						}
-					}
-				}
-				break;
-			case 32:
-				pixels = new int[width * height];
-				if ((descriptor & RIGHT_ORIGIN) != 0) {
-					if ((descriptor & UPPER_ORIGIN) != 0) {
-						// UpperRight
-						for (int i = 0; i < height; i++) {
-							for (int j = 0; j < width; j++) {
-								final int colormapIndex = bytes[offset + width * i + j] & 0xFF - colormapOrigin;
-								int color = 0xFFFFFFFF;
-								if (colormapIndex >= 0) {
-									final int index = 4 * colormapIndex + 18;
-									final int b = palette[index + 0] & 0xFF;
-									final int g = palette[index + 1] & 0xFF;
-									final int r = palette[index + 2] & 0xFF;
-									final int a = palette[index + 3] & 0xFF;
-									color = (r << rs) | (g << gs) | (b << bs) | (a << as);
-								}
-								pixels[width * i + (width - j - 1)] = color;
-							}
-						}
-					} else {
-						// LowerRight
-						for (int i = 0; i < height; i++) {
-							for (int j = 0; j < width; j++) {
-								final int colormapIndex = bytes[offset + width * i + j] & 0xFF - colormapOrigin;
-								int color = 0xFFFFFFFF;
-								if (colormapIndex >= 0) {
-									final int index = 4 * colormapIndex + 18;
-									final int b = palette[index + 0] & 0xFF;
-									final int g = palette[index + 1] & 0xFF;
-									final int r = palette[index + 2] & 0xFF;
-									final int a = palette[index + 3] & 0xFF;
-									color = (r << rs) | (g << gs) | (b << bs) | (a << as);
-								}
-								pixels[width * (height - i - 1) + (width - j - 1)] = color;
-							}
-						}
-					}
-				} else {
-					if ((descriptor & UPPER_ORIGIN) != 0) {
-						// UpperLeft
-						for (int i = 0; i < height; i++) {
-							for (int j = 0; j < width; j++) {
-								final int colormapIndex = bytes[offset + width * i + j] & 0xFF - colormapOrigin;
-								int color = 0xFFFFFFFF;
-								if (colormapIndex >= 0) {
-									final int index = 4 * colormapIndex + 18;
-									final int b = palette[index + 0] & 0xFF;
-									final int g = palette[index + 1] & 0xFF;
-									final int r = palette[index + 2] & 0xFF;
-									final int a = palette[index + 3] & 0xFF;
-									color = (r << rs) | (g << gs) | (b << bs) | (a << as);
-								}
-								pixels[width * i + j] = color;
-							}
-						}
-					} else {
-						// LowerLeft
-						for (int i = 0; i < height; i++) {
-							for (int j = 0; j < width; j++) {
-								final int colormapIndex = bytes[offset + width * i + j] & 0xFF - colormapOrigin;
-								int color = 0xFFFFFFFF;
-								if (colormapIndex >= 0) {
-									final int index = 4 * colormapIndex + 18;
-									final int b = palette[index + 0] & 0xFF;
-									final int g = palette[index + 1] & 0xFF;
-									final int r = palette[index + 2] & 0xFF;
-									final int a = palette[index + 3] & 0xFF;
-									color = (r << rs) | (g << gs) | (b << bs) | (a << as);
-								}
-								pixels[width * (height - i - 1) + j] = color;
-							}
-						}
-					}
-				}
-				break;
-			default:
-				throw new IOException("Unsupported depth:" + depth);
+	/**
+	 * Reads and checks the header, leaving the stream at the image ID field.
+	 */
+	public static Header readHeader(final InputStream input) throws IOException {
+		final byte[] buffer = new byte[18];
+		int read = 0;
+		while (read < buffer.length) {
+			final int count = input.read(buffer, read, buffer.length - read);
+			if (count < 0)
+				throw new EOFException("TGA header is truncated");
+			read += count;
 		}
-		return pixels;
+		final Header header = new Header(buffer);
+		header.check();
+		return header;
 	}
 
-	private static int[] createPixelsFromRGB(final int width, final int height, final int depth, final byte[] bytes,
-			final int offset, final int descriptor, final Order order) throws IOException {
-		int[] pixels = null;
-		final int rs = order.redShift;
-		final int gs = order.greenShift;
-		final int bs = order.blueShift;
-		final int as = order.alphaShift;
-		switch (depth) {
-			case 24:
-				pixels = new int[width * height];
-				if ((descriptor & RIGHT_ORIGIN) != 0) {
-					if ((descriptor & UPPER_ORIGIN) != 0) {
-						// UpperRight
-						for (int i = 0; i < height; i++) {
-							for (int j = 0; j < width; j++) {
-								final int index = offset + 3 * width * i + 3 * j;
-								final int b = bytes[index + 0] & 0xFF;
-								final int g = bytes[index + 1] & 0xFF;
-								final int r = bytes[index + 2] & 0xFF;
-								final int a = 0xFF;
-								pixels[width * i + (width - j - 1)] = (r << rs) | (g << gs) | (b << bs) | (a << as);
-							}
-						}
-					} else {
-						// LowerRight
-						for (int i = 0; i < height; i++) {
-							for (int j = 0; j < width; j++) {
-								final int index = offset + 3 * width * i + 3 * j;
-								final int b = bytes[index + 0] & 0xFF;
-								final int g = bytes[index + 1] & 0xFF;
-								final int r = bytes[index + 2] & 0xFF;
-								final int a = 0xFF;
-								pixels[width * (height - i - 1) + (width - j - 1)] = (r << rs) | (g << gs) | (b << bs)
-										| (a << as);
-							}
-						}
-					}
-				} else {
-					if ((descriptor & UPPER_ORIGIN) != 0) {
-						// UpperLeft
-						for (int i = 0; i < height; i++) {
-							for (int j = 0; j < width; j++) {
-								final int index = offset + 3 * width * i + 3 * j;
-								final int b = bytes[index + 0] & 0xFF;
-								final int g = bytes[index + 1] & 0xFF;
-								final int r = bytes[index + 2] & 0xFF;
-								final int a = 0xFF;
-								pixels[width * i + j] = (r << rs) | (g << gs) | (b << bs) | (a << as);
-							}
-						}
-					} else {
-						// LowerLeft
-						for (int i = 0; i < height; i++) {
-							for (int j = 0; j < width; j++) {
-								final int index = offset + 3 * width * i + 3 * j;
-								final int b = bytes[index + 0] & 0xFF;
-								final int g = bytes[index + 1] & 0xFF;
-								final int r = bytes[index + 2] & 0xFF;
-								final int a = 0xFF;
-								pixels[width * (height - i - 1) + j] = (r << rs) | (g << gs) | (b << bs) | (a << as);
-							}
-						}
-					}
-				}
-				break;
-			case 32:
-				pixels = new int[width * height];
-				if ((descriptor & RIGHT_ORIGIN) != 0) {
-					if ((descriptor & UPPER_ORIGIN) != 0) {
-						// UpperRight
-						for (int i = 0; i < height; i++) {
-							for (int j = 0; j < width; j++) {
-								final int index = offset + 4 * width * i + 4 * j;
-								final int b = bytes[index + 0] & 0xFF;
-								final int g = bytes[index + 1] & 0xFF;
-								final int r = bytes[index + 2] & 0xFF;
-								final int a = bytes[index + 3] & 0xFF;
-								pixels[width * i + (width - j - 1)] = (r << rs) | (g << gs) | (b << bs) | (a << as);
-							}
-						}
-					} else {
-						// LowerRight
-						for (int i = 0; i < height; i++) {
-							for (int j = 0; j < width; j++) {
-								final int index = offset + 4 * width * i + 4 * j;
-								final int b = bytes[index + 0] & 0xFF;
-								final int g = bytes[index + 1] & 0xFF;
-								final int r = bytes[index + 2] & 0xFF;
-								final int a = bytes[index + 3] & 0xFF;
-								pixels[width * (height - i - 1) + (width - j - 1)] = (r << rs) | (g << gs) | (b << bs)
-										| (a << as);
-							}
-						}
-					}
-				} else {
-					if ((descriptor & UPPER_ORIGIN) != 0) {
-						// UpperLeft
-						for (int i = 0; i < height; i++) {
-							for (int j = 0; j < width; j++) {
-								final int index = offset + 4 * width * i + 4 * j;
-								final int b = bytes[index + 0] & 0xFF;
-								final int g = bytes[index + 1] & 0xFF;
-								final int r = bytes[index + 2] & 0xFF;
-								final int a = bytes[index + 3] & 0xFF;
-								pixels[width * i + j] = (r << rs) | (g << gs) | (b << bs) | (a << as);
-							}
-						}
+	/**
+	 * Decodes a whole TGA stream into a new native order direct buffer with
+	 * the given number of channels, see
+	 * {@link #read(InputStream, Header, ByteBuffer, int, int)}.
+	 */
+	public static ByteBuffer read(final InputStream input, final int channels) throws IOException {
+		final Header header = readHeader(input);
+		final ByteBuffer destination = ByteBuffer.allocateDirect(header.getWidth() * header.getHeight() * channels)
+				.order(ByteOrder.nativeOrder());
+		read(input, header, destination, channels, header.getWidth());
+		return destination;
+	}
+
+	/**
+	 * Decodes the rest of a TGA stream after {@link #readHeader(InputStream)}
+	 * straight into destination, starting at its position, which is not
+	 * changed. Pixels are written as R (1 channel), RGB (3) or RGBA (4) bytes,
+	 * rows rowLength pixels apart and in GL order, i.e. the bottom image row
+	 * first, whatever the origin of the file. Grayscale is expanded to RGB,
+	 * missing alpha is opaque and 1 channel keeps red or gray only. The data
+	 * is read in small chunks and each row is written once, so neither the
+	 * file nor the image is ever held in full.
+	 */
+	public static void read(final InputStream input, final Header header, final ByteBuffer destination,
+			final int channels, final int rowLength) throws IOException {
+		if (channels != 1 && channels != 3 && channels != 4)
+			throw new IllegalArgumentException("Unsupported number of channels: " + channels);
+		if (rowLength < header.width)
+			throw new IllegalArgumentException("Row length " + rowLength + " is less than the width");
+		final long size = ((long) rowLength * (header.height - 1) + header.width) * channels;
+		if (header.height > 0 && destination.remaining() < size)
+			throw new IllegalArgumentException("Destination holds less than " + size + " bytes");
+
+		final Source source = new Source(input);
+		source.skip(header.idLength);
+		byte[] palette = null;
+		if ((header.type & 7) == COLORMAP) {
+			palette = new byte[header.colormapLength * (header.colormapDepth / 8)];
+			source.read(palette, 0, palette.length);
+		} else
+			source.skip(header.colormapLength * ((header.colormapDepth + 7) / 8));
+
+		final int elementSize = header.getElementSize();
+		final byte[] row = new byte[header.width * elementSize];
+		final byte[] rgba = new byte[header.width * 4];
+		final byte[] packed = channels == 4 ? rgba : new byte[header.width * channels];
+		final RunLengthDecoder decoder = header.isRLE() ? new RunLengthDecoder(elementSize) : null;
+		final ByteBuffer target = destination.duplicate();
+		final int base = destination.position();
+
+		for (int i = 0; i < header.height; i++) {
+			if (decoder != null)
+				decoder.decode(source, row);
+			else
+				source.read(row, 0, row.length);
+
+			expand(header, row, palette, rgba);
+			if (channels != 4)
+				pack(rgba, packed, channels);
+
+			// lower origin files are stored bottom up already
+			final int y = header.isUpperOrigin() ? header.height - 1 - i : i;
+			target.position(base + y * rowLength * channels);
+			target.put(packed, 0, header.width * channels);
+		}
+	}
+
+	/**
+	 * Converts one stored row to RGBA, mirroring it for right origin files.
+	 */
+	private static void expand(final Header header, final byte[] row, final byte[] palette, final byte[] rgba) {
+		final int width = header.width;
+		final boolean mirror = header.isRightOrigin();
+		final int elementSize = header.getElementSize();
+		for (int j = 0; j < width; j++) {
+			final int index = j * elementSize;
+			final int out = 4 * (mirror ? width - j - 1 : j);
+			switch (header.type & 7) {
+				case COLORMAP: {
+					final int entrySize = header.colormapDepth / 8;
+					final int colormapIndex = (row[index] & 0xFF) - header.colormapOrigin;
+					if (colormapIndex < 0 || colormapIndex >= header.colormapLength) {
+						rgba[out] = rgba[out + 1] = rgba[out + 2] = rgba[out + 3] = (byte) 0xFF;
 					} else {
-						// LowerLeft
-						for (int i = 0; i < height; i++) {
-							for (int j = 0; j < width; j++) {
-								final int index = offset + 4 * width * i + 4 * j;
-								final int b = bytes[index + 0] & 0xFF;
-								final int g = bytes[index + 1] & 0xFF;
-								final int r = bytes[index + 2] & 0xFF;
-								final int a = bytes[index + 3] & 0xFF;
-								pixels[width * (height - i - 1) + j] = (r << rs) | (g << gs) | (b << bs) | (a << as);
-							}
-						}
+						final int entry = entrySize * colormapIndex;
+						rgba[out] = palette[entry + 2];
+						rgba[out + 1] = palette[entry + 1];
+						rgba[out + 2] = palette[entry];
+						rgba[out + 3] = entrySize == 4 ? palette[entry + 3] : (byte) 0xFF;
 					}
 				}
-				break;
-			default:
-				throw new IOException("Unsupported depth:" + depth);
+					break;
+				case RGB:
+					rgba[out] = row[index + 2];
+					rgba[out + 1] = row[index + 1];
+					rgba[out + 2] = row[index];
+					rgba[out + 3] = elementSize == 4 ? row[index + 3] : (byte) 0xFF;
+					break;
+				default:
+					rgba[out] = rgba[out + 1] = rgba[out + 2] = row[index];
+					rgba[out + 3] = elementSize == 2 ? row[index + 1] : (byte) 0xFF;
+			}
 		}
-		return pixels;
 	}
 
-	private static int[] createPixelsFromGrayscale(final int width, final int height, final int depth,
-			final byte[] bytes, final int offset, final int descriptor, final Order order) throws IOException {
-		int[] pixels = null;
-		final int rs = order.redShift;
-		final int gs = order.greenShift;
-		final int bs = order.blueShift;
-		final int as = order.alphaShift;
-		switch (depth) {
-			case 8:
-				pixels = new int[width * height];
-				if ((descriptor & RIGHT_ORIGIN) != 0) {
-					if ((descriptor & UPPER_ORIGIN) != 0) {
-						// UpperRight
-						for (int i = 0; i < height; i++) {
-							for (int j = 0; j < width; j++) {
-								final int e = bytes[offset + width * i + j] & 0xFF;
-								final int a = 0xFF;
-								pixels[width * i + (width - j - 1)] = (e << rs) | (e << gs) | (e << bs) | (a << as);
-							}
-						}
-					} else {
-						// LowerRight
-						for (int i = 0; i < height; i++) {
-							for (int j = 0; j < width; j++) {
-								final int e = bytes[offset + width * i + j] & 0xFF;
-								final int a = 0xFF;
-								pixels[width * (height - i - 1) + (width - j - 1)] = (e << rs) | (e << gs) | (e << bs)
-										| (a << as);
-							}
-						}
-					}
-				} else {
-					if ((descriptor & UPPER_ORIGIN) != 0) {
-						// UpperLeft
-						for (int i = 0; i < height; i++) {
-							for (int j = 0; j < width; j++) {
-								final int e = bytes[offset + width * i + j] & 0xFF;
-								final int a = 0xFF;
-								pixels[width * i + j] = (e << rs) | (e << gs) | (e << bs) | (a << as);
-							}
-						}
-					} else {
-						// LowerLeft
-						for (int i = 0; i < height; i++) {
-							for (int j = 0; j < width; j++) {
-								final int e = bytes[offset + width * i + j] & 0xFF;
-								final int a = 0xFF;
-								pixels[width * (height - i - 1) + j] = (e << rs) | (e << gs) | (e << bs) | (a << as);
-							}
-						}
-					}
+	private static void pack(final byte[] rgba, final byte[] packed, final int channels) {
+		final int width = rgba.length / 4;
+		if (channels == 3)
+			for (int j = 0; j < width; j++) {
+				packed[3 * j] = rgba[4 * j];
+				packed[3 * j + 1] = rgba[4 * j + 1];
+				packed[3 * j + 2] = rgba[4 * j + 2];
+			}
+		else
+			for (int j = 0; j < width; j++)
+				packed[j] = rgba[4 * j];
+	}
+
+	/**
+	 * Buffered reads from a stream or from a file in memory, failing at the
+	 * end.
+	 */
+	private static final class Source {
+		private final InputStream input;
+		private final byte[] buffer;
+		private int position;
+		private int limit;
+
+		Source(final InputStream input) {
+			this.input = input;
+			buffer = new byte[1 << 16];
+		}
+
+		/**
+		 * Reads from a file in memory, starting at position.
+		 */
+		Source(final byte[] buffer, final int position) {
+			input = null;
+			this.buffer = buffer;
+			this.position = position;
+			limit = buffer.length;
+		}
+
+		private void fill() throws IOException {
+			if (input == null)
+				throw new EOFException("TGA image data is truncated");
+			limit = input.read(buffer);
+			position = 0;
+			if (limit <= 0) {
+				limit = 0;
+				throw new EOFException("TGA image data is truncated");
+			}
+		}
+
+		int next() throws IOException {
+			if (position == limit)
+				fill();
+			return buffer[position++] & 0xFF;
+		}
+
+		void read(final byte[] target, int offset, int length) throws IOException {
+			while (length > 0) {
+				if (position == limit)
+					fill();
+				final int count = Math.min(length, limit - position);
+				System.arraycopy(buffer, position, target, offset, count);
+				position += count;
+				offset += count;
+				length -= count;
+			}
+		}
+
+		void skip(int length) throws IOException {
+			while (length > 0) {
+				if (position == limit)
+					fill();
+				final int count = Math.min(length, limit - position);
+				position += count;
+				length -= count;
+			}
+		}
+	}
+
+	/**
+	 * Decodes RLE packets one row at a time; packets may span rows.
+	 */
+	private static final class RunLengthDecoder {
+		private final int elementSize;
+		private final byte[] element;
+		private int remaining;
+		private boolean repeat;
+
+		RunLengthDecoder(final int elementSize) {
+			this.elementSize = elementSize;
+			element = new byte[elementSize];
+		}
+
+		/**
+		 * Continues in the middle of the packet at the position of source,
+		 * after its first skip pixels.
+		 */
+		void resume(final Source source, final int skip) throws IOException {
+			if (skip == 0)
+				return;
+			final int packet = source.next();
+			remaining = (packet & 0x7F) + 1 - skip;
+			repeat = (packet & 0x80) != 0;
+			if (repeat)
+				source.read(element, 0, elementSize);
+			else
+				source.skip(skip * elementSize);
+		}
+
+		void decode(final Source source, final byte[] row) throws IOException {
+			int decoded = 0;
+			while (decoded < row.length) {
+				if (remaining == 0) {
+					final int packet = source.next();
+					remaining = (packet & 0x7F) + 1;
+					repeat = (packet & 0x80) != 0;
+					if (repeat)
+						source.read(element, 0, elementSize);
 				}
-				break;
-			case 16:
-				pixels = new int[width * height];
-				if ((descriptor & RIGHT_ORIGIN) != 0) {
-					if ((descriptor & UPPER_ORIGIN) != 0) {
-						// UpperRight
-						for (int i = 0; i < height; i++) {
-							for (int j = 0; j < width; j++) {
-								final int e = bytes[offset + 2 * width * i + 2 * j + 0] & 0xFF;
-								final int a = bytes[offset + 2 * width * i + 2 * j + 1] & 0xFF;
-								pixels[width * i + (width - j - 1)] = (e << rs) | (e << gs) | (e << bs) | (a << as);
-							}
-						}
-					} else {
-						// LowerRight
-						for (int i = 0; i < height; i++) {
-							for (int j = 0; j < width; j++) {
-								final int e = bytes[offset + 2 * width * i + 2 * j + 0] & 0xFF;
-								final int a = bytes[offset + 2 * width * i + 2 * j + 1] & 0xFF;
-								pixels[width * (height - i - 1) + (width - j - 1)] = (e << rs) | (e << gs) | (e << bs)
-										| (a << as);
-							}
-						}
-					}
-				} else {
-					if ((descriptor & UPPER_ORIGIN) != 0) {
-						// UpperLeft
-						for (int i = 0; i < height; i++) {
-							for (int j = 0; j < width; j++) {
-								final int e = bytes[offset + 2 * width * i + 2 * j + 0] & 0xFF;
-								final int a = bytes[offset + 2 * width * i + 2 * j + 1] & 0xFF;
-								pixels[width * i + j] = (e << rs) | (e << gs) | (e << bs) | (a << as);
-							}
-						}
-					} else {
-						// LowerLeft
-						for (int i = 0; i < height; i++) {
-							for (int j = 0; j < width; j++) {
-								final int e = bytes[offset + 2 * width * i + 2 * j + 0] & 0xFF;
-								final int a = bytes[offset + 2 * width * i + 2 * j + 1] & 0xFF;
-								pixels[width * (height - i - 1) + j] = (e << rs) | (e << gs) | (e << bs) | (a << as);
-							}
-						}
+				final int count = Math.min(remaining, (row.length - decoded) / elementSize);
+				if (repeat)
+					for (int i = 0; i < count; i++) {
+						System.arraycopy(element, 0, row, decoded, elementSize);
+						decoded += elementSize;
 					}
+				else {
+					source.read(row, decoded, count * elementSize);
+					decoded += count * elementSize;
 				}
-				break;
-			default:
-				throw new IOException("Unsupported depth:" + depth);
+				remaining -= count;
+			}
 		}
-		return pixels;
 	}
 
 	private TGAReader() {
@@ -0,0 +1,227 @@
+package cleargl;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import com.jogamp.opengl.GL4;
+
+import cleargl.util.image.MipMapBuilder;
+import cleargl.util.image.TextureContainer;
+
+/**
+ * Keeps decoded images with all their mip-map levels in a cache directory,
+ * so that later runs upload them from a memory-mapped
+ * {@link TextureContainer} instead of decoding, flipping, padding and
+ * downsampling again. Entries are named after a hash of the source file's
+ * contents and modification time and the load options; stale entries are
+ * simply not found anymore and can be deleted with {@link #clear()}.
+ * <pre>
+ * TextureCache lCache = new TextureCache(Paths.get("cache"));
+ * GLTexture lTexture = lCache.load(gl, "diffuse.png", true, true, 8);
+ * </pre>
+ * Mip-map levels are computed on the CPU with the box filter when an entry
+ * is created, instead of glGenerateMipmap, so that they can be stored.
+ */
+public class TextureCache {
+
+	private static final long cPrime1 = 0x9E3779B97F4A7C15L;
+	private static final long cPrime2 = 0xBF58476D1CE4E5B9L;
+
+	private final Path mDirectory;
+	private volatile boolean mPowerOfTwo = true;
+	private volatile MipMapBuilder.Filter mFilter = MipMapBuilder.Filter.Box;
+
+	private long mHitCount;
+	private long mMissCount;
+
+	public TextureCache(final Path pDirectory) {
+		mDirectory = pDirectory;
+	}
+
+	/**
+	 * Loads an image file into a texture, from the cache if possible. On a
+	 * miss the image is decoded as {@link GLTexture#loadFromFile} would, and
+	 * the entry is written; failing to write it is not an error. Must be
+	 * called on the GL thread.
+	 */
+	public GLTexture load(final GL4 pGL,
+			final String pFileName,
+			final boolean pLinearInterpolation,
+			final boolean pGenerateMipmaps,
+			final int pMaxMipmapLevels) throws IOException {
+		final Path lSource = Paths.get(pFileName);
+		final Path lEntry = getEntryPath(lSource,
+				pGenerateMipmaps,
+				pMaxMipmapLevels);
+
+		if (Files.exists(lEntry))
+			try (TextureContainer lContainer = TextureContainer.open(lEntry)) {
+				final GLTexture lTexture = lContainer.createTexture(pGL,
+						pLinearInterpolation);
+				synchronized (this) {
+					mHitCount++;
+				}
+				return lTexture;
+			} catch (final IOException e) {
+				// unreadable entries are replaced below
+				System.err.println("TextureCache: ignoring " + lEntry
+						+ ": "
+						+ e.getMessage());
+			}
+
+		synchronized (this) {
+			mMissCount++;
+		}
+		final TextureLoader.TextureData lData;
+		try (InputStream lInput = Files.newInputStream(lSource)) {
+			lData = TextureLoader.decode(lInput,
+					pFileName.substring(pFileName.lastIndexOf('.') + 1),
+					pFileName,
+					mPowerOfTwo);
+		}
+
+		final int lLevels = lData.getMipMapLevels(pGenerateMipmaps,
+				pMaxMipmapLevels);
+		final ByteBuffer[] lLevelData = MipMapBuilder.build(lData.getData(),
+				lData.getType(),
+				lData.getChannels(),
+				lData.getWidth(),
+				lData.getHeight(),
+				1,
+				lLevels,
+				mFilter);
+		final GLTexture lTexture = new GLTexture(pGL,
+				lData.getType(),
+				lData.getChannels(),
+				lData.getWidth(),
+				lData.getHeight(),
+				1,
+				pLinearInterpolation,
+				lLevels,
+				32,
+				true,
+				lData.isSRGB());
+		lTexture.copyMipMapsFrom(lLevelData);
+
+		try {
+			Files.createDirectories(mDirectory);
+			TextureContainer.write(lEntry, lTexture, lLevelData);
+		} catch (final IOException e) {
+			System.err.println("TextureCache: could not write " + lEntry
+					+ ": "
+					+ e.getMessage());
+		}
+		return lTexture;
+	}
+
+	/**
+	 * Path of the entry for a source file and load options; the file is
+	 * read and hashed, but not decoded.
+	 */
+	public Path getEntryPath(final Path pSource,
+			final boolean pGenerateMipmaps,
+			final int pMaxMipmapLevels) throws IOException {
+		long lHash = hash(pSource);
+		lHash = mix(lHash, Files.getLastModifiedTime(pSource).toMillis());
+		lHash = mix(lHash, mPowerOfTwo ? 1 : 0);
+		lHash = mix(lHash, pGenerateMipmaps ? pMaxMipmapLevels : 1);
+		lHash = mix(lHash, mFilter.ordinal());
+		return mDirectory.resolve(String.format("%016x", lHash) + TextureContainer.SUFFIX);
+	}
+
+	/**
+	 * 64 bit hash of a file's contents, read through a memory mapping.
+	 */
+	static long hash(final Path pFile) throws IOException {
+		try (FileChannel lChannel = FileChannel.open(pFile,
+				StandardOpenOption.READ)) {
+			long lHash = cPrime1 ^ lChannel.size();
+			for (long lStart = 0; lStart < lChannel.size(); lStart += Integer.MAX_VALUE) {
+				final MappedByteBuffer lBuffer = lChannel.map(FileChannel.MapMode.READ_ONLY,
+						lStart,
+						Math.min(Integer.MAX_VALUE, lChannel.size() - lStart));
+				lBuffer.order(ByteOrder.LITTLE_ENDIAN);
+				final int lLength = lBuffer.remaining();
+				int i = 0;
+				for (; i + 8 <= lLength; i += 8)
+					lHash = mix(lHash, lBuffer.getLong(i));
+				for (; i < lLength; i++)
+					lHash = mix(lHash, lBuffer.get(i));
+			}
+			lHash = (lHash ^ (lHash >>> 30)) * cPrime2;
+			lHash = (lHash ^ (lHash >>> 27)) * 0x94D049BB133111EBL;
+			return lHash ^ (lHash >>> 31);
+		}
+	}
+
+	private static long mix(final long pHash, final long pWord) {
+		return Long.rotateLeft(pHash ^ (pWord * cPrime1), 29) * cPrime2;
+	}
+
+	/**
+	 * Deletes all entries in the cache directory.
+	 */
+	public void clear() throws IOException {
+		if (!Files.isDirectory(mDirectory))
+			return;
+		try (DirectoryStream<Path> lEntries = Files.newDirectoryStream(mDirectory,
+				"*" + TextureContainer.SUFFIX)) {
+			for (final Path lEntry : lEntries)
+				Files.deleteIfExists(lEntry);
+		}
+	}
+
+	/**
+	 * Whether images are padded to power-of-two sizes, the default, as with
+	 * {@link TextureLoader#setPowerOfTwo(boolean)}.
+	 */
+	public void setPowerOfTwo(final boolean pPowerOfTwo) {
+		mPowerOfTwo = pPowerOfTwo;
+	}
+
+	public boolean isPowerOfTwo() {
+		return mPowerOfTwo;
+	}
+
+	/**
+	 * Filter for the mip-map levels of new entries, box by default.
+	 */
+	public void setFilter(final MipMapBuilder.Filter pFilter) {
+		mFilter = pFilter;
+	}
+
+	public MipMapBuilder.Filter getFilter() {
+		return mFilter;
+	}
+
+	public Path getDirectory() {
+		return mDirectory;
+	}
+
+	public synchronized long getHitCount() {
+		return mHitCount;
+	}
+
+	public synchronized long getMissCount() {
+		return mMissCount;
+	}
+
+	@Override
+	public String toString() {
+		return "TextureCache [mDirectory=" + mDirectory
+				+ ", mHitCount="
+				+ getHitCount()
+				+ ", mMissCount="
+				+ getMissCount()
+				+ "]";
+	}
+
+}
@@ -0,0 +1,301 @@
+package cleargl;
+
+import com.jogamp.opengl.GL4;
+
+import javax.imageio.ImageIO;
+import java.awt.image.BufferedImage;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import cleargl.util.image.MipMapBuilder;
+import cleargl.util.image.RasterConverter;
+
+/**
+ * Loads images into ready-to-upload texture data on a pool of worker threads,
+ * so that decoding and conversion do not stall the GL thread:
+ * <pre>
+ * CompletableFuture&lt;TextureData&gt; lFuture = lLoader.load("diffuse.png");
+ * ...
+ * if (lFuture.isDone())                    // GL thread
+ *   lTexture = lFuture.join().createTexture(gl, true, true, 8);
+ * </pre>
+ */
+public class TextureLoader implements AutoCloseable {
+
+	/**
+	 * Decoded image as 8 bit RGBA texels in GL row order, i.e. the bottom
+	 * image row first.
+	 */
+	public static class TextureData {
+		private final String mSource;
+		private final ByteBuffer mData;
+		private final int mImageWidth;
+		private final int mImageHeight;
+		private final int mWidth;
+		private final int mHeight;
+		private final GLTypeEnum mType;
+		private final int mChannels;
+		private final boolean msRGB;
+
+		TextureData(final String pSource,
+				final ByteBuffer pData,
+				final int pImageWidth,
+				final int pImageHeight,
+				final int pWidth,
+				final int pHeight,
+				final GLTypeEnum pType,
+				final int pChannels,
+				final boolean psRGB) {
+			mSource = pSource;
+			mData = pData;
+			mImageWidth = pImageWidth;
+			mImageHeight = pImageHeight;
+			mWidth = pWidth;
+			mHeight = pHeight;
+			mType = pType;
+			mChannels = pChannels;
+			msRGB = psRGB;
+		}
+
+		public String getSource() {
+			return mSource;
+		}
+
+		/**
+		 * Texel data, native order and positioned at 0.
+		 */
+		public ByteBuffer getData() {
+			return mData;
+		}
+
+		public int getImageWidth() {
+			return mImageWidth;
+		}
+
+		public int getImageHeight() {
+			return mImageHeight;
+		}
+
+		/**
+		 * Texture width, the image width or the next power of two.
+		 */
+		public int getWidth() {
+			return mWidth;
+		}
+
+		public int getHeight() {
+			return mHeight;
+		}
+
+		public GLTypeEnum getType() {
+			return mType;
+		}
+
+		public int getChannels() {
+			return mChannels;
+		}
+
+		public boolean isSRGB() {
+			return msRGB;
+		}
+
+		public int getMipMapLevels(final boolean pGenerateMipmaps,
+				final int pMaxMipmapLevels) {
+			if (!pGenerateMipmaps)
+				return 1;
+			return Math.min(pMaxMipmapLevels,
+					MipMapBuilder.getLevelCount(mWidth, mHeight, 1));
+		}
+
+		/**
+		 * Creates the texture and uploads the data, must be called on the GL
+		 * thread.
+		 */
+		public GLTexture createTexture(final GL4 pGL,
+				final boolean pLinearInterpolation,
+				final boolean pGenerateMipmaps,
+				final int pMaxMipmapLevels) {
+			final GLTexture lTexture = new GLTexture(pGL,
+					mType,
+					mChannels,
+					mWidth,
+					mHeight,
+					1,
+					pLinearInterpolation,
+					getMipMapLevels(pGenerateMipmaps, pMaxMipmapLevels),
+					32,
+					true,
+					msRGB);
+
+			lTexture.clear();
+			lTexture.copyFrom(mData);
+			lTexture.updateMipMaps();
+			return lTexture;
+		}
+
+		@Override
+		public String toString() {
+			return "TextureData [mSource=" + mSource
+					+ ", mWidth="
+					+ mWidth
+					+ ", mHeight="
+					+ mHeight
+					+ ", mType="
+					+ mType
+					+ ", mChannels="
+					+ mChannels
+					+ "]";
+		}
+	}
+
+	private final ExecutorService mExecutorService;
+	private final boolean mOwnsExecutorService;
+	private volatile boolean mPowerOfTwo = true;
+
+	/**
+	 * Creates a loader with one daemon thread per available core.
+	 */
+	public TextureLoader() {
+		this(Runtime.getRuntime().availableProcessors());
+	}
+
+	public TextureLoader(final int pNumberOfThreads) {
+		mExecutorService = Executors.newFixedThreadPool(Math.max(1,
+				pNumberOfThreads), r -> {
+					final Thread lThread = new Thread(r, "TextureLoader");
+					lThread.setDaemon(true);
+					return lThread;
+				});
+		mOwnsExecutorService = true;
+	}
+
+	/**
+	 * Creates a loader that runs on the given executor and leaves it open on
+	 * {@link #close()}.
+	 */
+	public TextureLoader(final ExecutorService pExecutorService) {
+		mExecutorService = pExecutorService;
+		mOwnsExecutorService = false;
+	}
+
+	/**
+	 * Decodes and converts the given file on a worker thread. The future
+	 * completes exceptionally if the file cannot be read.
+	 */
+	public CompletableFuture<TextureData> load(final String pFileName) {
+		return CompletableFuture.supplyAsync(() -> {
+			try (InputStream lInput = new FileInputStream(pFileName)) {
+				return decode(lInput,
+						pFileName.substring(pFileName.lastIndexOf('.') + 1),
+						pFileName,
+						mPowerOfTwo);
+			} catch (final IOException e) {
+				throw new CompletionException(e);
+			}
+		}, mExecutorService);
+	}
+
+	/**
+	 * Starts loading all files at once, the futures are in the same order.
+	 */
+	public List<CompletableFuture<TextureData>> loadAll(final Collection<String> pFileNames) {
+		final List<CompletableFuture<TextureData>> lFutures = new ArrayList<>(pFileNames.size());
+		for (final String lFileName : pFileNames)
+			lFutures.add(load(lFileName));
+		return lFutures;
+	}
+
+	/**
+	 * Decodes and converts an image on the calling thread into a power-of-two
+	 * texture; pType is the file extension, e.g. "tga" or ".png".
+	 */
+	public static TextureData decode(final InputStream pInput,
+			final String pType,
+			final String pSource) throws IOException {
+		return decode(pInput, pType, pSource, true);
+	}
+
+	/**
+	 * Decodes and converts an image on the calling thread. Without
+	 * pPowerOfTwo, the texture has exactly the size of the image.
+	 */
+	public static TextureData decode(final InputStream pInput,
+			final String pType,
+			final String pSource,
+			final boolean pPowerOfTwo) throws IOException {
+		if (pType.toLowerCase().endsWith("tga"))
+			return decodeTGA(pInput, pSource, pPowerOfTwo);
+
+		final BufferedImage lImage = ImageIO.read(pInput);
+		if (lImage == null)
+			throw new IOException("no image reader for " + pSource);
+
+		// convert to OpenGL UV space
+		final ByteBuffer lData = RasterConverter.toRGBA(lImage, true, pPowerOfTwo);
+
+		return new TextureData(pSource,
+				lData,
+				lImage.getWidth(),
+				lImage.getHeight(),
+				RasterConverter.getTextureSize(lImage.getWidth(), pPowerOfTwo),
+				RasterConverter.getTextureSize(lImage.getHeight(), pPowerOfTwo),
+				GLTypeEnum.UnsignedByte,
+				4,
+				true);
+	}
+
+	/**
+	 * Decodes a TGA stream directly into the padded RGBA texture buffer, in
+	 * GL row order, without an intermediate image.
+	 */
+	private static TextureData decodeTGA(final InputStream pInput,
+			final String pSource,
+			final boolean pPowerOfTwo) throws IOException {
+		final TGAReader.Header lHeader = TGAReader.readHeader(pInput);
+		final int lWidth = RasterConverter.getTextureSize(lHeader.getWidth(),
+				pPowerOfTwo);
+		final int lHeight = RasterConverter.getTextureSize(lHeader.getHeight(),
+				pPowerOfTwo);
+		final ByteBuffer lData = ByteBuffer.allocateDirect(lWidth * lHeight * 4)
+				.order(ByteOrder.nativeOrder());
+		TGAReader.read(pInput, lHeader, lData, 4, lWidth);
+
+		return new TextureData(pSource,
+				lData,
+				lHeader.getWidth(),
+				lHeader.getHeight(),
+				lWidth,
+				lHeight,
+				GLTypeEnum.UnsignedByte,
+				4,
+				true);
+	}
+
+	/**
+	 * Whether loaded textures are padded to power-of-two sizes, the default.
+	 */
+	public void setPowerOfTwo(final boolean pPowerOfTwo) {
+		mPowerOfTwo = pPowerOfTwo;
+	}
+
+	public boolean isPowerOfTwo() {
+		return mPowerOfTwo;
+	}
+
+	@Override
+	public void close() {
+		if (mOwnsExecutorService)
+			mExecutorService.shutdown();
+	}
+
+}
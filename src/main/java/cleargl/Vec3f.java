@@ -0,0 +1,220 @@
+package cleargl;
+
+import java.io.Serializable;
+import java.nio.FloatBuffer;
+
+/**
+ * Mutable 3-component float vector with plain fields and unrolled arithmetic.
+ * Unlike {@link GLVector} it has no backing array, so short-lived instances
+ * can be scalar-replaced by the JIT. All operations mutate and return the
+ * receiver; operands may alias the receiver.
+ */
+public final class Vec3f implements Serializable {
+	private static final long serialVersionUID = 1L;
+
+	public float x;
+	public float y;
+	public float z;
+
+	public Vec3f() {
+	}
+
+	public Vec3f(final float pX, final float pY, final float pZ) {
+		x = pX;
+		y = pY;
+		z = pZ;
+	}
+
+	public Vec3f(final Vec3f pVector) {
+		set(pVector);
+	}
+
+	public Vec3f set(final float pX, final float pY, final float pZ) {
+		x = pX;
+		y = pY;
+		z = pZ;
+		return this;
+	}
+
+	public Vec3f set(final Vec3f pVector) {
+		x = pVector.x;
+		y = pVector.y;
+		z = pVector.z;
+		return this;
+	}
+
+	public Vec3f set(final GLVector pVector) {
+		final float[] lElements = pVector.mElements;
+		x = lElements[0];
+		y = lElements[1];
+		z = lElements[2];
+		return this;
+	}
+
+	public Vec3f set(final float[] pArray, final int pOffset) {
+		x = pArray[pOffset];
+		y = pArray[pOffset + 1];
+		z = pArray[pOffset + 2];
+		return this;
+	}
+
+	public Vec3f setZero() {
+		x = 0;
+		y = 0;
+		z = 0;
+		return this;
+	}
+
+	public Vec3f add(final Vec3f pVector) {
+		x += pVector.x;
+		y += pVector.y;
+		z += pVector.z;
+		return this;
+	}
+
+	public Vec3f add(final Vec3f pA, final Vec3f pB) {
+		x = pA.x + pB.x;
+		y = pA.y + pB.y;
+		z = pA.z + pB.z;
+		return this;
+	}
+
+	public Vec3f sub(final Vec3f pVector) {
+		x -= pVector.x;
+		y -= pVector.y;
+		z -= pVector.z;
+		return this;
+	}
+
+	public Vec3f sub(final Vec3f pA, final Vec3f pB) {
+		x = pA.x - pB.x;
+		y = pA.y - pB.y;
+		z = pA.z - pB.z;
+		return this;
+	}
+
+	public Vec3f scale(final float pFactor) {
+		x *= pFactor;
+		y *= pFactor;
+		z *= pFactor;
+		return this;
+	}
+
+	public Vec3f mul(final Vec3f pVector) {
+		x *= pVector.x;
+		y *= pVector.y;
+		z *= pVector.z;
+		return this;
+	}
+
+	/**
+	 * this += pVector * pFactor
+	 */
+	public Vec3f addScaled(final Vec3f pVector, final float pFactor) {
+		x += pVector.x * pFactor;
+		y += pVector.y * pFactor;
+		z += pVector.z * pFactor;
+		return this;
+	}
+
+	public Vec3f lerp(final Vec3f pA, final Vec3f pB, final float pT) {
+		x = pA.x + (pB.x - pA.x) * pT;
+		y = pA.y + (pB.y - pA.y) * pT;
+		z = pA.z + (pB.z - pA.z) * pT;
+		return this;
+	}
+
+	public Vec3f negate() {
+		x = -x;
+		y = -y;
+		z = -z;
+		return this;
+	}
+
+	public float dot(final Vec3f pVector) {
+		return x * pVector.x + y * pVector.y + z * pVector.z;
+	}
+
+	public Vec3f cross(final Vec3f pA, final Vec3f pB) {
+		final float lX = pA.y * pB.z - pA.z * pB.y;
+		final float lY = pA.z * pB.x - pA.x * pB.z;
+		final float lZ = pA.x * pB.y - pA.y * pB.x;
+		x = lX;
+		y = lY;
+		z = lZ;
+		return this;
+	}
+
+	public float lengthSquared() {
+		return x * x + y * y + z * z;
+	}
+
+	public float length() {
+		return (float) Math.sqrt(lengthSquared());
+	}
+
+	public float distance(final Vec3f pVector) {
+		final float lX = x - pVector.x;
+		final float lY = y - pVector.y;
+		final float lZ = z - pVector.z;
+		return (float) Math.sqrt(lX * lX + lY * lY + lZ * lZ);
+	}
+
+	/**
+	 * Normalizes this vector, zero vectors stay zero.
+	 */
+	public Vec3f normalize() {
+		final float lLengthSquared = lengthSquared();
+		if (lLengthSquared == 0)
+			return this;
+		return scale(1.0f / (float) Math.sqrt(lLengthSquared));
+	}
+
+	public float[] get(final float[] pArray, final int pOffset) {
+		pArray[pOffset] = x;
+		pArray[pOffset + 1] = y;
+		pArray[pOffset + 2] = z;
+		return pArray;
+	}
+
+	public GLVector get(final GLVector pVector) {
+		final float[] lElements = pVector.mElements;
+		lElements[0] = x;
+		lElements[1] = y;
+		lElements[2] = z;
+		return pVector;
+	}
+
+	public FloatBuffer put(final FloatBuffer pBuffer) {
+		return pBuffer.put(x).put(y).put(z);
+	}
+
+	public GLVector toGLVector() {
+		return new GLVector(x, y, z);
+	}
+
+	@Override
+	public boolean equals(final Object pObject) {
+		if (this == pObject)
+			return true;
+		if (!(pObject instanceof Vec3f))
+			return false;
+		final Vec3f lOther = (Vec3f) pObject;
+		return Float.floatToIntBits(x) == Float.floatToIntBits(lOther.x)
+				&& Float.floatToIntBits(y) == Float.floatToIntBits(lOther.y)
+				&& Float.floatToIntBits(z) == Float.floatToIntBits(lOther.z);
+	}
+
+	@Override
+	public int hashCode() {
+		int lHash = Float.floatToIntBits(x);
+		lHash = 31 * lHash + Float.floatToIntBits(y);
+		return 31 * lHash + Float.floatToIntBits(z);
+	}
+
+	@Override
+	public String toString() {
+		return "Vec3f [" + x + ", " + y + ", " + z + "]";
+	}
+
+}
@@ -0,0 +1,215 @@
+package cleargl;
+
+import java.io.Serializable;
+import java.nio.FloatBuffer;
+
+/**
+ * Mutable 4-component float vector with plain fields and unrolled arithmetic,
+ * see {@link Vec3f}. All operations mutate and return the receiver; operands
+ * may alias the receiver.
+ */
+public final class Vec4f implements Serializable {
+	private static final long serialVersionUID = 1L;
+
+	public float x;
+	public float y;
+	public float z;
+	public float w;
+
+	public Vec4f() {
+	}
+
+	public Vec4f(final float pX, final float pY, final float pZ, final float pW) {
+		x = pX;
+		y = pY;
+		z = pZ;
+		w = pW;
+	}
+
+	public Vec4f(final Vec3f pVector, final float pW) {
+		set(pVector, pW);
+	}
+
+	public Vec4f(final Vec4f pVector) {
+		set(pVector);
+	}
+
+	public Vec4f set(final float pX, final float pY, final float pZ, final float pW) {
+		x = pX;
+		y = pY;
+		z = pZ;
+		w = pW;
+		return this;
+	}
+
+	public Vec4f set(final Vec4f pVector) {
+		x = pVector.x;
+		y = pVector.y;
+		z = pVector.z;
+		w = pVector.w;
+		return this;
+	}
+
+	public Vec4f set(final Vec3f pVector, final float pW) {
+		x = pVector.x;
+		y = pVector.y;
+		z = pVector.z;
+		w = pW;
+		return this;
+	}
+
+	public Vec4f set(final GLVector pVector) {
+		final float[] lElements = pVector.mElements;
+		x = lElements[0];
+		y = lElements[1];
+		z = lElements[2];
+		w = lElements[3];
+		return this;
+	}
+
+	public Vec4f set(final float[] pArray, final int pOffset) {
+		x = pArray[pOffset];
+		y = pArray[pOffset + 1];
+		z = pArray[pOffset + 2];
+		w = pArray[pOffset + 3];
+		return this;
+	}
+
+	public Vec4f add(final Vec4f pVector) {
+		x += pVector.x;
+		y += pVector.y;
+		z += pVector.z;
+		w += pVector.w;
+		return this;
+	}
+
+	public Vec4f add(final Vec4f pA, final Vec4f pB) {
+		x = pA.x + pB.x;
+		y = pA.y + pB.y;
+		z = pA.z + pB.z;
+		w = pA.w + pB.w;
+		return this;
+	}
+
+	public Vec4f sub(final Vec4f pVector) {
+		x -= pVector.x;
+		y -= pVector.y;
+		z -= pVector.z;
+		w -= pVector.w;
+		return this;
+	}
+
+	public Vec4f sub(final Vec4f pA, final Vec4f pB) {
+		x = pA.x - pB.x;
+		y = pA.y - pB.y;
+		z = pA.z - pB.z;
+		w = pA.w - pB.w;
+		return this;
+	}
+
+	public Vec4f scale(final float pFactor) {
+		x *= pFactor;
+		y *= pFactor;
+		z *= pFactor;
+		w *= pFactor;
+		return this;
+	}
+
+	public Vec4f mul(final Vec4f pVector) {
+		x *= pVector.x;
+		y *= pVector.y;
+		z *= pVector.z;
+		w *= pVector.w;
+		return this;
+	}
+
+	public float dot(final Vec4f pVector) {
+		return x * pVector.x + y * pVector.y + z * pVector.z + w * pVector.w;
+	}
+
+	public float lengthSquared() {
+		return x * x + y * y + z * z + w * w;
+	}
+
+	public float length() {
+		return (float) Math.sqrt(lengthSquared());
+	}
+
+	/**
+	 * Normalizes this vector, zero vectors stay zero.
+	 */
+	public Vec4f normalize() {
+		final float lLengthSquared = lengthSquared();
+		if (lLengthSquared == 0)
+			return this;
+		return scale(1.0f / (float) Math.sqrt(lLengthSquared));
+	}
+
+	/**
+	 * Divides x, y and z by w (perspective divide), w becomes 1.
+	 */
+	public Vec4f homogenize() {
+		final float lFactor = 1.0f / w;
+		x *= lFactor;
+		y *= lFactor;
+		z *= lFactor;
+		w = 1;
+		return this;
+	}
+
+	public Vec3f xyz(final Vec3f pDestination) {
+		return pDestination.set(x, y, z);
+	}
+
+	public float[] get(final float[] pArray, final int pOffset) {
+		pArray[pOffset] = x;
+		pArray[pOffset + 1] = y;
+		pArray[pOffset + 2] = z;
+		pArray[pOffset + 3] = w;
+		return pArray;
+	}
+
+	public GLVector get(final GLVector pVector) {
+		final float[] lElements = pVector.mElements;
+		lElements[0] = x;
+		lElements[1] = y;
+		lElements[2] = z;
+		lElements[3] = w;
+		return pVector;
+	}
+
+	public FloatBuffer put(final FloatBuffer pBuffer) {
+		return pBuffer.put(x).put(y).put(z).put(w);
+	}
+
+	public GLVector toGLVector() {
+		return new GLVector(x, y, z, w);
+	}
+
+	@Override
+	public boolean equals(final Object pObject) {
+		if (this == pObject)
+			return true;
+		if (!(pObject instanceof Vec4f))
+			return false;
+		final Vec4f lOther = (Vec4f) pObject;
+		return Float.floatToIntBits(x) == Float.floatToIntBits(lOther.x)
+				&& Float.floatToIntBits(y) == Float.floatToIntBits(lOther.y)
+				&& Float.floatToIntBits(z) == Float.floatToIntBits(lOther.z)
+				&& Float.floatToIntBits(w) == Float.floatToIntBits(lOther.w);
+	}
+
+	@Override
+	public int hashCode() {
+		int lHash = Float.floatToIntBits(x);
+		lHash = 31 * lHash + Float.floatToIntBits(y);
+		lHash = 31 * lHash + Float.floatToIntBits(z);
+		return 31 * lHash + Float.floatToIntBits(w);
+	}
+
+	@Override
+	public String toString() {
+		return "Vec4f [" + x + ", " + y + ", " + z + ", " + w + "]";
+	}
+
+}
@@ -1,6 +1,7 @@
 package cleargl.util.arcball;
 
 import cleargl.GLMatrix;
+import cleargl.Vec3f;
 import com.jogamp.opengl.math.Quaternion;
 
 public class ArcBall {
@@ -8,6 +9,7 @@ public class ArcBall {
 
 	float[] mStartVector;
 	float[] mEndVector;
+	private final float[] mScratchVector = new float[3];
 	float mMouseBoundsWidth = 1;
 	float mMouseBoundsHeight = 1;
 
@@ -61,6 +63,14 @@ public class ArcBall {
 
 	}
 
+	public Vec3f mapToSphere(float p2DPointX,
+			float p2DPointY,
+			Vec3f p3DVector) {
+		final float[] lVector = mScratchVector;
+		mapToSphere(p2DPointX, p2DPointY, lVector);
+		return p3DVector.set(lVector, 0);
+	}
+
 	public void setBounds(float pMouseBoundsWidth,
 			float pMouseBoundsHeight) {
 		assert ((pMouseBoundsWidth > 1.0f) && (pMouseBoundsHeight > 1.0f));
@@ -80,7 +90,7 @@ public class ArcBall {
 		// Map the point to the sphere
 		this.mapToSphere(p2DPointX, p2DPointY, mEndVector);
 
-		final float[] lPerp = new float[3];
+		final float[] lPerp = mScratchVector;
 
 		// Compute the vector perpendicular to the begin and end vectors
 		GLMatrix.cross(lPerp, mStartVector, mEndVector);
@@ -0,0 +1,88 @@
+package cleargl.util.culling;
+
+/**
+ * Axis-aligned bounding boxes stored structure-of-arrays, one float array per
+ * coordinate, so culling loops stream through memory.
+ */
+public class BoundingBoxArray {
+
+	private final float[] mMinX, mMinY, mMinZ;
+	private final float[] mMaxX, mMaxY, mMaxZ;
+	private int mSize;
+
+	public BoundingBoxArray(final int pCapacity) {
+		mMinX = new float[pCapacity];
+		mMinY = new float[pCapacity];
+		mMinZ = new float[pCapacity];
+		mMaxX = new float[pCapacity];
+		mMaxY = new float[pCapacity];
+		mMaxZ = new float[pCapacity];
+	}
+
+	public int size() {
+		return mSize;
+	}
+
+	public int capacity() {
+		return mMinX.length;
+	}
+
+	public void clear() {
+		mSize = 0;
+	}
+
+	/**
+	 * Appends a box and returns its index.
+	 */
+	public int add(final float pMinX,
+			final float pMinY,
+			final float pMinZ,
+			final float pMaxX,
+			final float pMaxY,
+			final float pMaxZ) {
+		if (mSize == capacity())
+			throw new IllegalStateException("Bounding box array is full (" + capacity() + ")");
+		set(mSize, pMinX, pMinY, pMinZ, pMaxX, pMaxY, pMaxZ);
+		return mSize++;
+	}
+
+	public void set(final int pIndex,
+			final float pMinX,
+			final float pMinY,
+			final float pMinZ,
+			final float pMaxX,
+			final float pMaxY,
+			final float pMaxZ) {
+		mMinX[pIndex] = pMinX;
+		mMinY[pIndex] = pMinY;
+		mMinZ[pIndex] = pMinZ;
+		mMaxX[pIndex] = pMaxX;
+		mMaxY[pIndex] = pMaxY;
+		mMaxZ[pIndex] = pMaxZ;
+	}
+
+	public float[] getMinX() {
+		return mMinX;
+	}
+
+	public float[] getMinY() {
+		return mMinY;
+	}
+
+	public float[] getMinZ() {
+		return mMinZ;
+	}
+
+	public float[] getMaxX() {
+		return mMaxX;
+	}
+
+	public float[] getMaxY() {
+		return mMaxY;
+	}
+
+	public float[] getMaxZ() {
+		return mMaxZ;
+	}
+
+}
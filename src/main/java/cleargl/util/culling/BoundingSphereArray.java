@@ -0,0 +1,68 @@
+package cleargl.util.culling;
+
+/**
+ * Bounding spheres stored structure-of-arrays, see {@link BoundingBoxArray}.
+ */
+public class BoundingSphereArray {
+
+	private final float[] mX, mY, mZ;
+	private final float[] mRadius;
+	private int mSize;
+
+	public BoundingSphereArray(final int pCapacity) {
+		mX = new float[pCapacity];
+		mY = new float[pCapacity];
+		mZ = new float[pCapacity];
+		mRadius = new float[pCapacity];
+	}
+
+	public int size() {
+		return mSize;
+	}
+
+	public int capacity() {
+		return mX.length;
+	}
+
+	public void clear() {
+		mSize = 0;
+	}
+
+	/**
+	 * Appends a sphere and returns its index.
+	 */
+	public int add(final float pX, final float pY, final float pZ, final float pRadius) {
+		if (mSize == capacity())
+			throw new IllegalStateException("Bounding sphere array is full (" + capacity() + ")");
+		set(mSize, pX, pY, pZ, pRadius);
+		return mSize++;
+	}
+
+	public void set(final int pIndex,
+			final float pX,
+			final float pY,
+			final float pZ,
+			final float pRadius) {
+		mX[pIndex] = pX;
+		mY[pIndex] = pY;
+		mZ[pIndex] = pZ;
+		mRadius[pIndex] = pRadius;
+	}
+
+	public float[] getX() {
+		return mX;
+	}
+
+	public float[] getY() {
+		return mY;
+	}
+
+	public float[] getZ() {
+		return mZ;
+	}
+
+	public float[] getRadius() {
+		return mRadius;
+	}
+
+}
@@ -0,0 +1,108 @@
+package cleargl.util.culling;
+
+import cleargl.GLMatrix;
+
+/**
+ * View frustum as six normalized planes (a, b, c, d), with a point p inside a
+ * plane if a*p.x + b*p.y + c*p.z + d >= 0. Planes are extracted from a
+ * combined projection * view (* model) matrix, so the tests are done in the
+ * space that matrix maps from.
+ */
+public class Frustum {
+
+	public static final int LEFT = 0;
+	public static final int RIGHT = 1;
+	public static final int BOTTOM = 2;
+	public static final int TOP = 3;
+	public static final int NEAR = 4;
+	public static final int FAR = 5;
+
+	private final float[] mPlanes = new float[24];
+
+	public Frustum() {
+	}
+
+	public Frustum(final GLMatrix pProjectionView) {
+		setFromMatrix(pProjectionView);
+	}
+
+	/**
+	 * Extracts the planes from the rows of the given column-major matrix
+	 * (Gribb/Hartmann).
+	 */
+	public Frustum setFromMatrix(final GLMatrix pProjectionView) {
+		final float[] m = pProjectionView.getFloatArray();
+		for (int i = 0; i < 3; i++) {
+			setPlane(2 * i,
+					m[3] + m[i],
+					m[7] + m[4 + i],
+					m[11] + m[8 + i],
+					m[15] + m[12 + i]);
+			setPlane(2 * i + 1,
+					m[3] - m[i],
+					m[7] - m[4 + i],
+					m[11] - m[8 + i],
+					m[15] - m[12 + i]);
+		}
+		return this;
+	}
+
+	private void setPlane(final int pPlane,
+			final float pA,
+			final float pB,
+			final float pC,
+			final float pD) {
+		final float lLength = (float) Math.sqrt(pA * pA + pB * pB + pC * pC);
+		final float lFactor = lLength == 0 ? 0 : 1.0f / lLength;
+		mPlanes[4 * pPlane] = pA * lFactor;
+		mPlanes[4 * pPlane + 1] = pB * lFactor;
+		mPlanes[4 * pPlane + 2] = pC * lFactor;
+		mPlanes[4 * pPlane + 3] = pD * lFactor;
+	}
+
+	/**
+	 * Returns the 24 plane coefficients, four per plane in the order LEFT,
+	 * RIGHT, BOTTOM, TOP, NEAR, FAR.
+	 */
+	public float[] getPlanes() {
+		return mPlanes;
+	}
+
+	public boolean containsPoint(final float pX, final float pY, final float pZ) {
+		return intersectsSphere(pX, pY, pZ, 0);
+	}
+
+	public boolean intersectsSphere(final float pX,
+			final float pY,
+			final float pZ,
+			final float pRadius) {
+		final float[] p = mPlanes;
+		for (int i = 0; i < 24; i += 4)
+			if (p[i] * pX + p[i + 1] * pY + p[i + 2] * pZ + p[i + 3] < -pRadius)
+				return false;
+		return true;
+	}
+
+	/**
+	 * Conservative box test: false only if the box is completely outside one
+	 * of the planes.
+	 */
+	public boolean intersectsBox(final float pMinX,
+			final float pMinY,
+			final float pMinZ,
+			final float pMaxX,
+			final float pMaxY,
+			final float pMaxZ) {
+		final float[] p = mPlanes;
+		for (int i = 0; i < 24; i += 4) {
+			// corner furthest along the plane normal
+			final float lX = p[i] > 0 ? pMaxX : pMinX;
+			final float lY = p[i + 1] > 0 ? pMaxY : pMinY;
+			final float lZ = p[i + 2] > 0 ? pMaxZ : pMinZ;
+			if (p[i] * lX + p[i + 1] * lY + p[i + 2] * lZ + p[i + 3] < 0)
+				return false;
+		}
+		return true;
+	}
+
+}
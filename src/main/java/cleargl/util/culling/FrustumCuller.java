@@ -0,0 +1,167 @@
+package cleargl.util.culling;
+
+import java.util.BitSet;
+
+import cleargl.util.parallel.ParallelRange;
+
+/**
+ * Tests arrays of bounding volumes against a {@link Frustum} and writes one
+ * visibility bit per object: bit i % 64 of word i / 64 is set if object i may
+ * be visible. Large arrays are split across the common fork/join pool in whole
+ * words, so that every word is written by a single thread.
+ */
+public class FrustumCuller {
+
+	public static final int PARALLEL_THRESHOLD = 1 << 16;
+
+	/**
+	 * Returns the number of longs needed for pCount visibility bits.
+	 */
+	public static int getVisibilityWords(final int pCount) {
+		return (pCount + 63) >>> 6;
+	}
+
+	public static BitSet cull(final Frustum pFrustum,
+			final BoundingBoxArray pBoxes) {
+		final long[] lVisibility = new long[getVisibilityWords(pBoxes.size())];
+		cull(pFrustum, pBoxes, lVisibility);
+		return BitSet.valueOf(lVisibility);
+	}
+
+	public static BitSet cull(final Frustum pFrustum,
+			final BoundingSphereArray pSpheres) {
+		final long[] lVisibility = new long[getVisibilityWords(pSpheres.size())];
+		cull(pFrustum, pSpheres, lVisibility);
+		return BitSet.valueOf(lVisibility);
+	}
+
+	/**
+	 * Writes the visibility of all boxes into pVisibility and returns the
+	 * number of visible boxes.
+	 */
+	public static int cull(final Frustum pFrustum,
+			final BoundingBoxArray pBoxes,
+			final long[] pVisibility) {
+		final int lCount = pBoxes.size();
+		final int lWords = checkVisibility(lCount, pVisibility);
+		final float[] lPlanes = pFrustum.getPlanes();
+
+		ParallelRange.forRange(0, lWords, PARALLEL_THRESHOLD >>> 6, (pStart, pEnd) -> {
+			cullBoxes(lPlanes, pBoxes, lCount, pVisibility, pStart, pEnd);
+		});
+
+		return countVisible(pVisibility, lWords);
+	}
+
+	/**
+	 * Writes the visibility of all spheres into pVisibility and returns the
+	 * number of visible spheres.
+	 */
+	public static int cull(final Frustum pFrustum,
+			final BoundingSphereArray pSpheres,
+			final long[] pVisibility) {
+		final int lCount = pSpheres.size();
+		final int lWords = checkVisibility(lCount, pVisibility);
+		final float[] lPlanes = pFrustum.getPlanes();
+
+		ParallelRange.forRange(0, lWords, PARALLEL_THRESHOLD >>> 6, (pStart, pEnd) -> {
+			cullSpheres(lPlanes, pSpheres, lCount, pVisibility, pStart, pEnd);
+		});
+
+		return countVisible(pVisibility, lWords);
+	}
+
+	public static boolean isVisible(final long[] pVisibility, final int pIndex) {
+		return (pVisibility[pIndex >>> 6] & (1L << pIndex)) != 0;
+	}
+
+	private static void cullBoxes(final float[] pPlanes,
+			final BoundingBoxArray pBoxes,
+			final int pCount,
+			final long[] pVisibility,
+			final int pStartWord,
+			final int pEndWord) {
+		final float a0 = pPlanes[0], b0 = pPlanes[1], c0 = pPlanes[2], d0 = pPlanes[3];
+		final float a1 = pPlanes[4], b1 = pPlanes[5], c1 = pPlanes[6], d1 = pPlanes[7];
+		final float a2 = pPlanes[8], b2 = pPlanes[9], c2 = pPlanes[10], d2 = pPlanes[11];
+		final float a3 = pPlanes[12], b3 = pPlanes[13], c3 = pPlanes[14], d3 = pPlanes[15];
+		final float a4 = pPlanes[16], b4 = pPlanes[17], c4 = pPlanes[18], d4 = pPlanes[19];
+		final float a5 = pPlanes[20], b5 = pPlanes[21], c5 = pPlanes[22], d5 = pPlanes[23];
+		final float[] lMinX = pBoxes.getMinX(), lMinY = pBoxes.getMinY(), lMinZ = pBoxes.getMinZ();
+		final float[] lMaxX = pBoxes.getMaxX(), lMaxY = pBoxes.getMaxY(), lMaxZ = pBoxes.getMaxZ();
+
+		for (int w = pStartWord; w < pEndWord; w++) {
+			final int lBase = w << 6;
+			final int lEnd = Math.min(lBase + 64, pCount);
+			long lBits = 0;
+			for (int i = lBase; i < lEnd; i++) {
+				final float x0 = lMinX[i], y0 = lMinY[i], z0 = lMinZ[i];
+				final float x1 = lMaxX[i], y1 = lMaxY[i], z1 = lMaxZ[i];
+				// per plane, test the corner furthest along the plane normal
+				final boolean lVisible = (a0 > 0 ? a0 * x1 : a0 * x0) + (b0 > 0 ? b0 * y1 : b0 * y0) + (c0 > 0 ? c0 * z1 : c0 * z0) + d0 >= 0
+						&& (a1 > 0 ? a1 * x1 : a1 * x0) + (b1 > 0 ? b1 * y1 : b1 * y0) + (c1 > 0 ? c1 * z1 : c1 * z0) + d1 >= 0
+						&& (a2 > 0 ? a2 * x1 : a2 * x0) + (b2 > 0 ? b2 * y1 : b2 * y0) + (c2 > 0 ? c2 * z1 : c2 * z0) + d2 >= 0
+						&& (a3 > 0 ? a3 * x1 : a3 * x0) + (b3 > 0 ? b3 * y1 : b3 * y0) + (c3 > 0 ? c3 * z1 : c3 * z0) + d3 >= 0
+						&& (a4 > 0 ? a4 * x1 : a4 * x0) + (b4 > 0 ? b4 * y1 : b4 * y0) + (c4 > 0 ? c4 * z1 : c4 * z0) + d4 >= 0
+						&& (a5 > 0 ? a5 * x1 : a5 * x0) + (b5 > 0 ? b5 * y1 : b5 * y0) + (c5 > 0 ? c5 * z1 : c5 * z0) + d5 >= 0;
+				if (lVisible)
+					lBits |= 1L << (i - lBase);
+			}
+			pVisibility[w] = lBits;
+		}
+	}
+
+	private static void cullSpheres(final float[] pPlanes,
+			final BoundingSphereArray pSpheres,
+			final int pCount,
+			final long[] pVisibility,
+			final int pStartWord,
+			final int pEndWord) {
+		final float a0 = pPlanes[0], b0 = pPlanes[1], c0 = pPlanes[2], d0 = pPlanes[3];
+		final float a1 = pPlanes[4], b1 = pPlanes[5], c1 = pPlanes[6], d1 = pPlanes[7];
+		final float a2 = pPlanes[8], b2 = pPlanes[9], c2 = pPlanes[10], d2 = pPlanes[11];
+		final float a3 = pPlanes[12], b3 = pPlanes[13], c3 = pPlanes[14], d3 = pPlanes[15];
+		final float a4 = pPlanes[16], b4 = pPlanes[17], c4 = pPlanes[18], d4 = pPlanes[19];
+		final float a5 = pPlanes[20], b5 = pPlanes[21], c5 = pPlanes[22], d5 = pPlanes[23];
+		final float[] lX = pSpheres.getX(), lY = pSpheres.getY(), lZ = pSpheres.getZ();
+		final float[] lRadius = pSpheres.getRadius();
+
+		for (int w = pStartWord; w < pEndWord; w++) {
+			final int lBase = w << 6;
+			final int lEnd = Math.min(lBase + 64, pCount);
+			long lBits = 0;
+			for (int i = lBase; i < lEnd; i++) {
+				final float x = lX[i], y = lY[i], z = lZ[i], r = -lRadius[i];
+				final boolean lVisible = a0 * x + b0 * y + c0 * z + d0 >= r
+						&& a1 * x + b1 * y + c1 * z + d1 >= r
+						&& a2 * x + b2 * y + c2 * z + d2 >= r
+						&& a3 * x + b3 * y + c3 * z + d3 >= r
+						&& a4 * x + b4 * y + c4 * z + d4 >= r
+						&& a5 * x + b5 * y + c5 * z + d5 >= r;
+				if (lVisible)
+					lBits |= 1L << (i - lBase);
+			}
+			pVisibility[w] = lBits;
+		}
+	}
+
+	private static int checkVisibility(final int pCount,
+			final long[] pVisibility) {
+		final int lWords = getVisibilityWords(pCount);
+		if (pVisibility.length < lWords)
+			throw new IllegalArgumentException("Visibility array too small: " + pVisibility.length
+					+ " < "
+					+ lWords
+					+ " words");
+		return lWords;
+	}
+
+	private static int countVisible(final long[] pVisibility,
+			final int pWords) {
+		int lVisible = 0;
+		for (int w = 0; w < pWords; w++)
+			lVisible += Long.bitCount(pVisibility[w]);
+		return lVisible;
+	}
+
+}
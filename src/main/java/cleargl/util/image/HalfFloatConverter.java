@@ -0,0 +1,161 @@
+package cleargl.util.image;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.FloatBuffer;
+import java.nio.ShortBuffer;
+
+import cleargl.util.parallel.ParallelRange;
+
+/**
+ * Conversion between 32 bit floats and IEEE 754 half floats (GL_HALF_FLOAT),
+ * e.g. to upload float volumes with half the bytes. Rounding is to nearest
+ * even; values beyond the half range become infinity, small values become
+ * subnormals or zero, NaNs stay NaN.
+ *
+ * Buffers are converted in parallel, in chunks that are copied to arrays
+ * first so that the inner loops run over plain arrays.
+ */
+public class HalfFloatConverter {
+
+	/**
+	 * Below this number of values, buffers are converted on the calling
+	 * thread.
+	 */
+	public static final int PARALLEL_THRESHOLD = 1 << 16;
+
+	private static final int cChunkSize = 4096;
+
+	// 2^16, the smallest float that rounds to infinity for sure
+	private static final int cHalfOverflow = (127 + 16) << 23;
+	private static final int cFloatInfinity = 0xff << 23;
+	// 2^-14, the smallest normal half
+	private static final int cHalfMinNormal = 113 << 23;
+	// adding this float shifts subnormal halves into the low mantissa bits
+	private static final int cSubnormalMagic = ((127 - 15) + (23 - 10) + 1) << 23;
+	private static final float cSubnormalMagicFloat = Float.intBitsToFloat(cSubnormalMagic);
+
+	public static short toHalf(final float pValue) {
+		int lBits = Float.floatToRawIntBits(pValue);
+		final int lSign = (lBits >>> 16) & 0x8000;
+		lBits &= 0x7fffffff;
+
+		final int lHalf;
+		if (lBits >= cHalfOverflow)
+			lHalf = lBits > cFloatInfinity ? 0x7e00 : 0x7c00;
+		else if (lBits < cHalfMinNormal)
+			// the float addition does the rounding
+			lHalf = Float.floatToRawIntBits(Float.intBitsToFloat(lBits) + cSubnormalMagicFloat)
+					- cSubnormalMagic;
+		else
+			// rebias the exponent and round to nearest even
+			lHalf = (lBits + ((15 - 127) << 23) + 0xfff + ((lBits >>> 13) & 1)) >>> 13;
+
+		return (short) (lSign | lHalf);
+	}
+
+	public static float toFloat(final short pHalf) {
+		final int lSign = (pHalf & 0x8000) << 16;
+		final int lExponent = (pHalf >>> 10) & 0x1f;
+		final int lMantissa = pHalf & 0x3ff;
+
+		if (lExponent == 0) {
+			// zero or subnormal, mantissa * 2^-24
+			final float lValue = lMantissa * 0x1p-24f;
+			return lSign == 0 ? lValue : -lValue;
+		}
+		if (lExponent == 0x1f)
+			return Float.intBitsToFloat(lSign | 0x7f800000 | (lMantissa << 13));
+		return Float.intBitsToFloat(lSign | ((lExponent + 112) << 23)
+				| (lMantissa << 13));
+	}
+
+	/**
+	 * Converts the remaining floats of pSource to halves written to pTarget
+	 * from its position on. Positions are left unchanged.
+	 */
+	public static void toHalf(final FloatBuffer pSource,
+			final ShortBuffer pTarget) {
+		final int lCount = pSource.remaining();
+		if (pTarget.remaining() < lCount)
+			throw new IllegalArgumentException("Target too small for " + lCount
+					+ " values");
+
+		final int lSourceStart = pSource.position();
+		final int lTargetStart = pTarget.position();
+		ParallelRange.forRange(0,
+				lCount,
+				PARALLEL_THRESHOLD,
+				(s, e) -> {
+					// views keep their byte order when duplicated
+					final FloatBuffer lSource = pSource.duplicate();
+					final ShortBuffer lTarget = pTarget.duplicate();
+					final float[] lFloats = new float[Math.min(cChunkSize, e - s)];
+					final short[] lHalves = new short[lFloats.length];
+					for (int i = s; i < e; i += lFloats.length) {
+						final int lLength = Math.min(lFloats.length, e - i);
+						lSource.position(lSourceStart + i);
+						lSource.get(lFloats, 0, lLength);
+						for (int k = 0; k < lLength; k++)
+							lHalves[k] = toHalf(lFloats[k]);
+						lTarget.position(lTargetStart + i);
+						lTarget.put(lHalves, 0, lLength);
+					}
+				});
+	}
+
+	/**
+	 * Converts the remaining halves of pSource to floats written to pTarget
+	 * from its position on. Positions are left unchanged.
+	 */
+	public static void toFloat(final ShortBuffer pSource,
+			final FloatBuffer pTarget) {
+		final int lCount = pSource.remaining();
+		if (pTarget.remaining() < lCount)
+			throw new IllegalArgumentException("Target too small for " + lCount
+					+ " values");
+
+		final int lSourceStart = pSource.position();
+		final int lTargetStart = pTarget.position();
+		ParallelRange.forRange(0,
+				lCount,
+				PARALLEL_THRESHOLD,
+				(s, e) -> {
+					final ShortBuffer lSource = pSource.duplicate();
+					final FloatBuffer lTarget = pTarget.duplicate();
+					final short[] lHalves = new short[Math.min(cChunkSize, e - s)];
+					final float[] lFloats = new float[lHalves.length];
+					for (int i = s; i < e; i += lHalves.length) {
+						final int lLength = Math.min(lHalves.length, e - i);
+						lSource.position(lSourceStart + i);
+						lSource.get(lHalves, 0, lLength);
+						for (int k = 0; k < lLength; k++)
+							lFloats[k] = toFloat(lHalves[k]);
+						lTarget.position(lTargetStart + i);
+						lTarget.put(lFloats, 0, lLength);
+					}
+				});
+	}
+
+	/**
+	 * Converts the remaining floats of pSource, in its byte order, to halves
+	 * in pTarget's byte order, written from its position on. Positions are
+	 * left unchanged.
+	 */
+	public static void toHalf(final ByteBuffer pSource,
+			final ByteBuffer pTarget) {
+		toHalf(pSource.asFloatBuffer(), pTarget.asShortBuffer());
+	}
+
+	/**
+	 * Converts the remaining floats of pSource into a new direct buffer of
+	 * halves in native order.
+	 */
+	public static ByteBuffer toHalf(final FloatBuffer pSource) {
+		final ByteBuffer lTarget = ByteBuffer.allocateDirect(2 * pSource.remaining())
+				.order(ByteOrder.nativeOrder());
+		toHalf(pSource, lTarget.asShortBuffer());
+		return lTarget;
+	}
+
+}
@@ -0,0 +1,367 @@
+package cleargl.util.image;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.Arrays;
+
+import cleargl.GLTypeEnum;
+import cleargl.util.parallel.ParallelRange;
+
+/**
+ * Builds mip-map pyramids of 2D and 3D textures on the CPU. Texel data is
+ * interleaved channels of any {@link GLTypeEnum} type in native order, x
+ * fastest, and each level is half the size of the previous one, rounded down
+ * and at least 1, as in OpenGL. Filtering is separable and done in double
+ * precision; integer results are rounded and clamped to the type range. Each
+ * level is computed in parallel over its rows and slices.
+ */
+public class MipMapBuilder {
+
+	/**
+	 * Minimum number of source values per parallel task.
+	 */
+	public static final int PARALLEL_THRESHOLD = 1 << 16;
+
+	public enum Filter {
+		/**
+		 * Average of the 2 (or 3 for odd sizes) texels covered, per axis.
+		 */
+		Box(0.5),
+		/**
+		 * Tent over two target texels, i.e. 1 3 3 1 weights per axis; smoother
+		 * than box with little blurring.
+		 */
+		Triangle(1),
+		/**
+		 * Windowed sinc with 2 lobes, 8 taps per axis; sharpest, may ring
+		 * slightly at hard edges.
+		 */
+		Lanczos(2);
+
+		private final double mRadius;
+
+		Filter(final double pRadius) {
+			mRadius = pRadius;
+		}
+
+		double weight(final double pX) {
+			final double lX = Math.abs(pX);
+			switch (this) {
+				case Box:
+					return lX < 0.5 ? 1 : lX == 0.5 ? 0.5 : 0;
+				case Triangle:
+					return Math.max(0, 1 - lX);
+				case Lanczos:
+				default:
+					return lX >= 2 ? 0 : sinc(lX) * sinc(lX / 2);
+			}
+		}
+
+		private static double sinc(final double pX) {
+			if (pX == 0)
+				return 1;
+			final double lPiX = Math.PI * pX;
+			return Math.sin(lPiX) / lPiX;
+		}
+	}
+
+	/**
+	 * Source indices and normalized weights of each target texel along one
+	 * axis; taps of target i are mIndex/mWeight[mOffset[i]..mOffset[i+1]).
+	 */
+	private static final class AxisWeights {
+		final int[] mOffset;
+		final int[] mIndex;
+		final double[] mWeight;
+
+		AxisWeights(final int pSourceSize,
+				final int pTargetSize,
+				final Filter pFilter) {
+			mOffset = new int[pTargetSize + 1];
+			if (pSourceSize == pTargetSize) {
+				mIndex = new int[pTargetSize];
+				mWeight = new double[pTargetSize];
+				for (int i = 0; i < pTargetSize; i++) {
+					mOffset[i + 1] = i + 1;
+					mIndex[i] = i;
+					mWeight[i] = 1;
+				}
+				return;
+			}
+
+			final double lScale = (double) pSourceSize / pTargetSize;
+			final double lRadius = pFilter.mRadius * lScale;
+			final int lMaxTaps = (int) Math.ceil(2 * lRadius) + 1;
+			final int[] lIndex = new int[pTargetSize * lMaxTaps];
+			final double[] lWeight = new double[pTargetSize * lMaxTaps];
+			int lCount = 0;
+			for (int i = 0; i < pTargetSize; i++) {
+				final double lCenter = (i + 0.5) * lScale - 0.5;
+				final int lFirst = lCount;
+				double lSum = 0;
+				for (int j = (int) Math.ceil(lCenter - lRadius); j <= (int) Math.floor(lCenter + lRadius); j++) {
+					final double lW = pFilter.weight((j - lCenter) / lScale);
+					if (lW == 0)
+						continue;
+					// clamp to edge
+					lIndex[lCount] = Math.min(pSourceSize - 1, Math.max(0, j));
+					lWeight[lCount++] = lW;
+					lSum += lW;
+				}
+				for (int k = lFirst; k < lCount; k++)
+					lWeight[k] /= lSum;
+				mOffset[i + 1] = lCount;
+			}
+			mIndex = Arrays.copyOf(lIndex, lCount);
+			mWeight = Arrays.copyOf(lWeight, lCount);
+		}
+	}
+
+	public static int getBytesPerChannel(final GLTypeEnum pType) {
+		switch (pType) {
+			case Byte:
+			case UnsignedByte:
+				return 1;
+			case Short:
+			case UnsignedShort:
+			case HalfFloat:
+				return 2;
+			case Int:
+			case UnsignedInt:
+			case Float:
+				return 4;
+			case Double:
+				return 8;
+			default:
+				throw new IllegalArgumentException("Unsupported type " + pType);
+		}
+	}
+
+	/**
+	 * Size of a level along one axis.
+	 */
+	public static int getLevelSize(final int pSize, final int pLevel) {
+		return Math.max(1, pSize >> pLevel);
+	}
+
+	/**
+	 * Number of levels of a full chain down to 1x1x1.
+	 */
+	public static int getLevelCount(final int pWidth,
+			final int pHeight,
+			final int pDepth) {
+		return 32 - Integer.numberOfLeadingZeros(Math.max(pWidth,
+				Math.max(pHeight, pDepth)));
+	}
+
+	/**
+	 * Returns pLevelCount levels, the first being pLevel0 itself and the others
+	 * new native order direct buffers.
+	 */
+	public static ByteBuffer[] build(final ByteBuffer pLevel0,
+			final GLTypeEnum pType,
+			final int pChannels,
+			final int pWidth,
+			final int pHeight,
+			final int pDepth,
+			final int pLevelCount,
+			final Filter pFilter) {
+		final int lBytesPerTexel = pChannels * getBytesPerChannel(pType);
+		final ByteBuffer[] lLevels = new ByteBuffer[pLevelCount];
+		lLevels[0] = pLevel0;
+		for (int l = 1; l < pLevelCount; l++) {
+			final int lWidth = getLevelSize(pWidth, l);
+			final int lHeight = getLevelSize(pHeight, l);
+			final int lDepth = getLevelSize(pDepth, l);
+			lLevels[l] = ByteBuffer.allocateDirect(lWidth * lHeight
+					* lDepth
+					* lBytesPerTexel)
+					.order(ByteOrder.nativeOrder());
+			downsample(lLevels[l - 1],
+					getLevelSize(pWidth, l - 1),
+					getLevelSize(pHeight, l - 1),
+					getLevelSize(pDepth, l - 1),
+					lLevels[l],
+					lWidth,
+					lHeight,
+					lDepth,
+					pType,
+					pChannels,
+					pFilter);
+		}
+		return lLevels;
+	}
+
+	/**
+	 * Resamples a whole image or volume to a smaller size. Both buffers are
+	 * read and written from index 0, regardless of their position.
+	 */
+	public static void downsample(final ByteBuffer pSource,
+			final int pSourceWidth,
+			final int pSourceHeight,
+			final int pSourceDepth,
+			final ByteBuffer pTarget,
+			final int pTargetWidth,
+			final int pTargetHeight,
+			final int pTargetDepth,
+			final GLTypeEnum pType,
+			final int pChannels,
+			final Filter pFilter) {
+		final int lBytesPerChannel = getBytesPerChannel(pType);
+		if ((long) pTargetWidth * pTargetHeight
+				* pTargetDepth
+				* pChannels
+				* lBytesPerChannel > pTarget.capacity())
+			throw new IllegalArgumentException("Target buffer too small");
+
+		final AxisWeights lX = new AxisWeights(pSourceWidth,
+				pTargetWidth,
+				pFilter);
+		final AxisWeights lY = new AxisWeights(pSourceHeight,
+				pTargetHeight,
+				pFilter);
+		final AxisWeights lZ = new AxisWeights(pSourceDepth,
+				pTargetDepth,
+				pFilter);
+		final int lSourceRowLength = pSourceWidth * pChannels;
+		final int lTargetRowLength = pTargetWidth * pChannels;
+
+		ParallelRange.forRange(0,
+				pTargetHeight * pTargetDepth,
+				Math.max(1, PARALLEL_THRESHOLD / lSourceRowLength),
+				(pStart, pEnd) -> {
+					final double[] lRow = new double[lSourceRowLength];
+					final double[] lTexel = new double[pChannels];
+					for (int lTargetRow = pStart; lTargetRow < pEnd; lTargetRow++) {
+						final int lTargetY = lTargetRow % pTargetHeight;
+						final int lTargetZ = lTargetRow / pTargetHeight;
+
+						// weighted sum of the source rows along z and y
+						Arrays.fill(lRow, 0);
+						for (int kz = lZ.mOffset[lTargetZ]; kz < lZ.mOffset[lTargetZ + 1]; kz++)
+							for (int ky = lY.mOffset[lTargetY]; ky < lY.mOffset[lTargetY + 1]; ky++) {
+								final long lSourceRow = (long) lZ.mIndex[kz] * pSourceHeight
+										+ lY.mIndex[ky];
+								accumulateRow(pSource,
+										pType,
+										(int) (lSourceRow * lSourceRowLength),
+										lSourceRowLength,
+										lZ.mWeight[kz] * lY.mWeight[ky],
+										lRow);
+							}
+
+						// then along x
+						int lIndex = lTargetRow * lTargetRowLength;
+						for (int x = 0; x < pTargetWidth; x++) {
+							Arrays.fill(lTexel, 0);
+							for (int kx = lX.mOffset[x]; kx < lX.mOffset[x + 1]; kx++) {
+								final int lSourceIndex = lX.mIndex[kx] * pChannels;
+								final double lW = lX.mWeight[kx];
+								for (int c = 0; c < pChannels; c++)
+									lTexel[c] += lW * lRow[lSourceIndex + c];
+							}
+							for (int c = 0; c < pChannels; c++)
+								write(pTarget,
+										pType,
+										(lIndex++) * lBytesPerChannel,
+										lTexel[c]);
+						}
+					}
+				});
+	}
+
+	private static void accumulateRow(final ByteBuffer pSource,
+			final GLTypeEnum pType,
+			final int pFirstValue,
+			final int pLength,
+			final double pWeight,
+			final double[] pRow) {
+		switch (pType) {
+			case Byte:
+				for (int i = 0; i < pLength; i++)
+					pRow[i] += pWeight * pSource.get(pFirstValue + i);
+				break;
+			case UnsignedByte:
+				for (int i = 0; i < pLength; i++)
+					pRow[i] += pWeight * (pSource.get(pFirstValue + i) & 0xff);
+				break;
+			case Short:
+				for (int i = 0; i < pLength; i++)
+					pRow[i] += pWeight * pSource.getShort(2 * (pFirstValue + i));
+				break;
+			case UnsignedShort:
+				for (int i = 0; i < pLength; i++)
+					pRow[i] += pWeight * (pSource.getShort(2 * (pFirstValue + i)) & 0xffff);
+				break;
+			case Int:
+				for (int i = 0; i < pLength; i++)
+					pRow[i] += pWeight * pSource.getInt(4 * (pFirstValue + i));
+				break;
+			case UnsignedInt:
+				for (int i = 0; i < pLength; i++)
+					pRow[i] += pWeight * (pSource.getInt(4 * (pFirstValue + i)) & 0xffffffffL);
+				break;
+			case HalfFloat:
+				for (int i = 0; i < pLength; i++)
+					pRow[i] += pWeight * HalfFloatConverter.toFloat(pSource.getShort(2 * (pFirstValue + i)));
+				break;
+			case Float:
+				for (int i = 0; i < pLength; i++)
+					pRow[i] += pWeight * pSource.getFloat(4 * (pFirstValue + i));
+				break;
+			case Double:
+				for (int i = 0; i < pLength; i++)
+					pRow[i] += pWeight * pSource.getDouble(8 * (pFirstValue + i));
+				break;
+			default:
+				throw new IllegalArgumentException("Unsupported type " + pType);
+		}
+	}
+
+	private static void write(final ByteBuffer pTarget,
+			final GLTypeEnum pType,
+			final int pByteIndex,
+			final double pValue) {
+		switch (pType) {
+			case Byte:
+				pTarget.put(pByteIndex, (byte) clamp(pValue, -128, 127));
+				break;
+			case UnsignedByte:
+				pTarget.put(pByteIndex, (byte) clamp(pValue, 0, 255));
+				break;
+			case Short:
+				pTarget.putShort(pByteIndex,
+						(short) clamp(pValue, -32768, 32767));
+				break;
+			case UnsignedShort:
+				pTarget.putShort(pByteIndex, (short) clamp(pValue, 0, 65535));
+				break;
+			case Int:
+				pTarget.putInt(pByteIndex,
+						(int) clamp(pValue, Integer.MIN_VALUE, Integer.MAX_VALUE));
+				break;
+			case UnsignedInt:
+				pTarget.putInt(pByteIndex, (int) clamp(pValue, 0, 0xffffffffL));
+				break;
+			case HalfFloat:
+				pTarget.putShort(pByteIndex, HalfFloatConverter.toHalf((float) pValue));
+				break;
+			case Float:
+				pTarget.putFloat(pByteIndex, (float) pValue);
+				break;
+			case Double:
+				pTarget.putDouble(pByteIndex, pValue);
+				break;
+			default:
+				throw new IllegalArgumentException("Unsupported type " + pType);
+		}
+	}
+
+	private static long clamp(final double pValue,
+			final long pMin,
+			final long pMax) {
+		final long lValue = Math.round(pValue);
+		return lValue < pMin ? pMin : lValue > pMax ? pMax : lValue;
+	}
+
+}
@@ -0,0 +1,224 @@
+package cleargl.util.image;
+
+import java.awt.color.ColorSpace;
+import java.awt.image.BufferedImage;
+import java.awt.image.ColorModel;
+import java.awt.image.ComponentColorModel;
+import java.awt.image.DataBuffer;
+import java.awt.image.DataBufferByte;
+import java.awt.image.DataBufferInt;
+import java.awt.image.DirectColorModel;
+import java.awt.image.PixelInterleavedSampleModel;
+import java.awt.image.SampleModel;
+import java.awt.image.SinglePixelPackedSampleModel;
+import java.awt.image.WritableRaster;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+import cleargl.util.parallel.ParallelRange;
+
+/**
+ * Converts BufferedImages into 8 bit RGBA texel buffers in a single pass,
+ * reading the raster directly and flipping rows into GL bottom-up order as it
+ * copies. Packed int and interleaved byte rasters in sRGB are read without
+ * any conversion; all other layouts go through
+ * {@link BufferedImage#getRGB(int, int, int, int, int[], int, int)} one row at
+ * a time. Rows are converted in parallel for large images.
+ */
+public class RasterConverter {
+
+	/**
+	 * Minimum number of pixels per parallel task.
+	 */
+	public static final int PARALLEL_THRESHOLD = 1 << 16;
+
+	private interface RowReader {
+		void readRow(int pY, byte[] pRGBA);
+	}
+
+	/**
+	 * Texture size for an image size: the size itself, or the next power of
+	 * two (at least 2) if pPowerOfTwo is set.
+	 */
+	public static int getTextureSize(final int pImageSize,
+			final boolean pPowerOfTwo) {
+		if (!pPowerOfTwo)
+			return pImageSize;
+		int lSize = 2;
+		while (lSize < pImageSize)
+			lSize *= 2;
+		return lSize;
+	}
+
+	/**
+	 * Returns a native order direct buffer of getTextureSize(width) x
+	 * getTextureSize(height) RGBA texels, with the image in the first rows and
+	 * columns and zeros in the padding.
+	 */
+	public static ByteBuffer toRGBA(final BufferedImage pImage,
+			final boolean pFlipVertically,
+			final boolean pPowerOfTwo) {
+		final int lWidth = getTextureSize(pImage.getWidth(), pPowerOfTwo);
+		final int lHeight = getTextureSize(pImage.getHeight(), pPowerOfTwo);
+		final ByteBuffer lBuffer = ByteBuffer.allocateDirect(lWidth * lHeight * 4)
+				.order(ByteOrder.nativeOrder());
+		toRGBA(pImage, pFlipVertically, lBuffer, lWidth);
+		return lBuffer;
+	}
+
+	/**
+	 * Writes the image as RGBA texels into pDestination, starting at its
+	 * position, with rows pRowLength texels apart, e.g. into a mapped pixel
+	 * buffer. The position of pDestination is not changed.
+	 */
+	public static void toRGBA(final BufferedImage pImage,
+			final boolean pFlipVertically,
+			final ByteBuffer pDestination,
+			final int pRowLength) {
+		final int lWidth = pImage.getWidth();
+		final int lHeight = pImage.getHeight();
+		if (pRowLength < lWidth)
+			throw new IllegalArgumentException("Row length " + pRowLength
+					+ " is smaller than the image width "
+					+ lWidth);
+		if (pDestination.remaining() < ((long) pRowLength * (lHeight - 1) + lWidth) * 4)
+			throw new IllegalArgumentException("Destination buffer too small");
+
+		final RowReader lReader = getRowReader(pImage);
+		final int lStart = pDestination.position();
+		final int lRowStride = pRowLength * 4;
+
+		final int lRowsPerTask = lReader instanceof GenericRowReader ? lHeight
+				: Math.max(1, PARALLEL_THRESHOLD / lWidth);
+		ParallelRange.forRange(0,
+				lHeight,
+				lRowsPerTask,
+				(pStart, pEnd) -> {
+					final byte[] lRow = new byte[lWidth * 4];
+					final ByteBuffer lView = pDestination.duplicate();
+					for (int lDestinationY = pStart; lDestinationY < pEnd; lDestinationY++) {
+						final int lSourceY = pFlipVertically ? lHeight - 1 - lDestinationY
+								: lDestinationY;
+						lReader.readRow(lSourceY, lRow);
+						lView.position(lStart + lDestinationY * lRowStride);
+						lView.put(lRow);
+					}
+				});
+	}
+
+	private static RowReader getRowReader(final BufferedImage pImage) {
+		final ColorModel lColorModel = pImage.getColorModel();
+		final WritableRaster lRaster = pImage.getRaster();
+		final SampleModel lSampleModel = lRaster.getSampleModel();
+		final DataBuffer lDataBuffer = lRaster.getDataBuffer();
+		final boolean lPlainSRGB = lColorModel.getColorSpace().isCS_sRGB()
+				&& !lColorModel.isAlphaPremultiplied();
+		final int lWidth = pImage.getWidth();
+		final int lTranslateX = lRaster.getSampleModelTranslateX();
+		final int lTranslateY = lRaster.getSampleModelTranslateY();
+
+		if (lPlainSRGB && lDataBuffer instanceof DataBufferInt
+				&& lSampleModel instanceof SinglePixelPackedSampleModel
+				&& lColorModel instanceof DirectColorModel
+				&& isByteMasks((DirectColorModel) lColorModel)) {
+			final DirectColorModel lDirect = (DirectColorModel) lColorModel;
+			final int[] lData = ((DataBufferInt) lDataBuffer).getData();
+			final int lScanline = ((SinglePixelPackedSampleModel) lSampleModel).getScanlineStride();
+			final int lBase = lDataBuffer.getOffset() - lTranslateY * lScanline
+					- lTranslateX;
+			final int lRedShift = Integer.numberOfTrailingZeros(lDirect.getRedMask());
+			final int lGreenShift = Integer.numberOfTrailingZeros(lDirect.getGreenMask());
+			final int lBlueShift = Integer.numberOfTrailingZeros(lDirect.getBlueMask());
+			final boolean lHasAlpha = lDirect.getAlphaMask() != 0;
+			final int lAlphaShift = lHasAlpha ? Integer.numberOfTrailingZeros(lDirect.getAlphaMask())
+					: 0;
+			return (pY, pRGBA) -> {
+				int lIndex = lBase + pY * lScanline;
+				for (int x = 0, i = 0; x < lWidth; x++, i += 4) {
+					final int lPixel = lData[lIndex++];
+					pRGBA[i] = (byte) (lPixel >>> lRedShift);
+					pRGBA[i + 1] = (byte) (lPixel >>> lGreenShift);
+					pRGBA[i + 2] = (byte) (lPixel >>> lBlueShift);
+					pRGBA[i + 3] = lHasAlpha ? (byte) (lPixel >>> lAlphaShift)
+							: (byte) 0xff;
+				}
+			};
+		}
+
+		if (lPlainSRGB && lDataBuffer instanceof DataBufferByte
+				&& lSampleModel instanceof PixelInterleavedSampleModel
+				&& lColorModel instanceof ComponentColorModel
+				&& lColorModel.getColorSpace().getType() == ColorSpace.TYPE_RGB
+				&& isByteComponents(lColorModel)) {
+			final PixelInterleavedSampleModel lInterleaved = (PixelInterleavedSampleModel) lSampleModel;
+			final byte[] lData = ((DataBufferByte) lDataBuffer).getData();
+			final int lScanline = lInterleaved.getScanlineStride();
+			final int lPixelStride = lInterleaved.getPixelStride();
+			final int[] lBandOffsets = lInterleaved.getBandOffsets();
+			final int lBase = lDataBuffer.getOffset() - lTranslateY * lScanline
+					- lTranslateX * lPixelStride;
+			final int lRed = lBandOffsets[0];
+			final int lGreen = lBandOffsets[1];
+			final int lBlue = lBandOffsets[2];
+			final boolean lHasAlpha = lColorModel.hasAlpha();
+			final int lAlpha = lHasAlpha ? lBandOffsets[3] : 0;
+			return (pY, pRGBA) -> {
+				int lIndex = lBase + pY * lScanline;
+				for (int x = 0, i = 0; x < lWidth; x++, i += 4, lIndex += lPixelStride) {
+					pRGBA[i] = lData[lIndex + lRed];
+					pRGBA[i + 1] = lData[lIndex + lGreen];
+					pRGBA[i + 2] = lData[lIndex + lBlue];
+					pRGBA[i + 3] = lHasAlpha ? lData[lIndex + lAlpha] : (byte) 0xff;
+				}
+			};
+		}
+
+		return new GenericRowReader(pImage);
+	}
+
+	/**
+	 * Anything else, e.g. indexed, gray or 16 bit images. Colour conversion
+	 * state of color models is not safe to share, so this runs on one thread.
+	 */
+	private static class GenericRowReader implements RowReader {
+		private final BufferedImage mImage;
+		private final int[] mRow;
+
+		GenericRowReader(final BufferedImage pImage) {
+			mImage = pImage;
+			mRow = new int[pImage.getWidth()];
+		}
+
+		@Override
+		public void readRow(final int pY, final byte[] pRGBA) {
+			final int lWidth = mRow.length;
+			mImage.getRGB(0, pY, lWidth, 1, mRow, 0, lWidth);
+			for (int x = 0, i = 0; x < lWidth; x++, i += 4) {
+				final int lPixel = mRow[x];
+				pRGBA[i] = (byte) (lPixel >>> 16);
+				pRGBA[i + 1] = (byte) (lPixel >>> 8);
+				pRGBA[i + 2] = (byte) lPixel;
+				pRGBA[i + 3] = (byte) (lPixel >>> 24);
+			}
+		}
+	}
+
+	private static boolean isByteMasks(final DirectColorModel pColorModel) {
+		return isByteMask(pColorModel.getRedMask()) && isByteMask(pColorModel.getGreenMask())
+				&& isByteMask(pColorModel.getBlueMask())
+				&& (pColorModel.getAlphaMask() == 0 || isByteMask(pColorModel.getAlphaMask()));
+	}
+
+	private static boolean isByteMask(final int pMask) {
+		return pMask != 0 && pMask >>> Integer.numberOfTrailingZeros(pMask) == 0xff
+				&& Integer.numberOfTrailingZeros(pMask) % 8 == 0;
+	}
+
+	private static boolean isByteComponents(final ColorModel pColorModel) {
+		for (final int lSize : pColorModel.getComponentSize())
+			if (lSize != 8)
+				return false;
+		return pColorModel.getTransferType() == DataBuffer.TYPE_BYTE;
+	}
+
+}
@@ -0,0 +1,339 @@
+package cleargl.util.image;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import com.jogamp.opengl.GL4;
+
+import cleargl.GLTexture;
+import cleargl.GLTypeEnum;
+
+/**
+ * Binary container for a texture with all of its mip-map levels, in the
+ * spirit of KTX2 but without supercompression: the levels are stored exactly
+ * as they are handed to {@link GLTexture#copyFrom(java.nio.Buffer, int, boolean)},
+ * so loading is a memory mapping and one upload per level.
+ * <pre>
+ * 0  "CLGLTEX1"
+ * 8  int byte order of header and data, 0 little, 1 big endian
+ * 12 int width, height, depth, channels, GL type (see {@link GLTypeEnum#glType()}),
+ *    internal format, flags (1 sRGB, 2 normalized), number of levels
+ * 44 zeros up to 64
+ * 64 long offset and long size of each level
+ * </pre>
+ * Levels start at multiples of {@link #LEVEL_ALIGNMENT} bytes.
+ */
+public class TextureContainer implements AutoCloseable {
+
+	public static final int HEADER_SIZE = 64;
+	public static final int LEVEL_ALIGNMENT = 64;
+	public static final String SUFFIX = ".cltex";
+
+	private static final byte[] cMagic = {'C', 'L', 'G', 'L', 'T', 'E', 'X', '1'};
+	private static final int cFlagsRGB = 1;
+	private static final int cFlagNormalized = 2;
+
+	private final Path mPath;
+	private final FileChannel mChannel;
+	private final int mWidth;
+	private final int mHeight;
+	private final int mDepth;
+	private final int mChannels;
+	private final GLTypeEnum mType;
+	private final int mInternalFormat;
+	private final boolean msRGB;
+	private final boolean mNormalized;
+	private final long[] mLevelOffsets;
+	private final long[] mLevelSizes;
+
+	private TextureContainer(final Path pPath,
+			final FileChannel pChannel,
+			final ByteBuffer pHeader,
+			final ByteBuffer pLevelTable) throws IOException {
+		mPath = pPath;
+		mChannel = pChannel;
+		mWidth = pHeader.getInt(12);
+		mHeight = pHeader.getInt(16);
+		mDepth = pHeader.getInt(20);
+		mChannels = pHeader.getInt(24);
+		mType = typeFromGLType(pHeader.getInt(28), pPath);
+		mInternalFormat = pHeader.getInt(32);
+		msRGB = (pHeader.getInt(36) & cFlagsRGB) != 0;
+		mNormalized = (pHeader.getInt(36) & cFlagNormalized) != 0;
+		final int lLevels = pLevelTable.capacity() / 16;
+		mLevelOffsets = new long[lLevels];
+		mLevelSizes = new long[lLevels];
+
+		if (mWidth < 1 || mHeight < 1 || mDepth < 1 || mChannels < 1)
+			throw new IOException("Invalid texture size in " + pPath);
+		for (int l = 0; l < lLevels; l++) {
+			mLevelOffsets[l] = pLevelTable.getLong(16 * l);
+			mLevelSizes[l] = pLevelTable.getLong(16 * l + 8);
+			if (mLevelSizes[l] != getLevelSizeInBytes(l) || mLevelOffsets[l] < 0
+					|| pChannel.size() < mLevelOffsets[l] + mLevelSizes[l])
+				throw new IOException("Level " + l
+						+ " of "
+						+ pPath
+						+ " is truncated or has the wrong size");
+		}
+	}
+
+	/**
+	 * Opens a container and checks its header and level table; the levels
+	 * are mapped when they are uploaded.
+	 */
+	public static TextureContainer open(final Path pPath) throws IOException {
+		final FileChannel lChannel = FileChannel.open(pPath,
+				StandardOpenOption.READ);
+		try {
+			final ByteBuffer lHeader = read(lChannel, 0, HEADER_SIZE);
+			for (int i = 0; i < cMagic.length; i++)
+				if (lHeader.get(i) != cMagic[i])
+					throw new IOException(pPath + " is not a texture container");
+			final ByteOrder lOrder = lHeader.get(8) == 0 && lHeader.get(11) == 0 ? ByteOrder.LITTLE_ENDIAN
+					: ByteOrder.BIG_ENDIAN;
+			if (lOrder != ByteOrder.nativeOrder())
+				throw new IOException(pPath + " was written with a different byte order");
+			lHeader.order(lOrder);
+			final int lLevels = lHeader.getInt(40);
+			if (lLevels < 1 || lLevels > 32)
+				throw new IOException("Invalid number of levels in " + pPath);
+			final ByteBuffer lLevelTable = read(lChannel, HEADER_SIZE, 16 * lLevels).order(lOrder);
+			return new TextureContainer(pPath, lChannel, lHeader, lLevelTable);
+		} catch (final IOException | RuntimeException e) {
+			lChannel.close();
+			throw e;
+		}
+	}
+
+	private static ByteBuffer read(final FileChannel pChannel,
+			final long pPosition,
+			final int pSize) throws IOException {
+		final ByteBuffer lBuffer = ByteBuffer.allocate(pSize);
+		while (lBuffer.hasRemaining() && pChannel.read(lBuffer,
+				pPosition + lBuffer.position()) > 0)
+			;
+		if (lBuffer.hasRemaining())
+			throw new IOException("Unexpected end of file");
+		return lBuffer;
+	}
+
+	private static GLTypeEnum typeFromGLType(final int pGLType,
+			final Path pPath) throws IOException {
+		for (final GLTypeEnum lType : GLTypeEnum.values())
+			if (lType.glType() == pGLType)
+				return lType;
+		throw new IOException("Unknown texel type " + pGLType + " in " + pPath);
+	}
+
+	/**
+	 * Writes pLevels, starting with level 0, for a texture with the format
+	 * and size of pTexture. The file is written next to pPath first and then
+	 * moved in place, so that readers never see a partial container.
+	 */
+	public static void write(final Path pPath,
+			final GLTexture pTexture,
+			final ByteBuffer[] pLevels) throws IOException {
+		final int lLevels = Math.min(pLevels.length,
+				pTexture.getMipMapLevels());
+		final ByteBuffer lHeader = ByteBuffer.allocate(HEADER_SIZE + 16 * lLevels)
+				.order(ByteOrder.nativeOrder());
+		lHeader.put(cMagic);
+		lHeader.putInt(ByteOrder.nativeOrder() == ByteOrder.LITTLE_ENDIAN ? 0 : 1);
+		lHeader.putInt(pTexture.getWidth())
+				.putInt(pTexture.getHeight())
+				.putInt(pTexture.getDepth())
+				.putInt(pTexture.getChannels())
+				.putInt(pTexture.getNativeType().glType())
+				.putInt(pTexture.getInternalFormat())
+				.putInt((pTexture.getsRGB() ? cFlagsRGB : 0) | (pTexture.isNormalized() ? cFlagNormalized
+						: 0))
+				.putInt(lLevels);
+		lHeader.position(HEADER_SIZE);
+		long lOffset = align(lHeader.capacity());
+		for (int l = 0; l < lLevels; l++) {
+			lHeader.putLong(lOffset).putLong(pLevels[l].remaining());
+			lOffset = align(lOffset + pLevels[l].remaining());
+		}
+		lHeader.clear();
+
+		final Path lTemporary = pPath.resolveSibling(pPath.getFileName() + ".tmp"
+				+ Thread.currentThread().getId());
+		try (FileChannel lChannel = FileChannel.open(lTemporary,
+				StandardOpenOption.CREATE,
+				StandardOpenOption.TRUNCATE_EXISTING,
+				StandardOpenOption.WRITE)) {
+			while (lHeader.hasRemaining())
+				lChannel.write(lHeader);
+			for (int l = 0; l < lLevels; l++) {
+				final ByteBuffer lLevel = pLevels[l].duplicate();
+				long lPosition = lHeader.getLong(HEADER_SIZE + 16 * l);
+				while (lLevel.hasRemaining())
+					lPosition += lChannel.write(lLevel, lPosition);
+			}
+		}
+		try {
+			Files.move(lTemporary,
+					pPath,
+					StandardCopyOption.REPLACE_EXISTING,
+					StandardCopyOption.ATOMIC_MOVE);
+		} catch (final IOException e) {
+			Files.deleteIfExists(lTemporary);
+			throw e;
+		}
+	}
+
+	private static long align(final long pOffset) {
+		return (pOffset + LEVEL_ALIGNMENT - 1) / LEVEL_ALIGNMENT * LEVEL_ALIGNMENT;
+	}
+
+	/**
+	 * Maps one level read-only, in native byte order.
+	 */
+	public MappedByteBuffer mapLevel(final int pLevel) throws IOException {
+		final MappedByteBuffer lBuffer = mChannel.map(FileChannel.MapMode.READ_ONLY,
+				mLevelOffsets[pLevel],
+				mLevelSizes[pLevel]);
+		lBuffer.order(ByteOrder.nativeOrder());
+		return lBuffer;
+	}
+
+	/**
+	 * Uploads all stored levels that pTexture has, straight from the mapped
+	 * file. The texture must have the stored format and size.
+	 */
+	public void uploadTo(final GLTexture pTexture) throws IOException {
+		if (pTexture.getWidth() != mWidth || pTexture.getHeight() != mHeight
+				|| pTexture.getDepth() != mDepth
+				|| pTexture.getInternalFormat() != mInternalFormat)
+			throw new IllegalArgumentException("Texture does not match " + this);
+		for (int l = 0; l < Math.min(getLevelCount(),
+				pTexture.getMipMapLevels()); l++)
+			pTexture.copyFrom(mapLevel(l), l, false);
+	}
+
+	/**
+	 * Creates a texture with the stored format and levels and uploads them.
+	 * Fails if this GLTexture would choose a different internal format for
+	 * the stored type and flags, e.g. for a container from another version.
+	 */
+	public GLTexture createTexture(final GL4 pGL,
+			final boolean pLinearInterpolation) throws IOException {
+		final GLTexture lTexture = new GLTexture(pGL,
+				mType,
+				mChannels,
+				mWidth,
+				mHeight,
+				mDepth,
+				pLinearInterpolation,
+				getLevelCount(),
+				getPrecision(mInternalFormat),
+				mNormalized,
+				msRGB);
+		try {
+			if (lTexture.getInternalFormat() != mInternalFormat)
+				throw new IOException("Internal format " + mInternalFormat
+						+ " of "
+						+ mPath
+						+ " is not supported");
+			uploadTo(lTexture);
+		} catch (final IOException | RuntimeException e) {
+			lTexture.close();
+			throw e;
+		}
+		return lTexture;
+	}
+
+	private static int getPrecision(final int pInternalFormat) {
+		switch (pInternalFormat) {
+			case GL4.GL_RG16F:
+			case GL4.GL_RGB16F:
+			case GL4.GL_RGBA16F:
+				return 16;
+			default:
+				return 32;
+		}
+	}
+
+	public long getLevelSizeInBytes(final int pLevel) {
+		return (long) MipMapBuilder.getLevelSize(mWidth, pLevel) * MipMapBuilder.getLevelSize(mHeight,
+				pLevel)
+				* MipMapBuilder.getLevelSize(mDepth, pLevel)
+				* mChannels
+				* MipMapBuilder.getBytesPerChannel(mType);
+	}
+
+	public Path getPath() {
+		return mPath;
+	}
+
+	public int getWidth() {
+		return mWidth;
+	}
+
+	public int getHeight() {
+		return mHeight;
+	}
+
+	public int getDepth() {
+		return mDepth;
+	}
+
+	public int getChannels() {
+		return mChannels;
+	}
+
+	public GLTypeEnum getType() {
+		return mType;
+	}
+
+	public int getInternalFormat() {
+		return mInternalFormat;
+	}
+
+	public boolean getsRGB() {
+		return msRGB;
+	}
+
+	public boolean isNormalized() {
+		return mNormalized;
+	}
+
+	public int getLevelCount() {
+		return mLevelOffsets.length;
+	}
+
+	/**
+	 * Closes the file; buffers mapped from it stay valid until they are
+	 * garbage collected.
+	 */
+	@Override
+	public void close() throws IOException {
+		mChannel.close();
+	}
+
+	@Override
+	public String toString() {
+		return "TextureContainer [mPath=" + mPath
+				+ ", size="
+				+ mWidth
+				+ "x"
+				+ mHeight
+				+ "x"
+				+ mDepth
+				+ ", mType="
+				+ mType
+				+ ", mInternalFormat="
+				+ mInternalFormat
+				+ ", levels="
+				+ getLevelCount()
+				+ "]";
+	}
+
+}
@@ -0,0 +1,71 @@
+package cleargl.util.parallel;
+
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * Splits an index range into chunks and processes them with fork/join.
+ * Ranges at or below the threshold run directly on the calling thread
+ * without allocating anything.
+ */
+public class ParallelRange {
+
+	public interface RangeBody {
+		void apply(int pStart, int pEnd);
+	}
+
+	public static void forRange(final int pStart,
+			final int pEnd,
+			final int pThreshold,
+			final RangeBody pBody) {
+		forRange(ForkJoinPool.commonPool(), pStart, pEnd, pThreshold, pBody);
+	}
+
+	public static void forRange(final ForkJoinPool pPool,
+			final int pStart,
+			final int pEnd,
+			final int pThreshold,
+			final RangeBody pBody) {
+		if (pEnd - pStart <= pThreshold || pPool.getParallelism() < 2) {
+			pBody.apply(pStart, pEnd);
+			return;
+		}
+
+		// chunks no smaller than the threshold, a few per worker for balance
+		final int lChunkSize = Math.max(pThreshold,
+				(pEnd - pStart) / (4 * pPool.getParallelism()) + 1);
+		pPool.invoke(new RangeAction(pStart, pEnd, lChunkSize, pBody));
+	}
+
+	private static class RangeAction extends RecursiveAction {
+		private static final long serialVersionUID = 1L;
+
+		private final int mStart;
+		private final int mEnd;
+		private final int mChunkSize;
+		private final RangeBody mBody;
+
+		RangeAction(final int pStart,
+				final int pEnd,
+				final int pChunkSize,
+				final RangeBody pBody) {
+			mStart = pStart;
+			mEnd = pEnd;
+			mChunkSize = pChunkSize;
+			mBody = pBody;
+		}
+
+		@Override
+		protected void compute() {
+			if (mEnd - mStart <= mChunkSize) {
+				mBody.apply(mStart, mEnd);
+				return;
+			}
+
+			final int lMiddle = (mStart + mEnd) >>> 1;
+			invokeAll(new RangeAction(mStart, lMiddle, mChunkSize, mBody),
+					new RangeAction(lMiddle, mEnd, mChunkSize, mBody));
+		}
+	}
+
+}
@@ -0,0 +1,116 @@
+package cleargl.util.picking;
+
+import cleargl.GLMatrix;
+import cleargl.Vec3f;
+import cleargl.Vec4f;
+
+/**
+ * Ray origin + t * direction. Rays are unprojected from normalized device
+ * coordinates through a projection and view matrix, and can be moved into
+ * object space with the inverse model matrix. The direction is not
+ * renormalized by transforms, so the ray parameter t of a hit means the same
+ * point in every space.
+ */
+public class Ray {
+
+	private final Vec3f mOrigin = new Vec3f();
+	private final Vec3f mDirection = new Vec3f(0, 0, -1);
+
+	private final GLMatrix mScratchMatrix = new GLMatrix();
+	private final Vec4f mScratchVector = new Vec4f();
+
+	public Ray() {
+	}
+
+	public Ray(final Vec3f pOrigin, final Vec3f pDirection) {
+		set(pOrigin, pDirection);
+	}
+
+	public Ray set(final Vec3f pOrigin, final Vec3f pDirection) {
+		mOrigin.set(pOrigin);
+		mDirection.set(pDirection);
+		return this;
+	}
+
+	public Ray set(final Ray pRay) {
+		return set(pRay.mOrigin, pRay.mDirection);
+	}
+
+	public Vec3f getOrigin() {
+		return mOrigin;
+	}
+
+	public Vec3f getDirection() {
+		return mDirection;
+	}
+
+	/**
+	 * Sets this ray to start on the near plane at the given normalized device
+	 * coordinates (-1..1, y up) and to point away from the camera, with unit
+	 * direction in the space pView maps from.
+	 */
+	public Ray setFromNDC(final GLMatrix pProjection,
+			final GLMatrix pView,
+			final float pNdcX,
+			final float pNdcY) {
+		final GLMatrix lInverse = GLMatrix.mult(pProjection,
+				pView,
+				mScratchMatrix);
+		lInverse.invert();
+
+		lInverse.mult(mScratchVector.set(pNdcX, pNdcY, -1, 1),
+				mScratchVector).homogenize();
+		final float lNearX = mScratchVector.x, lNearY = mScratchVector.y, lNearZ = mScratchVector.z;
+		lInverse.mult(mScratchVector.set(pNdcX, pNdcY, 1, 1),
+				mScratchVector).homogenize();
+
+		mOrigin.set(lNearX, lNearY, lNearZ);
+		mDirection.set(mScratchVector.x - lNearX,
+				mScratchVector.y - lNearY,
+				mScratchVector.z - lNearZ).normalize();
+		return this;
+	}
+
+	/**
+	 * Same as {@link #setFromNDC} for window coordinates with the origin in the
+	 * upper left corner, as delivered by mouse events.
+	 */
+	public Ray setFromWindow(final GLMatrix pProjection,
+			final GLMatrix pView,
+			final float pX,
+			final float pY,
+			final int pWidth,
+			final int pHeight) {
+		return setFromNDC(pProjection,
+				pView,
+				2.0f * pX / pWidth - 1.0f,
+				1.0f - 2.0f * pY / pHeight);
+	}
+
+	/**
+	 * Writes this ray transformed by pMatrix into pDestination, which may be
+	 * this ray.
+	 */
+	public Ray transform(final GLMatrix pMatrix, final Ray pDestination) {
+		final Vec4f lVector = mScratchVector;
+		final float lDirX = mDirection.x, lDirY = mDirection.y, lDirZ = mDirection.z;
+		pMatrix.mult(lVector.set(mOrigin, 1), lVector);
+		pDestination.mOrigin.set(lVector.x, lVector.y, lVector.z);
+		pMatrix.mult(lVector.set(lDirX, lDirY, lDirZ, 0), lVector);
+		pDestination.mDirection.set(lVector.x, lVector.y, lVector.z);
+		return pDestination;
+	}
+
+	/**
+	 * Returns origin + pT * direction in pDestination.
+	 */
+	public Vec3f getPoint(final float pT, final Vec3f pDestination) {
+		return pDestination.set(mOrigin).addScaled(mDirection, pT);
+	}
+
+	@Override
+	public String toString() {
+		return "Ray [origin=" + mOrigin + ", direction=" + mDirection + "]";
+	}
+
+}
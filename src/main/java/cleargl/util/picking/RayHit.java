@@ -0,0 +1,47 @@
+package cleargl.util.picking;
+
+/**
+ * Nearest intersection found by a pick: the ray parameter t of the hit point
+ * origin + t * direction, the triangle index in the order the triangles were
+ * given, and the barycentric coordinates of the hit within that triangle.
+ */
+public final class RayHit {
+
+	public float t = Float.POSITIVE_INFINITY;
+	public int triangle = -1;
+	public float u;
+	public float v;
+
+	public RayHit reset() {
+		t = Float.POSITIVE_INFINITY;
+		triangle = -1;
+		u = 0;
+		v = 0;
+		return this;
+	}
+
+	public boolean isHit() {
+		return triangle >= 0;
+	}
+
+	public RayHit set(final RayHit pHit) {
+		t = pHit.t;
+		triangle = pHit.triangle;
+		u = pHit.u;
+		v = pHit.v;
+		return this;
+	}
+
+	@Override
+	public String toString() {
+		return "RayHit [t=" + t
+				+ ", triangle="
+				+ triangle
+				+ ", u="
+				+ u
+				+ ", v="
+				+ v
+				+ "]";
+	}
+
+}
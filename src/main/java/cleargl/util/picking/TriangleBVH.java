@@ -0,0 +1,519 @@
+package cleargl.util.picking;
+
+import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import cleargl.util.parallel.ParallelRange;
+
+/**
+ * Bounding volume hierarchy over the triangles of an indexed or non-indexed
+ * mesh, for ray picking. The tree is built top-down with a binned surface
+ * area heuristic; subtrees with more than {@value #PARALLEL_THRESHOLD}
+ * triangles are built in parallel on the common fork/join pool.
+ *
+ * The vertex and index arrays are referenced, not copied. If vertices move but
+ * the indices stay the same, {@link #refit()} updates the node bounds in
+ * linear time instead of rebuilding.
+ */
+public class TriangleBVH {
+
+	public static final int PARALLEL_THRESHOLD = 1 << 13;
+
+	private static final int cBins = 16;
+	private static final int cMaxLeafSize = 4;
+	private static final int cMaxSAHLeafSize = 16;
+	private static final int cMaxDepth = 60;
+	private static final float cTraversalCost = 1.0f;
+
+	private float[] mVertices;
+	private final int mStride;
+	private final int[] mIndices;
+	private final int mTriangleCount;
+
+	// triangle indices, leaves reference contiguous ranges
+	private final int[] mTriangles;
+
+	// per node: bounds (minX, minY, minZ, maxX, maxY, maxZ), first triangle
+	// or left child, triangle count (0 for inner nodes)
+	private final float[] mNodeBounds;
+	private final int[] mNodeFirst;
+	private final int[] mNodeCount;
+	private int mNodes;
+
+	// build-time only
+	private float[] mTriangleBounds;
+	private float[] mCentroids;
+	private AtomicInteger mNodeCounter;
+
+	/**
+	 * Builds a hierarchy over the triangles given by pIndices, three vertex
+	 * indices per triangle, or over consecutive vertex triples if pIndices is
+	 * null. Vertex i starts at pVertices[i * pStride] with x, y, z.
+	 */
+	public TriangleBVH(final float[] pVertices,
+			final int pStride,
+			final int[] pIndices) {
+		if (pStride < 3)
+			throw new IllegalArgumentException("Vertex stride must be at least 3: " + pStride);
+		mVertices = pVertices;
+		mStride = pStride;
+		mIndices = pIndices;
+		mTriangleCount = pIndices != null ? pIndices.length / 3
+				: pVertices.length / (3 * pStride);
+
+		mTriangles = new int[mTriangleCount];
+		final int lMaxNodes = Math.max(1, 2 * mTriangleCount - 1);
+		mNodeBounds = new float[6 * lMaxNodes];
+		mNodeFirst = new int[lMaxNodes];
+		mNodeCount = new int[lMaxNodes];
+
+		build();
+	}
+
+	public int getTriangleCount() {
+		return mTriangleCount;
+	}
+
+	public int getNodeCount() {
+		return mNodes;
+	}
+
+	/**
+	 * Bounds of the whole mesh (minX, minY, minZ, maxX, maxY, maxZ).
+	 */
+	public float[] getBounds(final float[] pDestination) {
+		System.arraycopy(mNodeBounds, 0, pDestination, 0, 6);
+		return pDestination;
+	}
+
+	private void build() {
+		for (int i = 0; i < mTriangleCount; i++)
+			mTriangles[i] = i;
+
+		if (mTriangleCount == 0) {
+			Arrays.fill(mNodeBounds, 0, 3, Float.POSITIVE_INFINITY);
+			Arrays.fill(mNodeBounds, 3, 6, Float.NEGATIVE_INFINITY);
+			mNodes = 1;
+			return;
+		}
+
+		mTriangleBounds = new float[6 * mTriangleCount];
+		mCentroids = new float[3 * mTriangleCount];
+		ParallelRange.forRange(0, mTriangleCount, PARALLEL_THRESHOLD, (pStart, pEnd) -> {
+			for (int t = pStart; t < pEnd; t++) {
+				triangleBounds(t, mTriangleBounds, 6 * t);
+				for (int a = 0; a < 3; a++)
+					mCentroids[3 * t + a] = 0.5f * (mTriangleBounds[6 * t + a] + mTriangleBounds[6 * t + 3 + a]);
+			}
+		});
+
+		mNodeCounter = new AtomicInteger(1);
+		final BuildTask lRoot = new BuildTask(0, 0, mTriangleCount, 0);
+		if (mTriangleCount > PARALLEL_THRESHOLD)
+			ForkJoinPool.commonPool().invoke(lRoot);
+		else
+			lRoot.compute();
+		mNodes = mNodeCounter.get();
+
+		mTriangleBounds = null;
+		mCentroids = null;
+		mNodeCounter = null;
+	}
+
+	private class BuildTask extends RecursiveAction {
+		private static final long serialVersionUID = 1L;
+
+		private final int mNode, mStart, mEnd, mDepth;
+
+		BuildTask(final int pNode,
+				final int pStart,
+				final int pEnd,
+				final int pDepth) {
+			mNode = pNode;
+			mStart = pStart;
+			mEnd = pEnd;
+			mDepth = pDepth;
+		}
+
+		@Override
+		protected void compute() {
+			final int lMiddle = split(mNode, mStart, mEnd, mDepth);
+			if (lMiddle < 0)
+				return;
+
+			final int lLeft = mNodeCounter.getAndAdd(2);
+			mNodeFirst[mNode] = lLeft;
+			mNodeCount[mNode] = 0;
+
+			final BuildTask lLeftTask = new BuildTask(lLeft, mStart, lMiddle, mDepth + 1);
+			final BuildTask lRightTask = new BuildTask(lLeft + 1, lMiddle, mEnd, mDepth + 1);
+			if (mEnd - mStart > PARALLEL_THRESHOLD)
+				invokeAll(lLeftTask, lRightTask);
+			else {
+				lLeftTask.compute();
+				lRightTask.compute();
+			}
+		}
+	}
+
+	/**
+	 * Sets the bounds of pNode and partitions its triangles. Returns the split
+	 * position, or -1 if pNode became a leaf.
+	 */
+	private int split(final int pNode,
+			final int pStart,
+			final int pEnd,
+			final int pDepth) {
+		final float[] lBounds = mNodeBounds;
+		final int o = 6 * pNode;
+		final float[] lCentroidBounds = new float[6];
+		Arrays.fill(lBounds, o, o + 3, Float.POSITIVE_INFINITY);
+		Arrays.fill(lBounds, o + 3, o + 6, Float.NEGATIVE_INFINITY);
+		Arrays.fill(lCentroidBounds, 0, 3, Float.POSITIVE_INFINITY);
+		Arrays.fill(lCentroidBounds, 3, 6, Float.NEGATIVE_INFINITY);
+		for (int i = pStart; i < pEnd; i++) {
+			final int t = mTriangles[i];
+			for (int a = 0; a < 3; a++) {
+				lBounds[o + a] = Math.min(lBounds[o + a], mTriangleBounds[6 * t + a]);
+				lBounds[o + 3 + a] = Math.max(lBounds[o + 3 + a], mTriangleBounds[6 * t + 3 + a]);
+				final float c = mCentroids[3 * t + a];
+				lCentroidBounds[a] = Math.min(lCentroidBounds[a], c);
+				lCentroidBounds[3 + a] = Math.max(lCentroidBounds[3 + a], c);
+			}
+		}
+
+		final int lCount = pEnd - pStart;
+		if (lCount <= cMaxLeafSize || pDepth >= cMaxDepth) {
+			makeLeaf(pNode, pStart, lCount);
+			return -1;
+		}
+
+		// binned SAH over all three axes
+		final int[] lBinCount = new int[cBins];
+		final float[] lBinBounds = new float[6 * cBins];
+		final float[] lRightArea = new float[cBins];
+		final int[] lRightCount = new int[cBins];
+		float lBestCost = Float.POSITIVE_INFINITY;
+		int lBestAxis = -1, lBestPlane = -1;
+
+		for (int a = 0; a < 3; a++) {
+			final float lMin = lCentroidBounds[a];
+			final float lExtent = lCentroidBounds[3 + a] - lMin;
+			if (!(lExtent > 0))
+				continue;
+			final float lScale = cBins / lExtent;
+
+			Arrays.fill(lBinCount, 0);
+			for (int b = 0; b < cBins; b++) {
+				Arrays.fill(lBinBounds, 6 * b, 6 * b + 3, Float.POSITIVE_INFINITY);
+				Arrays.fill(lBinBounds, 6 * b + 3, 6 * b + 6, Float.NEGATIVE_INFINITY);
+			}
+			for (int i = pStart; i < pEnd; i++) {
+				final int t = mTriangles[i];
+				final int b = bin(mCentroids[3 * t + a], lMin, lScale);
+				lBinCount[b]++;
+				for (int k = 0; k < 3; k++) {
+					lBinBounds[6 * b + k] = Math.min(lBinBounds[6 * b + k], mTriangleBounds[6 * t + k]);
+					lBinBounds[6 * b + 3 + k] = Math.max(lBinBounds[6 * b + 3 + k], mTriangleBounds[6 * t + 3 + k]);
+				}
+			}
+
+			// sweep from the right, then from the left evaluating each plane
+			final float[] lAccumulated = new float[6];
+			resetBounds(lAccumulated);
+			int lAccumulatedCount = 0;
+			for (int b = cBins - 1; b > 0; b--) {
+				lAccumulatedCount += lBinCount[b];
+				growBounds(lAccumulated, lBinBounds, 6 * b);
+				lRightCount[b] = lAccumulatedCount;
+				lRightArea[b] = lAccumulatedCount == 0 ? 0 : halfArea(lAccumulated, 0);
+			}
+			resetBounds(lAccumulated);
+			lAccumulatedCount = 0;
+			for (int b = 0; b < cBins - 1; b++) {
+				lAccumulatedCount += lBinCount[b];
+				growBounds(lAccumulated, lBinBounds, 6 * b);
+				if (lAccumulatedCount == 0 || lRightCount[b + 1] == 0)
+					continue;
+				final float lCost = halfArea(lAccumulated, 0) * lAccumulatedCount
+						+ lRightArea[b + 1] * lRightCount[b + 1];
+				if (lCost < lBestCost) {
+					lBestCost = lCost;
+					lBestAxis = a;
+					lBestPlane = b;
+				}
+			}
+		}
+
+		int lMiddle;
+		if (lBestAxis < 0) {
+			// all centroids coincide, split by count
+			lMiddle = (pStart + pEnd) >>> 1;
+		} else {
+			final float lNodeArea = halfArea(lBounds, o);
+			final float lSplitCost = cTraversalCost + (lNodeArea > 0 ? lBestCost / lNodeArea : 0);
+			if (lSplitCost >= lCount && lCount <= cMaxSAHLeafSize) {
+				makeLeaf(pNode, pStart, lCount);
+				return -1;
+			}
+
+			final float lMin = lCentroidBounds[lBestAxis];
+			final float lScale = cBins / (lCentroidBounds[3 + lBestAxis] - lMin);
+			int i = pStart, j = pEnd - 1;
+			while (i <= j) {
+				final int t = mTriangles[i];
+				if (bin(mCentroids[3 * t + lBestAxis], lMin, lScale) <= lBestPlane)
+					i++;
+				else {
+					mTriangles[i] = mTriangles[j];
+					mTriangles[j--] = t;
+				}
+			}
+			lMiddle = i;
+			if (lMiddle == pStart || lMiddle == pEnd)
+				lMiddle = (pStart + pEnd) >>> 1;
+		}
+		return lMiddle;
+	}
+
+	private static int bin(final float pCentroid,
+			final float pMin,
+			final float pScale) {
+		return Math.min(cBins - 1, (int) ((pCentroid - pMin) * pScale));
+	}
+
+	private void makeLeaf(final int pNode, final int pStart, final int pCount) {
+		mNodeFirst[pNode] = pStart;
+		mNodeCount[pNode] = pCount;
+	}
+
+	private static void resetBounds(final float[] pBounds) {
+		Arrays.fill(pBounds, 0, 3, Float.POSITIVE_INFINITY);
+		Arrays.fill(pBounds, 3, 6, Float.NEGATIVE_INFINITY);
+	}
+
+	private static void growBounds(final float[] pBounds,
+			final float[] pOther,
+			final int pOffset) {
+		for (int k = 0; k < 3; k++) {
+			pBounds[k] = Math.min(pBounds[k], pOther[pOffset + k]);
+			pBounds[3 + k] = Math.max(pBounds[3 + k], pOther[pOffset + 3 + k]);
+		}
+	}
+
+	private static float halfArea(final float[] pBounds, final int pOffset) {
+		final float dx = pBounds[pOffset + 3] - pBounds[pOffset];
+		final float dy = pBounds[pOffset + 4] - pBounds[pOffset + 1];
+		final float dz = pBounds[pOffset + 5] - pBounds[pOffset + 2];
+		return dx * dy + dy * dz + dz * dx;
+	}
+
+	private int vertexOffset(final int pTriangle, final int pCorner) {
+		final int lVertex = mIndices != null ? mIndices[3 * pTriangle + pCorner]
+				: 3 * pTriangle + pCorner;
+		return lVertex * mStride;
+	}
+
+	private void triangleBounds(final int pTriangle,
+			final float[] pBounds,
+			final int pOffset) {
+		final float[] v = mVertices;
+		final int a = vertexOffset(pTriangle, 0);
+		final int b = vertexOffset(pTriangle, 1);
+		final int c = vertexOffset(pTriangle, 2);
+		for (int k = 0; k < 3; k++) {
+			pBounds[pOffset + k] = Math.min(v[a + k], Math.min(v[b + k], v[c + k]));
+			pBounds[pOffset + 3 + k] = Math.max(v[a + k], Math.max(v[b + k], v[c + k]));
+		}
+	}
+
+	/**
+	 * Recomputes all node bounds from the current content of the vertex array,
+	 * keeping the tree topology. Children always have higher node indices than
+	 * their parent, so one backwards pass suffices.
+	 */
+	public void refit() {
+		if (mTriangleCount == 0)
+			return;
+		final float[] lBounds = mNodeBounds;
+		for (int n = mNodes - 1; n >= 0; n--) {
+			final int o = 6 * n;
+			final int lCount = mNodeCount[n];
+			if (lCount > 0) {
+				final int lFirst = mNodeFirst[n];
+				triangleBounds(mTriangles[lFirst], lBounds, o);
+				for (int i = lFirst + 1; i < lFirst + lCount; i++) {
+					final int t = mTriangles[i];
+					final float[] v = mVertices;
+					for (int c = 0; c < 3; c++) {
+						final int p = vertexOffset(t, c);
+						for (int k = 0; k < 3; k++) {
+							lBounds[o + k] = Math.min(lBounds[o + k], v[p + k]);
+							lBounds[o + 3 + k] = Math.max(lBounds[o + 3 + k], v[p + k]);
+						}
+					}
+				}
+			} else {
+				final int l = 6 * mNodeFirst[n];
+				for (int k = 0; k < 3; k++) {
+					lBounds[o + k] = Math.min(lBounds[l + k], lBounds[l + 6 + k]);
+					lBounds[o + 3 + k] = Math.max(lBounds[l + 3 + k], lBounds[l + 9 + k]);
+				}
+			}
+		}
+	}
+
+	/**
+	 * Switches to a new vertex array with the same layout and vertex count,
+	 * and refits.
+	 */
+	public void refit(final float[] pVertices) {
+		if (pVertices.length != mVertices.length)
+			throw new IllegalArgumentException("Vertex count changed, the hierarchy must be rebuilt");
+		mVertices = pVertices;
+		refit();
+	}
+
+	public boolean intersect(final Ray pRay, final RayHit pHit) {
+		return intersect(pRay, Float.POSITIVE_INFINITY, pHit);
+	}
+
+	/**
+	 * Finds the nearest triangle hit with 0 <= t < pMaxT. pHit is only written
+	 * if a hit is found.
+	 */
+	public boolean intersect(final Ray pRay,
+			final float pMaxT,
+			final RayHit pHit) {
+		if (mTriangleCount == 0)
+			return false;
+
+		final float ox = pRay.getOrigin().x, oy = pRay.getOrigin().y, oz = pRay.getOrigin().z;
+		final float dx = pRay.getDirection().x, dy = pRay.getDirection().y, dz = pRay.getDirection().z;
+		final float ix = 1.0f / dx, iy = 1.0f / dy, iz = 1.0f / dz;
+
+		float lBestT = pMaxT;
+		int lBestTriangle = -1;
+		float lBestU = 0, lBestV = 0;
+
+		final int[] lStack = new int[cMaxDepth + 2];
+		int lStackSize = 0;
+		if (boxEntry(0, ox, oy, oz, ix, iy, iz, lBestT) < Float.POSITIVE_INFINITY)
+			lStack[lStackSize++] = 0;
+
+		final float[] v = mVertices;
+		while (lStackSize > 0) {
+			final int n = lStack[--lStackSize];
+			if (boxEntry(n, ox, oy, oz, ix, iy, iz, lBestT) == Float.POSITIVE_INFINITY)
+				continue;
+
+			final int lCount = mNodeCount[n];
+			if (lCount > 0) {
+				final int lFirst = mNodeFirst[n];
+				for (int i = lFirst; i < lFirst + lCount; i++) {
+					final int t = mTriangles[i];
+					final int a = vertexOffset(t, 0);
+					final int b = vertexOffset(t, 1);
+					final int c = vertexOffset(t, 2);
+
+					// Moeller-Trumbore, both faces
+					final float e1x = v[b] - v[a], e1y = v[b + 1] - v[a + 1], e1z = v[b + 2] - v[a + 2];
+					final float e2x = v[c] - v[a], e2y = v[c + 1] - v[a + 1], e2z = v[c + 2] - v[a + 2];
+					final float px = dy * e2z - dz * e2y, py = dz * e2x - dx * e2z, pz = dx * e2y - dy * e2x;
+					final float lDet = e1x * px + e1y * py + e1z * pz;
+					if (lDet == 0)
+						continue;
+					final float lInvDet = 1.0f / lDet;
+					final float sx = ox - v[a], sy = oy - v[a + 1], sz = oz - v[a + 2];
+					final float u = (sx * px + sy * py + sz * pz) * lInvDet;
+					if (u < 0 || u > 1)
+						continue;
+					final float qx = sy * e1z - sz * e1y, qy = sz * e1x - sx * e1z, qz = sx * e1y - sy * e1x;
+					final float w = (dx * qx + dy * qy + dz * qz) * lInvDet;
+					if (w < 0 || u + w > 1)
+						continue;
+					final float lT = (e2x * qx + e2y * qy + e2z * qz) * lInvDet;
+					if (lT >= 0 && lT < lBestT) {
+						lBestT = lT;
+						lBestTriangle = t;
+						lBestU = u;
+						lBestV = w;
+					}
+				}
+			} else {
+				// visit the nearer child first
+				final int lLeft = mNodeFirst[n];
+				final float lLeftT = boxEntry(lLeft, ox, oy, oz, ix, iy, iz, lBestT);
+				final float lRightT = boxEntry(lLeft + 1, ox, oy, oz, ix, iy, iz, lBestT);
+				if (lLeftT <= lRightT) {
+					if (lRightT < Float.POSITIVE_INFINITY)
+						lStack[lStackSize++] = lLeft + 1;
+					if (lLeftT < Float.POSITIVE_INFINITY)
+						lStack[lStackSize++] = lLeft;
+				} else {
+					if (lLeftT < Float.POSITIVE_INFINITY)
+						lStack[lStackSize++] = lLeft;
+					lStack[lStackSize++] = lLeft + 1;
+				}
+			}
+		}
+
+		if (lBestTriangle < 0)
+			return false;
+		pHit.t = lBestT;
+		pHit.triangle = lBestTriangle;
+		pHit.u = lBestU;
+		pHit.v = lBestV;
+		return true;
+	}
+
+	/**
+	 * Returns the entry distance of the ray into the bounds of pNode, or
+	 * infinity if the box is missed or lies beyond pMaxT.
+	 */
+	private float boxEntry(final int pNode,
+			final float ox,
+			final float oy,
+			final float oz,
+			final float ix,
+			final float iy,
+			final float iz,
+			final float pMaxT) {
+		final float[] b = mNodeBounds;
+		final int o = 6 * pNode;
+		// a NaN from 0 * infinity means that the ray runs in a face plane,
+		// which does not bound it along that axis
+		float lNear = Float.NEGATIVE_INFINITY, lFar = Float.POSITIVE_INFINITY;
+		float t0 = (b[o] - ox) * ix, t1 = (b[o + 3] - ox) * ix;
+		if (t0 == t0 && t1 == t1) {
+			lNear = Math.min(t0, t1);
+			lFar = Math.max(t0, t1);
+		}
+		t0 = (b[o + 1] - oy) * iy;
+		t1 = (b[o + 4] - oy) * iy;
+		if (t0 == t0 && t1 == t1) {
+			lNear = Math.max(lNear, Math.min(t0, t1));
+			lFar = Math.min(lFar, Math.max(t0, t1));
+		}
+		t0 = (b[o + 2] - oz) * iz;
+		t1 = (b[o + 5] - oz) * iz;
+		if (t0 == t0 && t1 == t1) {
+			lNear = Math.max(lNear, Math.min(t0, t1));
+			lFar = Math.min(lFar, Math.max(t0, t1));
+		}
+		if (lFar < Math.max(lNear, 0) || lNear >= pMaxT)
+			return Float.POSITIVE_INFINITY;
+		return lNear;
+	}
+
+	@Override
+	public String toString() {
+		return "TriangleBVH [triangles=" + mTriangleCount
+				+ ", nodes="
+				+ mNodes
+				+ "]";
+	}
+
+}
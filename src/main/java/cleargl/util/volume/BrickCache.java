@@ -0,0 +1,230 @@
+package cleargl.util.volume;
+
+import java.util.Arrays;
+
+/**
+ * Residency bookkeeping of a brick atlas, without any GL calls. Maps brick
+ * indices to a fixed number of atlas slots and evicts the least recently used
+ * brick when a new one needs a slot. Bricks used during the current frame are
+ * never evicted, so a frame that needs more bricks than there are slots gets
+ * as many as fit and the rest stay unresident.
+ */
+public class BrickCache {
+
+	private static final int NONE = -1;
+
+	private final int[] mBrickToSlot;
+	private final int[] mSlotToBrick;
+	private final int[] mSlotFrame;
+
+	// LRU list over the occupied slots, most recently used at the head
+	private final int[] mPrevious;
+	private final int[] mNext;
+	private int mHead = NONE;
+	private int mTail = NONE;
+
+	private final int[] mFreeSlots;
+	private int mFreeCount;
+
+	private int mFrame;
+	private int mLastEvictedBrick = NONE;
+
+	private long mHitCount;
+	private long mMissCount;
+	private long mEvictionCount;
+
+	public BrickCache(final int pBrickCount, final int pSlotCount) {
+		if (pSlotCount < 1)
+			throw new IllegalArgumentException("Need at least one slot: " + pSlotCount);
+		mBrickToSlot = new int[pBrickCount];
+		mSlotToBrick = new int[pSlotCount];
+		mSlotFrame = new int[pSlotCount];
+		mPrevious = new int[pSlotCount];
+		mNext = new int[pSlotCount];
+		mFreeSlots = new int[pSlotCount];
+		clear();
+	}
+
+	/**
+	 * Starts a new frame; bricks used in earlier frames become evictable.
+	 */
+	public void beginFrame() {
+		mFrame++;
+	}
+
+	public int getFrame() {
+		return mFrame;
+	}
+
+	/**
+	 * Returns the slot of a resident brick and marks it as used in this frame,
+	 * or returns -1 if the brick is not resident.
+	 */
+	public int lookup(final int pBrick) {
+		final int lSlot = mBrickToSlot[pBrick];
+		if (lSlot == NONE) {
+			mMissCount++;
+			return NONE;
+		}
+		mHitCount++;
+		touch(lSlot);
+		return lSlot;
+	}
+
+	/**
+	 * Slot of a brick or -1, without counting as a use.
+	 */
+	public int getSlot(final int pBrick) {
+		return mBrickToSlot[pBrick];
+	}
+
+	public int getBrick(final int pSlot) {
+		return mSlotToBrick[pSlot];
+	}
+
+	public boolean isResident(final int pBrick) {
+		return mBrickToSlot[pBrick] != NONE;
+	}
+
+	/**
+	 * Assigns a slot to pBrick and marks it as used in this frame. Takes a free
+	 * slot if there is one and evicts the least recently used brick otherwise,
+	 * see {@link #getLastEvictedBrick()}. Returns -1 if all slots hold bricks
+	 * used in this frame.
+	 */
+	public int allocate(final int pBrick) {
+		mLastEvictedBrick = NONE;
+		int lSlot = mBrickToSlot[pBrick];
+		if (lSlot != NONE) {
+			touch(lSlot);
+			return lSlot;
+		}
+
+		if (mFreeCount > 0) {
+			lSlot = mFreeSlots[--mFreeCount];
+		} else {
+			lSlot = mTail;
+			if (mSlotFrame[lSlot] == mFrame)
+				return NONE;
+			unlink(lSlot);
+			mLastEvictedBrick = mSlotToBrick[lSlot];
+			mBrickToSlot[mLastEvictedBrick] = NONE;
+			mEvictionCount++;
+		}
+
+		mBrickToSlot[pBrick] = lSlot;
+		mSlotToBrick[lSlot] = pBrick;
+		linkFirst(lSlot);
+		mSlotFrame[lSlot] = mFrame;
+		return lSlot;
+	}
+
+	/**
+	 * Brick whose slot was taken by the last {@link #allocate(int)}, or -1.
+	 */
+	public int getLastEvictedBrick() {
+		return mLastEvictedBrick;
+	}
+
+	/**
+	 * Drops a brick, e.g. because its data changed, and frees its slot.
+	 */
+	public boolean invalidate(final int pBrick) {
+		final int lSlot = mBrickToSlot[pBrick];
+		if (lSlot == NONE)
+			return false;
+		unlink(lSlot);
+		mBrickToSlot[pBrick] = NONE;
+		mSlotToBrick[lSlot] = NONE;
+		mFreeSlots[mFreeCount++] = lSlot;
+		return true;
+	}
+
+	public void clear() {
+		Arrays.fill(mBrickToSlot, NONE);
+		Arrays.fill(mSlotToBrick, NONE);
+		Arrays.fill(mSlotFrame, -1);
+		// hand out low slots first
+		mFreeCount = mSlotToBrick.length;
+		for (int i = 0; i < mFreeCount; i++)
+			mFreeSlots[i] = mFreeCount - 1 - i;
+		mHead = mTail = NONE;
+		mLastEvictedBrick = NONE;
+	}
+
+	private void touch(final int pSlot) {
+		mSlotFrame[pSlot] = mFrame;
+		if (pSlot != mHead) {
+			unlink(pSlot);
+			linkFirst(pSlot);
+		}
+	}
+
+	private void linkFirst(final int pSlot) {
+		mPrevious[pSlot] = NONE;
+		mNext[pSlot] = mHead;
+		if (mHead != NONE)
+			mPrevious[mHead] = pSlot;
+		mHead = pSlot;
+		if (mTail == NONE)
+			mTail = pSlot;
+	}
+
+	private void unlink(final int pSlot) {
+		final int lPrevious = mPrevious[pSlot];
+		final int lNext = mNext[pSlot];
+		if (lPrevious != NONE)
+			mNext[lPrevious] = lNext;
+		else
+			mHead = lNext;
+		if (lNext != NONE)
+			mPrevious[lNext] = lPrevious;
+		else
+			mTail = lPrevious;
+	}
+
+	public int getBrickCount() {
+		return mBrickToSlot.length;
+	}
+
+	public int getSlotCount() {
+		return mSlotToBrick.length;
+	}
+
+	public int getResidentCount() {
+		return mSlotToBrick.length - mFreeCount;
+	}
+
+	public long getHitCount() {
+		return mHitCount;
+	}
+
+	public long getMissCount() {
+		return mMissCount;
+	}
+
+	public long getEvictionCount() {
+		return mEvictionCount;
+	}
+
+	public void resetStatistics() {
+		mHitCount = 0;
+		mMissCount = 0;
+		mEvictionCount = 0;
+	}
+
+	@Override
+	public String toString() {
+		return "BrickCache [resident=" + getResidentCount()
+				+ "/"
+				+ getSlotCount()
+				+ ", mHitCount="
+				+ mHitCount
+				+ ", mMissCount="
+				+ mMissCount
+				+ ", mEvictionCount="
+				+ mEvictionCount
+				+ "]";
+	}
+
+}
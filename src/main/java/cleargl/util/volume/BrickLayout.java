@@ -0,0 +1,158 @@
+package cleargl.util.volume;
+
+/**
+ * Splits a volume into cubic bricks of pBrickSize voxels per side. A brick
+ * covers pBrickSize - 2 * pBorder voxels of the volume and repeats pBorder
+ * voxels of its neighbours on each side, so that linear filtering inside a
+ * brick of the atlas gives the same result as filtering the whole volume.
+ * Bricks are indexed x fastest, then y, then z.
+ */
+public class BrickLayout {
+
+	private final int mVolumeWidth;
+	private final int mVolumeHeight;
+	private final int mVolumeDepth;
+	private final int mBrickSize;
+	private final int mBorder;
+	private final int mCoreSize;
+	private final int mBricksX;
+	private final int mBricksY;
+	private final int mBricksZ;
+
+	public BrickLayout(final int pVolumeWidth,
+			final int pVolumeHeight,
+			final int pVolumeDepth,
+			final int pBrickSize,
+			final int pBorder) {
+		if (pVolumeWidth < 1 || pVolumeHeight < 1 || pVolumeDepth < 1)
+			throw new IllegalArgumentException("Invalid volume size: " + pVolumeWidth
+					+ "x"
+					+ pVolumeHeight
+					+ "x"
+					+ pVolumeDepth);
+		if (pBorder < 0 || pBrickSize <= 2 * pBorder)
+			throw new IllegalArgumentException("Brick size " + pBrickSize
+					+ " leaves no voxels inside a border of "
+					+ pBorder);
+
+		mVolumeWidth = pVolumeWidth;
+		mVolumeHeight = pVolumeHeight;
+		mVolumeDepth = pVolumeDepth;
+		mBrickSize = pBrickSize;
+		mBorder = pBorder;
+		mCoreSize = pBrickSize - 2 * pBorder;
+		mBricksX = (pVolumeWidth + mCoreSize - 1) / mCoreSize;
+		mBricksY = (pVolumeHeight + mCoreSize - 1) / mCoreSize;
+		mBricksZ = (pVolumeDepth + mCoreSize - 1) / mCoreSize;
+
+		if ((long) mBricksX * mBricksY * mBricksZ > Integer.MAX_VALUE)
+			throw new IllegalArgumentException("Too many bricks, use a larger brick size");
+	}
+
+	public int getVolumeWidth() {
+		return mVolumeWidth;
+	}
+
+	public int getVolumeHeight() {
+		return mVolumeHeight;
+	}
+
+	public int getVolumeDepth() {
+		return mVolumeDepth;
+	}
+
+	/**
+	 * Size of a brick in the atlas, including the border.
+	 */
+	public int getBrickSize() {
+		return mBrickSize;
+	}
+
+	public int getBorder() {
+		return mBorder;
+	}
+
+	/**
+	 * Number of volume voxels a brick covers along each axis, without the
+	 * border.
+	 */
+	public int getCoreSize() {
+		return mCoreSize;
+	}
+
+	public int getBricksX() {
+		return mBricksX;
+	}
+
+	public int getBricksY() {
+		return mBricksY;
+	}
+
+	public int getBricksZ() {
+		return mBricksZ;
+	}
+
+	public int getBrickCount() {
+		return mBricksX * mBricksY * mBricksZ;
+	}
+
+	public long getVoxelsPerBrick() {
+		return (long) mBrickSize * mBrickSize * mBrickSize;
+	}
+
+	public int getBrickIndex(final int pBrickX,
+			final int pBrickY,
+			final int pBrickZ) {
+		return pBrickX + mBricksX * (pBrickY + mBricksY * pBrickZ);
+	}
+
+	/**
+	 * Index of the brick whose core contains the given voxel.
+	 */
+	public int getBrickIndexOfVoxel(final int pX, final int pY, final int pZ) {
+		return getBrickIndex(pX / mCoreSize, pY / mCoreSize, pZ / mCoreSize);
+	}
+
+	public int getBrickX(final int pBrickIndex) {
+		return pBrickIndex % mBricksX;
+	}
+
+	public int getBrickY(final int pBrickIndex) {
+		return (pBrickIndex / mBricksX) % mBricksY;
+	}
+
+	public int getBrickZ(final int pBrickIndex) {
+		return pBrickIndex / (mBricksX * mBricksY);
+	}
+
+	/**
+	 * Volume coordinate of the first voxel of a brick along one axis,
+	 * including the border. This is negative for the first brick when there
+	 * is a border, and bricks at the far end may reach past the volume;
+	 * loaders clamp such voxels to the edge.
+	 */
+	public int getBrickOrigin(final int pBrickCoordinate) {
+		return pBrickCoordinate * mCoreSize - mBorder;
+	}
+
+	@Override
+	public String toString() {
+		return "BrickLayout [volume=" + mVolumeWidth
+				+ "x"
+				+ mVolumeHeight
+				+ "x"
+				+ mVolumeDepth
+				+ ", mBrickSize="
+				+ mBrickSize
+				+ ", mBorder="
+				+ mBorder
+				+ ", bricks="
+				+ mBricksX
+				+ "x"
+				+ mBricksY
+				+ "x"
+				+ mBricksZ
+				+ "]";
+	}
+
+}
@@ -0,0 +1,20 @@
+package cleargl.util.volume;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Supplies the voxels of one brick, see {@link BrickLayout}.
+ */
+public interface BrickLoader {
+
+	/**
+	 * Writes brick size^3 voxels, x fastest, into pDestination starting at its
+	 * position. Voxels outside the volume should repeat the nearest edge voxel.
+	 */
+	void loadBrick(BrickLayout pLayout,
+			int pBrickX,
+			int pBrickY,
+			int pBrickZ,
+			ByteBuffer pDestination);
+
+}
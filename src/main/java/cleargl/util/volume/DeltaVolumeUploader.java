@@ -0,0 +1,276 @@
+package cleargl.util.volume;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+import cleargl.GLTexture;
+import cleargl.util.image.MipMapBuilder;
+import cleargl.util.parallel.ParallelRange;
+
+/**
+ * Uploads successive timepoints of a volume into a texture, but only the
+ * bricks that changed since the previous upload. Each brick is hashed with
+ * a 64 bit hash, in parallel, and compared with the hash of the last upload;
+ * changed bricks are gathered into a staging buffer and uploaded as
+ * sub-regions. If most bricks changed, the volume is uploaded in one piece.
+ *
+ * The texture must not be written by anything else in between, otherwise
+ * {@link #invalidate()} forces the next upload to be complete. Two different
+ * bricks with the same hash are not told apart; with 64 bits this is not a
+ * practical concern.
+ */
+public class DeltaVolumeUploader {
+
+	/**
+	 * Bricks are hashed in tasks of at least this many bytes.
+	 */
+	public static final int PARALLEL_BYTES = 1 << 20;
+
+	private static final long cPrime1 = 0x9E3779B97F4A7C15L;
+	private static final long cPrime2 = 0xBF58476D1CE4E5B9L;
+
+	private final GLTexture mTexture;
+	private final BrickLayout mLayout;
+	private final int mBytesPerVoxel;
+	private final long[] mHashes;
+	private final long[] mNewHashes;
+	private boolean mValid;
+	private double mFullUploadFraction = 0.5;
+	private ByteBuffer mStaging;
+
+	private int mLastChangedBricks;
+	private long mUploadedBytes;
+	private long mSkippedBytes;
+	private long mUploadedBricks;
+	private long mSkippedBricks;
+
+	public DeltaVolumeUploader(final GLTexture pTexture,
+			final int pBrickSize) {
+		mTexture = pTexture;
+		mLayout = new BrickLayout(pTexture.getWidth(),
+				pTexture.getHeight(),
+				pTexture.getDepth(),
+				pBrickSize,
+				0);
+		mBytesPerVoxel = Math.max(1, pTexture.getChannels())
+				* MipMapBuilder.getBytesPerChannel(pTexture.getNativeType());
+		mHashes = new long[mLayout.getBrickCount()];
+		mNewHashes = new long[mLayout.getBrickCount()];
+	}
+
+	/**
+	 * Uploads the volume held by pVolume from its position on, in native byte
+	 * order, and returns the number of bricks that were uploaded.
+	 */
+	public int upload(final ByteBuffer pVolume) {
+		final ByteBuffer lVolume = pVolume.slice()
+				.order(ByteOrder.nativeOrder());
+		final long lVolumeBytes = (long) mLayout.getVolumeWidth() * mLayout.getVolumeHeight()
+				* mLayout.getVolumeDepth()
+				* mBytesPerVoxel;
+		if (lVolume.remaining() < lVolumeBytes)
+			throw new IllegalArgumentException("Buffer holds less than " + lVolumeBytes
+					+ " bytes");
+
+		final int lBricks = mLayout.getBrickCount();
+		final long lBrickBytes = mLayout.getVoxelsPerBrick() * mBytesPerVoxel;
+		ParallelRange.forRange(0,
+				lBricks,
+				(int) Math.max(1, PARALLEL_BYTES / lBrickBytes),
+				(s, e) -> {
+					for (int b = s; b < e; b++)
+						mNewHashes[b] = hashBrick(lVolume, b);
+				});
+
+		int lChanged = 0;
+		long lChangedBytes = 0;
+		for (int b = 0; b < lBricks; b++)
+			if (!mValid || mNewHashes[b] != mHashes[b]) {
+				lChanged++;
+				lChangedBytes += getBrickBytes(b);
+			}
+
+		if (lChanged > mFullUploadFraction * lBricks) {
+			mTexture.copyFrom(lVolume,
+					mLayout.getVolumeWidth(),
+					mLayout.getVolumeHeight(),
+					mLayout.getVolumeDepth(),
+					0,
+					0,
+					0,
+					false);
+			mUploadedBytes += lVolumeBytes;
+		} else {
+			for (int b = 0; b < lBricks; b++)
+				if (!mValid || mNewHashes[b] != mHashes[b])
+					uploadBrick(lVolume, b);
+			mUploadedBytes += lChangedBytes;
+			mSkippedBytes += lVolumeBytes - lChangedBytes;
+		}
+
+		System.arraycopy(mNewHashes, 0, mHashes, 0, lBricks);
+		mValid = true;
+		mLastChangedBricks = lChanged;
+		mUploadedBricks += lChanged;
+		mSkippedBricks += lBricks - lChanged;
+		return lChanged;
+	}
+
+	private int getExtent(final int pBrickCoordinate, final int pVolumeSize) {
+		return Math.min(mLayout.getBrickSize(),
+				pVolumeSize - mLayout.getBrickOrigin(pBrickCoordinate));
+	}
+
+	private long getBrickBytes(final int pBrick) {
+		return (long) getExtent(mLayout.getBrickX(pBrick),
+				mLayout.getVolumeWidth()) * getExtent(mLayout.getBrickY(pBrick),
+						mLayout.getVolumeHeight())
+				* getExtent(mLayout.getBrickZ(pBrick), mLayout.getVolumeDepth())
+				* mBytesPerVoxel;
+	}
+
+	/**
+	 * Byte offset of the first voxel of a row in a brick.
+	 */
+	private long getRowOffset(final int pX, final int pY, final int pZ) {
+		return (((long) pZ * mLayout.getVolumeHeight() + pY) * mLayout.getVolumeWidth()
+				+ pX) * mBytesPerVoxel;
+	}
+
+	private long hashBrick(final ByteBuffer pVolume, final int pBrick) {
+		final int lX = mLayout.getBrickOrigin(mLayout.getBrickX(pBrick));
+		final int lY = mLayout.getBrickOrigin(mLayout.getBrickY(pBrick));
+		final int lZ = mLayout.getBrickOrigin(mLayout.getBrickZ(pBrick));
+		final int lRowBytes = getExtent(mLayout.getBrickX(pBrick),
+				mLayout.getVolumeWidth()) * mBytesPerVoxel;
+		final int lHeight = getExtent(mLayout.getBrickY(pBrick),
+				mLayout.getVolumeHeight());
+		final int lDepth = getExtent(mLayout.getBrickZ(pBrick),
+				mLayout.getVolumeDepth());
+
+		long lHash = cPrime1 * (pBrick + 1);
+		for (int z = 0; z < lDepth; z++)
+			for (int y = 0; y < lHeight; y++) {
+				// absolute reads leave the shared buffer untouched
+				final int lRow = (int) getRowOffset(lX, lY + y, lZ + z);
+				int i = 0;
+				for (; i + 8 <= lRowBytes; i += 8)
+					lHash = mix(lHash, pVolume.getLong(lRow + i));
+				for (; i < lRowBytes; i++)
+					lHash = mix(lHash, pVolume.get(lRow + i));
+			}
+
+		// final avalanche, as in splitmix64
+		lHash = (lHash ^ (lHash >>> 30)) * cPrime2;
+		lHash = (lHash ^ (lHash >>> 27)) * 0x94D049BB133111EBL;
+		return lHash ^ (lHash >>> 31);
+	}
+
+	private static long mix(final long pHash, final long pWord) {
+		return Long.rotateLeft(pHash ^ (pWord * cPrime1), 29) * cPrime2;
+	}
+
+	private void uploadBrick(final ByteBuffer pVolume, final int pBrick) {
+		final int lX = mLayout.getBrickOrigin(mLayout.getBrickX(pBrick));
+		final int lY = mLayout.getBrickOrigin(mLayout.getBrickY(pBrick));
+		final int lZ = mLayout.getBrickOrigin(mLayout.getBrickZ(pBrick));
+		final int lWidth = getExtent(mLayout.getBrickX(pBrick),
+				mLayout.getVolumeWidth());
+		final int lHeight = getExtent(mLayout.getBrickY(pBrick),
+				mLayout.getVolumeHeight());
+		final int lDepth = getExtent(mLayout.getBrickZ(pBrick),
+				mLayout.getVolumeDepth());
+		final int lRowBytes = lWidth * mBytesPerVoxel;
+
+		if (mStaging == null)
+			mStaging = ByteBuffer.allocateDirect((int) (mLayout.getVoxelsPerBrick() * mBytesPerVoxel))
+					.order(ByteOrder.nativeOrder());
+		mStaging.clear();
+		final ByteBuffer lRow = pVolume.duplicate();
+		for (int z = 0; z < lDepth; z++)
+			for (int y = 0; y < lHeight; y++) {
+				final int lOffset = (int) getRowOffset(lX, lY + y, lZ + z);
+				lRow.limit(lOffset + lRowBytes);
+				lRow.position(lOffset);
+				mStaging.put(lRow);
+			}
+		mStaging.flip();
+
+		// glTexSubImage copies the data before returning, so the staging
+		// buffer can be reused right away
+		mTexture.copyFrom(mStaging, lWidth, lHeight, lDepth, lX, lY, lZ, false);
+	}
+
+	/**
+	 * Makes the next upload complete, e.g. after the texture was written
+	 * elsewhere.
+	 */
+	public void invalidate() {
+		mValid = false;
+	}
+
+	/**
+	 * Fraction of changed bricks above which the volume is uploaded in one
+	 * piece instead of brick by brick, 0.5 by default.
+	 */
+	public void setFullUploadFraction(final double pFullUploadFraction) {
+		mFullUploadFraction = pFullUploadFraction;
+	}
+
+	public double getFullUploadFraction() {
+		return mFullUploadFraction;
+	}
+
+	public BrickLayout getLayout() {
+		return mLayout;
+	}
+
+	public GLTexture getTexture() {
+		return mTexture;
+	}
+
+	public int getLastChangedBricks() {
+		return mLastChangedBricks;
+	}
+
+	/**
+	 * Bytes handed to the texture so far.
+	 */
+	public long getUploadedBytes() {
+		return mUploadedBytes;
+	}
+
+	/**
+	 * Bytes of unchanged bricks that were not transferred so far; full
+	 * uploads skip nothing.
+	 */
+	public long getSkippedBytes() {
+		return mSkippedBytes;
+	}
+
+	public long getUploadedBricks() {
+		return mUploadedBricks;
+	}
+
+	public long getSkippedBricks() {
+		return mSkippedBricks;
+	}
+
+	public void resetStatistics() {
+		mUploadedBytes = 0;
+		mSkippedBytes = 0;
+		mUploadedBricks = 0;
+		mSkippedBricks = 0;
+	}
+
+	@Override
+	public String toString() {
+		return "DeltaVolumeUploader [mLayout=" + mLayout
+				+ ", mUploadedBytes="
+				+ mUploadedBytes
+				+ ", mSkippedBytes="
+				+ mSkippedBytes
+				+ "]";
+	}
+
+}
@@ -0,0 +1,410 @@
+package cleargl.util.volume;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.Properties;
+import com.jogamp.opengl.GL4;
+
+import cleargl.GLTexture;
+import cleargl.GLTypeEnum;
+import cleargl.util.image.MipMapBuilder;
+
+/**
+ * Raw volume file that is memory-mapped and uploaded into 3D textures without
+ * copying it to the heap. Voxels are interleaved channels, x fastest, then y,
+ * then z. The layout is read either from a 64 byte header:
+ * <pre>
+ * 0  "CLGLRAW1"
+ * 8  int byte order of header and data, 0 little, 1 big endian
+ * 12 int width, height, depth, channels, GL type (see {@link GLTypeEnum#glType()})
+ * 32 zeros up to 64, the data starts at 64
+ * </pre>
+ * or, for headerless files, from a sidecar file with the same name plus
+ * ".properties":
+ * <pre>
+ * width=2048
+ * height=2048
+ * depth=1000
+ * channels=1        (optional, 1)
+ * type=UnsignedShort
+ * byteorder=little  (optional, little)
+ * offset=0          (optional, bytes to skip)
+ * </pre>
+ * A mapping can be at most 2 GB, so larger volumes are mapped and uploaded
+ * in slabs of whole slices.
+ */
+public class RawVolume implements AutoCloseable {
+
+	public static final int HEADER_SIZE = 64;
+	public static final String SIDECAR_SUFFIX = ".properties";
+
+	private static final byte[] cMagic = {'C', 'L', 'G', 'L', 'R', 'A', 'W', '1'};
+
+	private final Path mPath;
+	private final FileChannel mChannel;
+	private final int mWidth;
+	private final int mHeight;
+	private final int mDepth;
+	private final int mChannels;
+	private final GLTypeEnum mType;
+	private final ByteOrder mByteOrder;
+	private final long mDataOffset;
+	private long mMaxSlabBytes = Integer.MAX_VALUE;
+
+	private RawVolume(final Path pPath,
+			final FileChannel pChannel,
+			final int pWidth,
+			final int pHeight,
+			final int pDepth,
+			final int pChannels,
+			final GLTypeEnum pType,
+			final ByteOrder pByteOrder,
+			final long pDataOffset) throws IOException {
+		mPath = pPath;
+		mChannel = pChannel;
+		mWidth = pWidth;
+		mHeight = pHeight;
+		mDepth = pDepth;
+		mChannels = pChannels;
+		mType = pType;
+		mByteOrder = pByteOrder;
+		mDataOffset = pDataOffset;
+
+		if (pWidth < 1 || pHeight < 1 || pDepth < 1 || pChannels < 1)
+			throw new IOException("Invalid volume size in " + pPath);
+		if (getSliceSizeInBytes() > Integer.MAX_VALUE)
+			throw new IOException("A slice of " + pPath
+					+ " does not fit into one mapping");
+		if (pChannel.size() < pDataOffset + getSizeInBytes())
+			throw new IOException(pPath + " is shorter than its "
+					+ getSizeInBytes()
+					+ " bytes of voxels");
+	}
+
+	/**
+	 * Opens a raw volume with a header or, if it has none, with a sidecar
+	 * file.
+	 */
+	public static RawVolume open(final Path pPath) throws IOException {
+		final FileChannel lChannel = FileChannel.open(pPath,
+				StandardOpenOption.READ);
+		try {
+			final ByteBuffer lHeader = ByteBuffer.allocate(HEADER_SIZE);
+			while (lHeader.hasRemaining() && lChannel.read(lHeader,
+					lHeader.position()) > 0)
+				;
+			if (hasMagic(lHeader))
+				return fromHeader(pPath, lChannel, lHeader);
+
+			final Path lSidecar = Paths.get(pPath.toString() + SIDECAR_SUFFIX);
+			if (!Files.exists(lSidecar))
+				throw new IOException(pPath + " has neither a header nor a sidecar file "
+						+ lSidecar);
+			return fromSidecar(pPath, lChannel, lSidecar);
+		} catch (final IOException | RuntimeException e) {
+			lChannel.close();
+			throw e;
+		}
+	}
+
+	private static boolean hasMagic(final ByteBuffer pHeader) {
+		if (pHeader.position() < HEADER_SIZE)
+			return false;
+		for (int i = 0; i < cMagic.length; i++)
+			if (pHeader.get(i) != cMagic[i])
+				return false;
+		return true;
+	}
+
+	private static RawVolume fromHeader(final Path pPath,
+			final FileChannel pChannel,
+			final ByteBuffer pHeader) throws IOException {
+		final ByteOrder lOrder = pHeader.get(8) == 0 && pHeader.get(11) == 0 ? ByteOrder.LITTLE_ENDIAN
+				: ByteOrder.BIG_ENDIAN;
+		pHeader.order(lOrder);
+		return new RawVolume(pPath,
+				pChannel,
+				pHeader.getInt(12),
+				pHeader.getInt(16),
+				pHeader.getInt(20),
+				pHeader.getInt(24),
+				typeFromGLType(pHeader.getInt(28), pPath),
+				lOrder,
+				HEADER_SIZE);
+	}
+
+	private static RawVolume fromSidecar(final Path pPath,
+			final FileChannel pChannel,
+			final Path pSidecar) throws IOException {
+		final Properties lProperties = new Properties();
+		try (InputStream lInput = Files.newInputStream(pSidecar)) {
+			lProperties.load(lInput);
+		}
+		try {
+			final String lOrder = lProperties.getProperty("byteorder", "little")
+					.trim();
+			return new RawVolume(pPath,
+					pChannel,
+					Integer.parseInt(getRequired(lProperties, "width", pSidecar)),
+					Integer.parseInt(getRequired(lProperties, "height", pSidecar)),
+					Integer.parseInt(getRequired(lProperties, "depth", pSidecar)),
+					Integer.parseInt(lProperties.getProperty("channels", "1")
+							.trim()),
+					GLTypeEnum.valueOf(getRequired(lProperties, "type", pSidecar)),
+					lOrder.equalsIgnoreCase("big") ? ByteOrder.BIG_ENDIAN
+							: ByteOrder.LITTLE_ENDIAN,
+					Long.parseLong(lProperties.getProperty("offset", "0")
+							.trim()));
+		} catch (final IllegalArgumentException e) {
+			throw new IOException("Invalid sidecar file " + pSidecar, e);
+		}
+	}
+
+	private static String getRequired(final Properties pProperties,
+			final String pKey,
+			final Path pSidecar) throws IOException {
+		final String lValue = pProperties.getProperty(pKey);
+		if (lValue == null)
+			throw new IOException("Missing '" + pKey + "' in " + pSidecar);
+		return lValue.trim();
+	}
+
+	private static GLTypeEnum typeFromGLType(final int pGLType,
+			final Path pPath) throws IOException {
+		for (final GLTypeEnum lType : GLTypeEnum.values())
+			if (lType.glType() == pGLType)
+				return lType;
+		throw new IOException("Unknown voxel type " + pGLType + " in " + pPath);
+	}
+
+	/**
+	 * Writes a volume with header, in native byte order. The remaining bytes of
+	 * pData are the voxels.
+	 */
+	public static void write(final Path pPath,
+			final ByteBuffer pData,
+			final int pWidth,
+			final int pHeight,
+			final int pDepth,
+			final int pChannels,
+			final GLTypeEnum pType) throws IOException {
+		final ByteBuffer lHeader = ByteBuffer.allocate(HEADER_SIZE)
+				.order(ByteOrder.nativeOrder());
+		lHeader.put(cMagic);
+		lHeader.putInt(ByteOrder.nativeOrder() == ByteOrder.LITTLE_ENDIAN ? 0 : 1);
+		lHeader.putInt(pWidth)
+				.putInt(pHeight)
+				.putInt(pDepth)
+				.putInt(pChannels)
+				.putInt(pType.glType());
+		lHeader.clear();
+
+		try (FileChannel lChannel = FileChannel.open(pPath,
+				StandardOpenOption.CREATE,
+				StandardOpenOption.TRUNCATE_EXISTING,
+				StandardOpenOption.WRITE)) {
+			while (lHeader.hasRemaining())
+				lChannel.write(lHeader);
+			final ByteBuffer lData = pData.duplicate();
+			while (lData.hasRemaining())
+				lChannel.write(lData);
+		}
+	}
+
+	/**
+	 * Limits the size of the mappings and uploads, e.g. to keep single
+	 * uploads short. At least one slice is mapped at a time.
+	 */
+	public void setMaxSlabBytes(final long pMaxSlabBytes) {
+		mMaxSlabBytes = Math.min(Integer.MAX_VALUE, pMaxSlabBytes);
+	}
+
+	/**
+	 * Number of slices mapped and uploaded at once.
+	 */
+	public int getSlabDepth() {
+		return (int) Math.max(1,
+				Math.min(mDepth, mMaxSlabBytes / getSliceSizeInBytes()));
+	}
+
+	/**
+	 * Maps pDepth slices starting at slice pZ, read-only and in the byte order
+	 * of the file.
+	 */
+	public MappedByteBuffer map(final int pZ, final int pDepth) throws IOException {
+		if (pZ < 0 || pDepth < 1 || pZ + pDepth > mDepth)
+			throw new IndexOutOfBoundsException("Slices " + pZ
+					+ ".."
+					+ (pZ + pDepth)
+					+ " of "
+					+ mDepth);
+		final long lSize = getSliceSizeInBytes() * pDepth;
+		if (lSize > Integer.MAX_VALUE)
+			throw new IllegalArgumentException(pDepth + " slices do not fit into one mapping");
+		final MappedByteBuffer lBuffer = mChannel.map(FileChannel.MapMode.READ_ONLY,
+				mDataOffset + getSliceSizeInBytes() * pZ,
+				lSize);
+		lBuffer.order(mByteOrder);
+		return lBuffer;
+	}
+
+	/**
+	 * Uploads the whole volume into level 0 of pTexture, which must have the
+	 * same size, type and channels. Mapped slabs are handed to the texture
+	 * directly when the file is in native byte order, otherwise each slab is
+	 * swapped into a temporary direct buffer first.
+	 */
+	public void uploadTo(final GLTexture pTexture) throws IOException {
+		uploadTo(pTexture, null);
+	}
+
+	/**
+	 * Uploads like {@link #uploadTo(GLTexture)} and measures each slab into
+	 * pStatistics on the way, unless it is null. Slabs that need swapping are
+	 * measured while they are swapped.
+	 */
+	public void uploadTo(final GLTexture pTexture,
+			final VolumeStatistics pStatistics) throws IOException {
+		if (pTexture.getWidth() != mWidth || pTexture.getHeight() != mHeight
+				|| pTexture.getDepth() != mDepth
+				|| pTexture.getChannels() != mChannels
+				|| pTexture.getNativeType() != mType)
+			throw new IllegalArgumentException("Texture does not match " + this);
+
+		final int lSlabDepth = getSlabDepth();
+		ByteBuffer lSwapped = null;
+		for (int z = 0; z < mDepth; z += lSlabDepth) {
+			final int lDepth = Math.min(lSlabDepth, mDepth - z);
+			ByteBuffer lSlab = map(z, lDepth);
+			if (needsSwapping()) {
+				if (lSwapped == null)
+					lSwapped = ByteBuffer.allocateDirect((int) (getSliceSizeInBytes() * lSlabDepth))
+							.order(ByteOrder.nativeOrder());
+				lSwapped.clear();
+				if (pStatistics != null) {
+					pStatistics.copyAndMeasure(lSlab, lSwapped, mWidth, mHeight, lDepth);
+					lSwapped.position(lSlab.remaining());
+				} else
+					swap(lSlab, lSwapped);
+				lSwapped.flip();
+				lSlab = lSwapped;
+			} else if (pStatistics != null)
+				pStatistics.measure(lSlab, mWidth, mHeight, lDepth);
+			pTexture.copyFrom(lSlab, mWidth, mHeight, lDepth, 0, 0, z, false);
+		}
+	}
+
+	/**
+	 * Creates a 3D texture (2D for a single slice) of the volume's size and
+	 * type, and uploads the volume into it.
+	 */
+	public GLTexture createTexture(final GL4 pGL,
+			final boolean pLinearInterpolation) throws IOException {
+		final GLTexture lTexture = new GLTexture(pGL,
+				mType,
+				mChannels,
+				mWidth,
+				mHeight,
+				mDepth,
+				pLinearInterpolation,
+				1);
+		uploadTo(lTexture);
+		return lTexture;
+	}
+
+	private boolean needsSwapping() {
+		return mByteOrder != ByteOrder.nativeOrder() && MipMapBuilder.getBytesPerChannel(mType) > 1;
+	}
+
+	private void swap(final ByteBuffer pSource, final ByteBuffer pTarget) {
+		switch (MipMapBuilder.getBytesPerChannel(mType)) {
+			case 2:
+				pTarget.asShortBuffer().put(pSource.asShortBuffer());
+				break;
+			case 4:
+				pTarget.asIntBuffer().put(pSource.asIntBuffer());
+				break;
+			default:
+				pTarget.asLongBuffer().put(pSource.asLongBuffer());
+		}
+		pTarget.position(pSource.remaining());
+	}
+
+	public long getSliceSizeInBytes() {
+		return (long) mWidth * mHeight
+				* mChannels
+				* MipMapBuilder.getBytesPerChannel(mType);
+	}
+
+	public long getSizeInBytes() {
+		return getSliceSizeInBytes() * mDepth;
+	}
+
+	public Path getPath() {
+		return mPath;
+	}
+
+	public int getWidth() {
+		return mWidth;
+	}
+
+	public int getHeight() {
+		return mHeight;
+	}
+
+	public int getDepth() {
+		return mDepth;
+	}
+
+	public int getChannels() {
+		return mChannels;
+	}
+
+	public GLTypeEnum getType() {
+		return mType;
+	}
+
+	public ByteOrder getByteOrder() {
+		return mByteOrder;
+	}
+
+	public long getDataOffset() {
+		return mDataOffset;
+	}
+
+	/**
+	 * Closes the file; buffers mapped from it stay valid until they are
+	 * garbage collected.
+	 */
+	@Override
+	public void close() throws IOException {
+		mChannel.close();
+	}
+
+	@Override
+	public String toString() {
+		return "RawVolume [mPath=" + mPath
+				+ ", size="
+				+ mWidth
+				+ "x"
+				+ mHeight
+				+ "x"
+				+ mDepth
+				+ ", mChannels="
+				+ mChannels
+				+ ", mType="
+				+ mType
+				+ ", mByteOrder="
+				+ mByteOrder
+				+ "]";
+	}
+
+}
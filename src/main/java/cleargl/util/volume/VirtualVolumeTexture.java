@@ -0,0 +1,300 @@
+package cleargl.util.volume;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.Arrays;
+import java.util.BitSet;
+import com.jogamp.opengl.GL4;
+import com.jogamp.opengl.GLException;
+
+import cleargl.GLCloseable;
+import cleargl.GLTexture;
+import cleargl.GLTypeEnum;
+
+/**
+ * Volume of any size rendered through a fixed-size 3D atlas of bricks. Bricks
+ * are loaded on demand into atlas slots, and an indirection texture with one
+ * texel per brick tells the shader where each brick lives:
+ * <pre>
+ * uvec4 lEntry = texelFetch(pageTable, brick, 0);
+ * if (lEntry.w != 0u)  // resident, atlas texel at
+ *   (lEntry.xyz * brickSize + border + local * coreSize) / atlasSize
+ * </pre>
+ * Per frame, on the GL thread:
+ * <pre>
+ * lVolume.beginFrame();
+ * for (each brick the ray caster needs, nearest first)
+ *   lVolume.request(bx, by, bz);
+ * lVolume.update(lMaxUploadsPerFrame);
+ * </pre>
+ * Which bricks are resident is decided by a {@link BrickCache}.
+ */
+public class VirtualVolumeTexture implements GLCloseable {
+
+	private final BrickLayout mLayout;
+	private final BrickLoader mLoader;
+	private final BrickCache mCache;
+	private final GLTexture mAtlas;
+	private final GLTexture mPageTable;
+	private final int mSlotsX;
+	private final int mSlotsY;
+	private final int mSlotsZ;
+
+	private final ByteBuffer mBrickBuffer;
+	private final ByteBuffer mEntryBuffer;
+
+	private int[] mRequests = new int[64];
+	private int mRequestCount;
+	private final BitSet mRequested = new BitSet();
+
+	private long mUploadCount;
+
+	public VirtualVolumeTexture(final GL4 pGL,
+			final BrickLayout pLayout,
+			final GLTypeEnum pType,
+			final int pNumberOfChannels,
+			final int pSlotsX,
+			final int pSlotsY,
+			final int pSlotsZ,
+			final BrickLoader pLoader) {
+		mLayout = pLayout;
+		mLoader = pLoader;
+		mSlotsX = pSlotsX;
+		mSlotsY = pSlotsY;
+		mSlotsZ = pSlotsZ;
+		mCache = new BrickCache(pLayout.getBrickCount(),
+				pSlotsX * pSlotsY * pSlotsZ);
+
+		final int lBrickSize = pLayout.getBrickSize();
+		mAtlas = new GLTexture(pGL,
+				pType,
+				pNumberOfChannels,
+				pSlotsX * lBrickSize,
+				pSlotsY * lBrickSize,
+				pSlotsZ * lBrickSize,
+				true,
+				1);
+
+		// GLTexture only uses integer formats for 3D textures, hence depth >= 2
+		mPageTable = new GLTexture(pGL,
+				GLTypeEnum.UnsignedShort,
+				4,
+				pLayout.getBricksX(),
+				pLayout.getBricksY(),
+				Math.max(2, pLayout.getBricksZ()),
+				false,
+				1,
+				0,
+				false);
+
+		mBrickBuffer = ByteBuffer.allocateDirect((int) (pLayout.getVoxelsPerBrick()
+				* pNumberOfChannels
+				* (mAtlas.getBitsPerChannel() / 8)))
+				.order(ByteOrder.nativeOrder());
+		mEntryBuffer = ByteBuffer.allocateDirect(8)
+				.order(ByteOrder.nativeOrder());
+
+		clearPageTable();
+	}
+
+	private void clearPageTable() {
+		final int lDepth = mPageTable.getDepth();
+		final ByteBuffer lZeros = ByteBuffer.allocateDirect(mLayout.getBricksX()
+				* mLayout.getBricksY()
+				* lDepth
+				* 8);
+		mPageTable.copyFrom(lZeros,
+				mLayout.getBricksX(),
+				mLayout.getBricksY(),
+				lDepth,
+				0,
+				0,
+				0,
+				false);
+	}
+
+	/**
+	 * Starts a new frame and drops the requests of the last one.
+	 */
+	public void beginFrame() {
+		for (int i = 0; i < mRequestCount; i++)
+			mRequested.clear(mRequests[i]);
+		mRequestCount = 0;
+		mCache.beginFrame();
+	}
+
+	/**
+	 * Marks a brick as needed in this frame. Returns true if it is resident,
+	 * otherwise it is queued for {@link #update(int)}, in request order.
+	 */
+	public boolean request(final int pBrickX,
+			final int pBrickY,
+			final int pBrickZ) {
+		final int lBrick = mLayout.getBrickIndex(pBrickX, pBrickY, pBrickZ);
+		if (mCache.lookup(lBrick) >= 0)
+			return true;
+		if (!mRequested.get(lBrick)) {
+			mRequested.set(lBrick);
+			if (mRequestCount == mRequests.length)
+				mRequests = Arrays.copyOf(mRequests, 2 * mRequestCount);
+			mRequests[mRequestCount++] = lBrick;
+		}
+		return false;
+	}
+
+	/**
+	 * Loads up to pMaxUploads queued bricks into the atlas, evicting the least
+	 * recently used ones, and updates the page table. Returns the number of
+	 * bricks uploaded; fewer than requested if the atlas is full of bricks
+	 * needed in this frame.
+	 */
+	public int update(final int pMaxUploads) {
+		final int lBrickSize = mLayout.getBrickSize();
+		int lUploaded = 0;
+		int lProcessed = 0;
+		while (lProcessed < mRequestCount && lUploaded < pMaxUploads) {
+			final int lBrick = mRequests[lProcessed];
+			if (mCache.isResident(lBrick)) {
+				mRequested.clear(lBrick);
+				lProcessed++;
+				continue;
+			}
+
+			final int lSlot = mCache.allocate(lBrick);
+			if (lSlot < 0)
+				break;
+			mRequested.clear(lBrick);
+			lProcessed++;
+
+			final int lEvicted = mCache.getLastEvictedBrick();
+			if (lEvicted >= 0)
+				writePageTableEntry(lEvicted, -1);
+
+			final int lBrickX = mLayout.getBrickX(lBrick);
+			final int lBrickY = mLayout.getBrickY(lBrick);
+			final int lBrickZ = mLayout.getBrickZ(lBrick);
+			mBrickBuffer.clear();
+			mLoader.loadBrick(mLayout, lBrickX, lBrickY, lBrickZ, mBrickBuffer);
+
+			mAtlas.copyFrom(mBrickBuffer,
+					lBrickSize,
+					lBrickSize,
+					lBrickSize,
+					getSlotX(lSlot) * lBrickSize,
+					getSlotY(lSlot) * lBrickSize,
+					getSlotZ(lSlot) * lBrickSize,
+					false);
+			writePageTableEntry(lBrick, lSlot);
+			lUploaded++;
+		}
+
+		// keep what is left for the next call within this frame
+		System.arraycopy(mRequests,
+				lProcessed,
+				mRequests,
+				0,
+				mRequestCount - lProcessed);
+		mRequestCount -= lProcessed;
+		mUploadCount += lUploaded;
+		return lUploaded;
+	}
+
+	/**
+	 * Drops a brick whose data changed; it is loaded again when requested.
+	 */
+	public void invalidate(final int pBrickX,
+			final int pBrickY,
+			final int pBrickZ) {
+		final int lBrick = mLayout.getBrickIndex(pBrickX, pBrickY, pBrickZ);
+		if (mCache.invalidate(lBrick))
+			writePageTableEntry(lBrick, -1);
+	}
+
+	private void writePageTableEntry(final int pBrick, final int pSlot) {
+		mEntryBuffer.clear();
+		if (pSlot < 0) {
+			mEntryBuffer.putLong(0, 0);
+		} else {
+			mEntryBuffer.putShort(0, (short) getSlotX(pSlot));
+			mEntryBuffer.putShort(2, (short) getSlotY(pSlot));
+			mEntryBuffer.putShort(4, (short) getSlotZ(pSlot));
+			mEntryBuffer.putShort(6, (short) 1);
+		}
+		mPageTable.copyFrom(mEntryBuffer,
+				1,
+				1,
+				1,
+				mLayout.getBrickX(pBrick),
+				mLayout.getBrickY(pBrick),
+				mLayout.getBrickZ(pBrick),
+				false);
+	}
+
+	public int getSlotX(final int pSlot) {
+		return pSlot % mSlotsX;
+	}
+
+	public int getSlotY(final int pSlot) {
+		return (pSlot / mSlotsX) % mSlotsY;
+	}
+
+	public int getSlotZ(final int pSlot) {
+		return pSlot / (mSlotsX * mSlotsY);
+	}
+
+	public boolean isResident(final int pBrickX,
+			final int pBrickY,
+			final int pBrickZ) {
+		return mCache.isResident(mLayout.getBrickIndex(pBrickX,
+				pBrickY,
+				pBrickZ));
+	}
+
+	/**
+	 * Number of bricks requested in this frame that are still not resident.
+	 */
+	public int getPendingCount() {
+		return mRequestCount;
+	}
+
+	public long getUploadCount() {
+		return mUploadCount;
+	}
+
+	public BrickLayout getLayout() {
+		return mLayout;
+	}
+
+	public BrickCache getCache() {
+		return mCache;
+	}
+
+	public GLTexture getAtlas() {
+		return mAtlas;
+	}
+
+	public GLTexture getPageTable() {
+		return mPageTable;
+	}
+
+	@Override
+	public void close() throws GLException {
+		mAtlas.close();
+		mPageTable.close();
+	}
+
+	@Override
+	public String toString() {
+		return "VirtualVolumeTexture [mLayout=" + mLayout
+				+ ", slots="
+				+ mSlotsX
+				+ "x"
+				+ mSlotsY
+				+ "x"
+				+ mSlotsZ
+				+ ", mCache="
+				+ mCache
+				+ "]";
+	}
+
+}
@@ -0,0 +1,424 @@
+package cleargl.util.volume;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.FloatBuffer;
+import java.nio.ShortBuffer;
+import java.util.Arrays;
+
+import cleargl.GLPixelBufferRing;
+import cleargl.GLTexture;
+import cleargl.GLTypeEnum;
+import cleargl.util.image.MipMapBuilder;
+import cleargl.util.parallel.ParallelRange;
+
+/**
+ * Per channel minimum, maximum and histogram of volume data, gathered while
+ * the data is copied into staging memory for an upload, so that display
+ * ranges and auto-contrast need no separate pass over the volume. Slabs of
+ * slices are processed in parallel. Statistics accumulate over several
+ * calls, e.g. for slab-wise uploads, until {@link #reset()}.
+ *
+ * 8 and 16 bit unsigned data is counted per value and binned on demand, so
+ * the histogram range of these types can change after measuring. Float data
+ * is binned while measuring, into the range set beforehand (default 0..1);
+ * values outside the range go to the first or last bin and NaNs are ignored.
+ */
+public class VolumeStatistics {
+
+	/**
+	 * Slabs are at least this large, smaller volumes are measured on the
+	 * calling thread.
+	 */
+	public static final int SLAB_BYTES = 1 << 20;
+
+	private static final int cChunkValues = 4096;
+
+	private final GLTypeEnum mType;
+	private final int mChannels;
+	private final int mBins;
+
+	// unsigned types: occurrences of each value
+	private final long[][] mCounts;
+	// float: binned values and extremes
+	private final long[][] mFloatHistogram;
+	private final double[] mFloatMin;
+	private final double[] mFloatMax;
+
+	private double mRangeMin;
+	private double mRangeMax;
+
+	public VolumeStatistics(final GLTypeEnum pType,
+			final int pChannels,
+			final int pBins) {
+		if (pBins < 1 || pChannels < 1)
+			throw new IllegalArgumentException("Need at least one channel and bin");
+		mType = pType;
+		mChannels = pChannels;
+		mBins = pBins;
+
+		switch (pType) {
+			case UnsignedByte:
+			case UnsignedShort:
+				mCounts = new long[pChannels][1 << (8 * MipMapBuilder.getBytesPerChannel(pType))];
+				mFloatHistogram = null;
+				mFloatMin = null;
+				mFloatMax = null;
+				mRangeMin = 0;
+				mRangeMax = mCounts[0].length - 1;
+				break;
+			case Float:
+				mCounts = null;
+				mFloatHistogram = new long[pChannels][pBins];
+				mFloatMin = new double[pChannels];
+				mFloatMax = new double[pChannels];
+				mRangeMin = 0;
+				mRangeMax = 1;
+				break;
+			default:
+				throw new IllegalArgumentException("Unsupported type " + pType);
+		}
+		reset();
+	}
+
+	public void reset() {
+		if (mCounts != null)
+			for (final long[] lCounts : mCounts)
+				Arrays.fill(lCounts, 0);
+		else {
+			for (final long[] lHistogram : mFloatHistogram)
+				Arrays.fill(lHistogram, 0);
+			Arrays.fill(mFloatMin, Double.POSITIVE_INFINITY);
+			Arrays.fill(mFloatMax, Double.NEGATIVE_INFINITY);
+		}
+	}
+
+	/**
+	 * Sets the value range covered by the histogram bins. For float data,
+	 * this must happen before measuring.
+	 */
+	public void setRange(final double pMin, final double pMax) {
+		if (!(pMax > pMin))
+			throw new IllegalArgumentException("Empty range " + pMin + ".." + pMax);
+		mRangeMin = pMin;
+		mRangeMax = pMax;
+	}
+
+	public double getRangeMin() {
+		return mRangeMin;
+	}
+
+	public double getRangeMax() {
+		return mRangeMax;
+	}
+
+	/**
+	 * Measures pDepth slices of pWidth x pHeight interleaved values, from
+	 * pSource's position on and in its byte order.
+	 */
+	public void measure(final ByteBuffer pSource,
+			final int pWidth,
+			final int pHeight,
+			final int pDepth) {
+		copyAndMeasure(pSource, null, pWidth, pHeight, pDepth);
+	}
+
+	/**
+	 * Copies pDepth slices of pWidth x pHeight interleaved values from
+	 * pSource to pTarget, both from their positions on, and measures them on
+	 * the way. Values are converted from pSource's byte order to pTarget's.
+	 * Positions are left unchanged; pTarget may be null to only measure.
+	 */
+	public void copyAndMeasure(final ByteBuffer pSource,
+			final ByteBuffer pTarget,
+			final int pWidth,
+			final int pHeight,
+			final int pDepth) {
+		final int lBytesPerValue = MipMapBuilder.getBytesPerChannel(mType);
+		final int lSliceValues = pWidth * pHeight * mChannels;
+		final long lSize = (long) lSliceValues * pDepth * lBytesPerValue;
+		if (pSource.remaining() < lSize || pTarget != null && pTarget.remaining() < lSize)
+			throw new IllegalArgumentException("Buffers hold less than " + lSize
+					+ " bytes");
+
+		final int lSlabSlices = Math.max(1,
+				SLAB_BYTES / Math.max(1, lSliceValues * lBytesPerValue));
+		ParallelRange.forRange(0,
+				pDepth,
+				lSlabSlices,
+				(s, e) -> {
+					final int lFirst = s * lSliceValues;
+					final int lCount = (e - s) * lSliceValues;
+					if (mType == GLTypeEnum.Float)
+						measureFloat(pSource, pTarget, lFirst, lCount);
+					else
+						measureUnsigned(pSource, pTarget, lFirst, lCount);
+				});
+	}
+
+	private static ByteBuffer slice(final ByteBuffer pBuffer) {
+		// duplicates start out big endian
+		return pBuffer.duplicate().order(pBuffer.order());
+	}
+
+	private void measureUnsigned(final ByteBuffer pSource,
+			final ByteBuffer pTarget,
+			final int pFirst,
+			final int pCount) {
+		final long[][] lCounts = new long[mChannels][mCounts[0].length];
+		// a multiple of the channel count, so each chunk starts with channel 0
+		final int lChunk = cChunkValues * mChannels;
+
+		if (mType == GLTypeEnum.UnsignedByte) {
+			final ByteBuffer lSource = slice(pSource);
+			final ByteBuffer lTarget = pTarget == null ? null : slice(pTarget);
+			final byte[] lValues = new byte[Math.min(lChunk, pCount)];
+			for (int i = 0; i < pCount; i += lValues.length) {
+				final int lLength = Math.min(lValues.length, pCount - i);
+				lSource.position(pSource.position() + pFirst + i);
+				lSource.get(lValues, 0, lLength);
+				if (lTarget != null) {
+					lTarget.position(pTarget.position() + pFirst + i);
+					lTarget.put(lValues, 0, lLength);
+				}
+				if (mChannels == 1) {
+					final long[] lChannelCounts = lCounts[0];
+					for (int k = 0; k < lLength; k++)
+						lChannelCounts[lValues[k] & 0xff]++;
+				} else
+					for (int k = 0; k < lLength; k++)
+						lCounts[k % mChannels][lValues[k] & 0xff]++;
+			}
+		} else {
+			final ShortBuffer lSource = slice(pSource).asShortBuffer();
+			final ShortBuffer lTarget = pTarget == null ? null : slice(pTarget).asShortBuffer();
+			final short[] lValues = new short[Math.min(lChunk, pCount)];
+			for (int i = 0; i < pCount; i += lValues.length) {
+				final int lLength = Math.min(lValues.length, pCount - i);
+				lSource.position(pFirst + i);
+				lSource.get(lValues, 0, lLength);
+				if (lTarget != null) {
+					lTarget.position(pFirst + i);
+					lTarget.put(lValues, 0, lLength);
+				}
+				if (mChannels == 1) {
+					final long[] lChannelCounts = lCounts[0];
+					for (int k = 0; k < lLength; k++)
+						lChannelCounts[lValues[k] & 0xffff]++;
+				} else
+					for (int k = 0; k < lLength; k++)
+						lCounts[k % mChannels][lValues[k] & 0xffff]++;
+			}
+		}
+
+		synchronized (this) {
+			for (int c = 0; c < mChannels; c++)
+				for (int v = 0; v < lCounts[c].length; v++)
+					mCounts[c][v] += lCounts[c][v];
+		}
+	}
+
+	private void measureFloat(final ByteBuffer pSource,
+			final ByteBuffer pTarget,
+			final int pFirst,
+			final int pCount) {
+		final long[][] lHistogram = new long[mChannels][mBins];
+		final double[] lMin = new double[mChannels];
+		final double[] lMax = new double[mChannels];
+		Arrays.fill(lMin, Double.POSITIVE_INFINITY);
+		Arrays.fill(lMax, Double.NEGATIVE_INFINITY);
+		final float lRangeMin = (float) mRangeMin;
+		final float lScale = (float) (mBins / (mRangeMax - mRangeMin));
+		final int lLastBin = mBins - 1;
+
+		final FloatBuffer lSource = slice(pSource).asFloatBuffer();
+		final FloatBuffer lTarget = pTarget == null ? null : slice(pTarget).asFloatBuffer();
+		final float[] lValues = new float[Math.min(cChunkValues * mChannels, pCount)];
+		for (int i = 0; i < pCount; i += lValues.length) {
+			final int lLength = Math.min(lValues.length, pCount - i);
+			lSource.position(pFirst + i);
+			lSource.get(lValues, 0, lLength);
+			if (lTarget != null) {
+				lTarget.position(pFirst + i);
+				lTarget.put(lValues, 0, lLength);
+			}
+			for (int c = 0; c < mChannels; c++) {
+				final long[] lChannelHistogram = lHistogram[c];
+				float lChannelMin = Float.POSITIVE_INFINITY;
+				float lChannelMax = Float.NEGATIVE_INFINITY;
+				for (int k = c; k < lLength; k += mChannels) {
+					final float lValue = lValues[k];
+					if (lValue != lValue)
+						continue;
+					lChannelMin = Math.min(lChannelMin, lValue);
+					lChannelMax = Math.max(lChannelMax, lValue);
+					// the float to int cast saturates, then clamp to the bins
+					final int lBin = (int) ((lValue - lRangeMin) * lScale);
+					lChannelHistogram[lBin < 0 ? 0 : lBin > lLastBin ? lLastBin : lBin]++;
+				}
+				lMin[c] = Math.min(lMin[c], lChannelMin);
+				lMax[c] = Math.max(lMax[c], lChannelMax);
+			}
+		}
+
+		synchronized (this) {
+			for (int c = 0; c < mChannels; c++) {
+				for (int b = 0; b < mBins; b++)
+					mFloatHistogram[c][b] += lHistogram[c][b];
+				mFloatMin[c] = Math.min(mFloatMin[c], lMin[c]);
+				mFloatMax[c] = Math.max(mFloatMax[c], lMax[c]);
+			}
+		}
+	}
+
+	/**
+	 * Copies pSource into a pixel buffer of pRing while measuring it, and
+	 * uploads it into the whole level 0 image of pTexture. If no slot is
+	 * free, the data is measured and uploaded from pSource directly. Must be
+	 * called on the GL thread.
+	 */
+	public void upload(final ByteBuffer pSource,
+			final GLTexture pTexture,
+			final GLPixelBufferRing pRing) {
+		final GLPixelBufferRing.Slot lSlot = pRing.acquire();
+		if (lSlot == null) {
+			measure(pSource,
+					pTexture.getWidth(),
+					pTexture.getHeight(),
+					pTexture.getDepth());
+			pTexture.copyFrom(pSource,
+					pTexture.getWidth(),
+					pTexture.getHeight(),
+					pTexture.getDepth(),
+					0,
+					0,
+					0,
+					false);
+			return;
+		}
+
+		final ByteBuffer lTarget = lSlot.getBuffer();
+		copyAndMeasure(pSource,
+				lTarget.order(ByteOrder.nativeOrder()),
+				pTexture.getWidth(),
+				pTexture.getHeight(),
+				pTexture.getDepth());
+		lSlot.markFilled();
+		pRing.upload(lSlot, pTexture);
+	}
+
+	public GLTypeEnum getType() {
+		return mType;
+	}
+
+	public int getChannels() {
+		return mChannels;
+	}
+
+	public int getBinCount() {
+		return mBins;
+	}
+
+	/**
+	 * Number of measured values of a channel, excluding NaNs.
+	 */
+	public synchronized long getCount(final int pChannel) {
+		long lCount = 0;
+		for (final long lValue : mCounts != null ? mCounts[pChannel]
+				: mFloatHistogram[pChannel])
+			lCount += lValue;
+		return lCount;
+	}
+
+	/**
+	 * Smallest measured value of a channel, NaN before anything was measured.
+	 */
+	public synchronized double getMin(final int pChannel) {
+		if (mCounts == null)
+			return mFloatMin[pChannel] > mFloatMax[pChannel] ? Double.NaN
+					: mFloatMin[pChannel];
+		final long[] lCounts = mCounts[pChannel];
+		for (int v = 0; v < lCounts.length; v++)
+			if (lCounts[v] != 0)
+				return v;
+		return Double.NaN;
+	}
+
+	/**
+	 * Largest measured value of a channel, NaN before anything was measured.
+	 */
+	public synchronized double getMax(final int pChannel) {
+		if (mCounts == null)
+			return mFloatMin[pChannel] > mFloatMax[pChannel] ? Double.NaN
+					: mFloatMax[pChannel];
+		final long[] lCounts = mCounts[pChannel];
+		for (int v = lCounts.length - 1; v >= 0; v--)
+			if (lCounts[v] != 0)
+				return v;
+		return Double.NaN;
+	}
+
+	/**
+	 * Histogram of a channel over the current range, values outside of it
+	 * are counted in the first or last bin.
+	 */
+	public synchronized long[] getHistogram(final int pChannel) {
+		if (mCounts == null)
+			return mFloatHistogram[pChannel].clone();
+
+		final long[] lHistogram = new long[mBins];
+		final long[] lCounts = mCounts[pChannel];
+		final double lScale = mBins / (mRangeMax - mRangeMin + 1);
+		for (int v = 0; v < lCounts.length; v++)
+			if (lCounts[v] != 0) {
+				final int lBin = (int) Math.floor((v - mRangeMin) * lScale);
+				lHistogram[Math.max(0, Math.min(mBins - 1, lBin))] += lCounts[v];
+			}
+		return lHistogram;
+	}
+
+	/**
+	 * Value below which the fraction pQuantile of a channel's values lie,
+	 * e.g. 0.01 and 0.99 for an auto-contrast display range. Exact for
+	 * unsigned data, interpolated within the bins for float data.
+	 */
+	public synchronized double getQuantile(final int pChannel,
+			final double pQuantile) {
+		final long lTotal = getCount(pChannel);
+		if (lTotal == 0)
+			return Double.NaN;
+		final double lRank = Math.max(0, Math.min(1, pQuantile)) * lTotal;
+
+		final long[] lCounts = mCounts != null ? mCounts[pChannel]
+				: mFloatHistogram[pChannel];
+		long lCumulative = 0;
+		for (int i = 0; i < lCounts.length; i++) {
+			if (lCounts[i] != 0 && lCumulative + lCounts[i] >= lRank) {
+				if (mCounts != null)
+					return i;
+				final double lWidth = (mRangeMax - mRangeMin) / mBins;
+				final double lValue = mRangeMin + lWidth
+						* (i + (lRank - lCumulative) / lCounts[i]);
+				return Math.max(getMin(pChannel),
+						Math.min(getMax(pChannel), lValue));
+			}
+			lCumulative += lCounts[i];
+		}
+		return getMax(pChannel);
+	}
+
+	@Override
+	public String toString() {
+		return "VolumeStatistics [mType=" + mType
+				+ ", mChannels="
+				+ mChannels
+				+ ", mBins="
+				+ mBins
+				+ ", mRangeMin="
+				+ mRangeMin
+				+ ", mRangeMax="
+				+ mRangeMax
+				+ "]";
+	}
+
+}
@@ -0,0 +1,136 @@
+package cleargl;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assume.assumeTrue;
+import java.lang.management.ManagementFactory;
+import org.junit.Test;
+import com.jogamp.opengl.math.FloatUtil;
+
+public class GLMathAllocationTest {
+
+	private final GLMatrix mView = new GLMatrix();
+	private final GLMatrix mModel = GLMatrix.getIdentity();
+	private final GLMatrix mModelView = new GLMatrix();
+	private final GLMatrix mInverse = new GLMatrix();
+	private final float[] mTransposed = new float[16];
+
+	private final GLVector mEye = new GLVector(1.0f, 2.0f, 5.0f);
+	private final GLVector mTarget = new GLVector(0.0f, 0.0f, 0.0f);
+	private final GLVector mUp = new GLVector(0.0f, 1.0f, 0.0f);
+	private final GLVector mForward = new GLVector(0.0f, 3);
+	private final GLVector mRight = new GLVector(0.0f, 3);
+	private final GLVector mPoint = new GLVector(1.0f, 1.0f, 1.0f, 1.0f);
+	private final GLVector mTransformed = new GLVector(0.0f, 4);
+	private final GLVector mXYZ = new GLVector(0.0f, 3);
+
+	private float mSink;
+
+	private void frame() {
+		mView.setCamera(mEye, mTarget, mUp);
+		mModel.translate(0.001f, 0.0f, 0.0f);
+		GLMatrix.mult(mView, mModel, mModelView);
+		mModelView.getInverse(mInverse);
+		mModelView.getTransposedFloatArray(mTransposed);
+
+		GLVector.minus(mTarget, mEye, mForward);
+		GLVector.normalize(mForward, mForward);
+		GLVector.cross(mForward, mUp, mRight);
+		GLVector.times(mRight, 0.5f, mRight);
+		GLVector.plus(mEye, mRight, mRight);
+
+		mModelView.mult(mPoint, mTransformed);
+		GLVector.xyz(mTransformed, mXYZ);
+		mSink += mXYZ.x() + mInverse.get(0, 0) + mTransposed[3];
+	}
+
+	@Test
+	public void testFrameDoesNotAllocate() {
+		assumeTrue(ManagementFactory.getThreadMXBean() instanceof com.sun.management.ThreadMXBean);
+		final com.sun.management.ThreadMXBean lThreadMXBean = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+		assumeTrue(lThreadMXBean.isThreadAllocatedMemorySupported());
+		lThreadMXBean.setThreadAllocatedMemoryEnabled(true);
+		final long lThreadId = Thread.currentThread().getId();
+
+		for (int i = 0; i < 20000; i++)
+			frame();
+
+		// the measurement itself may allocate, so keep the cheapest of a few
+		// empty and full runs and compare the two
+		long lOverhead = Long.MAX_VALUE;
+		long lFrame = Long.MAX_VALUE;
+		for (int lTrial = 0; lTrial < 10; lTrial++) {
+			long lStart = lThreadMXBean.getThreadAllocatedBytes(lThreadId);
+			lOverhead = Math.min(lOverhead,
+					lThreadMXBean.getThreadAllocatedBytes(lThreadId) - lStart);
+
+			lStart = lThreadMXBean.getThreadAllocatedBytes(lThreadId);
+			for (int i = 0; i < 100; i++)
+				frame();
+			lFrame = Math.min(lFrame,
+					lThreadMXBean.getThreadAllocatedBytes(lThreadId) - lStart);
+		}
+
+		assertEquals(0, lFrame - lOverhead);
+	}
+
+	@Test
+	public void testSetCameraMatchesLookAt() {
+		final float[] lEye = {1.0f, 2.0f, 5.0f};
+		final float[] lCenter = {-0.5f, 0.25f, 0.0f};
+		final float[] lUp = {0.0f, 1.0f, 0.1f};
+		final float[] lExpected = FloatUtil.makeLookAt(new float[16], 0,
+				lEye, 0,
+				lCenter, 0,
+				lUp, 0,
+				new float[16]);
+
+		final GLMatrix lCamera = new GLMatrix().setCamera(lEye[0], lEye[1], lEye[2],
+				lCenter[0], lCenter[1], lCenter[2],
+				lUp[0], lUp[1], lUp[2]);
+
+		assertArrayEquals(lExpected, lCamera.getFloatArray(), 1e-5f);
+	}
+
+	@Test
+	public void testDestinationMayAlias() {
+		final GLMatrix lA = GLMatrix.getTranslation(1.0f, 2.0f, 3.0f);
+		lA.rotEuler(0.1, 0.2, 0.3);
+		final GLMatrix lB = GLMatrix.getScaling(2.0f, 3.0f, 4.0f);
+
+		final GLMatrix lExpected = GLMatrix.mult(lA, lB, new GLMatrix());
+		final GLMatrix lIntoA = GLMatrix.mult(lA.clone(), lB, new GLMatrix());
+		final GLMatrix lAliasB = lB.clone();
+		GLMatrix.mult(lA, lAliasB, lAliasB);
+		assertArrayEquals(lExpected.getFloatArray(), lIntoA.getFloatArray(), 0);
+		assertArrayEquals(lExpected.getFloatArray(), lAliasB.getFloatArray(), 0);
+
+		final GLMatrix lInverse = lA.getInverse();
+		final GLMatrix lIdentity = GLMatrix.mult(lA, lInverse, new GLMatrix());
+		assertArrayEquals(GLMatrix.getIdentity().getFloatArray(), lIdentity.getFloatArray(), 1e-5f);
+
+		final GLVector lVector = new GLVector(1.0f, 2.0f, 3.0f, 1.0f);
+		final GLVector lExpectedVector = lA.mult(lVector);
+		lA.mult(lVector, lVector);
+		assertArrayEquals(lExpectedVector.toFloatArray(), lVector.toFloatArray(), 0);
+
+		final GLVector lX = new GLVector(1.0f, 0.0f, 0.0f);
+		GLVector.cross(lX, new GLVector(0.0f, 1.0f, 0.0f), lX);
+		assertArrayEquals(new float[]{0.0f, 0.0f, 1.0f}, lX.toFloatArray(), 0);
+	}
+
+	@Test(expected = UnsupportedOperationException.class)
+	public void testShorterSecondOperandFails() {
+		GLVector.plus(new GLVector(1.0f, 2.0f, 3.0f, 4.0f),
+				new GLVector(1.0f, 2.0f, 3.0f),
+				new GLVector(0.0f, 0.0f, 0.0f, 0.0f));
+	}
+
+	@Test(expected = UnsupportedOperationException.class)
+	public void testLongerSecondOperandFails() {
+		GLVector.hadamard(new GLVector(1.0f, 2.0f, 3.0f),
+				new GLVector(1.0f, 2.0f, 3.0f, 4.0f),
+				new GLVector(0.0f, 0.0f, 0.0f));
+	}
+
+}
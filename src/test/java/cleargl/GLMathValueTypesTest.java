@@ -0,0 +1,303 @@
+package cleargl;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.nio.FloatBuffer;
+import java.util.HashMap;
+
+import org.junit.Test;
+
+public class GLMathValueTypesTest {
+
+	private static GLMatrix getAffine() {
+		final GLMatrix lMatrix = GLMatrix.getIdentity();
+		lMatrix.translate(1, -2, 3);
+		lMatrix.rotEuler(0.3, -0.2, 0.7);
+		lMatrix.scale(2, 0.5f, 3);
+		return lMatrix;
+	}
+
+	private static GLMatrix getProjective() {
+		final GLMatrix lMatrix = new GLMatrix().setPerspectiveProjectionMatrix(1.0f,
+				1.5f,
+				0.1f,
+				100f);
+		return GLMatrix.mult(lMatrix, getAffine(), new GLMatrix());
+	}
+
+	@Test
+	public void testVec3fRoundTrip() {
+		final GLVector lVector = new GLVector(1.5f, -2.0f, 3.25f);
+		final Vec3f lVec = new Vec3f().set(lVector);
+		assertArrayEquals(lVector.toFloatArray(), lVec.toGLVector().toFloatArray(), 0);
+		assertArrayEquals(lVector.toFloatArray(),
+				lVec.get(new GLVector(0.0f, 3)).toFloatArray(),
+				0);
+
+		final float[] lArray = lVec.get(new float[5], 2);
+		assertEquals(lVec, new Vec3f().set(lArray, 2));
+		assertEquals(lVec.hashCode(), new Vec3f(lVec).hashCode());
+
+		final FloatBuffer lBuffer = lVec.put(FloatBuffer.allocate(3));
+		assertEquals(3, lBuffer.position());
+		assertArrayEquals(lVector.toFloatArray(), lBuffer.array(), 0);
+	}
+
+	@Test
+	public void testVec3fOperations() {
+		final GLVector lA = new GLVector(1.5f, -2.0f, 3.25f);
+		final GLVector lB = new GLVector(-0.5f, 4.0f, 2.0f);
+		final Vec3f lVecA = new Vec3f().set(lA);
+		final Vec3f lVecB = new Vec3f().set(lB);
+
+		assertVector(GLVector.plus(lA, lB, new GLVector(0.0f, 3)),
+				new Vec3f().add(lVecA, lVecB));
+		assertVector(GLVector.minus(lA, lB, new GLVector(0.0f, 3)),
+				new Vec3f(lVecA).sub(lVecB));
+		assertVector(GLVector.times(lA, 2.5f, new GLVector(0.0f, 3)),
+				new Vec3f(lVecA).scale(2.5f));
+		assertVector(GLVector.hadamard(lA, lB, new GLVector(0.0f, 3)),
+				new Vec3f(lVecA).mul(lVecB));
+		assertVector(GLVector.cross(lA, lB, new GLVector(0.0f, 3)),
+				new Vec3f().cross(lVecA, lVecB));
+		assertVector(GLVector.normalize(lA, new GLVector(0.0f, 3)),
+				new Vec3f(lVecA).normalize());
+		assertEquals(lA.times(lB), lVecA.dot(lVecB), 1e-6f);
+		assertEquals(lA.magnitude(), lVecA.length(), 1e-6f);
+		assertEquals(lA.minus(lB).magnitude(), lVecA.distance(lVecB), 1e-6f);
+
+		// the result may alias an operand
+		final Vec3f lAliased = new Vec3f(lVecA);
+		lAliased.cross(lAliased, lVecB);
+		assertEquals(new Vec3f().cross(lVecA, lVecB), lAliased);
+
+		assertEquals(new Vec3f(1, 4, 6.5f),
+				new Vec3f(lVecA).addScaled(new Vec3f(-1, 12, 6.5f), 0.5f));
+		assertEquals(new Vec3f(0.5f, 1.0f, 2.625f),
+				new Vec3f().lerp(lVecA, lVecB, 0.5f));
+		assertEquals(new Vec3f(-1.5f, 2.0f, -3.25f), new Vec3f(lVecA).negate());
+		assertEquals(new Vec3f(), new Vec3f().normalize());
+		assertNotEquals(lVecA, lVecB);
+	}
+
+	@Test
+	public void testVec4fRoundTrip() {
+		final GLVector lVector = new GLVector(1.5f, -2.0f, 3.25f, 0.5f);
+		final Vec4f lVec = new Vec4f().set(lVector);
+		assertArrayEquals(lVector.toFloatArray(), lVec.toGLVector().toFloatArray(), 0);
+		assertArrayEquals(lVector.toFloatArray(),
+				lVec.get(new GLVector(0.0f, 4)).toFloatArray(),
+				0);
+
+		final float[] lArray = lVec.get(new float[6], 1);
+		assertEquals(lVec, new Vec4f().set(lArray, 1));
+		assertEquals(lVec.hashCode(), new Vec4f(lVec).hashCode());
+		assertEquals(new Vec4f(1.5f, -2.0f, 3.25f, 1),
+				new Vec4f(new Vec3f(1.5f, -2.0f, 3.25f), 1));
+		assertEquals(new Vec3f(1.5f, -2.0f, 3.25f), lVec.xyz(new Vec3f()));
+
+		final FloatBuffer lBuffer = lVec.put(FloatBuffer.allocate(4));
+		assertArrayEquals(lVector.toFloatArray(), lBuffer.array(), 0);
+	}
+
+	@Test
+	public void testVec4fOperations() {
+		final GLVector lA = new GLVector(1.5f, -2.0f, 3.25f, 0.5f);
+		final GLVector lB = new GLVector(-0.5f, 4.0f, 2.0f, 2.0f);
+		final Vec4f lVecA = new Vec4f().set(lA);
+		final Vec4f lVecB = new Vec4f().set(lB);
+
+		assertVector(GLVector.plus(lA, lB, new GLVector(0.0f, 4)),
+				new Vec4f().add(lVecA, lVecB));
+		assertVector(GLVector.minus(lA, lB, new GLVector(0.0f, 4)),
+				new Vec4f().sub(lVecA, lVecB));
+		assertVector(GLVector.times(lA, -3f, new GLVector(0.0f, 4)),
+				new Vec4f(lVecA).scale(-3f));
+		assertVector(GLVector.hadamard(lA, lB, new GLVector(0.0f, 4)),
+				new Vec4f(lVecA).mul(lVecB));
+		assertVector(GLVector.normalize(lA, new GLVector(0.0f, 4)),
+				new Vec4f(lVecA).normalize());
+		assertEquals(lA.times(lB), lVecA.dot(lVecB), 1e-6f);
+		assertEquals(lA.magnitude(), lVecA.length(), 1e-6f);
+
+		assertEquals(new Vec4f(3, -4, 6.5f, 1), new Vec4f(lVecA).homogenize());
+	}
+
+	@Test
+	public void testMat4fRoundTrip() {
+		final GLMatrix lMatrix = getProjective();
+		final Mat4f lMat = new Mat4f(lMatrix);
+		assertArrayEquals(lMatrix.getFloatArray(), lMat.toGLMatrix().getFloatArray(), 0);
+		assertArrayEquals(lMatrix.getFloatArray(), lMat.get(new float[16], 0), 0);
+		assertEquals(lMatrix.get(3, 2), lMat.m32, 0);
+		assertEquals(lMatrix.get(2, 3), lMat.m23, 0);
+
+		final float[] lArray = lMat.get(new float[20], 4);
+		assertArrayEquals(lMatrix.getFloatArray(),
+				new Mat4f().set(lArray, 4).get(new float[16], 0),
+				0);
+
+		final FloatBuffer lBuffer = lMat.put(FloatBuffer.allocate(16));
+		assertArrayEquals(lMatrix.getFloatArray(), lBuffer.array(), 0);
+		assertArrayEquals(GLMatrix.getIdentity().getFloatArray(),
+				new Mat4f().get(new float[16], 0),
+				0);
+	}
+
+	@Test
+	public void testMat4fOperations() {
+		final GLMatrix lA = getProjective();
+		final GLMatrix lB = getAffine();
+		final Mat4f lMatA = new Mat4f(lA);
+		final Mat4f lMatB = new Mat4f(lB);
+
+		assertMatrix(GLMatrix.mult(lA, lB, new GLMatrix()),
+				new Mat4f().mul(lMatA, lMatB),
+				1e-5f);
+		assertMatrix(GLMatrix.mult(lA, lB, new GLMatrix()),
+				new Mat4f(lMatA).mul(lMatB),
+				1e-5f);
+		assertMatrix(lA.getInverse(), invert(new Mat4f(lMatA)), 1e-4f);
+		assertMatrix(lB.getInverse(), invert(new Mat4f(lMatB)), 1e-5f);
+		assertMatrix(GLMatrix.transpose(lA, new GLMatrix()),
+				new Mat4f(lMatA).transpose(),
+				0);
+
+		final GLMatrix lTranslated = lB.clone();
+		lTranslated.translate(0.5f, -1, 2);
+		assertMatrix(lTranslated, new Mat4f(lMatB).translate(0.5f, -1, 2), 1e-5f);
+		final GLMatrix lScaled = lB.clone();
+		lScaled.scale(0.5f, -1, 2);
+		assertMatrix(lScaled, new Mat4f(lMatB).scale(0.5f, -1, 2), 1e-5f);
+
+		// determinant of a product is the product of the determinants
+		assertEquals(new Mat4f().mul(lMatA, lMatB).determinant(),
+				lMatA.determinant() * lMatB.determinant(),
+				1e-4f * Math.abs(lMatA.determinant() * lMatB.determinant()));
+
+		final Mat4f lSingular = new Mat4f().scale(1, 0, 1);
+		final Mat4f lUnchanged = new Mat4f(lSingular);
+		assertFalse(lSingular.invert());
+		assertMatrix(lUnchanged.toGLMatrix(), lSingular, 0);
+	}
+
+	@Test
+	public void testMat4fTransforms() {
+		final GLMatrix lMatrix = getProjective();
+		final Mat4f lMat = new Mat4f(lMatrix);
+		final float[] lPoint = {0.5f, -1.5f, -4.0f, 1};
+
+		final float[] lExpected = lMatrix.mult(lPoint);
+		assertVector(new GLVector(lExpected),
+				lMat.transform(new Vec4f().set(lPoint, 0), new Vec4f()));
+		assertVector(new GLVector(lMatrix.mult(lPoint, new float[4])),
+				lMatrix.mult(new Vec4f().set(lPoint, 0), new Vec4f()));
+
+		final Vec3f lPoint3 = new Vec3f().set(lPoint, 0);
+		assertVector(new GLVector(lExpected[0], lExpected[1], lExpected[2]),
+				lMat.transformPoint(lPoint3, new Vec3f()));
+		assertVector(new GLVector(lExpected[0] / lExpected[3],
+				lExpected[1] / lExpected[3],
+				lExpected[2] / lExpected[3]),
+				lMat.transformProject(lPoint3, new Vec3f()));
+
+		final float[] lDirection = lMatrix.mult(new float[]{0.5f, -1.5f, -4.0f, 0});
+		assertVector(new GLVector(lDirection[0], lDirection[1], lDirection[2]),
+				lMat.transformDirection(lPoint3, new Vec3f()));
+	}
+
+	@Test
+	public void testMat4fReadMarksModified() {
+		final GLMatrix lMatrix = GLMatrix.getIdentity();
+		final long lVersion = lMatrix.getVersion();
+		assertEquals(0, lMatrix.getCachedInverse().getFloatArray()[14], 0);
+
+		new Mat4f().translate(1, 2, 3).get(lMatrix);
+		assertNotEquals(lVersion, lMatrix.getVersion());
+		assertEquals(GLMatrix.Structure.Unknown, lMatrix.getStructure());
+		assertEquals(-3, lMatrix.getCachedInverse().getFloatArray()[14], 1e-6f);
+	}
+
+	@Test
+	public void testUniformSetters() {
+		final RecordingGL lGL = new RecordingGL();
+		final GLProgram lProgram = new GLProgram(lGL.getGL(), new HashMap<>());
+		final GLUniform lUniform = new GLUniform(lProgram, 7);
+
+		final GLVector lVector3 = new GLVector(1.5f, -2.0f, 3.25f);
+		lUniform.setFloatVector(lVector3);
+		lUniform.setFloatVector(new Vec3f().set(lVector3));
+		final FloatBuffer lExpected3 = (FloatBuffer) lGL.getCalls("glUniform3fv")
+				.get(0)
+				.arg(2);
+		final RecordingGL.Call lCall3 = lGL.getCalls("glUniform3f").get(0);
+		assertEquals(7, lCall3.arg(0));
+		for (int i = 0; i < 3; i++)
+			assertEquals(lExpected3.get(i), (Float) lCall3.arg(i + 1), 0);
+
+		final GLVector lVector4 = new GLVector(1.5f, -2.0f, 3.25f, 0.5f);
+		lUniform.setFloatVector(lVector4);
+		lUniform.setFloatVector(new Vec4f().set(lVector4));
+		final FloatBuffer lExpected4 = (FloatBuffer) lGL.getCalls("glUniform4fv")
+				.get(0)
+				.arg(2);
+		final RecordingGL.Call lCall4 = lGL.getCalls("glUniform4f").get(0);
+		assertEquals(7, lCall4.arg(0));
+		for (int i = 0; i < 4; i++)
+			assertEquals(lExpected4.get(i), (Float) lCall4.arg(i + 1), 0);
+
+		final GLMatrix lMatrix = getProjective();
+		lUniform.setFloatMatrix(lMatrix, true);
+		lUniform.setFloatMatrix(new Mat4f(lMatrix), true);
+		final RecordingGL.Call lBufferCall = lGL.getCalls("glUniformMatrix4fv")
+				.get(0);
+		final RecordingGL.Call lArrayCall = lGL.getCalls("glUniformMatrix4fv")
+				.get(1);
+		final FloatBuffer lExpectedMatrix = (FloatBuffer) lBufferCall.arg(3);
+		final float[] lMatrixArray = (float[]) lArrayCall.arg(3);
+		assertEquals(7, lArrayCall.arg(0));
+		assertEquals(1, lArrayCall.arg(1));
+		assertEquals(true, lArrayCall.arg(2));
+		assertEquals(0, lArrayCall.arg(4));
+		for (int i = 0; i < 16; i++)
+			assertEquals(lExpectedMatrix.get(i), lMatrixArray[i], 0);
+
+		// every call binds the program first
+		assertEquals(6, lGL.getCalls("glUseProgram").size());
+	}
+
+	private static Mat4f invert(final Mat4f pMatrix) {
+		assertTrue(pMatrix.invert());
+		return pMatrix;
+	}
+
+	private static void assertVector(final GLVector pExpected,
+			final Vec3f pActual) {
+		assertArrayEquals(pExpected.toFloatArray(),
+				pActual.get(new float[3], 0),
+				1e-5f);
+	}
+
+	private static void assertVector(final GLVector pExpected,
+			final Vec4f pActual) {
+		assertArrayEquals(pExpected.toFloatArray(),
+				pActual.get(new float[4], 0),
+				1e-5f);
+	}
+
+	private static void assertMatrix(final GLMatrix pExpected,
+			final Mat4f pActual,
+			final float pTolerance) {
+		final float[] lExpected = pExpected.getFloatArray();
+		final float[] lActual = pActual.get(new float[16], 0);
+		for (int i = 0; i < 16; i++)
+			assertEquals(lExpected[i],
+					lActual[i],
+					pTolerance * Math.max(1, Math.abs(lExpected[i])));
+	}
+
+}
@@ -0,0 +1,37 @@
+package cleargl;
+
+import static org.junit.Assert.assertArrayEquals;
+import org.junit.Test;
+
+public class GLMatrixBatchTest {
+
+	@Test
+	public void testBulkOperationsMatchGLMatrix() {
+		final int lCount = 10000;
+		final GLMatrixBatch lBatch = new GLMatrixBatch(lCount);
+		for (int i = 0; i < lCount; i++) {
+			final GLMatrix lMatrix = GLMatrix.getTranslation(i % 10, -(i % 13), 0.5f * (i % 17));
+			lMatrix.rotEuler(0.001 * i, 0.2, -0.3);
+			lMatrix.scale(1.0f + 0.01f * (i % 7), 2.0f, 0.5f);
+			lBatch.set(i, lMatrix);
+		}
+
+		final GLMatrix lParent = GLMatrix.getTranslation(1.0f, 2.0f, 3.0f);
+		lParent.rotEuler(0.5, 0.0, 0.25);
+
+		final GLMatrixBatch lWorld = lBatch.multLeft(lParent, new GLMatrixBatch(lCount));
+		final GLMatrixBatch lNormals = lWorld.inverseTranspose(new GLMatrixBatch(lCount));
+
+		final GLMatrix lMatrix = new GLMatrix();
+		final GLMatrix lExpected = new GLMatrix();
+		final GLMatrix lActual = new GLMatrix();
+		for (int i = 0; i < lCount; i += 97) {
+			GLMatrix.mult(lParent, lBatch.get(i, lMatrix), lExpected);
+			assertArrayEquals(lExpected.getFloatArray(), lWorld.get(i, lActual).getFloatArray(), 1e-3f);
+
+			lExpected.invert().transpose();
+			assertArrayEquals(lExpected.getFloatArray(), lNormals.get(i, lActual).getFloatArray(), 1e-4f);
+		}
+	}
+
+}
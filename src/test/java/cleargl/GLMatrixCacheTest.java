@@ -0,0 +1,137 @@
+package cleargl;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertSame;
+import org.junit.Test;
+import com.jogamp.opengl.math.FloatUtil;
+
+public class GLMatrixCacheTest {
+
+	@Test
+	public void testStructuredInverse() {
+		final GLMatrix lRigid = GLMatrix.getIdentity();
+		lRigid.translate(1, 2, 3);
+		lRigid.rotEuler(0.3, -0.2, 0.7);
+		assertEquals(GLMatrix.Structure.Rigid, lRigid.getStructure());
+		assertInverse(lRigid);
+
+		final GLMatrix lAffine = lRigid.clone();
+		lAffine.scale(2, 0.5f, 3);
+		assertEquals(GLMatrix.Structure.Affine, lAffine.getStructure());
+		assertInverse(lAffine);
+
+		final GLMatrix lGeneral = new GLMatrix().setPerspectiveProjectionMatrix(1.0f, 1.5f, 0.1f, 100f);
+		lGeneral.mult(lAffine);
+		assertInverse(lGeneral);
+
+		final GLMatrix lUnknown = new GLMatrix(lAffine.getFloatArray().clone());
+		assertEquals(GLMatrix.Structure.Unknown, lUnknown.getStructure());
+		assertInverse(lUnknown);
+	}
+
+	@Test
+	public void testCachedInverseTracksChanges() {
+		final GLMatrix lMatrix = GLMatrix.getIdentity();
+		lMatrix.translate(1, 2, 3);
+
+		final GLMatrix lInverse = lMatrix.getCachedInverse();
+		final long lVersion = lMatrix.getVersion();
+		assertSame(lInverse, lMatrix.getCachedInverse());
+		assertEquals(lVersion, lMatrix.getVersion());
+		assertEquals(-1, lInverse.getFloatArray()[12], 1e-6f);
+
+		lMatrix.translate(1, 0, 0);
+		assertNotEquals(lVersion, lMatrix.getVersion());
+		assertEquals(-2, lMatrix.getCachedInverse().getFloatArray()[12], 1e-6f);
+
+		// writes through the backing array are noticed as well
+		lMatrix.getFloatArray()[12] = 5;
+		assertEquals(-5, lMatrix.getCachedInverse().getFloatArray()[12], 1e-6f);
+
+		final float[] lTranspose = lMatrix.getCachedInverseTranspose().getFloatArray();
+		assertEquals(-5, lTranspose[3], 1e-6f);
+	}
+
+	@Test
+	public void testBatchReadDropsStructureHint() {
+		final GLMatrix lScaled = GLMatrix.getIdentity();
+		lScaled.scale(4, 4, 4);
+		final GLMatrixBatch lBatch = new GLMatrixBatch(1);
+		lBatch.set(0, lScaled);
+
+		final GLMatrix lMatrix = GLMatrix.getIdentity();
+		assertEquals(GLMatrix.Structure.Rigid, lMatrix.getStructure());
+		lBatch.get(0, lMatrix);
+		// a structure keeping mutator must not revive the rigid hint
+		lMatrix.translate(1, 0, 0);
+		assertNotEquals(GLMatrix.Structure.Rigid, lMatrix.getStructure());
+		assertProductIsIdentity(lMatrix);
+	}
+
+	@Test
+	public void testMat4fReadDropsStructureHint() {
+		final GLMatrix lMatrix = GLMatrix.getIdentity();
+		new Mat4f().scale(4, 4, 4).get(lMatrix);
+		lMatrix.translate(1, 0, 0);
+		assertNotEquals(GLMatrix.Structure.Rigid, lMatrix.getStructure());
+		assertProductIsIdentity(lMatrix);
+	}
+
+	@Test
+	public void testRawWriteInvalidatesInferredStructure() {
+		final GLMatrix lMatrix = GLMatrix.getIdentity();
+		lMatrix.getFloatArray()[0] = 4;
+		lMatrix.translate(1, 0, 0);
+		assertProductIsIdentity(lMatrix);
+		assertEquals(GLMatrix.Structure.Affine, lMatrix.getStructure());
+	}
+
+	@Test
+	public void testDeclaredStructureIsKept() {
+		final GLMatrix lMatrix = GLMatrix.getIdentity()
+				.setStructure(GLMatrix.Structure.Rigid);
+		lMatrix.rotEuler(0.3, -0.2, 0.7);
+		lMatrix.translate(1, 2, 3);
+		assertProductIsIdentity(lMatrix);
+		assertEquals(GLMatrix.Structure.Rigid, lMatrix.getStructure());
+
+		lMatrix.getFloatArray()[0] *= 2;
+		lMatrix.markModified();
+		lMatrix.translate(1, 0, 0);
+		assertProductIsIdentity(lMatrix);
+		assertEquals(GLMatrix.Structure.Affine, lMatrix.getStructure());
+	}
+
+	@Test
+	public void testNormalMatrix() {
+		final GLMatrix lMatrix = GLMatrix.getIdentity();
+		lMatrix.rotEuler(0.1, 0.2, 0.3);
+		lMatrix.scale(2, 3, 4);
+		lMatrix.translate(1, 1, 1);
+
+		final float[] lExpected = new float[16];
+		FloatUtil.transposeMatrix(lMatrix.getInverse().getFloatArray(), lExpected);
+		final float[] lNormal = lMatrix.getNormalMatrix();
+		for (int c = 0; c < 3; c++)
+			for (int r = 0; r < 3; r++)
+				assertEquals(lExpected[4 * c + r], lNormal[3 * c + r], 1e-5f);
+	}
+
+	private static void assertProductIsIdentity(final GLMatrix pMatrix) {
+		final GLMatrix lProduct = pMatrix.clone();
+		lProduct.mult(pMatrix.getCachedInverse());
+		assertArrayEquals(GLMatrix.getIdentity().getFloatArray(),
+				lProduct.getFloatArray(),
+				1e-5f);
+	}
+
+	private static void assertInverse(final GLMatrix pMatrix) {
+		final float[] lExpected = new float[16];
+		FloatUtil.invertMatrix(pMatrix.getFloatArray(), lExpected);
+		assertArrayEquals(lExpected, pMatrix.getCachedInverse().getFloatArray(), 1e-4f);
+		assertArrayEquals(lExpected, pMatrix.getInverse().getFloatArray(), 1e-4f);
+	}
+
+}
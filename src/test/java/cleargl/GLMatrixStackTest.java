@@ -0,0 +1,63 @@
+package cleargl;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import org.junit.Test;
+import com.jogamp.opengl.math.FloatUtil;
+import com.jogamp.opengl.math.Quaternion;
+
+public class GLMatrixStackTest {
+
+	private static void assertTop(final GLMatrix pExpected,
+			final GLMatrixStack pStack) {
+		assertArrayEquals(pExpected.getFloatArray(),
+				pStack.getTop(new GLMatrix()).getFloatArray(),
+				1e-5f);
+	}
+
+	@Test
+	public void testMatchesGLMatrix() {
+		final GLMatrixStack lStack = new GLMatrixStack(4);
+		final GLMatrix lParent = GLMatrix.getIdentity();
+		lParent.translate(1.0f, 2.0f, 3.0f);
+		lParent.rotEuler(0.1, 0.2, 0.3);
+		lParent.scale(2.0f, 1.0f, 0.5f);
+
+		lStack.translate(1.0f, 2.0f, 3.0f)
+				.rotEuler(0.1f, 0.2f, 0.3f)
+				.scale(2.0f, 1.0f, 0.5f);
+		assertTop(lParent, lStack);
+
+		final Quaternion lQuaternion = new Quaternion().rotateByAngleX(0.7f);
+		final float[] lAxisRotation = FloatUtil.makeRotationAxis(new float[16], 0, 0.4f, 1.0f, 1.0f, 0.0f, new float[3]);
+		final GLMatrix lChild = lParent.clone();
+		lChild.mult(lQuaternion);
+		FloatUtil.multMatrix(lChild.getFloatArray(), lAxisRotation);
+		lChild.mult(GLMatrix.getScaling(3.0f, 3.0f, 3.0f));
+
+		lStack.push()
+				.rotate(lQuaternion)
+				.rotate(0.4f, 1.0f, 1.0f, 0.0f)
+				.mulTop(GLMatrix.getScaling(3.0f, 3.0f, 3.0f));
+		assertEquals(1, lStack.getDepth());
+		assertTop(lChild, lStack);
+
+		lStack.pop();
+		assertEquals(0, lStack.getDepth());
+		assertTop(lParent, lStack);
+
+		lStack.clear();
+		assertTop(GLMatrix.getIdentity(), lStack);
+	}
+
+	@Test(expected = IllegalStateException.class)
+	public void testOverflow() {
+		new GLMatrixStack(2).push().push();
+	}
+
+	@Test(expected = IllegalStateException.class)
+	public void testUnderflow() {
+		new GLMatrixStack(2).pop();
+	}
+
+}
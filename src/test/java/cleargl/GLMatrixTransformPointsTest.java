@@ -0,0 +1,230 @@
+package cleargl;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.FloatBuffer;
+import java.util.Arrays;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+
+import org.junit.Test;
+
+public class GLMatrixTransformPointsTest {
+
+	// above the parallel threshold, with a tail that does not split evenly
+	private static final int cLargeCount = (1 << 17) + 3;
+
+	private static GLMatrix getAffine() {
+		final GLMatrix lMatrix = GLMatrix.getIdentity();
+		lMatrix.translate(1, -2, 3);
+		lMatrix.rotEuler(0.3, -0.2, 0.7);
+		lMatrix.scale(2, 0.5f, 3);
+		return lMatrix;
+	}
+
+	private static GLMatrix getProjective() {
+		final GLMatrix lMatrix = new GLMatrix().setPerspectiveProjectionMatrix(1.0f,
+				1.5f,
+				0.1f,
+				100f);
+		lMatrix.mult(getAffine());
+		return lMatrix;
+	}
+
+	@Test
+	public void testSmallCounts() {
+		final ForkJoinPool lPool = new ForkJoinPool(4);
+		try {
+			for (final GLMatrix lMatrix : new GLMatrix[]{getAffine(),
+					getProjective()})
+				for (final int lComponents : new int[]{3, 4}) {
+					check(lPool, lMatrix, lComponents, 0, lComponents, 0, lComponents, 1);
+					check(lPool, lMatrix, lComponents, 0, lComponents, 0, lComponents, 257);
+				}
+		} finally {
+			lPool.shutdown();
+		}
+	}
+
+	@Test
+	public void testLargeCountWithTail() {
+		final ForkJoinPool lPool = new ForkJoinPool(4);
+		try {
+			for (final GLMatrix lMatrix : new GLMatrix[]{getAffine(),
+					getProjective()})
+				for (final int lComponents : new int[]{3, 4})
+					check(lPool,
+							lMatrix,
+							lComponents,
+							0,
+							lComponents,
+							0,
+							lComponents,
+							cLargeCount);
+		} finally {
+			lPool.shutdown();
+		}
+	}
+
+	@Test
+	public void testOffsetsAndStrides() {
+		final ForkJoinPool lPool = new ForkJoinPool(4);
+		try {
+			for (final GLMatrix lMatrix : new GLMatrix[]{getAffine(),
+					getProjective()})
+				for (final int lComponents : new int[]{3, 4}) {
+					check(lPool, lMatrix, lComponents, 5, lComponents + 2, 7, lComponents + 1, 101);
+					check(lPool,
+							lMatrix,
+							lComponents,
+							3,
+							lComponents + 1,
+							1,
+							8,
+							cLargeCount);
+				}
+		} finally {
+			lPool.shutdown();
+		}
+	}
+
+	@Test
+	public void testInPlace() {
+		final GLMatrix lMatrix = getProjective();
+		final float[] lPoints = randomPoints(4 + 6 * 1000);
+		final float[] lExpected = lPoints.clone();
+		final float[] lResult = new float[4];
+		for (int i = 0; i < 1000; i++) {
+			final int lIndex = 4 + 6 * i;
+			lMatrix.mult(new float[]{lPoints[lIndex], lPoints[lIndex + 1],
+					lPoints[lIndex + 2], lPoints[lIndex + 3]}, lResult);
+			System.arraycopy(lResult, 0, lExpected, lIndex, 4);
+		}
+
+		lMatrix.transformPoints(lPoints, 4, 6, lPoints, 4, 6, 4, 1000);
+		assertArrayEquals(lExpected, lPoints);
+	}
+
+	@Test
+	public void testDirectBuffers() {
+		final GLMatrix lMatrix = getProjective();
+		final float[] lSource = randomPoints(2 + 5 * 300);
+		final FloatBuffer lSourceBuffer = ByteBuffer.allocateDirect(4 * lSource.length)
+				.order(ByteOrder.nativeOrder())
+				.asFloatBuffer();
+		lSourceBuffer.put(lSource).position(2);
+		final FloatBuffer lDestinationBuffer = ByteBuffer.allocateDirect(4 * (1 + 3 * 300))
+				.order(ByteOrder.nativeOrder())
+				.asFloatBuffer();
+		lDestinationBuffer.position(1);
+		assertFalse(lSourceBuffer.hasArray());
+
+		lMatrix.transformPoints(lSourceBuffer, 5, lDestinationBuffer, 3, 3, 300);
+		assertEquals(2, lSourceBuffer.position());
+		assertEquals(1, lDestinationBuffer.position());
+
+		final float[] lExpected = expected(lMatrix, lSource, 3, 2, 5, 300);
+		for (int i = 0; i < 300; i++)
+			for (int c = 0; c < 3; c++)
+				assertClose(lExpected[4 * i + c], lDestinationBuffer.get(1 + 3 * i + c));
+	}
+
+	@Test
+	public void testAffineDetection() {
+		assertTrue(getAffine().isAffine());
+		assertFalse(getProjective().isAffine());
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testStrideTooSmall() {
+		getAffine().transformPoints(new float[12], 0, 2, new float[12], 0, 3, 3, 4);
+	}
+
+	private static void check(final ForkJoinPool pPool,
+			final GLMatrix pMatrix,
+			final int pComponents,
+			final int pSourceOffset,
+			final int pSourceStride,
+			final int pDestinationOffset,
+			final int pDestinationStride,
+			final int pCount) {
+		final float[] lSource = randomPoints(pSourceOffset + pSourceStride * pCount);
+		final float[] lDestination = new float[pDestinationOffset + pDestinationStride * pCount];
+		final float lSentinel = -12345;
+		Arrays.fill(lDestination, lSentinel);
+
+		pMatrix.transformPoints(pPool,
+				lSource,
+				pSourceOffset,
+				pSourceStride,
+				lDestination,
+				pDestinationOffset,
+				pDestinationStride,
+				pComponents,
+				pCount);
+
+		final float[] lExpected = expected(pMatrix,
+				lSource,
+				pComponents,
+				pSourceOffset,
+				pSourceStride,
+				pCount);
+		for (int i = 0; i < pDestinationOffset; i++)
+			assertEquals(lSentinel, lDestination[i], 0);
+		for (int i = 0; i < pCount; i++) {
+			final int lIndex = pDestinationOffset + i * pDestinationStride;
+			for (int c = 0; c < pComponents; c++)
+				assertClose(lExpected[4 * i + c], lDestination[lIndex + c]);
+			// padding between points is left alone
+			for (int c = pComponents; c < pDestinationStride; c++)
+				assertEquals(lSentinel, lDestination[lIndex + c], 0);
+		}
+	}
+
+	/**
+	 * Per-point reference with {@link GLMatrix#mult(float[], float[])}, four
+	 * floats per point.
+	 */
+	private static float[] expected(final GLMatrix pMatrix,
+			final float[] pSource,
+			final int pComponents,
+			final int pOffset,
+			final int pStride,
+			final int pCount) {
+		final float[] lExpected = new float[4 * pCount];
+		final float[] lPoint = new float[4];
+		final float[] lResult = new float[4];
+		for (int i = 0; i < pCount; i++) {
+			System.arraycopy(pSource, pOffset + i * pStride, lPoint, 0, pComponents);
+			if (pComponents == 3)
+				lPoint[3] = 1;
+			pMatrix.mult(lPoint, lResult);
+			System.arraycopy(lResult, 0, lExpected, 4 * i, 4);
+		}
+		return lExpected;
+	}
+
+	private static float[] randomPoints(final int pLength) {
+		final Random lRandom = new Random(pLength);
+		final float[] lPoints = new float[pLength];
+		for (int i = 0; i < pLength; i++)
+			lPoints[i] = 20 * lRandom.nextFloat() - 10;
+		return lPoints;
+	}
+
+	private static void assertClose(final float pExpected, final float pActual) {
+		assertEquals(pExpected, pActual, 1e-5f * Math.max(1, Math.abs(pExpected)));
+	}
+
+	private static void assertArrayEquals(final float[] pExpected,
+			final float[] pActual) {
+		assertEquals(pExpected.length, pActual.length);
+		for (int i = 0; i < pExpected.length; i++)
+			assertClose(pExpected[i], pActual[i]);
+	}
+
+}
@@ -0,0 +1,199 @@
+package cleargl;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.nio.FloatBuffer;
+
+import org.junit.Test;
+
+public class GLMatrixdTest {
+
+	// float spacing is 1 at this magnitude, so fractions are lost in float
+	private static final double cFar = 12345678;
+
+	private static GLMatrixd getModel(final double pX,
+			final double pY,
+			final double pZ) {
+		return GLMatrixd.getIdentity()
+				.translate(pX, pY, pZ)
+				.rotEuler(0.3, -0.2, 0.7)
+				.scale(2, 0.5, 3);
+	}
+
+	@Test
+	public void testMatchesFloatForSmallValues() {
+		final GLMatrixd lModel = getModel(1, -2, 3);
+		final GLMatrix lModelFloat = GLMatrix.getIdentity();
+		lModelFloat.translate(1, -2, 3);
+		lModelFloat.rotEuler(0.3, -0.2, 0.7);
+		lModelFloat.scale(2, 0.5f, 3);
+		assertArrayEquals(lModelFloat.getFloatArray(),
+				lModel.toGLMatrix(new GLMatrix()).getFloatArray(),
+				1e-5f);
+
+		final GLMatrixd lView = new GLMatrixd().setCamera(new GLVectord(1, 2, 5),
+				new GLVectord(-0.5, 0.25, 0),
+				new GLVectord(0, 1, 0.1));
+		final GLMatrix lViewFloat = new GLMatrix().setCamera(new GLVector(1, 2, 5),
+				new GLVector(-0.5f, 0.25f, 0),
+				new GLVector(0, 1, 0.1f));
+		assertArrayEquals(lViewFloat.getFloatArray(),
+				lView.toGLMatrix(new GLMatrix()).getFloatArray(),
+				1e-5f);
+
+		final float[] lExpected = GLMatrix.mult(lViewFloat,
+				lModelFloat,
+				new GLMatrix()).getFloatArray();
+		assertArrayEquals(lExpected,
+				GLMatrixd.multToFloat(lView, lModel, new GLMatrix())
+						.getFloatArray(),
+				1e-5f);
+
+		final FloatBuffer lBuffer = FloatBuffer.allocate(20);
+		lBuffer.position(4);
+		GLMatrixd.multToFloat(lView, lModel, lBuffer);
+		assertEquals(20, lBuffer.position());
+		for (int i = 0; i < 16; i++)
+			assertEquals(lExpected[i], lBuffer.get(4 + i), 1e-5f);
+
+		final float[] lArray = GLMatrixd.multToFloat(lView.getDoubleArray(),
+				lModel.getDoubleArray(),
+				new float[18],
+				2);
+		for (int i = 0; i < 16; i++)
+			assertEquals(lExpected[i], lArray[2 + i], 1e-5f);
+	}
+
+	@Test
+	public void testMultToFloatKeepsPrecisionFarFromOrigin() {
+		final GLVectord lTarget = new GLVectord(cFar + 0.3, -cFar - 0.2, cFar + 0.1);
+		final GLVectord lEye = new GLVectord(cFar, -cFar, cFar + 10);
+		final GLMatrixd lView = new GLMatrixd().setCamera(lEye,
+				lTarget,
+				new GLVectord(0, 1, 0));
+		final GLMatrixd lModel = GLMatrixd.getIdentity()
+				.translate(lTarget);
+
+		// the model origin is the target, i.e. 10.0065 units in front of the eye
+		final float[] lModelView = GLMatrixd.multToFloat(lView,
+				lModel,
+				new GLMatrix()).getFloatArray();
+		final double lDistance = Math.sqrt(0.3 * 0.3 + 0.2 * 0.2 + 9.9 * 9.9);
+		assertEquals(0, lModelView[12], 1e-5f);
+		assertEquals(0, lModelView[13], 1e-5f);
+		assertEquals(-lDistance, lModelView[14], 1e-5f);
+
+		// the same composition in float is off by a sizeable fraction of a unit
+		final GLMatrix lViewFloat = lView.toGLMatrix(new GLMatrix());
+		final GLMatrix lModelFloat = lModel.toGLMatrix(new GLMatrix());
+		final float[] lFloat = GLMatrix.mult(lViewFloat,
+				lModelFloat,
+				new GLMatrix()).getFloatArray();
+		final double lError = Math.abs(lFloat[12]) + Math.abs(lFloat[13])
+				+ Math.abs(lFloat[14] + lDistance);
+		assertTrue("float error " + lError, lError > 0.1);
+	}
+
+	@Test
+	public void testRelativeToEyeMatchesFullProduct() {
+		final GLVectord lEye = new GLVectord(cFar + 0.75, 2 * cFar - 0.5, -cFar + 0.25);
+		final GLVectord lTarget = new GLVectord(cFar + 3.5, 2 * cFar + 1.25, -cFar - 4);
+		final GLMatrixd lView = new GLMatrixd().setCamera(lEye,
+				lTarget,
+				new GLVectord(0, 1, 0.1));
+		final GLMatrixd lModel = getModel(cFar + 2.125, 2 * cFar + 0.375, -cFar - 1.5);
+
+		final GLMatrix lRotation = lView.getRotation(new GLMatrix());
+		final GLMatrix lRelative = lModel.getRelativeToEye(lEye, new GLMatrix());
+		final float[] lRotationArray = lRotation.getFloatArray();
+		assertEquals(0, lRotationArray[12], 0);
+		assertEquals(0, lRotationArray[13], 0);
+		assertEquals(0, lRotationArray[14], 0);
+		assertEquals(1, lRotationArray[15], 0);
+		final float[] lRelativeArray = lRelative.getFloatArray();
+		assertEquals(2.125 - 0.75, lRelativeArray[12], 1e-6f);
+		assertEquals(0.375 + 0.5, lRelativeArray[13], 1e-6f);
+		assertEquals(-1.5 - 0.25, lRelativeArray[14], 1e-6f);
+
+		// rotation * (model - eye) is view * model, with only small floats
+		assertArrayEquals(GLMatrixd.multToFloat(lView, lModel, new GLMatrix())
+				.getFloatArray(),
+				GLMatrix.mult(lRotation, lRelative, new GLMatrix())
+						.getFloatArray(),
+				1e-5f);
+	}
+
+	@Test
+	public void testFloatOutputMarksModified() {
+		final GLMatrix lDestination = GLMatrix.getIdentity();
+		lDestination.getCachedInverse();
+		GLMatrixd.getIdentity()
+				.translate(1, 2, 3)
+				.toGLMatrix(lDestination);
+		assertEquals(-3, lDestination.getCachedInverse().getFloatArray()[14], 1e-6f);
+
+		new GLMatrixd().setIdentity()
+				.translate(4, 5, 6)
+				.getRelativeToEye(new GLVectord(1, 1, 1), lDestination);
+		assertEquals(-5, lDestination.getCachedInverse().getFloatArray()[14], 1e-6f);
+	}
+
+	@Test
+	public void testInverseAndMult() {
+		final GLMatrixd lModel = getModel(cFar, -cFar, 0.5);
+		final GLMatrixd lInverse = lModel.getInverse(new GLMatrixd());
+		final double[] lIdentity = GLMatrixd.mult(lModel,
+				lInverse,
+				new GLMatrixd()).getDoubleArray();
+		assertArrayEquals(GLMatrixd.getIdentity().getDoubleArray(), lIdentity, 1e-7);
+
+		// destinations may alias either operand
+		final GLMatrixd lExpected = GLMatrixd.mult(lModel, lInverse, new GLMatrixd());
+		final GLMatrixd lAliasB = lInverse.clone();
+		GLMatrixd.mult(lModel, lAliasB, lAliasB);
+		assertArrayEquals(lExpected.getDoubleArray(), lAliasB.getDoubleArray(), 0);
+		final GLMatrixd lSquare = lModel.clone().mult(lModel);
+		assertArrayEquals(GLMatrixd.mult(lModel, lModel, new GLMatrixd())
+				.getDoubleArray(), lSquare.getDoubleArray(), 0);
+
+		final GLVectord lPoint = new GLVectord(1, 2, 3, 1);
+		final GLVectord lBack = lInverse.mult(lModel.mult(lPoint, new GLVectord(0, 4)),
+				new GLVectord(0, 4));
+		assertArrayEquals(lPoint.toDoubleArray(), lBack.toDoubleArray(), 1e-7);
+
+		final GLMatrixd lTransposed = lModel.clone().transpose();
+		for (int r = 0; r < 4; r++)
+			for (int c = 0; c < 4; c++)
+				assertEquals(lModel.get(r, c), lTransposed.get(c, r), 0);
+	}
+
+	@Test
+	public void testVectorOperations() {
+		final GLVectord lA = new GLVectord(cFar + 0.5, 2, -3);
+		final GLVectord lB = new GLVectord(cFar, 4, 1);
+
+		final GLVectord lDifference = GLVectord.minus(lA, lB, new GLVectord(0, 3));
+		assertArrayEquals(new double[]{0.5, -2, -4}, lDifference.toDoubleArray(), 0);
+		assertArrayEquals(new double[]{2 * cFar + 0.5, 6, -2},
+				GLVectord.plus(lA, lB, new GLVectord(0, 3)).toDoubleArray(),
+				0);
+		assertArrayEquals(new double[]{1, -4, -8},
+				GLVectord.times(lDifference, 2, new GLVectord(0, 3))
+						.toDoubleArray(),
+				0);
+		assertEquals(0.25 + 4 + 16, lDifference.times(lDifference), 0);
+		assertEquals(Math.sqrt(20.25), lDifference.magnitude(), 1e-12);
+		assertEquals(1, lDifference.clone().normalize().magnitude(), 1e-12);
+
+		final GLVectord lX = new GLVectord(1, 0, 0);
+		GLVectord.cross(lX, new GLVectord(0, 1, 0), lX);
+		assertArrayEquals(new double[]{0, 0, 1}, lX.toDoubleArray(), 0);
+
+		final GLVector lFloat = lDifference.toGLVector();
+		assertArrayEquals(new float[]{0.5f, -2, -4}, lFloat.toFloatArray(), 0);
+		assertEquals(lDifference, new GLVectord(lFloat));
+	}
+
+}
@@ -0,0 +1,178 @@
+package cleargl;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import org.junit.After;
+import org.junit.Test;
+
+public class GLMemoryRegistryTest {
+
+	private final GLMemoryRegistry mRegistry = GLMemoryRegistry.getDefault();
+
+	@After
+	public void restore() {
+		mRegistry.setEvictionListener(null);
+		mRegistry.setBudget(Long.MAX_VALUE);
+	}
+
+	@Test
+	public void testSizesFollowInternalFormat() {
+		final RecordingGL lGL = new RecordingGL();
+		final long lTextures = mRegistry.getTotal(GLMemoryRegistry.Category.Texture);
+
+		final GLTexture lRGBA8 = new GLTexture(lGL.getGL(),
+				GLTypeEnum.UnsignedByte,
+				4,
+				64,
+				32,
+				1,
+				true,
+				1);
+		assertEquals(64 * 32 * 4, lRGBA8.getSizeInBytes());
+
+		// 16 + 8 + 4 + 2 + 1 texels per row and column
+		final GLTexture lHalf = new GLTexture(lGL.getGL(),
+				GLTypeEnum.Float,
+				4,
+				16,
+				16,
+				1,
+				true,
+				5,
+				16);
+		assertEquals((256 + 64 + 16 + 4 + 1) * 4 * 2, lHalf.getSizeInBytes());
+
+		final GLTexture lVolume = new GLTexture(lGL.getGL(),
+				GLTypeEnum.UnsignedShort,
+				1,
+				8,
+				8,
+				4,
+				true,
+				1);
+		assertEquals(8 * 8 * 4 * 2, lVolume.getSizeInBytes());
+
+		assertEquals(lTextures + lRGBA8.getSizeInBytes()
+				+ lHalf.getSizeInBytes()
+				+ lVolume.getSizeInBytes(),
+				mRegistry.getTotal(GLMemoryRegistry.Category.Texture));
+
+		lRGBA8.close();
+		lHalf.close();
+		lVolume.delete();
+		lVolume.close();
+		assertEquals(lTextures,
+				mRegistry.getTotal(GLMemoryRegistry.Category.Texture));
+	}
+
+	@Test
+	public void testFramebufferAttachmentsAreCountedSeparately() {
+		final RecordingGL lGL = new RecordingGL();
+		final long lTextures = mRegistry.getTotal(GLMemoryRegistry.Category.Texture);
+		final long lFramebuffers = mRegistry.getTotal(GLMemoryRegistry.Category.Framebuffer);
+
+		final GLFramebuffer lFramebuffer = new GLFramebuffer(lGL.getGL(),
+				32,
+				16);
+		final GLTexturePool lPool = new GLTexturePool(8, Long.MAX_VALUE, 1000);
+		lFramebuffer.setTexturePool(lPool);
+		lFramebuffer.addUnsignedByteRGBABuffer(lGL.getGL(), "color", 8);
+		lFramebuffer.addDepthBuffer(lGL.getGL(), "depth", 32);
+		assertEquals(lFramebuffers + 32 * 16 * 4 + 32 * 16 * 4,
+				mRegistry.getTotal(GLMemoryRegistry.Category.Framebuffer));
+
+		lFramebuffer.resize(lGL.getGL(), 64, 64);
+		assertEquals(lFramebuffers + 2 * 64 * 64 * 4,
+				mRegistry.getTotal(GLMemoryRegistry.Category.Framebuffer));
+
+		// replaced attachments wait in the pool as plain textures
+		assertEquals(lTextures + 2 * 32 * 16 * 4,
+				mRegistry.getTotal(GLMemoryRegistry.Category.Texture));
+
+		lFramebuffer.destroy(lGL.getGL());
+		lPool.close();
+		assertEquals(lFramebuffers,
+				mRegistry.getTotal(GLMemoryRegistry.Category.Framebuffer));
+		assertEquals(lTextures,
+				mRegistry.getTotal(GLMemoryRegistry.Category.Texture));
+	}
+
+	@Test
+	public void testBudgetEvictsLeastRecentlyBound() {
+		final RecordingGL lGL = new RecordingGL();
+		final List<GLTexture> lTextures = new ArrayList<>();
+		for (int i = 0; i < 3; i++)
+			lTextures.add(new GLTexture(lGL.getGL(),
+					GLTypeEnum.UnsignedByte,
+					4,
+					16,
+					16,
+					1,
+					true,
+					1));
+		lTextures.get(0).bind();
+
+		final List<GLTexture> lEvicted = new ArrayList<>();
+		mRegistry.setEvictionListener(pTexture -> {
+			// leave textures of other tests alone
+			if (!lTextures.contains(pTexture))
+				return false;
+			lEvicted.add(pTexture);
+			pTexture.close();
+			return true;
+		});
+
+		// room for two of them
+		mRegistry.setBudget(mRegistry.getTotal() - 1024);
+		assertEquals(Arrays.asList(lTextures.get(1)), lEvicted);
+		assertFalse(mRegistry.isOverBudget());
+
+		// the new texture itself is never evicted
+		final GLTexture lNew = new GLTexture(lGL.getGL(),
+				GLTypeEnum.UnsignedByte,
+				4,
+				16,
+				16,
+				1,
+				true,
+				1);
+		lTextures.add(lNew);
+		assertEquals(Arrays.asList(lTextures.get(1), lTextures.get(2)),
+				lEvicted);
+		assertSame(lNew, lNew.getMemoryAllocation().getOwner());
+		assertFalse(lNew.getMemoryAllocation().isReleased());
+
+		for (final GLTexture lTexture : lTextures)
+			lTexture.close();
+	}
+
+	@Test
+	public void testCollectedOwnersAreDropped() throws InterruptedException {
+		final GLMemoryRegistry lRegistry = new GLMemoryRegistry();
+		final Object lKept = new Object();
+		lRegistry.register(lKept, GLMemoryRegistry.Category.Geometry, 100);
+		final GLMemoryRegistry.Allocation lLeaked = lRegistry.register(new Object(),
+				GLMemoryRegistry.Category.Texture,
+				1000);
+		assertEquals(1100, lRegistry.getTotal());
+
+		// the allocation alone must not keep its owner alive
+		for (int i = 0; i < 100 && lRegistry.getAllocationCount() > 1; i++) {
+			System.gc();
+			Thread.sleep(10);
+		}
+		assertEquals(1, lRegistry.getAllocationCount());
+		assertEquals(100, lRegistry.getTotal());
+		assertEquals(0, lRegistry.getTotal(GLMemoryRegistry.Category.Texture));
+		assertNull(lLeaked.getOwner());
+		assertTrue(lLeaked.isReleased());
+		assertSame(lKept, lRegistry.getAllocations().get(0).getOwner());
+	}
+
+}
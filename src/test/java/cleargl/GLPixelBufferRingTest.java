@@ -0,0 +1,141 @@
+package cleargl;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import org.junit.Test;
+import com.jogamp.opengl.GL;
+import com.jogamp.opengl.GL2ES3;
+import com.jogamp.opengl.GL4;
+
+public class GLPixelBufferRingTest {
+
+	@Test
+	public void testCopyFromUploadsData() {
+		final RecordingGL lGL = new RecordingGL();
+		final GLPixelBufferObject lPixelBuffer = new GLPixelBufferObject(lGL, 4, 4);
+		final ByteBuffer lData = ByteBuffer.allocateDirect(64);
+
+		lPixelBuffer.copyFrom(lData.asFloatBuffer());
+
+		final List<RecordingGL.Call> lBufferData = lGL.getCalls("glBufferData");
+		assertEquals(1, lBufferData.size());
+		assertEquals(GL2ES3.GL_PIXEL_UNPACK_BUFFER, lBufferData.get(0).arg(0));
+		assertEquals(64L, lBufferData.get(0).arg(1));
+		assertNotNull(lBufferData.get(0).arg(2));
+	}
+
+	@Test
+	public void testFencesAndOrphaning() throws Exception {
+		final RecordingGL lGL = new RecordingGL();
+		final GLTexture lVolume = new GLTexture(lGL.getGL(),
+				GLTypeEnum.UnsignedShort,
+				1,
+				16,
+				8,
+				4,
+				true,
+				1);
+		final GLPixelBufferRing lRing = new GLPixelBufferRing(lVolume, 2);
+		assertEquals(16 * 8 * 4 * 2, lRing.getSizeInBytes());
+		// storage for both slots is allocated up front
+		assertEquals(2, lGL.getCalls("glBufferData").size());
+
+		// fill on another thread, upload on this one
+		lGL.clear();
+		final GLPixelBufferRing.Slot lFirst = lRing.acquire();
+		assertEquals(Arrays.asList("glBindBuffer", "glMapBufferRange", "glBindBuffer"),
+				lGL.getCallNames());
+		final int lAccess = (Integer) lGL.getCalls("glMapBufferRange").get(0).arg(3);
+		assertEquals(GL.GL_MAP_WRITE_BIT | GL.GL_MAP_UNSYNCHRONIZED_BIT, lAccess);
+
+		final ExecutorService lExecutor = Executors.newSingleThreadExecutor();
+		lExecutor.submit(() -> {
+			while (lFirst.getBuffer().hasRemaining())
+				lFirst.getBuffer().put((byte) 7);
+			lFirst.markFilled();
+		}).get(10, TimeUnit.SECONDS);
+		lExecutor.shutdown();
+		assertTrue(lFirst.isFilled());
+
+		lGL.clear();
+		lRing.upload(lFirst, lVolume);
+		final List<String> lUploadCalls = lGL.getCallNames();
+		assertTrue(lUploadCalls.indexOf("glUnmapBuffer") < lUploadCalls.indexOf("glTexSubImage3D"));
+		assertTrue(lUploadCalls.indexOf("glTexSubImage3D") < lUploadCalls.indexOf("glFenceSync"));
+		final RecordingGL.Call lTexSubImage = lGL.getCalls("glTexSubImage3D").get(0);
+		assertEquals(0L, lTexSubImage.arg(10));
+		assertEquals(16, lTexSubImage.arg(5));
+		assertEquals(4, lTexSubImage.arg(7));
+		assertFalse(lFirst.isMapped());
+
+		// second slot has never been fenced, no wait
+		lGL.clear();
+		final GLPixelBufferRing.Slot lSecond = lRing.acquire();
+		assertTrue(lGL.getCalls("glClientWaitSync").isEmpty());
+		lRing.upload(lSecond, lVolume, 16, 8, 1, 0, 0, 2);
+
+		// first slot again while the GPU is still busy: orphan, don't wait
+		lGL.setFencesSignaled(false);
+		lGL.clear();
+		assertSame(lFirst, lRing.acquire());
+		final RecordingGL.Call lWait = lGL.getCalls("glClientWaitSync").get(0);
+		assertEquals(1L, lWait.arg(0));
+		assertEquals(0L, lWait.arg(2));
+		final List<RecordingGL.Call> lOrphan = lGL.getCalls("glBufferData");
+		assertEquals(1, lOrphan.size());
+		assertEquals(lRing.getSizeInBytes(), lOrphan.get(0).arg(1));
+		assertNull(lOrphan.get(0).arg(2));
+		assertEquals(1L, lGL.getCalls("glDeleteSync").get(0).arg(0));
+		final List<String> lAcquireCalls = lGL.getCallNames();
+		assertTrue(lAcquireCalls.indexOf("glBufferData") < lAcquireCalls.indexOf("glMapBufferRange"));
+		assertEquals(1, lRing.getOrphanCount());
+
+		// all slots mapped
+		lGL.setFencesSignaled(true);
+		lRing.release(lFirst);
+		assertSame(lSecond, lRing.acquire());
+		assertEquals(1, lGL.getCalls("glBufferData").size());
+		assertEquals(1, lRing.getOrphanCount());
+		assertSame(lFirst, lRing.acquire());
+		assertNull(lRing.acquire());
+
+		lGL.clear();
+		lRing.close();
+		assertEquals(2, lGL.getCalls("glUnmapBuffer").size());
+		assertEquals(2, lGL.getCalls("glDeleteBuffers").size());
+	}
+
+	@Test
+	public void testUpload2D() {
+		final RecordingGL lGL = new RecordingGL();
+		final GLTexture lTexture = new GLTexture(lGL.getGL(),
+				GLTypeEnum.UnsignedByte,
+				4,
+				32,
+				32,
+				1,
+				true,
+				1);
+		final GLPixelBufferRing lRing = new GLPixelBufferRing(lTexture, 3);
+		assertEquals(32 * 32 * 4, lRing.getSizeInBytes());
+
+		lGL.clear();
+		lRing.upload(lRing.acquire(), lTexture, 8, 8, 1, 4, 4, 0);
+		final RecordingGL.Call lTexSubImage = lGL.getCalls("glTexSubImage2D").get(0);
+		assertEquals(GL4.GL_TEXTURE_2D, lTexSubImage.arg(0));
+		assertEquals(4, lTexSubImage.arg(2));
+		assertEquals(8, lTexSubImage.arg(4));
+		assertEquals(0L, lTexSubImage.arg(8));
+	}
+
+}
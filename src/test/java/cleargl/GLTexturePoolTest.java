@@ -0,0 +1,171 @@
+package cleargl;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import java.util.concurrent.atomic.AtomicLong;
+import org.junit.Test;
+
+public class GLTexturePoolTest {
+
+	private final RecordingGL mGL = new RecordingGL();
+	private final AtomicLong mTime = new AtomicLong();
+
+	private GLTexture acquire(final GLTexturePool pPool,
+			final int pWidth,
+			final int pHeight) {
+		return pPool.acquire(mGL.getGL(),
+				GLTypeEnum.UnsignedByte,
+				4,
+				pWidth,
+				pHeight,
+				1,
+				true,
+				1,
+				8);
+	}
+
+	@Test
+	public void testReuseMatchesStorage() {
+		final GLTexturePool lPool = new GLTexturePool(8,
+				Long.MAX_VALUE,
+				1000,
+				mTime::get);
+		final GLTexture lTexture = acquire(lPool, 64, 32);
+		lPool.release(lTexture);
+		lPool.release(lTexture);
+		assertEquals(1, lPool.getIdleCount());
+		assertEquals(64 * 32 * 4, lPool.getIdleBytes());
+
+		assertNotSame(lTexture, acquire(lPool, 32, 64));
+		assertNotSame(lTexture,
+				lPool.acquire(mGL.getGL(),
+						GLTypeEnum.UnsignedByte,
+						4,
+						64,
+						32,
+						1,
+						true,
+						1,
+						8,
+						true,
+						true));
+		mGL.clear();
+		assertSame(lTexture, acquire(lPool, 64, 32));
+		assertEquals(0, mGL.getCalls("glTexStorage2D").size());
+		assertEquals(0, lPool.getIdleCount());
+		assertEquals(1, lPool.getHitCount());
+		assertEquals(3, lPool.getMissCount());
+	}
+
+	@Test
+	public void testCapacityAndIdleTimeEvictOldest() {
+		final GLTexturePool lPool = new GLTexturePool(2,
+				Long.MAX_VALUE,
+				1000,
+				mTime::get);
+		final GLTexture lFirst = acquire(lPool, 16, 16);
+		final GLTexture lSecond = acquire(lPool, 16, 16);
+		final GLTexture lThird = acquire(lPool, 8, 8);
+		lPool.release(lFirst);
+		mTime.set(600);
+		lPool.release(lSecond);
+		lPool.release(lThird);
+		assertTrue(lFirst.getMemoryAllocation().isReleased());
+		assertEquals(2, lPool.getIdleCount());
+
+		mTime.set(1200);
+		assertEquals(0, lPool.evictIdle());
+		mTime.set(1601);
+		assertEquals(2, lPool.evictIdle());
+		assertTrue(lSecond.getMemoryAllocation().isReleased());
+		assertTrue(lThird.getMemoryAllocation().isReleased());
+		assertEquals(3, lPool.getEvictionCount());
+
+		lPool.setMaxIdleBytes(16 * 16 * 4);
+		final GLTexture lFourth = acquire(lPool, 16, 16);
+		final GLTexture lFifth = acquire(lPool, 8, 8);
+		lPool.release(lFourth);
+		lPool.release(lFifth);
+		assertTrue(lFourth.getMemoryAllocation().isReleased());
+		assertFalse(lFifth.getMemoryAllocation().isReleased());
+
+		lPool.close();
+		assertTrue(lFifth.getMemoryAllocation().isReleased());
+		assertEquals(0, lPool.getIdleBytes());
+	}
+
+	@Test
+	public void testFramebufferResizeReusesAttachments() {
+		final GLTexturePool lPool = new GLTexturePool(8,
+				Long.MAX_VALUE,
+				1000,
+				mTime::get);
+		final GLFramebuffer lFramebuffer = new GLFramebuffer(mGL.getGL(),
+				64,
+				64);
+		lFramebuffer.setTexturePool(lPool);
+		lFramebuffer.setSizeGranularity(1);
+		lFramebuffer.addFloatRGBABuffer(mGL.getGL(), "color", 32);
+		lFramebuffer.addDepthBuffer(mGL.getGL(), "depth", 32);
+
+		lFramebuffer.resize(mGL.getGL(), 80, 64);
+		mGL.clear();
+		lFramebuffer.resize(mGL.getGL(), 64, 64);
+		lFramebuffer.resize(mGL.getGL(), 80, 64);
+		assertEquals(0, mGL.getCalls("glTexStorage2D").size());
+		assertEquals(0, mGL.getCalls("glDeleteTextures").size());
+		assertEquals(4, lPool.getHitCount());
+		assertEquals(2, lPool.getIdleCount());
+
+		lFramebuffer.destroy(mGL.getGL());
+		lPool.close();
+	}
+
+	@Test
+	public void testFramebufferDragKeepsAttachments() {
+		final GLTexturePool lDefault = GLTexturePool.getDefault();
+		final int lDefaultIdle = lDefault.getIdleCount();
+		final GLMemoryRegistry lRegistry = GLMemoryRegistry.getDefault();
+		final long lFramebufferBytes = lRegistry.getTotal(GLMemoryRegistry.Category.Framebuffer);
+
+		final GLFramebuffer lFramebuffer = new GLFramebuffer(mGL.getGL(),
+				64,
+				64);
+		lFramebuffer.addFloatRGBABuffer(mGL.getGL(), "color", 32);
+		lFramebuffer.addDepthBuffer(mGL.getGL(), "depth", 32);
+		mGL.clear();
+
+		// a corner drag, one new size per step; only the first step grows
+		// the attachments, to 128x128
+		for (int i = 1; i <= 20; i++) {
+			lFramebuffer.resize(mGL.getGL(), 64 + 3 * i, 64 + 2 * i);
+			assertEquals(64 + 3 * i, lFramebuffer.getWidth());
+			assertEquals(64 + 2 * i, lFramebuffer.getHeight());
+		}
+		assertEquals(2, mGL.getCalls("glDeleteTextures").size());
+		assertEquals(1, mGL.getCalls("glDeleteFramebuffers").size());
+		assertEquals(128, lFramebuffer.getTextureWidth());
+		assertEquals(128, lFramebuffer.getTextureHeight());
+		assertEquals(lDefaultIdle, lDefault.getIdleCount());
+		assertEquals(lFramebufferBytes + 128 * 128 * (4 * 4 + 4),
+				lRegistry.getTotal(GLMemoryRegistry.Category.Framebuffer));
+
+		// dragging back keeps them as well, until they would be mostly unused
+		final int lColor = lFramebuffer.getTextureId("color");
+		for (int i = 20; i >= 0; i--)
+			lFramebuffer.resize(mGL.getGL(), 64 + 3 * i, 64 + 2 * i);
+		assertEquals(lColor, lFramebuffer.getTextureId("color"));
+		assertEquals(2, mGL.getCalls("glDeleteTextures").size());
+		lFramebuffer.resize(mGL.getGL(), 40, 40);
+		assertEquals(4, mGL.getCalls("glDeleteTextures").size());
+		assertEquals(64, lFramebuffer.getTextureWidth());
+
+		lFramebuffer.destroy(mGL.getGL());
+		assertEquals(lFramebufferBytes,
+				lRegistry.getTotal(GLMemoryRegistry.Category.Framebuffer));
+	}
+
+}
@@ -0,0 +1,136 @@
+package cleargl;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.stream.Collectors;
+import org.junit.Test;
+
+public class GLVolumeSequenceTest {
+
+	private static ByteBuffer volume(final int pValue) {
+		final ByteBuffer lBuffer = ByteBuffer.allocateDirect(8 * 4 * 6);
+		for (int i = 0; i < lBuffer.capacity(); i++)
+			lBuffer.put(i, (byte) (pValue + i));
+		return lBuffer;
+	}
+
+	private static GLVolumeSequence create(final RecordingGL pGL,
+			final Executor pExecutor) {
+		return new GLVolumeSequence(pGL.getGL(),
+				GLTypeEnum.UnsignedByte,
+				2,
+				8,
+				4,
+				6,
+				true,
+				2,
+				3,
+				pExecutor);
+	}
+
+	@Test
+	public void testSlabsAreSpreadOverFramesBeforeSwap() {
+		final RecordingGL lGL = new RecordingGL();
+		try (GLVolumeSequence lSequence = create(lGL, null)) {
+			lSequence.setSlabsPerFrame(2);
+			final int lFrontId = lSequence.getFrontTexture(0).getId();
+			lGL.clear();
+
+			assertTrue(lSequence.submit(7, volume(0), volume(100)));
+			// three slabs per channel, two per frame
+			assertFalse(lSequence.update());
+			assertEquals(7, lSequence.getUploadingTimePoint());
+			assertFalse(lSequence.update());
+			assertFalse(lSequence.update());
+			assertEquals(-1, lSequence.getFrontTimePoint());
+			assertTrue(lSequence.update());
+			assertEquals(7, lSequence.getFrontTimePoint());
+			assertFalse(lSequence.isUploading());
+			assertNotEquals(lFrontId, lSequence.getFrontTexture(0).getId());
+
+			final List<RecordingGL.Call> lUploads = lGL.getCalls("glTexSubImage3D");
+			assertEquals(6, lUploads.size());
+			assertEquals(Arrays.asList(0, 2, 4, 0, 2, 4),
+					lUploads.stream()
+							.map(c -> (Integer) c.arg(4))
+							.collect(Collectors.toList()));
+			assertEquals(6, lGL.getCalls("glMapBufferRange").size());
+			assertEquals(1, lSequence.getSwapCount());
+		}
+	}
+
+	@Test
+	public void testLatestWaitingTimePointWins() throws Exception {
+		final RecordingGL lGL = new RecordingGL();
+		final ExecutorService lExecutor = Executors.newSingleThreadExecutor();
+		try (GLVolumeSequence lSequence = create(lGL, lExecutor)) {
+			lSequence.setSlabsPerFrame(3);
+			assertTrue(lSequence.submit(1, volume(0), volume(0)));
+			assertFalse(lSequence.submit(2, volume(1), volume(1)));
+			assertEquals(1, lSequence.getDroppedCount());
+
+			lSequence.update();
+			// a third timepoint waits while the second uploads
+			assertTrue(lSequence.submit(3, volume(2), volume(2)));
+			final long lDeadline = System.currentTimeMillis() + 10000;
+			while (lSequence.getFrontTimePoint() != 3 && System.currentTimeMillis() < lDeadline) {
+				lSequence.update();
+				Thread.sleep(1);
+			}
+			assertEquals(3, lSequence.getFrontTimePoint());
+			assertEquals(2, lSequence.getSwapCount());
+		} finally {
+			lExecutor.shutdown();
+		}
+	}
+
+	@Test
+	public void testFailedFillDropsTimePoint() {
+		final RecordingGL lGL = new RecordingGL();
+		final List<Runnable> lFills = new ArrayList<>();
+		try (GLVolumeSequence lSequence = create(lGL, lFills::add)) {
+			lSequence.setSlabsPerFrame(3);
+			final ByteBuffer lBroken = volume(0);
+			assertTrue(lSequence.submit(1, lBroken, volume(0)));
+			lSequence.update();
+			assertEquals(3, lFills.size());
+
+			// the buffer changes under the copies, only the first slab fits
+			lBroken.limit(0);
+			lFills.forEach(Runnable::run);
+			lFills.clear();
+			try {
+				lSequence.update();
+				fail();
+			} catch (final CompletionException e) {
+				assertTrue(e.getCause() instanceof IllegalArgumentException);
+			}
+			assertFalse(lSequence.isUploading());
+			assertEquals(1, lSequence.getDroppedCount());
+
+			// all pixel buffers are available to the next timepoint
+			assertTrue(lSequence.submit(2, volume(1), volume(1)));
+			lSequence.update();
+			assertEquals(3, lFills.size());
+			for (int i = 0; i < 10 && lSequence.getFrontTimePoint() != 2; i++) {
+				lFills.forEach(Runnable::run);
+				lFills.clear();
+				lSequence.update();
+			}
+			assertEquals(2, lSequence.getFrontTimePoint());
+			assertEquals(1, lSequence.getSwapCount());
+		}
+	}
+
+}
@@ -0,0 +1,141 @@
+package cleargl;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.stream.Collectors;
+import com.jogamp.opengl.GL3ES3;
+import com.jogamp.opengl.GL4;
+
+/**
+ * GL4 stand-in for tests without a GL context. Every call is recorded with its
+ * arguments; object names are generated, buffers can be mapped, and fences
+ * report {@link #setFencesSignaled signaled} or not. All other calls return
+ * zero, false or null.
+ */
+public class RecordingGL implements InvocationHandler, GLInterface {
+
+	public static class Call {
+		public final String name;
+		public final Object[] args;
+
+		Call(final String pName, final Object[] pArgs) {
+			name = pName;
+			args = pArgs == null ? new Object[0] : pArgs;
+		}
+
+		public Object arg(final int pIndex) {
+			return args[pIndex];
+		}
+
+		@Override
+		public String toString() {
+			return name + Arrays.toString(args);
+		}
+	}
+
+	private final GL4 mGL;
+	private final List<Call> mCalls = new ArrayList<>();
+	private int mNextName = 1;
+	private long mNextFence = 1;
+	private boolean mFencesSignaled = true;
+
+	public RecordingGL() {
+		mGL = (GL4) Proxy.newProxyInstance(GL4.class.getClassLoader(),
+				new Class<?>[]{GL4.class},
+				this);
+	}
+
+	@Override
+	public GL4 getGL() {
+		return mGL;
+	}
+
+	@Override
+	public int getId() {
+		return 0;
+	}
+
+	public void setFencesSignaled(final boolean pFencesSignaled) {
+		mFencesSignaled = pFencesSignaled;
+	}
+
+	public synchronized List<Call> getCalls() {
+		return new ArrayList<>(mCalls);
+	}
+
+	public synchronized List<Call> getCalls(final String pName) {
+		return mCalls.stream()
+				.filter(c -> c.name.equals(pName))
+				.collect(Collectors.toList());
+	}
+
+	public synchronized List<String> getCallNames() {
+		return mCalls.stream().map(c -> c.name).collect(Collectors.toList());
+	}
+
+	public synchronized void clear() {
+		mCalls.clear();
+	}
+
+	@Override
+	public synchronized Object invoke(final Object pProxy,
+			final Method pMethod,
+			final Object[] pArgs) {
+		final String lName = pMethod.getName();
+		if (pMethod.getDeclaringClass() == Object.class) {
+			switch (lName) {
+				case "equals":
+					return pProxy == pArgs[0];
+				case "hashCode":
+					return System.identityHashCode(pProxy);
+				default:
+					return "RecordingGL";
+			}
+		}
+		if (lName.startsWith("getGL") || lName.equals("getDownstreamGL")
+				|| lName.equals("getRootGL"))
+			return mGL;
+		if (lName.startsWith("isGL"))
+			return true;
+
+		mCalls.add(new Call(lName, pArgs));
+
+		if (lName.startsWith("glGen") && pArgs.length == 3
+				&& pArgs[1] instanceof int[]) {
+			final int[] lNames = (int[]) pArgs[1];
+			for (int i = 0; i < (Integer) pArgs[0]; i++)
+				lNames[(Integer) pArgs[2] + i] = mNextName++;
+			return null;
+		}
+		switch (lName) {
+			case "glFenceSync":
+				return mNextFence++;
+			case "glClientWaitSync":
+				return mFencesSignaled ? GL3ES3.GL_ALREADY_SIGNALED
+						: GL3ES3.GL_TIMEOUT_EXPIRED;
+			case "glMapBufferRange":
+				return ByteBuffer.allocateDirect((int) (long) (Long) pArgs[2]);
+			case "glUnmapBuffer":
+				return true;
+		}
+
+		final Class<?> lReturnType = pMethod.getReturnType();
+		if (lReturnType == boolean.class)
+			return false;
+		if (lReturnType == int.class)
+			return 0;
+		if (lReturnType == long.class)
+			return 0L;
+		if (lReturnType == float.class)
+			return 0f;
+		if (lReturnType == double.class)
+			return 0d;
+		return null;
+	}
+
+}
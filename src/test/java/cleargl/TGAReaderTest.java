@@ -0,0 +1,200 @@
+package cleargl;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
+import org.junit.Test;
+
+public class TGAReaderTest {
+
+	/**
+	 * Returns a few bytes per read and nothing from available(), like a
+	 * network or archive stream.
+	 */
+	private static InputStream trickle(final byte[] pData) {
+		return new ByteArrayInputStream(pData) {
+			@Override
+			public synchronized int read(final byte[] pBuffer,
+					final int pOffset,
+					final int pLength) {
+				return super.read(pBuffer, pOffset, Math.min(pLength, 7));
+			}
+
+			@Override
+			public synchronized int available() {
+				return 0;
+			}
+		};
+	}
+
+	@Test
+	public void testStreamingDecodeMatchesPixelArrays() throws IOException {
+		final int[][] lTypes = {{TGATestImages.COLORMAP, 24},
+				{TGATestImages.COLORMAP_RLE, 32},
+				{TGATestImages.RGB, 24},
+				{TGATestImages.RGB, 32},
+				{TGATestImages.RGB_RLE, 24},
+				{TGATestImages.RGB_RLE, 32},
+				{TGATestImages.GRAYSCALE, 8},
+				{TGATestImages.GRAYSCALE_RLE, 16}};
+		final int lWidth = 45, lHeight = 23;
+		for (final int[] lType : lTypes)
+			for (int lOrigin = 0; lOrigin < 4; lOrigin++) {
+				final byte[] lFile = TGATestImages.create(lType[0],
+						lType[1],
+						lWidth,
+						lHeight,
+						(lOrigin & 1) != 0,
+						(lOrigin & 2) != 0,
+						7);
+				final int[] lPixels = TGAReader.read(lFile, TGAReader.ABGR);
+				final ByteBuffer lData = TGAReader.read(trickle(lFile), 4);
+				assertEquals(lWidth * lHeight * 4, lData.remaining());
+
+				// pixel arrays are top down, GL rows bottom up
+				for (int y = 0; y < lHeight; y++)
+					for (int x = 0; x < lWidth; x++) {
+						final int lPixel = lPixels[(lHeight - 1 - y) * lWidth + x];
+						for (int c = 0; c < 4; c++)
+							assertEquals(lType[0] + "/" + lType[1]
+									+ " at "
+									+ x
+									+ ","
+									+ y,
+									(lPixel >>> (8 * c)) & 0xFF,
+									lData.get(4 * (y * lWidth + x) + c) & 0xFF);
+					}
+			}
+	}
+
+	@Test
+	public void testRightOriginMirrorsRows() throws IOException {
+		for (final int lType : new int[]{TGATestImages.RGB,
+				TGATestImages.RGB_RLE}) {
+			final int[] lLeft = TGAReader.read(TGATestImages.create(lType,
+					32,
+					37,
+					9,
+					true,
+					false,
+					5), TGAReader.ABGR);
+			final byte[] lRightFile = TGATestImages.create(lType,
+					32,
+					37,
+					9,
+					true,
+					true,
+					5);
+			final int[] lRight = TGAReader.read(lRightFile, TGAReader.ABGR);
+			final ByteBuffer lData = TGAReader.read(new ByteArrayInputStream(lRightFile),
+					4);
+			for (int y = 0; y < 9; y++)
+				for (int x = 0; x < 37; x++) {
+					assertEquals(lLeft[y * 37 + 36 - x], lRight[y * 37 + x]);
+					assertEquals(lRight[y * 37 + x] & 0xFF,
+							lData.get(4 * ((8 - y) * 37 + x)) & 0xFF);
+				}
+		}
+	}
+
+	@Test
+	public void testFewerChannelsAndRowPadding() throws IOException {
+		final byte[] lFile = TGATestImages.create(TGATestImages.RGB_RLE,
+				32,
+				20,
+				10,
+				true,
+				3);
+		final int[] lPixels = TGAReader.read(lFile, TGAReader.ABGR);
+
+		final InputStream lInput = new ByteArrayInputStream(lFile);
+		final TGAReader.Header lHeader = TGAReader.readHeader(lInput);
+		assertEquals(4, lHeader.getChannels());
+		assertEquals(true, lHeader.isUpperOrigin());
+		final ByteBuffer lData = ByteBuffer.allocateDirect(2 + 32 * 10 * 3);
+		lData.position(2);
+		TGAReader.read(lInput, lHeader, lData, 3, 32);
+		assertEquals(2, lData.position());
+
+		for (int y = 0; y < 10; y++) {
+			for (int x = 0; x < 20; x++)
+				for (int c = 0; c < 3; c++)
+					assertEquals((lPixels[(9 - y) * 20 + x] >>> (8 * c)) & 0xFF,
+							lData.get(2 + 3 * (32 * y + x) + c) & 0xFF);
+			// padding is left alone
+			assertEquals(0, lData.get(2 + 3 * (32 * y + 20)));
+		}
+
+		final ByteBuffer lRed = TGAReader.read(new ByteArrayInputStream(lFile), 1);
+		assertEquals(lPixels[9 * 20] & 0xFF, lRed.get(0) & 0xFF);
+	}
+
+	@Test
+	public void testRowBandsMatchReferenceDecoder() throws IOException {
+		final int[][] lTypes = {{TGATestImages.COLORMAP, 24},
+				{TGATestImages.COLORMAP, 32},
+				{TGATestImages.COLORMAP_RLE, 24},
+				{TGATestImages.COLORMAP_RLE, 32},
+				{TGATestImages.RGB, 24},
+				{TGATestImages.RGB, 32},
+				{TGATestImages.RGB_RLE, 24},
+				{TGATestImages.RGB_RLE, 32},
+				{TGATestImages.GRAYSCALE, 8},
+				{TGATestImages.GRAYSCALE, 16},
+				{TGATestImages.GRAYSCALE_RLE, 8},
+				{TGATestImages.GRAYSCALE_RLE, 16}};
+		// two bands of 35 rows, so that packets across the band boundary are
+		// resumed
+		final ForkJoinPool lPool = new ForkJoinPool(4);
+		try {
+			for (final int[] lType : lTypes)
+				for (int lOrigin = 0; lOrigin < 4; lOrigin++) {
+					final byte[] lFile = TGATestImages.create(lType[0],
+							lType[1],
+							1000,
+							70,
+							(lOrigin & 1) != 0,
+							(lOrigin & 2) != 0,
+							11);
+					final int[] lExpected = TGAReferenceReader.read(lFile,
+							TGAReader.ARGB);
+					assertArrayEquals(lType[0] + "/" + lType[1],
+							lExpected,
+							TGAReader.read(lFile, TGAReader.ARGB, lPool));
+					assertArrayEquals(lExpected,
+							TGAReader.read(lFile, TGAReader.ARGB));
+				}
+		} finally {
+			lPool.shutdown();
+		}
+	}
+
+	@Test(expected = IOException.class)
+	public void testTruncatedRLEFails() throws IOException {
+		final byte[] lFile = TGATestImages.create(TGATestImages.RGB_RLE,
+				24,
+				64,
+				64,
+				false,
+				1);
+		TGAReader.read(Arrays.copyOf(lFile, lFile.length - 10),
+				TGAReader.ABGR);
+	}
+
+	@Test(expected = IOException.class)
+	public void testTruncatedDataFails() throws IOException {
+		final byte[] lFile = TGATestImages.create(TGATestImages.RGB,
+				24,
+				16,
+				16,
+				false,
+				1);
+		TGAReader.read(new ByteArrayInputStream(lFile, 0, lFile.length - 10), 3);
+	}
+
+}
@@ -0,0 +1,142 @@
+package cleargl;
+
+import java.io.ByteArrayOutputStream;
+import java.util.Random;
+
+/**
+ * Synthetic TGA files of every type TGAReader supports, for tests and
+ * benchmarks. The left half of each image is made of flat 16x16 tiles and the
+ * right half is noise, so RLE images contain both run and raw packets.
+ */
+public class TGATestImages {
+
+	public static final int COLORMAP = 1;
+	public static final int RGB = 2;
+	public static final int GRAYSCALE = 3;
+	public static final int COLORMAP_RLE = 9;
+	public static final int RGB_RLE = 10;
+	public static final int GRAYSCALE_RLE = 11;
+
+	/**
+	 * Creates a TGA file. pDepth is the palette depth (24 or 32) for colormap
+	 * images and the pixel depth otherwise (24 or 32 for RGB, 8 or 16 for
+	 * grayscale).
+	 */
+	public static byte[] create(final int pType,
+			final int pDepth,
+			final int pWidth,
+			final int pHeight,
+			final boolean pUpperOrigin,
+			final long pSeed) {
+		return create(pType, pDepth, pWidth, pHeight, pUpperOrigin, false, pSeed);
+	}
+
+	/**
+	 * Creates a TGA file with the given origin. Only the descriptor depends on
+	 * the origin, the stored pixels are the same for all four.
+	 */
+	public static byte[] create(final int pType,
+			final int pDepth,
+			final int pWidth,
+			final int pHeight,
+			final boolean pUpperOrigin,
+			final boolean pRightOrigin,
+			final long pSeed) {
+		final boolean lColormap = (pType & 7) == COLORMAP;
+		final boolean lRLE = (pType & 8) != 0;
+		final int lPixelDepth = lColormap ? 8 : pDepth;
+		final int lElementSize = lPixelDepth / 8;
+
+		final ByteArrayOutputStream lOut = new ByteArrayOutputStream();
+		final byte[] lHeader = new byte[18];
+		lHeader[1] = (byte) (lColormap ? 1 : 0);
+		lHeader[2] = (byte) pType;
+		if (lColormap) {
+			lHeader[6] = 1; // 256 entries
+			lHeader[7] = (byte) pDepth;
+		}
+		lHeader[12] = (byte) pWidth;
+		lHeader[13] = (byte) (pWidth >> 8);
+		lHeader[14] = (byte) pHeight;
+		lHeader[15] = (byte) (pHeight >> 8);
+		lHeader[16] = (byte) lPixelDepth;
+		lHeader[17] = (byte) ((pUpperOrigin ? 0x20 : 0) | (pRightOrigin ? 0x10 : 0)
+				| (pDepth == 32 ? 8 : 0));
+		lOut.write(lHeader, 0, lHeader.length);
+
+		if (lColormap)
+			for (int i = 0; i < 256; i++)
+				for (int c = 0; c < pDepth / 8; c++)
+					lOut.write(c == 3 ? 0xFF : i * (c + 1));
+
+		final byte[] lPixels = createPixels(pWidth, pHeight, lElementSize, pSeed);
+		if (lRLE)
+			encodeRLE(lPixels, lElementSize, lOut);
+		else
+			lOut.write(lPixels, 0, lPixels.length);
+
+		return lOut.toByteArray();
+	}
+
+	private static byte[] createPixels(final int pWidth,
+			final int pHeight,
+			final int pElementSize,
+			final long pSeed) {
+		final Random lRandom = new Random(pSeed);
+		final byte[] lPixels = new byte[pWidth * pHeight * pElementSize];
+		for (int y = 0; y < pHeight; y++)
+			for (int x = 0; x < pWidth; x++) {
+				final int lValue = x < pWidth / 2 ? ((x >> 4) + (y >> 4)) * 37
+						: lRandom.nextInt();
+				final int lOffset = (y * pWidth + x) * pElementSize;
+				for (int c = 0; c < pElementSize; c++)
+					lPixels[lOffset + c] = (byte) (c == 3 ? 0xFF : lValue * (2 * c + 1));
+			}
+		return lPixels;
+	}
+
+	private static void encodeRLE(final byte[] pPixels,
+			final int pElementSize,
+			final ByteArrayOutputStream pOut) {
+		final int lCount = pPixels.length / pElementSize;
+		int i = 0;
+		while (i < lCount) {
+			final int lRun = runLength(pPixels, pElementSize, i, lCount);
+			if (lRun > 1) {
+				pOut.write(0x80 | (lRun - 1));
+				pOut.write(pPixels, i * pElementSize, pElementSize);
+				i += lRun;
+			} else {
+				int lRaw = 1;
+				while (i + lRaw < lCount && lRaw < 128
+						&& runLength(pPixels, pElementSize, i + lRaw, lCount) == 1)
+					lRaw++;
+				pOut.write(lRaw - 1);
+				pOut.write(pPixels, i * pElementSize, lRaw * pElementSize);
+				i += lRaw;
+			}
+		}
+	}
+
+	private static int runLength(final byte[] pPixels,
+			final int pElementSize,
+			final int pStart,
+			final int pCount) {
+		int lRun = 1;
+		while (pStart + lRun < pCount && lRun < 128
+				&& samePixel(pPixels, pElementSize, pStart, pStart + lRun))
+			lRun++;
+		return lRun;
+	}
+
+	private static boolean samePixel(final byte[] pPixels,
+			final int pElementSize,
+			final int pA,
+			final int pB) {
+		for (int c = 0; c < pElementSize; c++)
+			if (pPixels[pA * pElementSize + c] != pPixels[pB * pElementSize + c])
+				return false;
+		return true;
+	}
+
+}
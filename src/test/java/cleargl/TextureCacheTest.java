@@ -0,0 +1,89 @@
+package cleargl;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertTrue;
+import java.awt.image.BufferedImage;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.util.List;
+import javax.imageio.ImageIO;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import cleargl.util.image.TextureContainer;
+
+public class TextureCacheTest {
+
+	@Rule
+	public TemporaryFolder mFolder = new TemporaryFolder();
+
+	@Test
+	public void testWarmLoadUploadsStoredLevels() throws IOException {
+		final BufferedImage lImage = new BufferedImage(32,
+				16,
+				BufferedImage.TYPE_INT_ARGB);
+		for (int y = 0; y < 16; y++)
+			for (int x = 0; x < 32; x++)
+				lImage.setRGB(x, y, 0xff000000 | (x * 8) << 16 | y * 16);
+		final File lFile = mFolder.newFile("gradient.png");
+		ImageIO.write(lImage, "png", lFile);
+
+		final TextureCache lCache = new TextureCache(mFolder.getRoot()
+				.toPath()
+				.resolve("cache"));
+		final RecordingGL lGL = new RecordingGL();
+		final GLTexture lCold = lCache.load(lGL.getGL(),
+				lFile.getPath(),
+				true,
+				true,
+				8);
+		assertEquals(1, lCache.getMissCount());
+		final List<RecordingGL.Call> lColdUploads = lGL.getCalls("glTexSubImage2D");
+		final Path lEntry = lCache.getEntryPath(lFile.toPath(), true, 8);
+		assertTrue(Files.exists(lEntry));
+		lGL.clear();
+
+		final GLTexture lWarm = lCache.load(lGL.getGL(),
+				lFile.getPath(),
+				true,
+				true,
+				8);
+		assertEquals(1, lCache.getHitCount());
+		assertEquals(lCold.getInternalFormat(), lWarm.getInternalFormat());
+		assertEquals(lCold.getMipMapLevels(), lWarm.getMipMapLevels());
+		assertTrue(lWarm.getsRGB());
+
+		// every level goes up once, with the bytes of the cold load
+		final List<RecordingGL.Call> lWarmUploads = lGL.getCalls("glTexSubImage2D");
+		assertEquals(lCold.getMipMapLevels(), lWarmUploads.size());
+		for (int l = 0; l < lWarmUploads.size(); l++) {
+			assertEquals(l, lWarmUploads.get(l).arg(1));
+			assertEquals(((ByteBuffer) lColdUploads.get(l).arg(8)).rewind(),
+					((ByteBuffer) lWarmUploads.get(l).arg(8)).rewind());
+		}
+
+		// a newer source gets a new entry
+		Files.setLastModifiedTime(lFile.toPath(),
+				FileTime.fromMillis(lFile.lastModified() + 10000));
+		assertNotEquals(lEntry, lCache.getEntryPath(lFile.toPath(), true, 8));
+		lCache.clear();
+		assertTrue(!Files.exists(lEntry));
+		lCold.close();
+		lWarm.close();
+	}
+
+	@Test(expected = IOException.class)
+	public void testRejectsTruncatedContainer() throws IOException {
+		final Path lPath = mFolder.newFile("broken" + TextureContainer.SUFFIX)
+				.toPath();
+		Files.write(lPath, "CLGLTEX1".getBytes());
+		TextureContainer.open(lPath);
+	}
+
+}
@@ -0,0 +1,87 @@
+package cleargl;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import java.awt.image.BufferedImage;
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import javax.imageio.ImageIO;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class TextureLoaderTest {
+
+	@Rule
+	public TemporaryFolder mFolder = new TemporaryFolder();
+
+	private String writeImage(final int pWidth,
+			final int pHeight,
+			final int pTopLeftArgb) throws IOException {
+		final BufferedImage lImage = new BufferedImage(pWidth,
+				pHeight,
+				BufferedImage.TYPE_INT_ARGB);
+		lImage.setRGB(0, 0, pTopLeftArgb);
+		final File lFile = mFolder.newFile(pWidth + "x" + pHeight + ".png");
+		ImageIO.write(lImage, "png", lFile);
+		return lFile.getPath();
+	}
+
+	@Test
+	public void testLoadsConcurrently() throws IOException {
+		final List<String> lFiles = new ArrayList<>();
+		for (int i = 1; i <= 6; i++)
+			lFiles.add(writeImage(10 * i, 3 * i, 0xff102030));
+
+		try (TextureLoader lLoader = new TextureLoader(3)) {
+			final List<CompletableFuture<TextureLoader.TextureData>> lFutures = lLoader.loadAll(lFiles);
+			for (int i = 1; i <= 6; i++) {
+				final TextureLoader.TextureData lData = lFutures.get(i - 1)
+						.join();
+				assertEquals(10 * i, lData.getImageWidth());
+				assertEquals(3 * i, lData.getImageHeight());
+				assertEquals(Integer.highestOneBit(10 * i - 1) * 2,
+						lData.getWidth());
+				assertEquals(4, lData.getChannels());
+				assertEquals(GLTypeEnum.UnsignedByte, lData.getType());
+				assertEquals(lData.getWidth() * lData.getHeight() * 4,
+						lData.getData().remaining());
+
+				// top left pixel of the image ends up in the last image row
+				final int lOffset = 4 * lData.getWidth() * (3 * i - 1);
+				assertEquals(0x10, lData.getData().get(lOffset));
+				assertEquals(0x20, lData.getData().get(lOffset + 1));
+				assertEquals(0x30, lData.getData().get(lOffset + 2));
+			}
+		}
+	}
+
+	@Test
+	public void testMissingFileFailsFuture() {
+		try (TextureLoader lLoader = new TextureLoader(1)) {
+			lLoader.load(new File(mFolder.getRoot(), "missing.png").getPath())
+					.join();
+		} catch (final CompletionException e) {
+			assertTrue(e.getCause() instanceof IOException);
+			return;
+		}
+		throw new AssertionError("expected the future to fail");
+	}
+
+	@Test
+	public void testMipMapLevelsReachOnePixel() throws IOException {
+		try (TextureLoader lLoader = new TextureLoader(1)) {
+			final TextureLoader.TextureData lData = lLoader.load(writeImage(1024,
+					300,
+					0xff102030)).join();
+			assertEquals(11, lData.getMipMapLevels(true, 32));
+			assertEquals(4, lData.getMipMapLevels(true, 4));
+			assertEquals(1, lData.getMipMapLevels(false, 32));
+		}
+	}
+
+}
@@ -0,0 +1,89 @@
+package cleargl.util.culling;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import java.util.BitSet;
+import java.util.Random;
+import org.junit.Test;
+
+import cleargl.GLMatrix;
+
+public class FrustumCullerTest {
+
+	private static Frustum createFrustum() {
+		final GLMatrix lProjection = new GLMatrix().setPerspectiveProjectionMatrix((float) Math.toRadians(60),
+				1.5f,
+				0.1f,
+				100.0f);
+		final GLMatrix lView = new GLMatrix().setCamera(0.0f, 0.0f, 10.0f,
+				0.0f, 0.0f, 0.0f,
+				0.0f, 1.0f, 0.0f);
+		return new Frustum(GLMatrix.mult(lProjection, lView, new GLMatrix()));
+	}
+
+	@Test
+	public void testPlanes() {
+		final Frustum lFrustum = createFrustum();
+
+		assertTrue(lFrustum.containsPoint(0, 0, 0));
+		assertTrue(lFrustum.containsPoint(0, 0, 9.8f));
+		assertFalse(lFrustum.containsPoint(0, 0, 10.5f));
+		assertFalse(lFrustum.containsPoint(0, 0, -95.0f));
+		assertFalse(lFrustum.containsPoint(20.0f, 0, 0));
+		assertFalse(lFrustum.containsPoint(0, -20.0f, 0));
+
+		assertTrue(lFrustum.intersectsSphere(20.0f, 0, 0, 16.0f));
+		assertTrue(lFrustum.intersectsBox(-30, -30, -30, 30, 30, 30));
+		assertFalse(lFrustum.intersectsBox(20, 20, 0, 21, 21, 1));
+	}
+
+	@Test
+	public void testCullMatchesScalarTests() {
+		final Frustum lFrustum = createFrustum();
+		final Random lRandom = new Random(42);
+
+		// large enough to take the parallel path, with a partial last word
+		final int lCount = FrustumCuller.PARALLEL_THRESHOLD * 3 + 17;
+		final BoundingBoxArray lBoxes = new BoundingBoxArray(lCount);
+		final BoundingSphereArray lSpheres = new BoundingSphereArray(lCount);
+		for (int i = 0; i < lCount; i++) {
+			final float x = 60 * lRandom.nextFloat() - 30;
+			final float y = 60 * lRandom.nextFloat() - 30;
+			final float z = 120 * lRandom.nextFloat() - 100;
+			final float s = lRandom.nextFloat();
+			lBoxes.add(x - s, y - s, z - s, x + s, y + s, z + s);
+			lSpheres.add(x, y, z, s);
+		}
+
+		final long[] lVisibility = new long[FrustumCuller.getVisibilityWords(lCount) + 1];
+		lVisibility[lVisibility.length - 1] = -1;
+		final int lVisibleBoxes = FrustumCuller.cull(lFrustum, lBoxes, lVisibility);
+		assertEquals(-1, lVisibility[lVisibility.length - 1]);
+
+		int lExpected = 0;
+		for (int i = 0; i < lCount; i++) {
+			final boolean lVisible = lFrustum.intersectsBox(lBoxes.getMinX()[i],
+					lBoxes.getMinY()[i],
+					lBoxes.getMinZ()[i],
+					lBoxes.getMaxX()[i],
+					lBoxes.getMaxY()[i],
+					lBoxes.getMaxZ()[i]);
+			assertEquals(lVisible, FrustumCuller.isVisible(lVisibility, i));
+			if (lVisible)
+				lExpected++;
+		}
+		assertEquals(lExpected, lVisibleBoxes);
+		assertTrue(lVisibleBoxes > 0 && lVisibleBoxes < lCount);
+
+		final BitSet lVisibleSpheres = FrustumCuller.cull(lFrustum, lSpheres);
+		for (int i = 0; i < lCount; i++)
+			assertEquals(lFrustum.intersectsSphere(lSpheres.getX()[i],
+					lSpheres.getY()[i],
+					lSpheres.getZ()[i],
+					lSpheres.getRadius()[i]),
+					lVisibleSpheres.get(i));
+		assertEquals(-1, lVisibleSpheres.nextSetBit(lCount));
+	}
+
+}
@@ -0,0 +1,136 @@
+package cleargl.util.image;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.FloatBuffer;
+import java.nio.ShortBuffer;
+import java.util.Random;
+import org.junit.Test;
+
+import cleargl.GLTexture;
+import cleargl.GLTypeEnum;
+import cleargl.RecordingGL;
+import com.jogamp.opengl.GL4;
+
+public class HalfFloatConverterTest {
+
+	private static int half(final float pValue) {
+		return HalfFloatConverter.toHalf(pValue) & 0xffff;
+	}
+
+	@Test
+	public void testSpecialValues() {
+		assertEquals(0x0000, half(0f));
+		assertEquals(0x8000, half(-0f));
+		assertEquals(0x3c00, half(1f));
+		assertEquals(0xc000, half(-2f));
+		assertEquals(0x7bff, half(65504f));
+		assertEquals(0x7bff, half(65519f));
+		assertEquals(0x7c00, half(65520f));
+		assertEquals(0x7c00, half(1e10f));
+		assertEquals(0xfc00, half(Float.NEGATIVE_INFINITY));
+		assertEquals(0x7e00, half(Float.NaN));
+		// smallest normal and subnormals, ties to even
+		assertEquals(0x0400, half(0x1p-14f));
+		assertEquals(0x0001, half(0x1p-24f));
+		assertEquals(0x0000, half(0x1p-25f));
+		assertEquals(0x0002, half(0x3p-25f));
+		assertEquals(0x0000, half(1e-10f));
+		// 1 + 2^-11 lies halfway between 1 and the next half
+		assertEquals(0x3c00, half(1f + 0x1p-11f));
+		assertEquals(0x3c02, half(1f + 0x3p-11f));
+	}
+
+	@Test
+	public void testAllHalvesRoundTrip() {
+		for (int h = 0; h < 0x10000; h++) {
+			final float lValue = HalfFloatConverter.toFloat((short) h);
+			if ((h & 0x7c00) == 0x7c00 && (h & 0x3ff) != 0)
+				assertTrue(Float.isNaN(lValue));
+			else
+				assertEquals(Integer.toHexString(h), h, half(lValue));
+		}
+		assertEquals(65504f, HalfFloatConverter.toFloat((short) 0x7bff), 0);
+		assertEquals(-0x1p-24f, HalfFloatConverter.toFloat((short) 0x8001), 0);
+	}
+
+	@Test
+	public void testRandomValuesRoundToNearest() {
+		final Random lRandom = new Random(11);
+		for (int i = 0; i < 100000; i++) {
+			final float lValue = (float) ((lRandom.nextDouble() - 0.5) * Math.pow(2,
+					lRandom.nextInt(40) - 26));
+			final int lHalf = half(lValue);
+			final float lRounded = HalfFloatConverter.toFloat((short) lHalf);
+			// no neighbouring half is closer
+			for (final int lNeighbour : new int[]{lHalf - 1, lHalf + 1}) {
+				if ((lNeighbour & 0x7fff) >= 0x7c00 || (lNeighbour & 0x8000) != (lHalf & 0x8000))
+					continue;
+				assertTrue(lValue + " " + Integer.toHexString(lHalf),
+						Math.abs(lValue - lRounded) <= Math.abs(lValue - HalfFloatConverter.toFloat((short) lNeighbour)));
+			}
+			if (Math.abs(lValue) >= 0x1p-14f)
+				assertEquals(lValue, lRounded, Math.abs(lValue) * 0x1p-11f);
+		}
+	}
+
+	@Test
+	public void testBufferConversion() {
+		final int lCount = 3 * HalfFloatConverter.PARALLEL_THRESHOLD + 17;
+		final ByteOrder lForeign = ByteOrder.nativeOrder() == ByteOrder.LITTLE_ENDIAN ? ByteOrder.BIG_ENDIAN
+				: ByteOrder.LITTLE_ENDIAN;
+		final ByteBuffer lSource = ByteBuffer.allocateDirect(4 * (lCount + 3))
+				.order(lForeign);
+		final Random lRandom = new Random(3);
+		for (int i = 0; i < lCount + 3; i++)
+			lSource.putFloat(4 * i, lRandom.nextFloat() * 1000 - 500);
+		lSource.position(12);
+
+		final ByteBuffer lHalves = ByteBuffer.allocateDirect(2 * (lCount + 5))
+				.order(ByteOrder.nativeOrder());
+		lHalves.position(10);
+		HalfFloatConverter.toHalf(lSource, lHalves);
+		assertEquals(12, lSource.position());
+		assertEquals(10, lHalves.position());
+		for (int i = 0; i < lCount; i++)
+			assertEquals(HalfFloatConverter.toHalf(lSource.getFloat(4 * (i + 3))),
+					lHalves.getShort(2 * (i + 5)));
+
+		final FloatBuffer lFloats = FloatBuffer.allocate(lCount);
+		final ShortBuffer lHalfView = lHalves.asShortBuffer();
+		HalfFloatConverter.toFloat(lHalfView, lFloats);
+		for (int i = 0; i < lCount; i++)
+			assertEquals(lSource.getFloat(4 * (i + 3)), lFloats.get(i), 0.25f);
+	}
+
+	@Test
+	public void testHalfFloatTextureUpload() {
+		final RecordingGL lGL = new RecordingGL();
+		final GLTexture lTexture = new GLTexture(lGL.getGL(),
+				GLTypeEnum.HalfFloat,
+				1,
+				8,
+				4,
+				2,
+				true,
+				1);
+		assertEquals(GL4.GL_R16F, lTexture.getInternalFormat());
+		assertEquals(16, lTexture.getBitsPerChannel());
+		assertEquals(8 * 4 * 2 * 2, lTexture.getSizeInBytes());
+
+		final FloatBuffer lData = FloatBuffer.allocate(8 * 4 * 2);
+		for (int i = 0; i < lData.capacity(); i++)
+			lData.put(i, i * 0.5f);
+		lTexture.copyFromFloats(lData);
+
+		final RecordingGL.Call lUpload = lGL.getCalls("glTexSubImage3D").get(0);
+		assertEquals(GL4.GL_HALF_FLOAT, lUpload.arg(9));
+		final ByteBuffer lUploaded = (ByteBuffer) lUpload.arg(10);
+		assertEquals(8 * 4 * 2 * 2, lUploaded.remaining());
+		assertEquals(HalfFloatConverter.toHalf(31.5f), lUploaded.getShort(2 * 63));
+		lTexture.close();
+	}
+
+}
@@ -0,0 +1,222 @@
+package cleargl.util.image;
+
+import static org.junit.Assert.assertEquals;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.List;
+import java.util.Random;
+import org.junit.Test;
+
+import cleargl.GLTexture;
+import cleargl.GLTypeEnum;
+import cleargl.RecordingGL;
+
+public class MipMapBuilderTest {
+
+	private static ByteBuffer allocate(final int pBytes) {
+		return ByteBuffer.allocateDirect(pBytes).order(ByteOrder.nativeOrder());
+	}
+
+	@Test
+	public void testLevelSizes() {
+		assertEquals(1, MipMapBuilder.getLevelCount(1, 1, 1));
+		assertEquals(11, MipMapBuilder.getLevelCount(1024, 768, 1));
+		assertEquals(10, MipMapBuilder.getLevelCount(300, 512, 20));
+		assertEquals(1, MipMapBuilder.getLevelSize(20, 6));
+		assertEquals(37, MipMapBuilder.getLevelSize(300, 3));
+	}
+
+	@Test
+	public void testBoxAveragesTexelBlocks() {
+		// 4x2x2 volume, two channels
+		final ByteBuffer lLevel0 = allocate(4 * 2 * 2 * 2 * 2);
+		for (int i = 0; i < 32; i++)
+			lLevel0.putShort(2 * i, (short) (1000 * (i % 2) + i));
+
+		final ByteBuffer[] lLevels = MipMapBuilder.build(lLevel0,
+				GLTypeEnum.UnsignedShort,
+				2,
+				4,
+				2,
+				2,
+				3,
+				MipMapBuilder.Filter.Box);
+		assertEquals(2 * 1 * 1 * 2 * 2, lLevels[1].capacity());
+		// texel 0 averages x 0..1, y 0..1, z 0..1: values i = 0,2,8,10,16,18,24,26
+		assertEquals(13, lLevels[1].getShort(0));
+		assertEquals(1014, lLevels[1].getShort(2));
+		// texel 1 averages x 2..3: 4,6,12,14,20,22,28,30
+		assertEquals(17, lLevels[1].getShort(4));
+		assertEquals(15, lLevels[2].getShort(0));
+		assertEquals(1016, lLevels[2].getShort(2));
+	}
+
+	@Test
+	public void testOddSizesUseAllTexels() {
+		final ByteBuffer lSource = allocate(3);
+		lSource.put(0, (byte) 10).put(1, (byte) 20).put(2, (byte) 60);
+		final ByteBuffer lTarget = allocate(1);
+		MipMapBuilder.downsample(lSource,
+				3,
+				1,
+				1,
+				lTarget,
+				1,
+				1,
+				1,
+				GLTypeEnum.UnsignedByte,
+				1,
+				MipMapBuilder.Filter.Box);
+		assertEquals(30, lTarget.get(0));
+	}
+
+	@Test
+	public void testConstantImagesStayConstantForAllTypes() {
+		for (final GLTypeEnum lType : GLTypeEnum.values())
+			for (final MipMapBuilder.Filter lFilter : MipMapBuilder.Filter.values()) {
+				final int lBytes = MipMapBuilder.getBytesPerChannel(lType);
+				final ByteBuffer lLevel0 = allocate(37 * 21 * lBytes);
+				for (int i = 0; i < 37 * 21; i++)
+					switch (lType) {
+						case Float:
+							lLevel0.putFloat(4 * i, -1.5f);
+							break;
+						case Double:
+							lLevel0.putDouble(8 * i, 1e10);
+							break;
+						default:
+							for (int b = 0; b < lBytes; b++)
+								lLevel0.put(lBytes * i + b, (byte) 0xa5);
+					}
+
+				final ByteBuffer[] lLevels = MipMapBuilder.build(lLevel0,
+						lType,
+						1,
+						37,
+						21,
+						1,
+						MipMapBuilder.getLevelCount(37, 21, 1),
+						lFilter);
+				assertEquals(6, lLevels.length);
+				final ByteBuffer lLast = lLevels[5];
+				assertEquals(lBytes, lLast.capacity());
+				if (lType == GLTypeEnum.Float)
+					assertEquals(-1.5f, lLast.getFloat(0), 1e-6f);
+				else if (lType == GLTypeEnum.Double)
+					assertEquals(1e10, lLast.getDouble(0), 1e-3);
+				else
+					for (int b = 0; b < lBytes; b++)
+						assertEquals(lType + " " + lFilter,
+								lLevel0.get(b),
+								lLast.get(b));
+			}
+	}
+
+	@Test
+	public void testLanczosIsClampedToTypeRange() {
+		final ByteBuffer lSource = allocate(16);
+		for (int i = 0; i < 16; i++)
+			lSource.put(i, (byte) (i < 8 ? 0 : 255));
+		final ByteBuffer lTarget = allocate(8);
+		MipMapBuilder.downsample(lSource,
+				16,
+				1,
+				1,
+				lTarget,
+				8,
+				1,
+				1,
+				GLTypeEnum.UnsignedByte,
+				1,
+				MipMapBuilder.Filter.Lanczos);
+		assertEquals(0, lTarget.get(0));
+		assertEquals((byte) 255, lTarget.get(7));
+		// negative lobes reach across the edge and are clamped, not wrapped
+		assertEquals(0, lTarget.get(2));
+		assertEquals((byte) 255, lTarget.get(5));
+		assertEquals(17, lTarget.get(3));
+	}
+
+	@Test
+	public void testLargeVolumeMatchesNaiveBox() {
+		final int lWidth = 64, lHeight = 48, lDepth = 40;
+		final ByteBuffer lSource = allocate(lWidth * lHeight * lDepth * 4);
+		final Random lRandom = new Random(7);
+		for (int i = 0; i < lWidth * lHeight * lDepth; i++)
+			lSource.putFloat(4 * i, lRandom.nextFloat());
+
+		final ByteBuffer lTarget = allocate(lWidth * lHeight * lDepth / 2);
+		MipMapBuilder.downsample(lSource,
+				lWidth,
+				lHeight,
+				lDepth,
+				lTarget,
+				lWidth / 2,
+				lHeight / 2,
+				lDepth / 2,
+				GLTypeEnum.Float,
+				1,
+				MipMapBuilder.Filter.Box);
+
+		for (int z = 0; z < lDepth / 2; z++)
+			for (int y = 0; y < lHeight / 2; y++)
+				for (int x = 0; x < lWidth / 2; x++) {
+					float lSum = 0;
+					for (int k = 0; k < 8; k++)
+						lSum += lSource.getFloat(4 * ((2 * x + (k & 1)) + lWidth * ((2 * y + (k >> 1 & 1)) + lHeight * (2 * z + (k >> 2)))));
+					assertEquals(lSum / 8,
+							lTarget.getFloat(4 * (x + lWidth / 2 * (y + lHeight / 2 * z))),
+							1e-6f);
+				}
+	}
+
+	@Test
+	public void testTextureUploadsFullChain() {
+		final RecordingGL lGL = new RecordingGL();
+		final GLTexture lTexture = GLTexture.createWithMipMaps(lGL.getGL(),
+				GLTypeEnum.UnsignedByte,
+				1,
+				16,
+				8,
+				4,
+				true,
+				allocate(16 * 8 * 4),
+				MipMapBuilder.Filter.Triangle);
+		assertEquals(5, lTexture.getMipMapLevels());
+		assertEquals(5, lGL.getCalls("glTexStorage3D").get(0).arg(1));
+
+		final List<RecordingGL.Call> lUploads = lGL.getCalls("glTexSubImage3D");
+		assertEquals(5, lUploads.size());
+		for (int l = 0; l < 5; l++) {
+			assertEquals(l, lUploads.get(l).arg(1));
+			assertEquals(Math.max(1, 16 >> l), lUploads.get(l).arg(5));
+			assertEquals(Math.max(1, 4 >> l), lUploads.get(l).arg(7));
+		}
+		assertEquals(0, lGL.getCalls("glGenerateMipmap").size());
+	}
+
+	@Test
+	public void testVolumeUploadsRegenerateLevels() {
+		final RecordingGL lGL = new RecordingGL();
+		final GLTexture lTexture = new GLTexture(lGL.getGL(),
+				GLTypeEnum.UnsignedShort,
+				1,
+				16,
+				8,
+				4,
+				true,
+				3);
+		lGL.clear();
+
+		lTexture.copyFrom(allocate(2 * 16 * 8 * 4));
+		assertEquals(1, lGL.getCalls("glGenerateMipmap").size());
+		lTexture.copyFrom(allocate(2 * 4 * 4 * 4), 4, 4, 4, 8, 4, 0, true);
+		assertEquals(2, lGL.getCalls("glGenerateMipmap").size());
+
+		// precomputed levels are not overwritten
+		lTexture.copyFrom(allocate(2 * 16 * 8 * 4), 0, false);
+		lTexture.copyFrom(allocate(2 * 4 * 4 * 4), 4, 4, 4, 8, 4, 0, false);
+		assertEquals(2, lGL.getCalls("glGenerateMipmap").size());
+	}
+
+}
@@ -0,0 +1,110 @@
+package cleargl.util.image;
+
+import static org.junit.Assert.assertEquals;
+import java.awt.image.BufferedImage;
+import java.awt.image.IndexColorModel;
+import java.nio.ByteBuffer;
+import java.util.Random;
+import org.junit.Test;
+
+public class RasterConverterTest {
+
+	private static final int[] TYPES = {BufferedImage.TYPE_INT_RGB,
+			BufferedImage.TYPE_INT_ARGB,
+			BufferedImage.TYPE_INT_BGR,
+			BufferedImage.TYPE_3BYTE_BGR,
+			BufferedImage.TYPE_4BYTE_ABGR,
+			BufferedImage.TYPE_INT_ARGB_PRE,
+			BufferedImage.TYPE_USHORT_565_RGB,
+			BufferedImage.TYPE_BYTE_GRAY};
+
+	private static BufferedImage createImage(final int pType,
+			final int pWidth,
+			final int pHeight) {
+		final BufferedImage lImage = new BufferedImage(pWidth, pHeight, pType);
+		final Random lRandom = new Random(pType);
+		for (int y = 0; y < pHeight; y++)
+			for (int x = 0; x < pWidth; x++)
+				lImage.setRGB(x, y, lRandom.nextInt());
+		return lImage;
+	}
+
+	private static void assertConverted(final BufferedImage pImage,
+			final ByteBuffer pBuffer,
+			final int pRowLength,
+			final boolean pFlipped) {
+		final int lHeight = pImage.getHeight();
+		for (int y = 0; y < lHeight; y++)
+			for (int x = 0; x < pImage.getWidth(); x++) {
+				final int lExpected = pImage.getRGB(x, y);
+				final int lRow = pFlipped ? lHeight - 1 - y : y;
+				final int lIndex = 4 * (lRow * pRowLength + x);
+				final int lActual = (pBuffer.get(lIndex + 3) & 0xff) << 24
+						| (pBuffer.get(lIndex) & 0xff) << 16
+						| (pBuffer.get(lIndex + 1) & 0xff) << 8
+						| (pBuffer.get(lIndex + 2) & 0xff);
+				assertEquals("pixel " + x + "," + y, lExpected, lActual);
+			}
+	}
+
+	@Test
+	public void testAllLayoutsMatchGetRGB() {
+		for (final int lType : TYPES) {
+			final BufferedImage lImage = createImage(lType, 37, 21);
+			final ByteBuffer lBuffer = RasterConverter.toRGBA(lImage, true, true);
+			assertEquals(64 * 32 * 4, lBuffer.capacity());
+			assertEquals(0, lBuffer.position());
+			assertConverted(lImage, lBuffer, 64, true);
+			// padding is left empty
+			assertEquals(0, lBuffer.get(4 * 40));
+			assertEquals(0, lBuffer.get(4 * 64 * 25 + 3));
+		}
+	}
+
+	@Test
+	public void testIndexedImage() {
+		final byte[] lRamp = new byte[256];
+		for (int i = 0; i < 256; i++)
+			lRamp[i] = (byte) (255 - i);
+		final BufferedImage lImage = new BufferedImage(10,
+				10,
+				BufferedImage.TYPE_BYTE_INDEXED,
+				new IndexColorModel(8, 256, lRamp, lRamp, lRamp));
+		lImage.getRaster().setSample(3, 4, 0, 17);
+		final ByteBuffer lBuffer = RasterConverter.toRGBA(lImage, false, false);
+		assertEquals(10 * 10 * 4, lBuffer.capacity());
+		assertConverted(lImage, lBuffer, 10, false);
+	}
+
+	@Test
+	public void testSubimageWithoutPadding() {
+		final BufferedImage lParent = createImage(BufferedImage.TYPE_4BYTE_ABGR,
+				50,
+				40);
+		final BufferedImage lImage = lParent.getSubimage(7, 5, 31, 29);
+		final ByteBuffer lBuffer = RasterConverter.toRGBA(lImage, true, false);
+		assertEquals(31 * 29 * 4, lBuffer.capacity());
+		assertConverted(lImage, lBuffer, 31, true);
+
+		final BufferedImage lPacked = createImage(BufferedImage.TYPE_INT_ARGB,
+				50,
+				40).getSubimage(3, 9, 20, 11);
+		assertConverted(lPacked,
+				RasterConverter.toRGBA(lPacked, false, false),
+				20,
+				false);
+	}
+
+	@Test
+	public void testLargeImageInParallel() {
+		final BufferedImage lImage = createImage(BufferedImage.TYPE_INT_RGB,
+				300,
+				700);
+		final ByteBuffer lBuffer = ByteBuffer.allocateDirect(16 + 320 * 700 * 4);
+		lBuffer.position(16);
+		RasterConverter.toRGBA(lImage, true, lBuffer, 320);
+		assertEquals(16, lBuffer.position());
+		assertConverted(lImage, lBuffer.slice(), 320, true);
+	}
+
+}
@@ -0,0 +1,186 @@
+package cleargl.util.picking;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import java.util.Random;
+import org.junit.Test;
+
+import cleargl.GLMatrix;
+import cleargl.Vec3f;
+
+public class TriangleBVHTest {
+
+	private static float[] randomTriangles(final Random pRandom,
+			final int pTriangles,
+			final int pStride) {
+		final float[] lVertices = new float[3 * pTriangles * pStride];
+		for (int t = 0; t < pTriangles; t++) {
+			final float cx = 20 * pRandom.nextFloat() - 10;
+			final float cy = 20 * pRandom.nextFloat() - 10;
+			final float cz = 20 * pRandom.nextFloat() - 10;
+			for (int c = 0; c < 3; c++) {
+				final int o = (3 * t + c) * pStride;
+				lVertices[o] = cx + 0.3f * pRandom.nextFloat();
+				lVertices[o + 1] = cy + 0.3f * pRandom.nextFloat();
+				lVertices[o + 2] = cz + 0.3f * pRandom.nextFloat();
+			}
+		}
+		return lVertices;
+	}
+
+	private static float bruteForce(final float[] pVertices,
+			final int pStride,
+			final int[] pIndices,
+			final Ray pRay) {
+		final int lTriangles = pIndices != null ? pIndices.length / 3
+				: pVertices.length / (3 * pStride);
+		final Vec3f o = pRay.getOrigin(), d = pRay.getDirection();
+		final Vec3f a = new Vec3f(), e1 = new Vec3f(), e2 = new Vec3f();
+		final Vec3f p = new Vec3f(), s = new Vec3f(), q = new Vec3f();
+		float lBest = Float.POSITIVE_INFINITY;
+		for (int t = 0; t < lTriangles; t++) {
+			final int ia = (pIndices != null ? pIndices[3 * t] : 3 * t) * pStride;
+			final int ib = (pIndices != null ? pIndices[3 * t + 1] : 3 * t + 1) * pStride;
+			final int ic = (pIndices != null ? pIndices[3 * t + 2] : 3 * t + 2) * pStride;
+			a.set(pVertices, ia);
+			e1.set(pVertices, ib).sub(a);
+			e2.set(pVertices, ic).sub(a);
+			p.cross(d, e2);
+			final float lDet = e1.dot(p);
+			if (lDet == 0)
+				continue;
+			s.sub(o, a);
+			final float u = s.dot(p) / lDet;
+			q.cross(s, e1);
+			final float v = d.dot(q) / lDet;
+			final float lT = e2.dot(q) / lDet;
+			if (u >= 0 && v >= 0 && u + v <= 1 && lT >= 0)
+				lBest = Math.min(lBest, lT);
+		}
+		return lBest;
+	}
+
+	private static void assertMatchesBruteForce(final TriangleBVH pBVH,
+			final float[] pVertices,
+			final int pStride,
+			final int[] pIndices,
+			final Random pRandom) {
+		final Ray lRay = new Ray();
+		final RayHit lHit = new RayHit();
+		int lHits = 0;
+		for (int i = 0; i < 200; i++) {
+			final Vec3f lOrigin = new Vec3f(30, 30 * pRandom.nextFloat() - 15, 30 * pRandom.nextFloat() - 15);
+			final Vec3f lTarget = new Vec3f(20 * pRandom.nextFloat() - 10,
+					20 * pRandom.nextFloat() - 10,
+					20 * pRandom.nextFloat() - 10);
+			lRay.set(lOrigin, lTarget.sub(lOrigin).normalize());
+
+			final float lExpected = bruteForce(pVertices, pStride, pIndices, lRay);
+			final boolean lIsHit = pBVH.intersect(lRay, lHit.reset());
+			assertEquals(lExpected < Float.POSITIVE_INFINITY, lIsHit);
+			if (lIsHit) {
+				assertEquals(lExpected, lHit.t, 1e-4f);
+				lHits++;
+			}
+		}
+		assertTrue(lHits > 0);
+	}
+
+	@Test
+	public void testTriangleSoup() {
+		final Random lRandom = new Random(42);
+		// large enough for the parallel build
+		final float[] lVertices = randomTriangles(lRandom, 3 * TriangleBVH.PARALLEL_THRESHOLD, 4);
+		final TriangleBVH lBVH = new TriangleBVH(lVertices, 4, null);
+		assertEquals(3 * TriangleBVH.PARALLEL_THRESHOLD, lBVH.getTriangleCount());
+		assertMatchesBruteForce(lBVH, lVertices, 4, null, lRandom);
+
+		// move everything and refit
+		for (int i = 0; i < lVertices.length; i += 4) {
+			lVertices[i] = 0.5f * lVertices[i] + 1;
+			lVertices[i + 2] -= 2 + 0.1f * lVertices[i + 1];
+		}
+		lBVH.refit();
+		assertMatchesBruteForce(lBVH, lVertices, 4, null, lRandom);
+	}
+
+	@Test
+	public void testIndexedGrid() {
+		// 64x64 grid of quads in the z = 0 plane
+		final int n = 65;
+		final float[] lVertices = new float[3 * n * n];
+		for (int y = 0; y < n; y++)
+			for (int x = 0; x < n; x++) {
+				lVertices[3 * (y * n + x)] = x - 32;
+				lVertices[3 * (y * n + x) + 1] = y - 32;
+			}
+		final int[] lIndices = new int[6 * (n - 1) * (n - 1)];
+		int k = 0;
+		for (int y = 0; y < n - 1; y++)
+			for (int x = 0; x < n - 1; x++) {
+				final int v = y * n + x;
+				lIndices[k++] = v;
+				lIndices[k++] = v + 1;
+				lIndices[k++] = v + n;
+				lIndices[k++] = v + 1;
+				lIndices[k++] = v + n + 1;
+				lIndices[k++] = v + n;
+			}
+
+		final TriangleBVH lBVH = new TriangleBVH(lVertices, 3, lIndices);
+		final RayHit lHit = new RayHit();
+		final Ray lRay = new Ray(new Vec3f(3.25f, -7.5f, 10), new Vec3f(0, 0, -1));
+		assertTrue(lBVH.intersect(lRay, lHit));
+		assertEquals(10, lHit.t, 1e-5f);
+		final Vec3f lPoint = lRay.getPoint(lHit.t, new Vec3f());
+		assertEquals(3.25f, lPoint.x, 1e-5f);
+		assertEquals(-7.5f, lPoint.y, 1e-5f);
+		assertFalse(lBVH.intersect(lRay, 9.0f, lHit.reset()));
+		assertFalse(lBVH.intersect(new Ray(new Vec3f(40, 0, 10), new Vec3f(0, 0, -1)), lHit.reset()));
+
+		assertMatchesBruteForce(lBVH, lVertices, 3, lIndices, new Random(7));
+
+		// axis-aligned rays starting on the bounds of the grid graze its edges
+		assertTrue(lBVH.intersect(new Ray(new Vec3f(-32, 5.5f, 10),
+				new Vec3f(0, 0, -1)), lHit.reset()));
+		assertEquals(10, lHit.t, 1e-5f);
+		assertTrue(lBVH.intersect(new Ray(new Vec3f(3.25f, 32, 10),
+				new Vec3f(0, 0, -1)), lHit.reset()));
+		assertEquals(10, lHit.t, 1e-5f);
+	}
+
+	@Test
+	public void testRayFromNDC() {
+		final GLMatrix lProjection = new GLMatrix().setPerspectiveProjectionMatrix((float) Math.toRadians(60),
+				1.0f,
+				0.1f,
+				100.0f);
+		final GLMatrix lView = new GLMatrix().setCamera(0.0f, 0.0f, 10.0f,
+				0.0f, 0.0f, 0.0f,
+				0.0f, 1.0f, 0.0f);
+
+		final Ray lRay = new Ray().setFromWindow(lProjection, lView, 50, 50, 100, 100);
+		assertEquals(0, lRay.getOrigin().x, 1e-4f);
+		assertEquals(9.9f, lRay.getOrigin().z, 1e-3f);
+		assertEquals(-1, lRay.getDirection().z, 1e-5f);
+
+		// a ray through the upper right corner leaves at half the field of view
+		lRay.setFromNDC(lProjection, lView, 0, 1);
+		assertEquals(Math.tan(Math.toRadians(30)),
+				lRay.getDirection().y / -lRay.getDirection().z,
+				1e-4);
+
+		// moving the ray into object space keeps hit distances
+		final GLMatrix lModel = GLMatrix.getIdentity();
+		lModel.translate(1, 2, 3);
+		lModel.scale(2, 2, 2);
+		final Ray lObjectRay = lRay.transform(lModel.getInverse(), new Ray());
+		final Vec3f lWorld = lRay.getPoint(5, new Vec3f());
+		final Vec3f lObject = lObjectRay.getPoint(5, new Vec3f());
+		assertEquals((lWorld.x - 1) / 2, lObject.x, 1e-5f);
+		assertEquals((lWorld.y - 2) / 2, lObject.y, 1e-5f);
+		assertEquals((lWorld.z - 3) / 2, lObject.z, 1e-5f);
+	}
+
+}
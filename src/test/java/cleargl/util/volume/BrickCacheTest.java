@@ -0,0 +1,90 @@
+package cleargl.util.volume;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import org.junit.Test;
+
+public class BrickCacheTest {
+
+	@Test
+	public void testLayout() {
+		final BrickLayout lLayout = new BrickLayout(100, 60, 1, 34, 1);
+		assertEquals(32, lLayout.getCoreSize());
+		assertEquals(4, lLayout.getBricksX());
+		assertEquals(2, lLayout.getBricksY());
+		assertEquals(1, lLayout.getBricksZ());
+		assertEquals(8, lLayout.getBrickCount());
+
+		final int lBrick = lLayout.getBrickIndex(3, 1, 0);
+		assertEquals(3, lLayout.getBrickX(lBrick));
+		assertEquals(1, lLayout.getBrickY(lBrick));
+		assertEquals(0, lLayout.getBrickZ(lBrick));
+		assertEquals(lBrick, lLayout.getBrickIndexOfVoxel(99, 59, 0));
+		assertEquals(-1, lLayout.getBrickOrigin(0));
+		assertEquals(95, lLayout.getBrickOrigin(3));
+	}
+
+	@Test
+	public void testLeastRecentlyUsedIsEvicted() {
+		final BrickCache lCache = new BrickCache(10, 3);
+		assertEquals(0, lCache.allocate(0));
+		assertEquals(1, lCache.allocate(1));
+		assertEquals(2, lCache.allocate(2));
+		assertEquals(-1, lCache.getLastEvictedBrick());
+		assertEquals(3, lCache.getResidentCount());
+
+		lCache.beginFrame();
+		assertEquals(0, lCache.lookup(0));
+		assertEquals(-1, lCache.lookup(5));
+
+		// brick 1 is the least recently used one now
+		assertEquals(1, lCache.allocate(5));
+		assertEquals(1, lCache.getLastEvictedBrick());
+		assertFalse(lCache.isResident(1));
+		assertTrue(lCache.isResident(5));
+		assertEquals(5, lCache.getBrick(1));
+
+		assertEquals(2, lCache.allocate(6));
+		assertEquals(2, lCache.getLastEvictedBrick());
+
+		assertEquals(1, lCache.getHitCount());
+		assertEquals(1, lCache.getMissCount());
+		assertEquals(2, lCache.getEvictionCount());
+	}
+
+	@Test
+	public void testBricksOfCurrentFrameArePinned() {
+		final BrickCache lCache = new BrickCache(10, 2);
+		lCache.allocate(0);
+		lCache.allocate(1);
+		assertEquals(-1, lCache.allocate(2));
+		assertFalse(lCache.isResident(2));
+
+		lCache.beginFrame();
+		lCache.lookup(1);
+		assertEquals(0, lCache.allocate(2));
+		assertEquals(0, lCache.getLastEvictedBrick());
+		assertEquals(-1, lCache.allocate(3));
+	}
+
+	@Test
+	public void testInvalidateFreesSlot() {
+		final BrickCache lCache = new BrickCache(10, 2);
+		lCache.allocate(0);
+		lCache.allocate(1);
+		assertTrue(lCache.invalidate(0));
+		assertFalse(lCache.invalidate(0));
+		assertEquals(1, lCache.getResidentCount());
+
+		// the freed slot is reused without evicting anything
+		assertEquals(0, lCache.allocate(7));
+		assertEquals(-1, lCache.getLastEvictedBrick());
+		assertTrue(lCache.isResident(1));
+
+		lCache.clear();
+		assertEquals(0, lCache.getResidentCount());
+		assertEquals(-1, lCache.getSlot(7));
+	}
+
+}
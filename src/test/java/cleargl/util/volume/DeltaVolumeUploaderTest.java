@@ -0,0 +1,86 @@
+package cleargl.util.volume;
+
+import static org.junit.Assert.assertEquals;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.List;
+import org.junit.Test;
+
+import cleargl.GLTexture;
+import cleargl.GLTypeEnum;
+import cleargl.RecordingGL;
+
+public class DeltaVolumeUploaderTest {
+
+	@Test
+	public void testOnlyChangedBricksAreUploaded() {
+		final RecordingGL lGL = new RecordingGL();
+		// 20x16x8 shorts in bricks of 8, the last column of bricks is clipped
+		final GLTexture lTexture = new GLTexture(lGL.getGL(),
+				GLTypeEnum.UnsignedShort,
+				1,
+				20,
+				16,
+				8,
+				true,
+				1);
+		final int lCount = 20 * 16 * 8;
+		final ByteBuffer lData = ByteBuffer.allocateDirect(2 * lCount)
+				.order(ByteOrder.nativeOrder());
+		for (int i = 0; i < lCount; i++)
+			lData.putShort(2 * i, (short) i);
+
+		final DeltaVolumeUploader lUploader = new DeltaVolumeUploader(lTexture,
+				8);
+		assertEquals(6, lUploader.getLayout().getBrickCount());
+		lGL.clear();
+
+		// the first upload is complete
+		assertEquals(6, lUploader.upload(lData));
+		assertEquals(1, lGL.getCalls("glTexSubImage3D").size());
+		assertEquals(2L * lCount, lUploader.getUploadedBytes());
+		lGL.clear();
+
+		// nothing changed
+		assertEquals(0, lUploader.upload(lData));
+		assertEquals(0, lGL.getCalls("glTexSubImage3D").size());
+		assertEquals(2L * lCount, lUploader.getSkippedBytes());
+
+		// one voxel in the clipped brick at (2, 1, 0)
+		lData.putShort(2 * (5 * 320 + 9 * 20 + 17), (short) -1);
+		assertEquals(1, lUploader.upload(lData));
+		final List<RecordingGL.Call> lCalls = lGL.getCalls("glTexSubImage3D");
+		assertEquals(1, lCalls.size());
+		assertEquals(16, lCalls.get(0).arg(2));
+		assertEquals(8, lCalls.get(0).arg(3));
+		assertEquals(0, lCalls.get(0).arg(4));
+		assertEquals(4, lCalls.get(0).arg(5));
+		assertEquals(8, lCalls.get(0).arg(6));
+		assertEquals(8, lCalls.get(0).arg(7));
+		final ByteBuffer lBrick = (ByteBuffer) lCalls.get(0).arg(10);
+		assertEquals(2 * 4 * 8 * 8, lBrick.remaining());
+		assertEquals((short) (8 * 20 + 16), lBrick.getShort(lBrick.position()));
+		assertEquals(2L * lCount + 2 * 4 * 8 * 8, lUploader.getUploadedBytes());
+		assertEquals(2L * lCount + 2L * lCount - 2 * 4 * 8 * 8,
+				lUploader.getSkippedBytes());
+		lGL.clear();
+
+		// after invalidation everything goes up again, and a full upload
+		// skips nothing
+		final long lSkipped = lUploader.getSkippedBytes();
+		lUploader.invalidate();
+		assertEquals(6, lUploader.upload(lData));
+		assertEquals(1, lGL.getCalls("glTexSubImage3D").size());
+		assertEquals(lSkipped, lUploader.getSkippedBytes());
+		lGL.clear();
+
+		// also brick by brick
+		lUploader.setFullUploadFraction(1.0);
+		lUploader.invalidate();
+		assertEquals(6, lUploader.upload(lData));
+		assertEquals(6, lGL.getCalls("glTexSubImage3D").size());
+		assertEquals(lSkipped, lUploader.getSkippedBytes());
+		lTexture.close();
+	}
+
+}
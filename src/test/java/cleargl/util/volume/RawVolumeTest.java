@@ -0,0 +1,133 @@
+package cleargl.util.volume;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Arrays;
+import java.util.List;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import cleargl.GLTexture;
+import cleargl.GLTypeEnum;
+import cleargl.RecordingGL;
+
+public class RawVolumeTest {
+
+	@Rule
+	public TemporaryFolder mFolder = new TemporaryFolder();
+
+	private static ByteBuffer createRamp(final int pValues, final ByteOrder pOrder) {
+		final ByteBuffer lData = ByteBuffer.allocate(2 * pValues).order(pOrder);
+		for (int i = 0; i < pValues; i++)
+			lData.putShort((short) (i * 7));
+		lData.flip();
+		return lData;
+	}
+
+	@Test
+	public void testHeaderAndSlabUploads() throws IOException {
+		final Path lPath = mFolder.newFile("stack.raw").toPath();
+		RawVolume.write(lPath,
+				createRamp(8 * 4 * 10, ByteOrder.nativeOrder()),
+				8,
+				4,
+				10,
+				1,
+				GLTypeEnum.UnsignedShort);
+
+		try (RawVolume lVolume = RawVolume.open(lPath)) {
+			assertEquals(8, lVolume.getWidth());
+			assertEquals(4, lVolume.getHeight());
+			assertEquals(10, lVolume.getDepth());
+			assertEquals(GLTypeEnum.UnsignedShort, lVolume.getType());
+			assertEquals(ByteOrder.nativeOrder(), lVolume.getByteOrder());
+			assertEquals(RawVolume.HEADER_SIZE, lVolume.getDataOffset());
+
+			final MappedByteBuffer lSlice = lVolume.map(3, 1);
+			assertEquals(64, lSlice.capacity());
+			assertEquals((short) (3 * 32 * 7), lSlice.getShort(0));
+
+			final RecordingGL lGL = new RecordingGL();
+			final GLTexture lTexture = new GLTexture(lGL.getGL(),
+					GLTypeEnum.UnsignedShort,
+					1,
+					8,
+					4,
+					10,
+					true,
+					1);
+			// four slices per slab: 4 + 4 + 2
+			lVolume.setMaxSlabBytes(4 * 64 + 10);
+			assertEquals(4, lVolume.getSlabDepth());
+			lVolume.uploadTo(lTexture);
+
+			final List<RecordingGL.Call> lUploads = lGL.getCalls("glTexSubImage3D");
+			assertEquals(3, lUploads.size());
+			assertEquals(Arrays.asList(0, 4, 8),
+					Arrays.asList(lUploads.get(0).arg(4),
+							lUploads.get(1).arg(4),
+							lUploads.get(2).arg(4)));
+			assertEquals(2, lUploads.get(2).arg(7));
+			// mapped memory is handed over directly
+			final ByteBuffer lLast = (ByteBuffer) lUploads.get(2).arg(10);
+			assertEquals(2 * 64, lLast.capacity());
+			assertEquals((short) (8 * 32 * 7), lLast.getShort(0));
+		}
+	}
+
+	@Test
+	public void testSidecarWithForeignByteOrder() throws IOException {
+		final ByteOrder lForeign = ByteOrder.nativeOrder() == ByteOrder.LITTLE_ENDIAN ? ByteOrder.BIG_ENDIAN
+				: ByteOrder.LITTLE_ENDIAN;
+		final Path lPath = mFolder.newFile("stack.dat").toPath();
+		final ByteBuffer lData = createRamp(6 * 5 * 3, lForeign);
+		final byte[] lBytes = new byte[16 + lData.remaining()];
+		lData.get(lBytes, 16, lBytes.length - 16);
+		Files.write(lPath, lBytes);
+		Files.write(Paths.get(lPath + RawVolume.SIDECAR_SUFFIX),
+				Arrays.asList("width=6",
+						"height=5",
+						"depth=3",
+						"type=UnsignedShort",
+						"byteorder=" + (lForeign == ByteOrder.BIG_ENDIAN ? "big" : "little"),
+						"offset=16"));
+
+		try (RawVolume lVolume = RawVolume.open(lPath)) {
+			assertEquals(1, lVolume.getChannels());
+			assertSame(lForeign, lVolume.getByteOrder());
+			assertEquals((short) (31 * 7), lVolume.map(1, 1).getShort(2));
+
+			final RecordingGL lGL = new RecordingGL();
+			final GLTexture lTexture = lVolume.createTexture(lGL.getGL(), false);
+			final List<RecordingGL.Call> lUploads = lGL.getCalls("glTexSubImage3D");
+			assertEquals(1, lUploads.size());
+			final ByteBuffer lUploaded = ((ByteBuffer) lUploads.get(0).arg(10)).order(ByteOrder.nativeOrder());
+			assertEquals(6 * 5 * 3 * 2, lUploaded.limit());
+			for (int i = 0; i < 6 * 5 * 3; i++)
+				assertEquals((short) (i * 7), lUploaded.getShort(2 * i));
+			assertEquals(3, lTexture.getDepth());
+		}
+	}
+
+	@Test(expected = IOException.class)
+	public void testTruncatedFileIsRejected() throws IOException {
+		final Path lPath = mFolder.newFile("short.raw").toPath();
+		RawVolume.write(lPath,
+				createRamp(10, ByteOrder.nativeOrder()),
+				8,
+				4,
+				10,
+				1,
+				GLTypeEnum.UnsignedShort);
+		RawVolume.open(lPath).close();
+	}
+
+}
@@ -0,0 +1,85 @@
+package cleargl.util.volume;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+import org.junit.Test;
+import com.jogamp.opengl.GL4;
+
+import cleargl.GLTypeEnum;
+import cleargl.RecordingGL;
+
+public class VirtualVolumeTextureTest {
+
+	@Test
+	public void testBricksAreLoadedOnDemand() {
+		final RecordingGL lGL = new RecordingGL();
+		final BrickLayout lLayout = new BrickLayout(64, 64, 64, 18, 1);
+		final List<String> lLoaded = new ArrayList<>();
+		final VirtualVolumeTexture lVolume = new VirtualVolumeTexture(lGL.getGL(),
+				lLayout,
+				GLTypeEnum.UnsignedShort,
+				1,
+				2,
+				1,
+				1,
+				(pLayout, pX, pY, pZ, pDestination) -> {
+					lLoaded.add(pX + "," + pY + "," + pZ);
+					while (pDestination.hasRemaining())
+						pDestination.putShort((short) pX);
+				});
+		assertEquals(36, lVolume.getAtlas().getWidth());
+		assertEquals(GL4.GL_RGBA16UI, lVolume.getPageTable()
+				.getInternalFormat());
+		assertEquals(GL4.GL_RGBA_INTEGER, lVolume.getPageTable()
+				.getFormat());
+
+		lGL.clear();
+		lVolume.beginFrame();
+		assertFalse(lVolume.request(0, 0, 0));
+		assertFalse(lVolume.request(1, 0, 0));
+		assertFalse(lVolume.request(0, 0, 0));
+		assertFalse(lVolume.request(2, 0, 0));
+		assertEquals(3, lVolume.getPendingCount());
+
+		// both slots go to this frame's first two bricks, the third has to wait
+		assertEquals(1, lVolume.update(1));
+		assertEquals(2, lVolume.getPendingCount());
+		assertEquals(1, lVolume.update(8));
+		assertEquals(1, lVolume.getPendingCount());
+		assertEquals("[0,0,0, 1,0,0]", lLoaded.toString());
+		assertTrue(lVolume.isResident(1, 0, 0));
+		assertFalse(lVolume.isResident(2, 0, 0));
+
+		final List<RecordingGL.Call> lUploads = lGL.getCalls("glTexSubImage3D");
+		assertEquals(4, lUploads.size());
+		// second brick goes into atlas slot 1 ...
+		assertEquals(18, lUploads.get(2).arg(2));
+		assertEquals(18, lUploads.get(2).arg(5));
+		// ... and its page table entry points there
+		final ByteBuffer lEntry = (ByteBuffer) lUploads.get(3).arg(10);
+		assertEquals(1, lUploads.get(3).arg(2));
+		assertEquals(1, lEntry.getShort(0));
+		assertEquals(1, lEntry.getShort(6));
+
+		// next frame brick 0 is still needed, so brick 1 is evicted
+		lVolume.beginFrame();
+		assertTrue(lVolume.request(0, 0, 0));
+		assertFalse(lVolume.request(2, 0, 0));
+		assertEquals(1, lVolume.update(8));
+		assertTrue(lVolume.isResident(0, 0, 0));
+		assertFalse(lVolume.isResident(1, 0, 0));
+		assertTrue(lVolume.isResident(2, 0, 0));
+		assertEquals(1, lVolume.getCache().getEvictionCount());
+
+		// evicted brick is requested and loaded again later
+		lVolume.beginFrame();
+		assertFalse(lVolume.request(1, 0, 0));
+		assertEquals(1, lVolume.update(8));
+		assertEquals(4, lVolume.getUploadCount());
+	}
+
+}
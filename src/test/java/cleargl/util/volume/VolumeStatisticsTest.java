@@ -0,0 +1,135 @@
+package cleargl.util.volume;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.Random;
+import org.junit.Test;
+
+import cleargl.GLPixelBufferRing;
+import cleargl.GLTexture;
+import cleargl.GLTypeEnum;
+import cleargl.RecordingGL;
+
+public class VolumeStatisticsTest {
+
+	@Test
+	public void testUnsignedShortCopyMatchesNaivePass() {
+		final int lWidth = 256, lHeight = 128, lDepth = 20;
+		final int lCount = lWidth * lHeight * lDepth;
+		final ByteOrder lForeign = ByteOrder.nativeOrder() == ByteOrder.LITTLE_ENDIAN ? ByteOrder.BIG_ENDIAN
+				: ByteOrder.LITTLE_ENDIAN;
+		final ByteBuffer lSource = ByteBuffer.allocateDirect(2 * lCount)
+				.order(lForeign);
+		final Random lRandom = new Random(5);
+		for (int i = 0; i < lCount; i++)
+			lSource.putShort(2 * i, (short) (100 + lRandom.nextInt(40000)));
+		final ByteBuffer lTarget = ByteBuffer.allocateDirect(2 * lCount)
+				.order(ByteOrder.nativeOrder());
+
+		final VolumeStatistics lStatistics = new VolumeStatistics(GLTypeEnum.UnsignedShort,
+				1,
+				16);
+		lStatistics.copyAndMeasure(lSource, lTarget, lWidth, lHeight, lDepth);
+
+		int lMin = Integer.MAX_VALUE, lMax = 0;
+		final long[] lHistogram = new long[16];
+		for (int i = 0; i < lCount; i++) {
+			final int lValue = lSource.getShort(2 * i) & 0xffff;
+			assertEquals(lValue, lTarget.getShort(2 * i) & 0xffff);
+			lMin = Math.min(lMin, lValue);
+			lMax = Math.max(lMax, lValue);
+			lHistogram[lValue >> 12]++;
+		}
+		assertEquals(lMin, lStatistics.getMin(0), 0);
+		assertEquals(lMax, lStatistics.getMax(0), 0);
+		assertEquals(lCount, lStatistics.getCount(0));
+		assertArrayEquals(lHistogram, lStatistics.getHistogram(0));
+
+		// rebinning to the occupied range needs no new pass
+		lStatistics.setRange(100, 40099);
+		for (final long lBin : lStatistics.getHistogram(0))
+			assertEquals(lCount / 16, lBin, lCount / 160);
+	}
+
+	@Test
+	public void testUnsignedByteChannelsAndQuantiles() {
+		// two channels, 0..99 and 200 - (0..99)
+		final ByteBuffer lData = ByteBuffer.allocate(2 * 100);
+		for (int i = 0; i < 100; i++) {
+			lData.put(2 * i, (byte) i);
+			lData.put(2 * i + 1, (byte) (200 - i));
+		}
+		final VolumeStatistics lStatistics = new VolumeStatistics(GLTypeEnum.UnsignedByte,
+				2,
+				4);
+		lStatistics.measure(lData, 10, 10, 1);
+		assertEquals(0, lStatistics.getMin(0), 0);
+		assertEquals(99, lStatistics.getMax(0), 0);
+		assertEquals(101, lStatistics.getMin(1), 0);
+		assertEquals(200, lStatistics.getMax(1), 0);
+		assertArrayEquals(new long[]{64, 36, 0, 0}, lStatistics.getHistogram(0));
+		assertEquals(9, lStatistics.getQuantile(0, 0.1), 0);
+		assertEquals(190, lStatistics.getQuantile(1, 0.9), 0);
+
+		// statistics accumulate until reset
+		lStatistics.measure(lData, 10, 10, 1);
+		assertEquals(200, lStatistics.getCount(0));
+		lStatistics.reset();
+		assertEquals(0, lStatistics.getCount(1));
+		assertTrue(Double.isNaN(lStatistics.getMin(1)));
+	}
+
+	@Test
+	public void testFloatRangeClampsAndSkipsNaN() {
+		final float[] lValues = {-5f, 0f, 0.3f, 0.55f, 0.99f, 1f, 7f, Float.NaN};
+		final ByteBuffer lData = ByteBuffer.allocate(4 * lValues.length)
+				.order(ByteOrder.nativeOrder());
+		for (final float lValue : lValues)
+			lData.putFloat(lValue);
+		lData.flip();
+
+		final VolumeStatistics lStatistics = new VolumeStatistics(GLTypeEnum.Float,
+				1,
+				4);
+		lStatistics.measure(lData, 4, 2, 1);
+		assertEquals(-5, lStatistics.getMin(0), 0);
+		assertEquals(7, lStatistics.getMax(0), 0);
+		assertEquals(7, lStatistics.getCount(0));
+		assertArrayEquals(new long[]{2, 1, 1, 3}, lStatistics.getHistogram(0));
+		final double lMedian = lStatistics.getQuantile(0, 0.5);
+		assertTrue(lMedian > 0.25 && lMedian < 0.75);
+	}
+
+	@Test
+	public void testUploadsThroughPixelBufferRing() {
+		final RecordingGL lGL = new RecordingGL();
+		final GLTexture lTexture = new GLTexture(lGL.getGL(),
+				GLTypeEnum.UnsignedShort,
+				1,
+				16,
+				8,
+				4,
+				true,
+				1);
+		final ByteBuffer lData = ByteBuffer.allocateDirect(2 * 16 * 8 * 4)
+				.order(ByteOrder.nativeOrder());
+		for (int i = 0; i < 16 * 8 * 4; i++)
+			lData.putShort(2 * i, (short) i);
+
+		final VolumeStatistics lStatistics = new VolumeStatistics(GLTypeEnum.UnsignedShort,
+				1,
+				8);
+		try (GLPixelBufferRing lRing = new GLPixelBufferRing(lTexture, 2)) {
+			lStatistics.upload(lData, lTexture, lRing);
+			assertEquals(1, lGL.getCalls("glMapBufferRange").size());
+			assertEquals(1, lGL.getCalls("glTexSubImage3D").size());
+		}
+		assertEquals(511, lStatistics.getMax(0), 0);
+		assertEquals(512, lStatistics.getCount(0));
+		lTexture.close();
+	}
+
+}